@@ -0,0 +1,311 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpHandler
+import org.apache.http.HttpStatus
+import org.gradle.caching.BuildCacheEntryWriter
+import org.gradle.caching.BuildCacheException
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.BuildCacheService
+import org.gradle.caching.BuildCacheServiceFactory
+import org.gradle.caching.http.HttpBuildCache
+import org.gradle.initialization.GradleUserHomeDirProvider
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.test.fixtures.server.http.HttpServer
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class AsyncHttpBuildCacheServiceTest extends Specification {
+    @Rule
+    HttpServer server = new HttpServer()
+    @Rule
+    TestNameTestDirectoryProvider tempDir = new TestNameTestDirectoryProvider()
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties((AsyncHttpBuildCacheService.ASYNC_PROPERTY): "true")
+
+    def executorFactory = new DefaultExecutorFactory()
+    def key = key("0123456abcdef")
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "loads prefetched entry"() {
+        server.start()
+        def cache = createCache(server.uri)
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectGet("/cache/${key.hashCode}", srcFile)
+
+        when:
+        cache.prefetch(key)
+        def receivedInput = null
+        def loaded = cache.load(key) { input ->
+            receivedInput = input.text
+        }
+
+        then:
+        loaded
+        receivedInput == "Data"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "loads missing prefetched entry"() {
+        server.start()
+        def cache = createCache(server.uri)
+        server.expectGetMissing("/cache/${key.hashCode}")
+
+        when:
+        cache.prefetch(key)
+        def loaded = cache.load(key) { input -> assert false }
+
+        then:
+        !loaded
+
+        cleanup:
+        cache.close()
+    }
+
+    def "reports failure of prefetch when entry is loaded"() {
+        server.start()
+        def cache = createCache(server.uri)
+        server.expectGetBroken("/cache/${key.hashCode}")
+
+        when:
+        cache.prefetch(key)
+        cache.load(key) { input -> }
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Loading entry from '${server.uri}/cache/${key.hashCode}' response status 500: broken"
+
+        cleanup:
+        cache.close()
+    }
+
+    def "checks which entries are in the cache"() {
+        server.start()
+        def cache = createCache(server.uri)
+        def otherKey = key("fedcba6543210")
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectHead("/cache/${key.hashCode}", srcFile)
+        server.expectHeadMissing("/cache/${otherKey.hashCode}")
+
+        expect:
+        cache.contains([key, otherKey]) == [key] as Set
+
+        cleanup:
+        cache.close()
+    }
+
+    def "stores entry in the background and waits for it on close"() {
+        server.start()
+        def cache = createCache(server.uri)
+        def destFile = tempDir.file("cached.zip")
+        def content = "Data".bytes
+        server.expectPut("/cache/${key.hashCode}", destFile, HttpStatus.SC_OK, null, content.length)
+
+        when:
+        cache.store(key, writer(content))
+        cache.close()
+
+        then:
+        destFile.bytes == content
+    }
+
+    def "reports failure to store entry on close rather than when storing another entry"() {
+        server.start()
+        def cache = createCache(server.uri)
+        def otherKey = key("789")
+        def destFile = tempDir.file("cached.zip")
+        def content = "Data".bytes
+        server.expectPut("/cache/${key.hashCode}", tempDir.file("failed.zip"), HttpStatus.SC_INTERNAL_SERVER_ERROR, null, content.length)
+        server.expectPut("/cache/${otherKey.hashCode}", destFile, HttpStatus.SC_OK, null, content.length)
+
+        when:
+        cache.store(key, writer(content))
+        Thread.sleep(500)
+        cache.store(otherKey, writer(content))
+
+        then:
+        noExceptionThrown()
+
+        when:
+        cache.close()
+
+        then:
+        BuildCacheException exception = thrown()
+        exception.message == "Could not store 1 entry in remote build cache"
+        destFile.bytes == content
+        tempDir.file("user-home/build-cache-tmp/build-cache-http").list().length == 0
+    }
+
+    def "overlaps requests to a slow server"() {
+        def latency = 500
+        def entries = 8
+        def stored = new ConcurrentHashMap<String, byte[]>()
+        def slowServer = com.sun.net.httpserver.HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+        slowServer.executor = Executors.newFixedThreadPool(entries)
+        slowServer.createContext("/cache/", new HttpHandler() {
+            @Override
+            void handle(HttpExchange exchange) {
+                Thread.sleep(latency)
+                def hash = exchange.requestURI.path.substring("/cache/".length())
+                if (exchange.requestMethod == "PUT") {
+                    stored[hash] = exchange.requestBody.bytes
+                    exchange.sendResponseHeaders(HttpStatus.SC_OK, -1)
+                } else {
+                    def content = ("content of " + hash).bytes
+                    exchange.sendResponseHeaders(HttpStatus.SC_OK, content.length)
+                    exchange.responseBody.write(content)
+                }
+                exchange.close()
+            }
+        })
+        slowServer.start()
+        def cache = createCache(new URI("http://localhost:${slowServer.address.port}/"))
+        def keys = (1..entries).collect { key("key${it}") }
+
+        when:
+        def start = System.currentTimeMillis()
+        keys.each { cache.prefetch(it) }
+        def loaded = keys.collect { BuildCacheKey key ->
+            def receivedInput = null
+            cache.load(key) { input -> receivedInput = input.text }
+            receivedInput
+        }
+        keys.each { cache.store(it, writer(it.hashCode.bytes)) }
+        cache.close()
+        def elapsed = System.currentTimeMillis() - start
+
+        then:
+        loaded == keys.collect { "content of ${it.hashCode}".toString() }
+        stored.collectEntries { hash, content -> [hash, new String(content)] } == keys.collectEntries { [it.hashCode, it.hashCode] }
+        // Sequential requests would take 2 * entries * latency
+        elapsed < entries * latency
+
+        cleanup:
+        slowServer.stop(0)
+        slowServer.executor.shutdownNow()
+    }
+
+    def "discards oldest prefetched entry that is not loaded"() {
+        def requests = new ConcurrentHashMap<String, AtomicInteger>()
+        def inFlight = new CountDownLatch(AsyncHttpBuildCacheService.MAX_CONCURRENT_REQUESTS)
+        def release = new CountDownLatch(1)
+        def countingServer = com.sun.net.httpserver.HttpServer.create(new InetSocketAddress("localhost", 0), 0)
+        countingServer.executor = Executors.newCachedThreadPool()
+        countingServer.createContext("/cache/", new HttpHandler() {
+            @Override
+            void handle(HttpExchange exchange) {
+                def hash = exchange.requestURI.path.substring("/cache/".length())
+                requests.putIfAbsent(hash, new AtomicInteger())
+                requests[hash].incrementAndGet()
+                inFlight.countDown()
+                release.await()
+                def content = ("content of " + hash).bytes
+                exchange.sendResponseHeaders(HttpStatus.SC_OK, content.length)
+                exchange.responseBody.write(content)
+                exchange.close()
+            }
+        })
+        countingServer.start()
+        def cache = createCache(new URI("http://localhost:${countingServer.address.port}/"))
+        def keys = (0..AsyncHttpBuildCacheService.MAX_PREFETCHED_ENTRIES).collect { key("key${it}") }
+
+        when:
+        keys.init().each { cache.prefetch(it) }
+        inFlight.await()
+        cache.prefetch(keys.last())
+        release.countDown()
+        def loaded = [keys.first(), keys.last()].collect { BuildCacheKey key ->
+            def receivedInput = null
+            cache.load(key) { input -> receivedInput = input.text }
+            receivedInput
+        }
+        cache.close()
+
+        then:
+        loaded == ["content of key0", "content of key${AsyncHttpBuildCacheService.MAX_PREFETCHED_ENTRIES}".toString()]
+        // The discarded entry is downloaded again when it is loaded
+        requests["key0"].get() == 2
+        requests["key${AsyncHttpBuildCacheService.MAX_PREFETCHED_ENTRIES}".toString()].get() == 1
+
+        cleanup:
+        release.countDown()
+        countingServer.stop(0)
+        countingServer.executor.shutdownNow()
+    }
+
+    private AsyncHttpBuildCacheService createCache(URI uri) {
+        def config = new HttpBuildCache()
+        config.url = uri.resolve("/cache/")
+        BuildCacheService cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), executorFactory, { tempDir.file("user-home") } as GradleUserHomeDirProvider).createBuildCacheService(config, new NoopBuildCacheDescriber())
+        return cache as AsyncHttpBuildCacheService
+    }
+
+    private static BuildCacheKey key(String hashCode) {
+        return new BuildCacheKey() {
+            @Override
+            String getHashCode() {
+                return hashCode
+            }
+
+            @Override
+            String getDisplayName() {
+                return hashCode
+            }
+        }
+    }
+
+    private static BuildCacheEntryWriter writer(byte[] content) {
+        return new BuildCacheEntryWriter() {
+            @Override
+            void writeTo(OutputStream output) throws IOException {
+                output << content
+            }
+
+            @Override
+            long getSize() {
+                return content.length
+            }
+        }
+    }
+
+    private static class NoopBuildCacheDescriber implements BuildCacheServiceFactory.Describer {
+
+        @Override
+        BuildCacheServiceFactory.Describer type(String type) { this }
+
+        @Override
+        BuildCacheServiceFactory.Describer config(String name, String value) { this }
+
+    }
+}
@@ -25,6 +25,9 @@ import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
 import org.gradle.caching.BuildCacheServiceFactory
 import org.gradle.caching.http.HttpBuildCache
+import org.gradle.caching.internal.QueryableBuildCacheService
+import org.gradle.initialization.GradleUserHomeDirProvider
+import org.gradle.internal.concurrent.DefaultExecutorFactory
 import org.gradle.internal.resource.transport.http.DefaultSslContextFactory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.gradle.test.fixtures.server.http.AuthScheme
@@ -79,7 +82,7 @@ class HttpBuildCacheServiceTest extends Specification {
         def config = new HttpBuildCache()
         config.url = server.uri.resolve("/cache/")
         buildCacheDescriber = new NoopBuildCacheDescriber()
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory()).createBuildCacheService(config, buildCacheDescriber)
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DefaultExecutorFactory(), { tempDir.file("user-home") } as GradleUserHomeDirProvider).createBuildCacheService(config, buildCacheDescriber)
     }
 
     def "can cache artifact"() {
@@ -227,6 +230,44 @@ class HttpBuildCacheServiceTest extends Specification {
         httpCode << [HttpStatus.SC_INTERNAL_SERVER_ERROR, HttpStatus.SC_SERVICE_UNAVAILABLE]
     }
 
+    def "checks whether entries are in the cache"() {
+        def otherKey = new BuildCacheKey() {
+            @Override
+            String getHashCode() {
+                return 'fedcba6543210'
+            }
+
+            @Override
+            String getDisplayName() {
+                return getHashCode()
+            }
+        }
+        def srcFile = tempDir.file("cached.zip")
+        srcFile.text = "Data"
+        server.expectHead("/cache/${key.hashCode}", srcFile)
+        server.expectHeadMissing("/cache/${otherKey.hashCode}")
+
+        expect:
+        (cache as HttpBuildCacheService).contains(key)
+        !(cache as HttpBuildCacheService).contains(otherKey)
+    }
+
+    def "is not queried for batches of entries unless requests are made in the background"() {
+        expect:
+        !(cache instanceof QueryableBuildCacheService)
+    }
+
+    def "assumes entry is in the cache when HEAD requests are not supported"() {
+        server.expect("/cache/${key.hashCode}", ["HEAD"], new HttpServer.ActionSupport("return 405") {
+            void handle(HttpServletRequest request, HttpServletResponse response) {
+                response.setStatus(HttpStatus.SC_METHOD_NOT_ALLOWED)
+            }
+        })
+
+        expect:
+        (cache as HttpBuildCacheService).contains(key)
+    }
+
     def "sends X-Gradle-Version and Content-Type headers on GET"() {
         server.expect("/cache/${key.hashCode}", ["GET"], new HttpServer.ActionSupport("get has appropriate headers") {
             void handle(HttpServletRequest request, HttpServletResponse response) {
@@ -267,7 +308,7 @@ class HttpBuildCacheServiceTest extends Specification {
         configuration.url = server.uri.resolve("/cache/")
         configuration.credentials.username = 'user'
         configuration.credentials.password = 'password'
-        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory()).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
+        cache = new DefaultHttpBuildCacheServiceFactory(new DefaultSslContextFactory(), new DefaultExecutorFactory(), { tempDir.file("user-home") } as GradleUserHomeDirProvider).createBuildCacheService(configuration, buildCacheDescriber) as HttpBuildCacheService
 
         server.authenticationScheme = AuthScheme.BASIC
 
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.http.internal;
+
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.file.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.PrefetchingBuildCacheService;
+import org.gradle.caching.internal.QueryableBuildCacheService;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Build cache service that runs the requests of a remote build cache service concurrently with the build.
+ *
+ * <p>Entries can be prefetched before they are loaded, so that downloading an entry overlaps with the work done before the entry is needed.
+ * At most {@link #MAX_PREFETCHED_ENTRIES} prefetched entries are kept: when more are prefetched, the oldest entries that have not been loaded are discarded
+ * along with their downloaded files.
+ * The entries of a batch are checked for concurrently.
+ * Entries are stored in the background after they have been copied to a temporary file. A failure to store an entry is reported for that entry
+ * when the upload fails, and causes the service to fail when it is closed. The requests share the connection pool of the
+ * underlying HTTP client, so the number of concurrent requests is limited to {@link #MAX_CONCURRENT_REQUESTS}.</p>
+ */
+public class AsyncHttpBuildCacheService implements PrefetchingBuildCacheService, QueryableBuildCacheService {
+    public static final String ASYNC_PROPERTY = "org.gradle.internal.buildcache.http.async";
+    static final int MAX_CONCURRENT_REQUESTS = 8;
+    static final int MAX_PREFETCHED_ENTRIES = 64;
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncHttpBuildCacheService.class);
+
+    private final HttpBuildCacheService delegate;
+    private final TemporaryFileProvider temporaryFileProvider;
+    private final ManagedExecutor executor;
+    // Guarded by itself, in the order the entries were prefetched
+    private final Map<String, PrefetchedEntry> prefetched = new LinkedHashMap<String, PrefetchedEntry>();
+    // Uploads that have not completed yet
+    private final Set<PendingStore> pendingStores = Sets.newConcurrentHashSet();
+    private final AtomicInteger failedStores = new AtomicInteger();
+    private volatile boolean closed;
+
+    public AsyncHttpBuildCacheService(HttpBuildCacheService delegate, ExecutorFactory executorFactory, TemporaryFileProvider temporaryFileProvider) {
+        this.delegate = delegate;
+        this.temporaryFileProvider = temporaryFileProvider;
+        this.executor = executorFactory.create("HTTP build cache requests", MAX_CONCURRENT_REQUESTS);
+    }
+
+    @Override
+    public void prefetch(final BuildCacheKey key) {
+        final AtomicBoolean discarded = new AtomicBoolean();
+        PrefetchedEntry entry = new PrefetchedEntry(new Callable<File>() {
+            @Override
+            public File call() throws IOException {
+                // An entry discarded before its download started is not downloaded at all
+                return discarded.get() ? null : download(key);
+            }
+        }, discarded);
+        List<PrefetchedEntry> evicted = new ArrayList<PrefetchedEntry>();
+        synchronized (prefetched) {
+            if (closed || prefetched.containsKey(key.getHashCode())) {
+                return;
+            }
+            // Entries that are never loaded, for example because their task is up-to-date, make room for newer ones
+            Iterator<PrefetchedEntry> oldest = prefetched.values().iterator();
+            while (prefetched.size() >= MAX_PREFETCHED_ENTRIES) {
+                evicted.add(oldest.next());
+                oldest.remove();
+            }
+            prefetched.put(key.getHashCode(), entry);
+        }
+        for (PrefetchedEntry evictedEntry : evicted) {
+            evictedEntry.discard();
+        }
+        executor.execute(entry);
+    }
+
+    @Override
+    public Set<BuildCacheKey> contains(Collection<BuildCacheKey> keys) throws BuildCacheException {
+        List<Future<Boolean>> queries = new ArrayList<Future<Boolean>>(keys.size());
+        for (final BuildCacheKey key : keys) {
+            queries.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return delegate.contains(key);
+                }
+            }));
+        }
+        Set<BuildCacheKey> present = new LinkedHashSet<BuildCacheKey>();
+        int index = 0;
+        for (BuildCacheKey key : keys) {
+            if (await(queries.get(index++))) {
+                present.add(key);
+            }
+        }
+        return present;
+    }
+
+    @Override
+    public boolean load(BuildCacheKey key, BuildCacheEntryReader reader) throws BuildCacheException {
+        PrefetchedEntry download;
+        synchronized (prefetched) {
+            download = prefetched.remove(key.getHashCode());
+        }
+        if (download == null) {
+            return delegate.load(key, reader);
+        }
+        File file = await(download);
+        if (file == null) {
+            return false;
+        }
+        try {
+            InputStream input = new FileInputStream(file);
+            try {
+                reader.readFrom(input);
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new BuildCacheException(String.format("Unable to read prefetched entry %s: %s", key.getHashCode(), e.getMessage()), e);
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Override
+    public void store(final BuildCacheKey key, BuildCacheEntryWriter writer) throws BuildCacheException {
+        final File file;
+        try {
+            file = createTemporaryFile();
+            OutputStream output = new FileOutputStream(file);
+            try {
+                writer.writeTo(output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new BuildCacheException(String.format("Unable to buffer entry %s for storing: %s", key.getHashCode(), e.getMessage()), e);
+        }
+        PendingStore upload = new PendingStore(key, file);
+        pendingStores.add(upload);
+        executor.execute(upload);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        List<PendingStore> stores = new ArrayList<PendingStore>(pendingStores);
+        for (PendingStore store : stores) {
+            try {
+                store.get();
+            } catch (ExecutionException e) {
+                // Reported when the upload failed
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+        executor.stop();
+        List<PrefetchedEntry> unused;
+        synchronized (prefetched) {
+            unused = new ArrayList<PrefetchedEntry>(prefetched.values());
+            prefetched.clear();
+        }
+        for (PrefetchedEntry entry : unused) {
+            entry.discard();
+        }
+        delegate.close();
+        int failed = failedStores.get();
+        if (failed > 0) {
+            throw new BuildCacheException(String.format("Could not store %d %s in remote build cache", failed, failed == 1 ? "entry" : "entries"));
+        }
+    }
+
+    private File createTemporaryFile() throws IOException {
+        try {
+            return temporaryFileProvider.createTemporaryFile("http-build-cache", ".bin", "build-cache-http");
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Nullable
+    private File download(BuildCacheKey key) throws IOException {
+        if (closed) {
+            return null;
+        }
+        final File file = createTemporaryFile();
+        boolean found = false;
+        try {
+            found = delegate.load(key, new BuildCacheEntryReader() {
+                @Override
+                public void readFrom(InputStream input) throws IOException {
+                    FileUtils.copyInputStreamToFile(input, file);
+                }
+            });
+        } finally {
+            if (!found) {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+        return found ? file : null;
+    }
+
+    private static <T> T await(Future<T> request) {
+        try {
+            return request.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new BuildCacheException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * The download of a prefetched entry. The downloaded file of a discarded entry is deleted, as soon as the download completes.
+     */
+    private static class PrefetchedEntry extends FutureTask<File> {
+        private final AtomicBoolean discarded;
+
+        private PrefetchedEntry(Callable<File> download, AtomicBoolean discarded) {
+            super(download);
+            this.discarded = discarded;
+        }
+
+        void discard() {
+            discarded.set(true);
+            if (isDone()) {
+                deleteDownloadedFile();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (discarded.get()) {
+                deleteDownloadedFile();
+            }
+        }
+
+        private void deleteDownloadedFile() {
+            try {
+                FileUtils.deleteQuietly(get());
+            } catch (Exception e) {
+                // Ignore, the entry was not downloaded
+            }
+        }
+    }
+
+    /**
+     * The upload of an entry, which removes itself from the pending uploads when it completes.
+     */
+    private class PendingStore extends FutureTask<Void> {
+        private PendingStore(final BuildCacheKey key, final File file) {
+            super(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    try {
+                        delegate.store(key, new FileEntryWriter(file));
+                    } catch (RuntimeException e) {
+                        failedStores.incrementAndGet();
+                        LOGGER.warn("Could not store entry {} in remote build cache: {}", key.getHashCode(), e.getMessage());
+                        throw e;
+                    } finally {
+                        FileUtils.deleteQuietly(file);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            pendingStores.remove(this);
+        }
+    }
+
+    private static class FileEntryWriter implements BuildCacheEntryWriter {
+        private final File file;
+
+        private FileEntryWriter(File file) {
+            this.file = file;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) throws IOException {
+            FileUtils.copyFile(file, output);
+        }
+
+        @Override
+        public long getSize() {
+            return file.length();
+        }
+    }
+}
@@ -18,17 +18,23 @@ package org.gradle.caching.http.internal;
 
 import com.google.common.annotations.VisibleForTesting;
 import org.gradle.api.GradleException;
+import org.gradle.api.internal.file.DefaultTemporaryFileProvider;
+import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.authentication.Authentication;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.BuildCacheServiceFactory;
 import org.gradle.caching.http.HttpBuildCache;
 import org.gradle.caching.http.HttpBuildCacheCredentials;
+import org.gradle.initialization.GradleUserHomeDirProvider;
+import org.gradle.internal.Factory;
 import org.gradle.internal.authentication.DefaultBasicAuthentication;
+import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.resource.transport.http.DefaultHttpSettings;
 import org.gradle.internal.resource.transport.http.HttpClientHelper;
 import org.gradle.internal.resource.transport.http.SslContextFactory;
 
 import javax.inject.Inject;
+import java.io.File;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collection;
@@ -40,10 +46,20 @@ import java.util.Collections;
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
 
     private final SslContextFactory sslContextFactory;
+    private final ExecutorFactory executorFactory;
+    private final TemporaryFileProvider temporaryFileProvider;
 
     @Inject
-    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory) {
+    public DefaultHttpBuildCacheServiceFactory(SslContextFactory sslContextFactory, ExecutorFactory executorFactory, final GradleUserHomeDirProvider gradleUserHomeDirProvider) {
         this.sslContextFactory = sslContextFactory;
+        this.executorFactory = executorFactory;
+        // Entries are buffered next to the temporary files of the other build caches
+        this.temporaryFileProvider = new DefaultTemporaryFileProvider(new Factory<File>() {
+            @Override
+            public File create() {
+                return new File(gradleUserHomeDirProvider.getGradleUserHomeDirectory(), "build-cache-tmp");
+            }
+        });
     }
 
     @Override
@@ -78,12 +94,20 @@ public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFac
         }
         HttpClientHelper httpClientHelper = new HttpClientHelper(builder.build());
 
+        boolean async = Boolean.getBoolean(AsyncHttpBuildCacheService.ASYNC_PROPERTY);
         describer.type("HTTP")
             .config("url", noUserInfoUrl.toASCIIString())
             .config("authenticated", Boolean.toString(authenticated))
             .config("allowUntrustedServer", Boolean.toString(allowUntrustedServer));
+        if (async) {
+            describer.config("async", "true");
+        }
 
-        return new HttpBuildCacheService(httpClientHelper, noUserInfoUrl);
+        HttpBuildCacheService service = new HttpBuildCacheService(httpClientHelper, noUserInfoUrl);
+        if (async) {
+            return new AsyncHttpBuildCacheService(service, executorFactory, temporaryFileProvider);
+        }
+        return service;
     }
 
     @VisibleForTesting
@@ -25,6 +25,7 @@ import org.apache.http.HttpStatus;
 import org.apache.http.StatusLine;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.utils.HttpClientUtils;
 import org.apache.http.entity.AbstractHttpEntity;
@@ -115,6 +116,33 @@ public class HttpBuildCacheService implements BuildCacheService {
         }
     }
 
+    /**
+     * Checks for the entry with a HEAD request. Only a 404 response means that the entry is missing,
+     * as servers that do not support HEAD requests might still have the entry.
+     *
+     * <p>Only used by {@link AsyncHttpBuildCacheService}, which makes the requests for a batch of entries concurrently.
+     * Checking for entries one by one on the calling thread costs more than it saves.</p>
+     */
+    boolean contains(BuildCacheKey key) throws BuildCacheException {
+        final URI uri = root.resolve("./" + key.getHashCode());
+        HttpHead httpHead = new HttpHead(uri);
+        addDiagnosticHeaders(httpHead);
+
+        CloseableHttpResponse response = null;
+        try {
+            response = httpClientHelper.performHttpRequest(httpHead);
+            StatusLine statusLine = response.getStatusLine();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Response for HEAD {}: {}", safeUri(uri), statusLine);
+            }
+            return statusLine.getStatusCode() != HttpStatus.SC_NOT_FOUND;
+        } catch (IOException e) {
+            throw new BuildCacheException(String.format("Unable to check for entry at '%s': %s", safeUri(uri), e.getMessage()), e);
+        } finally {
+            HttpClientUtils.closeQuietly(response);
+        }
+    }
+
     private boolean handleRedirect(URI uri, CloseableHttpResponse response, int statusCode, String defaultMessage) {
         final Header locationHeader = response.getFirstHeader("location");
         if (locationHeader == null) {
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal;
+
+import org.gradle.caching.BuildCacheException;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.BuildCacheService;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A build cache service that can check which entries it has without loading them.
+ */
+public interface QueryableBuildCacheService extends BuildCacheService {
+    /**
+     * Returns the keys from the given batch that the service may have an entry for.
+     * The service has no entry for any of the keys that are not returned.
+     */
+    Set<BuildCacheKey> contains(Collection<BuildCacheKey> keys) throws BuildCacheException;
+}
@@ -16,10 +16,12 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.util.Collection;
 
 /**
  * Internal coordinator of build cache operations.
@@ -33,6 +35,19 @@ public interface BuildCacheController extends Closeable {
 
     void store(BuildCacheStoreCommand command);
 
+    /**
+     * Whether the remote cache can be prepared for loading entries, see {@link #prefetch(Collection)}.
+     */
+    boolean canPrefetch();
+
+    /**
+     * Prepares the remote cache for loading the entries with the given keys.
+     *
+     * Entries the remote cache is known not to have are not requested when loaded.
+     * The other entries start loading in the background, when the remote cache supports it.
+     */
+    void prefetch(Collection<BuildCacheKey> keys);
+
     @Override
     void close();
 
@@ -55,6 +55,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
@@ -150,6 +151,18 @@ public class DefaultBuildCacheController implements BuildCacheController {
         }
     }
 
+    @Override
+    public boolean canPrefetch() {
+        return remote.canPrefetch();
+    }
+
+    @Override
+    public void prefetch(Collection<BuildCacheKey> keys) {
+        if (remote.canPrefetch()) {
+            remote.prefetch(keys);
+        }
+    }
+
     private class Unpack<T> implements Action<File> {
         private final BuildCacheLoadCommand<T> command;
 
@@ -16,6 +16,10 @@
 
 package org.gradle.caching.internal.controller;
 
+import org.gradle.caching.BuildCacheKey;
+
+import java.util.Collection;
+
 public class NoOpBuildCacheController implements BuildCacheController {
 
     public static final BuildCacheController INSTANCE = new NoOpBuildCacheController();
@@ -33,6 +37,16 @@ public class NoOpBuildCacheController implements BuildCacheController {
 
     }
 
+    @Override
+    public boolean canPrefetch() {
+        return false;
+    }
+
+    @Override
+    public void prefetch(Collection<BuildCacheKey> keys) {
+
+    }
+
     @Override
     public void close() {
 
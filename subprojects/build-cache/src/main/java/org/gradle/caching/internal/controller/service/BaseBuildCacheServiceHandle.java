@@ -21,8 +21,17 @@ import org.gradle.api.logging.Logging;
 import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.PrefetchingBuildCacheService;
+import org.gradle.caching.internal.QueryableBuildCacheService;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
@@ -34,6 +43,9 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
     private final boolean pushEnabled;
     private final boolean logStackTraces;
 
+    // The entries found to be missing by the latest query. Only these are trusted, as entries can be stored by other builds at any time
+    private volatile Set<String> knownMissing = Collections.emptySet();
+
     private boolean disabled;
 
     public BaseBuildCacheServiceHandle(BuildCacheService service, boolean push, BuildCacheServiceRole role, boolean logStackTraces) {
@@ -56,6 +68,10 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
     @Override
     public final void load(BuildCacheKey key, LoadTarget loadTarget) {
+        if (knownMissing.remove(key.getHashCode())) {
+            LOGGER.debug("Entry {} is not in {} build cache", key.getHashCode(), role.getDisplayName());
+            return;
+        }
         String description = "Load entry " + key.getHashCode() + " from " + role.getDisplayName() + " build cache";
         LOGGER.debug(description);
         try {
@@ -73,6 +89,50 @@ public class BaseBuildCacheServiceHandle implements BuildCacheServiceHandle {
         service.load(key, entryReader);
     }
 
+    @Override
+    public boolean canPrefetch() {
+        return canLoad() && (service instanceof PrefetchingBuildCacheService || service instanceof QueryableBuildCacheService);
+    }
+
+    @Override
+    public void prefetch(Collection<BuildCacheKey> keys) {
+        try {
+            Collection<BuildCacheKey> keysToPrefetch = keys;
+            // Querying a single key costs as much as a miss when loading it
+            if (keys.size() > 1 && service instanceof QueryableBuildCacheService) {
+                LOGGER.debug("Query {} entries in {} build cache", keys.size(), role.getDisplayName());
+                keysToPrefetch = query((QueryableBuildCacheService) service, keys);
+            }
+            if (service instanceof PrefetchingBuildCacheService) {
+                for (BuildCacheKey key : keysToPrefetch) {
+                    LOGGER.debug("Prefetch entry {} from {} build cache", key.getHashCode(), role.getDisplayName());
+                    ((PrefetchingBuildCacheService) service).prefetch(key);
+                }
+            }
+        } catch (Exception e) {
+            // Failures are reported when the entries are loaded
+            LOGGER.debug("Could not prefetch entries from {} build cache", role.getDisplayName(), e);
+        }
+    }
+
+    private Collection<BuildCacheKey> query(QueryableBuildCacheService service, Collection<BuildCacheKey> keys) {
+        Set<String> present = new HashSet<String>();
+        for (BuildCacheKey key : service.contains(keys)) {
+            present.add(key.getHashCode());
+        }
+        List<BuildCacheKey> presentKeys = new ArrayList<BuildCacheKey>(present.size());
+        Set<String> missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        for (BuildCacheKey key : keys) {
+            if (present.contains(key.getHashCode())) {
+                presentKeys.add(key);
+            } else {
+                missing.add(key.getHashCode());
+            }
+        }
+        knownMissing = missing;
+        return presentKeys;
+    }
+
     @Override
     public boolean canStore() {
         return pushEnabled && !disabled;
@@ -22,6 +22,7 @@ import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
+import java.util.Collection;
 
 public interface BuildCacheServiceHandle extends Closeable {
 
@@ -33,6 +34,13 @@ public interface BuildCacheServiceHandle extends Closeable {
 
     void load(BuildCacheKey key, LoadTarget loadTarget);
 
+    /**
+     * Whether entries can be loaded, and the service can either prefetch them or check for several of them at once.
+     */
+    boolean canPrefetch();
+
+    void prefetch(Collection<BuildCacheKey> keys);
+
     boolean canStore();
 
     void store(BuildCacheKey key, StoreTarget storeTarget);
@@ -20,6 +20,7 @@ import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 
 import javax.annotation.Nullable;
+import java.util.Collection;
 
 public class NullBuildCacheServiceHandle implements BuildCacheServiceHandle {
 
@@ -41,6 +42,16 @@ public class NullBuildCacheServiceHandle implements BuildCacheServiceHandle {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public boolean canPrefetch() {
+        return false;
+    }
+
+    @Override
+    public void prefetch(Collection<BuildCacheKey> keys) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public boolean canStore() {
         return false;
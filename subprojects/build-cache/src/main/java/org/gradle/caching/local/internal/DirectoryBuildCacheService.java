@@ -24,7 +24,7 @@ import org.gradle.caching.BuildCacheEntryReader;
 import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheException;
 import org.gradle.caching.BuildCacheKey;
-import org.gradle.caching.BuildCacheService;
+import org.gradle.caching.internal.QueryableBuildCacheService;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.resource.local.LocallyAvailableResource;
 import org.gradle.internal.resource.local.PathKeyFileStore;
@@ -37,10 +37,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class DirectoryBuildCacheService implements LocalBuildCacheService, BuildCacheService {
+public class DirectoryBuildCacheService implements LocalBuildCacheService, QueryableBuildCacheService {
 
     private final PathKeyFileStore fileStore;
     private final PersistentCache persistentCache;
@@ -129,6 +132,27 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
         }
     }
 
+    @Override
+    public Set<BuildCacheKey> contains(final Collection<BuildCacheKey> keys) throws BuildCacheException {
+        final Set<BuildCacheKey> present = new LinkedHashSet<BuildCacheKey>();
+        persistentCache.withFileLock(new Runnable() {
+            @Override
+            public void run() {
+                lock.readLock().lock();
+                try {
+                    for (BuildCacheKey key : keys) {
+                        if (fileStore.get(key.getHashCode()) != null) {
+                            present.add(key);
+                        }
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        });
+        return present;
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.withTempFile(key, new Action<File>() {
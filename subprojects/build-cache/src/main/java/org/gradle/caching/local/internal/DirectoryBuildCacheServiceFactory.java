@@ -61,13 +61,7 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
 
     @Override
     public BuildCacheService createBuildCacheService(DirectoryBuildCache configuration, Describer describer) {
-        Object cacheDirectory = configuration.getDirectory();
-        File target;
-        if (cacheDirectory != null) {
-            target = resolver.resolve(cacheDirectory);
-        } else {
-            target = cacheScopeMapping.getBaseDirectory(null, BUILD_CACHE_KEY, VersionStrategy.SharedCache);
-        }
+        File target = getCacheDirectory(configuration, resolver, cacheScopeMapping);
         checkDirectory(target);
 
         long targetSizeInMB = configuration.getTargetSizeInMB();
@@ -89,6 +83,17 @@ public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFacto
         return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, FAILED_READ_SUFFIX);
     }
 
+    /**
+     * Returns the directory that holds the entries of the given local build cache, either the configured one or the default one in the Gradle user home.
+     */
+    public static File getCacheDirectory(DirectoryBuildCache configuration, PathToFileResolver resolver, CacheScopeMapping cacheScopeMapping) {
+        Object cacheDirectory = configuration.getDirectory();
+        if (cacheDirectory != null) {
+            return resolver.resolve(cacheDirectory);
+        }
+        return cacheScopeMapping.getBaseDirectory(null, BUILD_CACHE_KEY, VersionStrategy.SharedCache);
+    }
+
     private static void checkDirectory(File directory) {
         if (directory.exists()) {
             if (!directory.isDirectory()) {
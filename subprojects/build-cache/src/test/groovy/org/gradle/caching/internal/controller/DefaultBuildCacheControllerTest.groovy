@@ -21,6 +21,8 @@ import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
 import org.gradle.caching.BuildCacheService
+import org.gradle.caching.internal.PrefetchingBuildCacheService
+import org.gradle.caching.internal.QueryableBuildCacheService
 import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
 import org.gradle.caching.local.internal.LocalBuildCacheService
 import org.gradle.internal.operations.TestBuildOperationExecutor
@@ -84,6 +86,8 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
+    interface QueryablePrefetching extends QueryableBuildCacheService, PrefetchingBuildCacheService {}
+
     BuildCacheController getController() {
         new DefaultBuildCacheController(
             new BuildCacheServicesConfiguration(
@@ -122,6 +126,93 @@ class DefaultBuildCacheControllerTest extends Specification {
         1 * local.storeLocally(key, _)
     }
 
+    def "can prefetch only from a remote cache that prefetches or can be queried"() {
+        expect:
+        !controller.canPrefetch()
+
+        when:
+        remote = Mock(PrefetchingBuildCacheService)
+
+        then:
+        controller.canPrefetch()
+
+        when:
+        remote = null
+
+        then:
+        !controller.canPrefetch()
+    }
+
+    def "does suppress exceptions from prefetch"() {
+        given:
+        def prefetchingRemote = Mock(PrefetchingBuildCacheService)
+        remote = prefetchingRemote
+
+        when:
+        controller.prefetch([key])
+
+        then:
+        1 * prefetchingRemote.prefetch(key) >> { throw new RuntimeException() }
+        noExceptionThrown()
+    }
+
+    def "does not load entries the remote cache does not have"() {
+        given:
+        def otherKey = Mock(BuildCacheKey) {
+            getHashCode() >> "other"
+        }
+        def queryableRemote = Mock(QueryablePrefetching)
+        remote = queryableRemote
+        def cacheController = controller
+
+        when:
+        cacheController.prefetch([key, otherKey])
+
+        then:
+        1 * queryableRemote.contains([key, otherKey]) >> ([otherKey] as Set)
+        1 * queryableRemote.prefetch(otherKey)
+        0 * queryableRemote.prefetch(key)
+
+        when:
+        cacheController.load(loadCommand)
+
+        then:
+        0 * queryableRemote.load(key, _)
+
+        when:
+        cacheController.load(loadCommand)
+
+        then:
+        1 * queryableRemote.load(key, _)
+    }
+
+    def "loads entries that were missing from an earlier query once the next batch has been queried"() {
+        given:
+        def otherKey = Mock(BuildCacheKey) {
+            getHashCode() >> "other"
+        }
+        def nextKey = Mock(BuildCacheKey) {
+            getHashCode() >> "next"
+        }
+        def queryableRemote = Mock(QueryablePrefetching)
+        remote = queryableRemote
+        def cacheController = controller
+
+        when:
+        cacheController.prefetch([key, otherKey])
+        cacheController.prefetch([otherKey, nextKey])
+
+        then:
+        1 * queryableRemote.contains([key, otherKey]) >> ([] as Set)
+        1 * queryableRemote.contains([otherKey, nextKey]) >> ([] as Set)
+
+        when:
+        cacheController.load(loadCommand)
+
+        then:
+        1 * queryableRemote.load(key, _)
+    }
+
     def "does not store to local if local push is disabled"() {
         given:
         localPush = false
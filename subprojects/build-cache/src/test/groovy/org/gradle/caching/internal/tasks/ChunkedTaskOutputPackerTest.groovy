@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+
+class ChunkedTaskOutputPackerTest extends Specification {
+    def executorFactory = new DefaultExecutorFactory()
+    def delegate = new BytesPacker()
+    def propertySpecs = new TreeSet()
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    @Unroll
+    def "unpacks what was packed with #codec in #size bytes"() {
+        def packer = new ChunkedTaskOutputPacker(delegate, codec, executorFactory, 4, 1000)
+        def content = new byte[size]
+        new Random(size).nextBytes(content)
+        // Make the content compressible
+        for (int i = 0; i < size; i += 2) {
+            content[i] = 0
+        }
+        delegate.content = content
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(propertySpecs, [:], output, Stub(TaskOutputOriginWriter))
+        delegate.content = null
+        packer.unpack(propertySpecs, new ByteArrayInputStream(output.toByteArray()), Stub(TaskOutputOriginReader))
+
+        then:
+        delegate.content == content
+        output.size() < size + 100
+
+        where:
+        [codec, size] << [ChunkedTaskOutputPacker.Codec.values(), [0, 1, 999, 1000, 1001, 25000]].combinations()
+    }
+
+    def "fails when a chunk is corrupt"() {
+        def packer = new ChunkedTaskOutputPacker(delegate, ChunkedTaskOutputPacker.Codec.DEFLATE, executorFactory, 2, 1000)
+        delegate.content = new byte[5000]
+        def output = new ByteArrayOutputStream()
+        packer.pack(propertySpecs, [:], output, Stub(TaskOutputOriginWriter))
+        def bytes = output.toByteArray()
+        // Corrupt the CRC of the first chunk
+        bytes[ChunkedTaskOutputPacker.MAGIC.length + 5 + 8] ^= 1
+
+        when:
+        packer.unpack(propertySpecs, new ByteArrayInputStream(bytes), Stub(TaskOutputOriginReader))
+
+        then:
+        def e = thrown IOException
+        e.message == "Cached result format error, corrupt chunk."
+    }
+
+    @Unroll
+    def "fails without allocating chunk when #length length in chunk header is too large"() {
+        def packer = new ChunkedTaskOutputPacker(delegate, ChunkedTaskOutputPacker.Codec.DEFLATE, executorFactory, 2, 1000)
+        delegate.content = new byte[500]
+        def output = new ByteArrayOutputStream()
+        packer.pack(propertySpecs, [:], output, Stub(TaskOutputOriginWriter))
+        def bytes = output.toByteArray()
+        // Overwrite one of the lengths of the first chunk with Integer.MAX_VALUE
+        int offset = ChunkedTaskOutputPacker.MAGIC.length + 5 + lengthOffset
+        bytes[offset] = 0x7f
+        bytes[offset + 1] = 0xff as byte
+        bytes[offset + 2] = 0xff as byte
+        bytes[offset + 3] = 0xff as byte
+
+        when:
+        packer.unpack(propertySpecs, new ByteArrayInputStream(bytes), Stub(TaskOutputOriginReader))
+
+        then:
+        def e = thrown IOException
+        e.message == "Cached result format error, corrupt chunk header."
+
+        where:
+        length         | lengthOffset
+        "uncompressed" | 0
+        "compressed"   | 4
+    }
+
+    def "unpacks chunk that does not compress"() {
+        def packer = new ChunkedTaskOutputPacker(delegate, ChunkedTaskOutputPacker.Codec.DEFLATE, executorFactory, 2, 1000)
+        def content = new byte[1000]
+        new Random(1).nextBytes(content)
+        delegate.content = content
+        def output = new ByteArrayOutputStream()
+
+        when:
+        packer.pack(propertySpecs, [:], output, Stub(TaskOutputOriginWriter))
+        delegate.content = null
+        packer.unpack(propertySpecs, new ByteArrayInputStream(output.toByteArray()), Stub(TaskOutputOriginReader))
+
+        then:
+        delegate.content == content
+    }
+
+    def "fails when entry is truncated"() {
+        def packer = new ChunkedTaskOutputPacker(delegate, ChunkedTaskOutputPacker.Codec.DEFLATE, executorFactory, 2, 1000)
+        def content = new byte[5000]
+        new Random(1).nextBytes(content)
+        delegate.content = content
+        def output = new ByteArrayOutputStream()
+        packer.pack(propertySpecs, [:], output, Stub(TaskOutputOriginWriter))
+        def bytes = Arrays.copyOf(output.toByteArray(), output.size() - 200)
+
+        when:
+        packer.unpack(propertySpecs, new ByteArrayInputStream(bytes), Stub(TaskOutputOriginReader))
+
+        then:
+        thrown IOException
+    }
+
+    def "format detecting packer unpacks both chunked and gzipped entries"() {
+        def chunkedPacker = new ChunkedTaskOutputPacker(delegate, ChunkedTaskOutputPacker.Codec.DEFLATE_FAST, executorFactory, 2, 1000)
+        def gzipPacker = new GZipTaskOutputPacker(delegate)
+        def content = ("output" * 1000).bytes
+        delegate.content = content
+
+        def chunkedOutput = new ByteArrayOutputStream()
+        new FormatDetectingTaskOutputPacker(chunkedPacker, chunkedPacker, gzipPacker).pack(propertySpecs, [:], chunkedOutput, Stub(TaskOutputOriginWriter))
+        def gzipOutput = new ByteArrayOutputStream()
+        def packer = new FormatDetectingTaskOutputPacker(gzipPacker, chunkedPacker, gzipPacker)
+        packer.pack(propertySpecs, [:], gzipOutput, Stub(TaskOutputOriginWriter))
+
+        expect:
+        new GZIPInputStream(new ByteArrayInputStream(gzipOutput.toByteArray())).bytes == content
+
+        when:
+        delegate.content = null
+        packer.unpack(propertySpecs, new ByteArrayInputStream(chunkedOutput.toByteArray()), Stub(TaskOutputOriginReader))
+
+        then:
+        delegate.content == content
+
+        when:
+        delegate.content = null
+        packer.unpack(propertySpecs, new ByteArrayInputStream(gzipOutput.toByteArray()), Stub(TaskOutputOriginReader))
+
+        then:
+        delegate.content == content
+    }
+
+    private static class BytesPacker implements TaskOutputPacker {
+        byte[] content
+
+        @Override
+        TaskOutputPacker.PackResult pack(SortedSet<org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, org.gradle.api.internal.changedetection.state.FileContentSnapshot>> outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) {
+            output.write(content)
+            output.close()
+            return new TaskOutputPacker.PackResult(1)
+        }
+
+        @Override
+        TaskOutputPacker.UnpackResult unpack(SortedSet<org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) {
+            content = input.bytes
+            return new TaskOutputPacker.UnpackResult(null, 1, null)
+        }
+    }
+}
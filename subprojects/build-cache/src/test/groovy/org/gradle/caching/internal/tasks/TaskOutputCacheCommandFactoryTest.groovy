@@ -195,6 +195,66 @@ class TaskOutputCacheCommandFactoryTest extends Specification {
         !localStateFile.exists()
     }
 
+    def "restores outputs from unpacked cache entry without loading from build cache"() {
+        def unpackedCache = Mock(UnpackedTaskOutputCache)
+        def factory = new TaskOutputCacheCommandFactory(packer, originFactory, fileSystemMirror, stringInterner, unpackedCache)
+        def outputFile = temporaryFolder.file("output.txt")
+        def outputProperties = props("output", FILE, outputFile)
+        def outputFileSnapshot = new RegularFileSnapshot(outputFile.path, RelativePath.EMPTY_ROOT, true, new FileHashSnapshot(HashCode.fromInt(234)))
+        def fileSnapshots = ImmutableListMultimap.builder()
+            .putAll("output", outputFileSnapshot)
+            .build()
+
+        when:
+        def result = factory.loadUnpacked(key, outputProperties, task, taskOutputsGenerationListener, taskArtifactState, timer)
+
+        then:
+        1 * originFactory.createReader(task)
+        1 * unpackedCache.restore(key, outputProperties, _, _) >> { args ->
+            args[3].run()
+            new TaskOutputPacker.UnpackResult(originMetadata, 1, fileSnapshots)
+        }
+        1 * taskOutputsGenerationListener.beforeTaskOutputsGenerated()
+
+        then:
+        1 * fileSystemMirror.putFile(outputFileSnapshot)
+        1 * taskArtifactState.snapshotAfterLoadedFromCache(_)
+
+        then:
+        1 * task.getLocalState() >> taskLocalState
+        1 * taskLocalState.getFiles() >> localStateFiles
+
+        then:
+        result == originMetadata
+        0 * _
+
+        then:
+        !localStateFile.exists()
+    }
+
+    def "does not touch outputs when there is no usable unpacked cache entry"() {
+        def unpackedCache = Mock(UnpackedTaskOutputCache)
+        def factory = new TaskOutputCacheCommandFactory(packer, originFactory, fileSystemMirror, stringInterner, unpackedCache)
+        def outputProperties = props("output", FILE, temporaryFolder.file("output.txt"))
+
+        when:
+        def result = factory.loadUnpacked(key, outputProperties, task, taskOutputsGenerationListener, taskArtifactState, timer)
+
+        then:
+        1 * originFactory.createReader(task)
+        1 * unpackedCache.restore(key, outputProperties, _, _) >> { throw new IOException("cannot read entry") }
+
+        then:
+        result == null
+        0 * _
+        localStateFile.exists()
+    }
+
+    def "does not restore from unpacked cache when there is none"() {
+        expect:
+        commandFactory.loadUnpacked(key, props("output"), task, taskOutputsGenerationListener, taskArtifactState, timer) == null
+    }
+
     def "store invokes packer"() {
         def output = Mock(OutputStream)
         def outputProperties = props("output")
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import org.gradle.cache.PersistentCache
+import org.gradle.internal.Factory
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class UnpackedTaskOutputCacheCleanupTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def cacheDir = tmpDir.file("cache")
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+    }
+    def cleanup = new UnpackedTaskOutputCacheCleanup(1)
+
+    def "deletes least recently used entries beyond the target size"() {
+        given:
+        def newest = entry("newest", 400, 0)
+        def older = entry("older", 400, 1)
+        def oldest = entry("oldest", 400, 2)
+
+        when:
+        cleanup.execute(persistentCache)
+
+        then:
+        1 * persistentCache.withFileLock(_ as Factory) >> { Factory action -> action.create() }
+        newest.exists()
+        older.exists()
+        !oldest.exists()
+    }
+
+    def "deletes abandoned temporary directories"() {
+        given:
+        def abandoned = cacheDir.file(UnpackedTaskOutputCache.TEMP_DIR_PREFIX + "abc").createDir()
+        abandoned.lastModified = daysAgo(2)
+        def inProgress = cacheDir.file(UnpackedTaskOutputCache.TEMP_DIR_PREFIX + "def").createDir()
+
+        when:
+        cleanup.execute(persistentCache)
+
+        then:
+        1 * persistentCache.withFileLock(_ as Factory) >> { Factory action -> action.create() }
+        !abandoned.exists()
+        inProgress.exists()
+    }
+
+    def entry(String name, int sizeInKB, int ageInDays) {
+        def dir = cacheDir.file(name)
+        dir.file("files/1").bytes = new byte[sizeInKB * 1024]
+        dir.lastModified = daysAgo(ageInDays)
+        return dir
+    }
+
+    static long daysAgo(int days) {
+        System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days)
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks
+
+import com.google.common.hash.Hashing
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.changedetection.state.DirContentSnapshot
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot
+import org.gradle.api.internal.changedetection.state.RegularFileSnapshot
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec
+import org.gradle.cache.PersistentCache
+import org.gradle.caching.BuildCacheKey
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter
+import org.gradle.internal.Factory
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.hash.StreamHasher
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.Requires
+import org.gradle.util.TestPrecondition
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static org.gradle.api.internal.tasks.OutputType.DIRECTORY
+import static org.gradle.api.internal.tasks.OutputType.FILE
+
+@CleanupTestDirectory
+class UnpackedTaskOutputCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider()
+    def cacheDir = temporaryFolder.file("cache")
+    def persistentCache = Mock(PersistentCache) {
+        getBaseDir() >> cacheDir
+        withFileLock(_ as Factory) >> { Factory action -> action.create() }
+        withFileLock(_ as Runnable) >> { Runnable action -> action.run() }
+    }
+    def hasher = Stub(StreamHasher) {
+        hash(_) >> { InputStream input -> HashCode.fromBytes(Hashing.md5().hashBytes(input.bytes).asBytes()) }
+    }
+    def cache = new UnpackedTaskOutputCache(persistentCache, hasher, new StringInterner(), false)
+    def hardLinkingCache = new UnpackedTaskOutputCache(persistentCache, hasher, new StringInterner(), true)
+    def key = Stub(BuildCacheKey) {
+        getHashCode() >> "0123456789abcdef"
+    }
+    def originMetadata = Stub(TaskOutputOriginMetadata)
+    def writeOrigin = { OutputStream output -> output.write("origin".bytes) } as TaskOutputOriginWriter
+    def readOrigin = { InputStream input -> assert input.text == "origin"; originMetadata } as TaskOutputOriginReader
+    def beforeRestore = Mock(Runnable)
+
+    def sourceFile = temporaryFolder.file("source/file.txt")
+    def sourceDir = temporaryFolder.file("source/dir")
+    def targetFile = temporaryFolder.file("target/file.txt")
+    def targetDir = temporaryFolder.file("target/dir")
+
+    def setup() {
+        sourceFile.text = "file"
+        sourceDir.file("sub/data.txt").text = "data"
+    }
+
+    def "returns null when there is no entry"() {
+        expect:
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore) == null
+        !targetFile.exists()
+    }
+
+    def "restores stored outputs with snapshots"() {
+        given:
+        cache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+        targetDir.file("stale.txt").text = "stale"
+
+        when:
+        def result = cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        result.originMetadata == originMetadata
+        result.entries == 5
+        targetFile.text == "file"
+        targetDir.file("sub/data.txt").text == "data"
+        !targetDir.file("stale.txt").exists()
+
+        def fileSnapshot = result.snapshots.get("file").first() as RegularFileSnapshot
+        fileSnapshot.path == targetFile.absolutePath
+        fileSnapshot.root
+        fileSnapshot.content.contentMd5 == TestFile.md5(sourceFile)
+        result.snapshots.get("dir")*.path == [targetDir, targetDir.file("sub"), targetDir.file("sub/data.txt")]*.absolutePath
+    }
+
+    @Requires(TestPrecondition.UNIX)
+    def "restores files as copies by default"() {
+        given:
+        cache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+
+        when:
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        Files.getAttribute(targetFile.toPath(), "unix:nlink") == 1
+        Files.getAttribute(targetDir.file("sub/data.txt").toPath(), "unix:nlink") == 1
+    }
+
+    @Requires(TestPrecondition.UNIX)
+    def "restores files as hard links when enabled"() {
+        given:
+        hardLinkingCache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+
+        when:
+        hardLinkingCache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        Files.getAttribute(targetFile.toPath(), "unix:nlink") == 2
+        Files.getAttribute(sourceFile.toPath(), "unix:nlink") == 1
+    }
+
+    def "discards entry when stored file was modified"() {
+        given:
+        cache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+        def storedFile = cacheDir.file(key.hashCode).file("files/1")
+        storedFile.text = "changed"
+        storedFile.lastModified = storedFile.lastModified() - 10000
+
+        expect:
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore) == null
+        !cacheDir.file(key.hashCode).exists()
+        !targetFile.exists()
+    }
+
+    @Requires(TestPrecondition.UNIX)
+    def "discards entry when hard linked output was modified in place without changing its length or modification time"() {
+        given:
+        hardLinkingCache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+        hardLinkingCache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+        def lastModified = targetFile.lastModified()
+        targetFile.text = "FILE"
+        targetFile.lastModified = lastModified
+
+        expect:
+        hardLinkingCache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore) == null
+        !cacheDir.file(key.hashCode).exists()
+    }
+
+    def "holds file lock of the cache while restoring and storing"() {
+        when:
+        cache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        2 * persistentCache.withFileLock(_ as Factory) >> { Factory action -> action.create() }
+    }
+
+    def "discards entry when output properties do not match"() {
+        given:
+        cache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+
+        expect:
+        cache.restore(key, [new ResolvedTaskOutputFilePropertySpec("other", FILE, targetFile)] as SortedSet, readOrigin, beforeRestore) == null
+        !targetFile.exists()
+    }
+
+    def "restores missing outputs"() {
+        given:
+        cache.store(key, properties(sourceFile, sourceDir), [file: [:], dir: [:]], writeOrigin)
+        targetFile.text = "existing"
+
+        when:
+        def result = cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        result.snapshots.empty
+        !targetFile.exists()
+        !targetDir.exists()
+    }
+
+    def "notifies before restoring outputs only when the entry is usable"() {
+        when:
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        0 * beforeRestore.run()
+
+        when:
+        cache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        1 * beforeRestore.run() >> {
+            assert !targetFile.exists()
+        }
+    }
+
+    @Requires(TestPrecondition.UNIX)
+    def "does not hash stored files that are not hard linked elsewhere"() {
+        given:
+        def countingHasher = Mock(StreamHasher)
+        def cache = new UnpackedTaskOutputCache(persistentCache, countingHasher, new StringInterner(), true)
+        cache.store(key, properties(sourceFile, sourceDir), snapshots(), writeOrigin)
+
+        when:
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        0 * countingHasher._
+        targetFile.text == "file"
+
+        when:
+        targetFile.delete()
+        targetDir.deleteDir()
+        cache.restore(key, properties(targetFile, targetDir), readOrigin, beforeRestore)
+
+        then:
+        0 * countingHasher._
+        targetFile.text == "file"
+    }
+
+    def "closes the cache when stopped"() {
+        when:
+        cache.stop()
+
+        then:
+        1 * persistentCache.close()
+    }
+
+    private static SortedSet<ResolvedTaskOutputFilePropertySpec> properties(File file, File dir) {
+        [new ResolvedTaskOutputFilePropertySpec("file", FILE, file), new ResolvedTaskOutputFilePropertySpec("dir", DIRECTORY, dir)] as SortedSet
+    }
+
+    private Map<String, Map<String, Object>> snapshots() {
+        def dirSnapshots = new LinkedHashMap()
+        dirSnapshots[sourceDir.absolutePath] = DirContentSnapshot.INSTANCE
+        dirSnapshots[sourceDir.file("sub").absolutePath] = DirContentSnapshot.INSTANCE
+        dirSnapshots[sourceDir.file("sub/data.txt").absolutePath] = new FileHashSnapshot(TestFile.md5(sourceDir.file("sub/data.txt")))
+        return [
+            file: [(sourceFile.absolutePath): new FileHashSnapshot(TestFile.md5(sourceFile))],
+            dir: dirSnapshots
+        ]
+    }
+}
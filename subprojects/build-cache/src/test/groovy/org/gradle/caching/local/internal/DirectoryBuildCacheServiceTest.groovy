@@ -19,6 +19,7 @@ package org.gradle.caching.local.internal
 import org.gradle.cache.PersistentCache
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.resource.local.LocallyAvailableResource
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
@@ -68,4 +69,22 @@ class DirectoryBuildCacheServiceTest extends Specification {
         cacheDir.listFiles() as List == []
         1 * key.getHashCode() >> hashCode
     }
+
+    def "returns the keys of stored entries"() {
+        def storedKey = Stub(BuildCacheKey) {
+            getHashCode() >> "stored"
+        }
+        def missingKey = Stub(BuildCacheKey) {
+            getHashCode() >> "missing"
+        }
+
+        when:
+        def present = service.contains([storedKey, missingKey])
+
+        then:
+        present == [storedKey] as Set
+        1 * persistentCache.withFileLock(_ as Runnable) >> { Runnable action -> action.run() }
+        1 * fileStore.get("stored") >> Stub(LocallyAvailableResource)
+        1 * fileStore.get("missing") >> null
+    }
 }
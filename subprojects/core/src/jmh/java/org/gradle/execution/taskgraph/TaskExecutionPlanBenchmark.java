@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Action;
+import org.gradle.api.Project;
+import org.gradle.api.Task;
+import org.gradle.api.internal.GradleInternal;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.initialization.BuildCancellationToken;
+import org.gradle.initialization.DefaultBuildCancellationToken;
+import org.gradle.initialization.DefaultParallelismConfigurationManager;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.event.DefaultListenerManager;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.resources.ResourceLockCoordinationService;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Selects and completes the tasks of a synthetic graph with many short tasks, so that the cost of scheduling dominates.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+@SuppressWarnings("Since15")
+public class TaskExecutionPlanBenchmark {
+    private static final int PROJECT_COUNT = 64;
+    private static final int TASKS_PER_LAYER = 1000;
+
+    @Param({"50000"})
+    int taskCount;
+
+    @Param({"1", "8"})
+    int workerCount;
+
+    File tempDir;
+    GradleInternal gradle;
+    List<Task> tasks;
+    ResourceLockCoordinationService coordinationService;
+    DefaultWorkerLeaseService workerLeaseService;
+    DefaultTaskPlanExecutor planExecutor;
+    BuildCancellationToken cancellationToken;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        tempDir = Files.createTempDirectory("task-execution-plan-benchmark").toFile();
+        Project root = ProjectBuilder.builder().withProjectDir(tempDir).build();
+        List<Project> projects = new ArrayList<Project>(PROJECT_COUNT);
+        for (int i = 0; i < PROJECT_COUNT; i++) {
+            projects.add(ProjectBuilder.builder().withName("p" + i).withParent(root).build());
+        }
+
+        // Layers of tasks, where each task depends on two tasks of the previous layer
+        tasks = new ArrayList<Task>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            Task task = projects.get(i % PROJECT_COUNT).getTasks().create("task" + i);
+            if (i >= TASKS_PER_LAYER) {
+                int previousLayer = i - i % TASKS_PER_LAYER - TASKS_PER_LAYER;
+                task.dependsOn(tasks.get(previousLayer + (i * 7) % TASKS_PER_LAYER), tasks.get(previousLayer + (i * 13) % TASKS_PER_LAYER));
+            }
+            tasks.add(task);
+        }
+        gradle = ((ProjectInternal) root).getGradle();
+
+        DefaultParallelismConfiguration parallelismConfiguration = new DefaultParallelismConfiguration(true, workerCount);
+        DefaultParallelismConfigurationManager parallelismConfigurationManager = new DefaultParallelismConfigurationManager(new DefaultListenerManager());
+        parallelismConfigurationManager.setParallelismConfiguration(parallelismConfiguration);
+        coordinationService = new DefaultResourceLockCoordinationService();
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallelismConfigurationManager);
+        planExecutor = new DefaultTaskPlanExecutor(parallelismConfiguration, new DefaultExecutorFactory(), workerLeaseService);
+        cancellationToken = new DefaultBuildCancellationToken();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        workerLeaseService.stop();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public void executeGraph() {
+        final DefaultTaskExecutionPlan executionPlan = new DefaultTaskExecutionPlan(cancellationToken, coordinationService, workerLeaseService, gradle);
+        executionPlan.addToTaskGraph(tasks);
+        executionPlan.determineExecutionPlan();
+        workerLeaseService.withLocks(Collections.singleton(workerLeaseService.getWorkerLease()), new Runnable() {
+            @Override
+            public void run() {
+                planExecutor.process(executionPlan, new Action<TaskInternal>() {
+                    @Override
+                    public void execute(TaskInternal task) {
+                    }
+                });
+            }
+        });
+    }
+}
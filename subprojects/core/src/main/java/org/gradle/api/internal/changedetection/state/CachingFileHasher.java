@@ -29,7 +29,9 @@ import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CachingFileHasher implements FileHasher {
     private final PersistentIndexedCache<String, FileInfo> cache;
@@ -61,6 +63,13 @@ public class CachingFileHasher implements FileHasher {
         return snapshot(fileDetails).getHash();
     }
 
+    /**
+     * Hashes the given file, incrementing the given count when the file has to be hashed because its hash is not in the cache or is out of date.
+     */
+    public HashCode hash(FileTreeElement fileDetails, AtomicInteger hashedFileCount) {
+        return snapshot(fileDetails.getFile(), fileDetails.getSize(), fileDetails.getLastModified(), hashedFileCount).getHash();
+    }
+
     @Override
     public HashCode hash(File file, FileMetadataSnapshot fileDetails) {
         return snapshot(file, fileDetails.getLength(), fileDetails.getLastModified()).getHash();
@@ -76,6 +85,10 @@ public class CachingFileHasher implements FileHasher {
     }
 
     private FileInfo snapshot(File file, long length, long timestamp) {
+        return snapshot(file, length, timestamp, null);
+    }
+
+    private FileInfo snapshot(File file, long length, long timestamp, @Nullable AtomicInteger hashedFileCount) {
         String absolutePath = file.getAbsolutePath();
         if (timestampInspector.timestampCanBeUsedToDetectFileChange(absolutePath, timestamp)) {
             FileInfo info = cache.get(absolutePath);
@@ -86,6 +99,9 @@ public class CachingFileHasher implements FileHasher {
         }
 
         HashCode hash = delegate.hash(file);
+        if (hashedFileCount != null) {
+            hashedFileCount.incrementAndGet();
+        }
         FileInfo info = new FileInfo(hash, length, timestamp);
         cache.put(stringInterner.intern(absolutePath), info);
         return info;
@@ -26,7 +26,7 @@ import java.util.zip.ZipEntry;
 
 /**
  * Caches the result of hashing a {@link RegularFileSnapshot} with a {@link ResourceHasher}.
- * It does not cache the result of hashing {@link ZipEntry}s.
+ * It only caches the result of hashing {@link ZipEntry}s for class files, as reading other entries costs about as much as hashing them.
  * It also caches the absence of a hash.
  */
 public class CachingResourceHasher implements ResourceHasher {
@@ -49,7 +49,10 @@ public class CachingResourceHasher implements ResourceHasher {
 
     @Override
     public HashCode hash(ZipEntry zipEntry, InputStream zipInput) throws IOException {
-        return delegate.hash(zipEntry, zipInput);
+        if (!zipEntry.getName().endsWith(".class")) {
+            return delegate.hash(zipEntry, zipInput);
+        }
+        return resourceSnapshotterCacheService.hashZipEntry(zipEntry, zipInput, delegate, delegateConfigurationHash);
     }
 
     @Override
@@ -32,6 +32,11 @@ import java.io.IOException;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
+    /**
+     * When set, the file hash caches are stored in memory-mapped hash tables instead of B-trees, and are read directly instead of through an in-memory cache.
+     */
+    public static final String HASH_TABLE_STORE_PROPERTY = "org.gradle.internal.filehashes.hashtable";
+
     private final PersistentCache cache;
     private final InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory;
 
@@ -48,6 +53,9 @@ public class CrossBuildFileHashCache implements Closeable, TaskHistoryStore {
     public <K, V> PersistentIndexedCache<K, V> createCache(String cacheName, Class<K> keyType, Serializer<V> valueSerializer, int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
         PersistentIndexedCacheParameters<K, V> parameters = new PersistentIndexedCacheParameters<K, V>(cacheName, keyType, valueSerializer)
                 .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(maxEntriesToKeepInMemory, cacheInMemoryForShortLivedProcesses));
+        if (Boolean.getBoolean(HASH_TABLE_STORE_PROPERTY)) {
+            parameters.storeType(PersistentIndexedCacheParameters.StoreType.HASH_TABLE);
+        }
         return cache.createCache(parameters);
     }
 
@@ -24,26 +24,40 @@ import org.gradle.internal.file.FileHierarchySet;
 
 import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * See {@link DefaultFileSystemSnapshotter} for some more details
  */
 public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGenerationListener, RootBuildLifecycleListener {
     // Maps from interned absolute path for a file to known details for the file.
-    private final Map<String, FileSnapshot> files = new ConcurrentHashMap<String, FileSnapshot>();
+    private final Map<String, FileSnapshot> files;
     private final Map<String, FileSnapshot> cacheFiles = new ConcurrentHashMap<String, FileSnapshot>();
     // Maps from interned absolute path for a directory to known details for the directory.
-    private final Map<String, FileTreeSnapshot> trees = new ConcurrentHashMap<String, FileTreeSnapshot>();
+    private final Map<String, FileTreeSnapshot> trees;
     private final Map<String, FileTreeSnapshot> cacheTrees = new ConcurrentHashMap<String, FileTreeSnapshot>();
     // Maps from interned absolute path to a snapshot
-    private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+    private final Map<String, Snapshot> snapshots;
     private final Map<String, Snapshot> cacheSnapshots = new ConcurrentHashMap<String, Snapshot>();
     private final FileHierarchySet cachedDirectories;
 
     public DefaultFileSystemMirror(List<CachedJarFileStore> fileStores) {
+        this(fileStores, false);
+    }
+
+    /**
+     * @param orderedByPath whether to keep the state for files that do not live in an append-only cache ordered by path, so that {@link #discardStateFor(String)}
+     * does not need to visit all state.
+     */
+    protected DefaultFileSystemMirror(List<CachedJarFileStore> fileStores, boolean orderedByPath) {
+        this.files = createMap(orderedByPath);
+        this.trees = createMap(orderedByPath);
+        this.snapshots = createMap(orderedByPath);
         FileHierarchySet cachedDirectories = DefaultFileHierarchySet.of();
         for (CachedJarFileStore fileStore : fileStores) {
             for (File file : fileStore.getFileStoreRoots()) {
@@ -53,6 +67,10 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
         this.cachedDirectories = cachedDirectories;
     }
 
+    private static <T> Map<String, T> createMap(boolean orderedByPath) {
+        return orderedByPath ? new ConcurrentSkipListMap<String, T>() : new ConcurrentHashMap<String, T>();
+    }
+
     @Nullable
     @Override
     public FileSnapshot getFile(String path) {
@@ -118,9 +136,7 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     public void beforeTaskOutputsGenerated() {
         // When the task outputs are generated, throw away all state for files that do not live in an append-only cache.
         // This is intentionally very simple, to be improved later
-        files.clear();
-        trees.clear();
-        snapshots.clear();
+        discardNonCachedState();
     }
 
     @Override
@@ -130,11 +146,61 @@ public class DefaultFileSystemMirror implements FileSystemMirror, TaskOutputsGen
     @Override
     public void beforeComplete() {
         // We throw away all state between builds
+        discardNonCachedState();
+        discardCachedState();
+    }
+
+    /**
+     * Returns true if the given path lives in an append-only cache.
+     */
+    protected boolean isInAppendOnlyCache(String path) {
+        return cachedDirectories.contains(path);
+    }
+
+    /**
+     * Discards all state for files that do not live in an append-only cache.
+     */
+    protected void discardNonCachedState() {
         files.clear();
-        cacheFiles.clear();
         trees.clear();
-        cacheTrees.clear();
         snapshots.clear();
+    }
+
+    /**
+     * Discards all state for files that live in an append-only cache.
+     */
+    protected void discardCachedState() {
+        cacheFiles.clear();
+        cacheTrees.clear();
         cacheSnapshots.clear();
     }
+
+    /**
+     * Discards any state about the given path, about its descendants and about the directory trees and snapshots of its ancestors.
+     */
+    protected void discardStateFor(String path) {
+        discardStateFor(files, path);
+        discardStateFor(trees, path);
+        discardStateFor(snapshots, path);
+    }
+
+    private static void discardStateFor(Map<String, ?> state, String path) {
+        state.remove(path);
+        for (File ancestor = new File(path).getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+            state.remove(ancestor.getPath());
+        }
+        String descendantPrefix = path.endsWith(File.separator) ? path : path + File.separatorChar;
+        if (state instanceof NavigableMap) {
+            // All descendants sort between the path followed by a separator and the path followed by the character after the separator
+            String descendantLimit = descendantPrefix.substring(0, descendantPrefix.length() - 1) + (char) (File.separatorChar + 1);
+            ((NavigableMap<String, ?>) state).subMap(descendantPrefix, true, descendantLimit, false).clear();
+        } else {
+            Iterator<String> iterator = state.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().startsWith(descendantPrefix)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
 }
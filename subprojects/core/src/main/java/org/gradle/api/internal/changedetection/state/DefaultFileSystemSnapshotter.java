@@ -41,6 +41,7 @@ import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.normalization.internal.InputNormalizationStrategy;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
@@ -66,9 +67,18 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
     private final ProducerGuard<String> producingTrees = ProducerGuard.striped();
     private final ProducerGuard<String> producingAllSnapshots = ProducerGuard.striped();
     private final DefaultGenericFileCollectionSnapshotter snapshotter;
+    private final ParallelFileHasher parallelHasher;
 
     public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror) {
+        this(hasher, stringInterner, fileSystem, directoryFileTreeFactory, fileSystemMirror, null);
+    }
+
+    /**
+     * @param parallelHasher used to hash the files of directory trees concurrently, or {@code null} to hash them on the calling thread.
+     */
+    public DefaultFileSystemSnapshotter(FileHasher hasher, StringInterner stringInterner, FileSystem fileSystem, DirectoryFileTreeFactory directoryFileTreeFactory, FileSystemMirror fileSystemMirror, @Nullable ParallelFileHasher parallelHasher) {
         this.hasher = hasher;
+        this.parallelHasher = parallelHasher;
         this.stringInterner = stringInterner;
         this.fileSystem = fileSystem;
         this.directoryFileTreeFactory = directoryFileTreeFactory;
@@ -178,8 +188,7 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
 
     private FileTreeSnapshot snapshotAndCache(DirectoryFileTree directoryTree) {
         String path = internPath(directoryTree.getDir());
-        List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
+        List<FileSnapshot> elements = visitDirectoryTree(directoryTree);
         ImmutableList<FileSnapshot> descendants = ImmutableList.copyOf(elements);
         DirectoryTreeDetails snapshot = new DirectoryTreeDetails(path, descendants);
         fileSystemMirror.putDirectory(snapshot);
@@ -192,11 +201,30 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
      */
     private FileTreeSnapshot snapshotWithoutCaching(DirectoryFileTree directoryTree) {
         String path = directoryTree.getDir().getAbsolutePath();
-        List<FileSnapshot> elements = Lists.newArrayList();
-        directoryTree.visit(new FileVisitorImpl(elements));
+        List<FileSnapshot> elements = visitDirectoryTree(directoryTree);
         return new DirectoryTreeDetails(path, elements);
     }
 
+    private List<FileSnapshot> visitDirectoryTree(DirectoryFileTree directoryTree) {
+        List<FileSnapshot> elements = Lists.newArrayList();
+        if (parallelHasher == null) {
+            directoryTree.visit(new FileVisitorImpl(elements));
+            return elements;
+        }
+
+        // Collect the files first, then hash them all at once, filling in their slots in the visit order
+        List<FileVisitDetails> files = Lists.newArrayList();
+        List<Integer> fileIndexes = Lists.newArrayList();
+        directoryTree.visit(new DeferredHashingFileVisitor(elements, files, fileIndexes));
+        List<HashCode> hashes = parallelHasher.hash(files);
+        for (int i = 0; i < files.size(); i++) {
+            FileVisitDetails fileDetails = files.get(i);
+            FileHashSnapshot content = new FileHashSnapshot(hashes.get(i), fileDetails.getLastModified());
+            elements.set(fileIndexes.get(i), new RegularFileSnapshot(internPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, content));
+        }
+        return elements;
+    }
+
     private FileTreeSnapshot filterSnapshot(FileTreeSnapshot snapshot, PatternSet patterns) {
         if (patterns.isEmpty()) {
             return snapshot;
@@ -268,4 +296,28 @@ public class DefaultFileSystemSnapshotter implements FileSystemSnapshotter {
             fileTreeElements.add(new RegularFileSnapshot(internPath(fileDetails.getFile()), fileDetails.getRelativePath(), false, fileSnapshot(fileDetails)));
         }
     }
+
+    private class DeferredHashingFileVisitor implements FileVisitor {
+        private final List<FileSnapshot> fileTreeElements;
+        private final List<FileVisitDetails> files;
+        private final List<Integer> fileIndexes;
+
+        DeferredHashingFileVisitor(List<FileSnapshot> fileTreeElements, List<FileVisitDetails> files, List<Integer> fileIndexes) {
+            this.fileTreeElements = fileTreeElements;
+            this.files = files;
+            this.fileIndexes = fileIndexes;
+        }
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+            fileTreeElements.add(new DirectoryFileSnapshot(internPath(dirDetails.getFile()), dirDetails.getRelativePath(), false));
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            fileIndexes.add(fileTreeElements.size());
+            files.add(fileDetails);
+            fileTreeElements.add(null);
+        }
+    }
 }
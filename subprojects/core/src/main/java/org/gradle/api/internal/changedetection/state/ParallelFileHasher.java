@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.ParallelismConfigurationListener;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.HashCode;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashes the files of a directory tree concurrently, using a bounded pool sized from the current {@link ParallelismConfiguration}.
+ *
+ * <p>The files are split into batches of at least {@value #MIN_BATCH_SIZE} files. The calling thread hashes the first batch itself, so small trees are hashed
+ * without any hand-off. Hashing goes through the given {@link CachingFileHasher}, so the results are recorded in the cross-build file hash cache as usual.</p>
+ */
+public class ParallelFileHasher implements ParallelismConfigurationListener, Stoppable {
+    static final int MIN_BATCH_SIZE = 64;
+
+    private final CachingFileHasher hasher;
+    private final ManagedExecutor executor;
+    private final ParallelismConfigurationManager parallelismConfigurationManager;
+    private final ThreadLocal<Statistics> currentStatistics = new ThreadLocal<Statistics>();
+    private volatile int maxBatches;
+
+    public ParallelFileHasher(CachingFileHasher hasher, ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        this.hasher = hasher;
+        this.parallelismConfigurationManager = parallelismConfigurationManager;
+        this.maxBatches = parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount();
+        this.executor = executorFactory.create("File hasher", maxBatches);
+        parallelismConfigurationManager.addListener(this);
+    }
+
+    @Override
+    public void onParallelismConfigurationChange(ParallelismConfiguration parallelismConfiguration) {
+        maxBatches = parallelismConfiguration.getMaxWorkerCount();
+        executor.setFixedPoolSize(maxBatches);
+    }
+
+    /**
+     * Hashes the given files, returning the hashes in the same order as the files.
+     */
+    public List<HashCode> hash(final List<? extends FileTreeElement> files) {
+        int batches = Math.min(maxBatches, files.size() / MIN_BATCH_SIZE);
+        Statistics statistics = currentStatistics.get();
+        final AtomicInteger hashedFileCount = statistics == null ? null : statistics.hashedFileCount;
+        if (batches <= 1) {
+            return Arrays.asList(hashBatch(files, 0, files.size(), hashedFileCount));
+        }
+
+        int batchSize = (files.size() + batches - 1) / batches;
+        List<Future<HashCode[]>> futures = new ArrayList<Future<HashCode[]>>(batches - 1);
+        for (int start = batchSize; start < files.size(); start += batchSize) {
+            final int batchStart = start;
+            final int batchEnd = Math.min(start + batchSize, files.size());
+            futures.add(executor.submit(new Callable<HashCode[]>() {
+                @Override
+                public HashCode[] call() {
+                    return hashBatch(files, batchStart, batchEnd, hashedFileCount);
+                }
+            }));
+        }
+
+        List<HashCode> hashes = new ArrayList<HashCode>(files.size());
+        try {
+            hashes.addAll(Arrays.asList(hashBatch(files, 0, batchSize, hashedFileCount)));
+            for (Future<HashCode[]> future : futures) {
+                hashes.addAll(Arrays.asList(future.get()));
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw UncheckedException.throwAsUncheckedException(e.getCause());
+        } finally {
+            for (Future<HashCode[]> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return hashes;
+    }
+
+    private HashCode[] hashBatch(List<? extends FileTreeElement> files, int start, int end, @Nullable AtomicInteger hashedFileCount) {
+        HashCode[] hashes = new HashCode[end - start];
+        for (int i = start; i < end; i++) {
+            FileTreeElement file = files.get(i);
+            hashes[i - start] = hashedFileCount == null ? hasher.hash(file) : hasher.hash(file, hashedFileCount);
+        }
+        return hashes;
+    }
+
+    /**
+     * Starts recording the number of files hashed on behalf of the current thread, until {@link Statistics#stop()} is called.
+     * Files whose hash is taken from the file hash cache are not counted.
+     */
+    public Statistics startRecording() {
+        Statistics statistics = new Statistics();
+        currentStatistics.set(statistics);
+        return statistics;
+    }
+
+    @Override
+    public void stop() {
+        parallelismConfigurationManager.removeListener(this);
+        executor.stop();
+    }
+
+    public class Statistics {
+        private final AtomicInteger hashedFileCount = new AtomicInteger();
+
+        public int getHashedFileCount() {
+            return hashedFileCount.get();
+        }
+
+        public void stop() {
+            currentStatistics.remove();
+        }
+    }
+}
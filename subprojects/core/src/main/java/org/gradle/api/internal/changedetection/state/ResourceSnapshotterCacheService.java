@@ -16,12 +16,23 @@
 
 package org.gradle.api.internal.changedetection.state;
 
+import com.google.common.io.ByteStreams;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.caching.internal.BuildCacheHasher;
 import org.gradle.caching.internal.DefaultBuildCacheHasher;
 import org.gradle.internal.hash.HashCode;
 import org.gradle.internal.hash.Hashing;
 
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Caches the hashes of resources, keyed by the content of the resource and the configuration of the hasher.
+ * As the cache is content-addressed, it can be shared by all builds using the same Gradle user home.
+ */
 public class ResourceSnapshotterCacheService {
     private static final HashCode NO_HASH = Hashing.md5().hashString(CachingResourceHasher.class.getName() + " : no hash");
     private final PersistentIndexedCache<HashCode, HashCode> persistentCache;
@@ -31,7 +42,7 @@ public class ResourceSnapshotterCacheService {
     }
 
     public HashCode hashFile(RegularFileSnapshot fileSnapshot, RegularFileHasher hasher, byte[] configurationHash) {
-        HashCode resourceHashCacheKey = resourceHashCacheKey(fileSnapshot, configurationHash);
+        HashCode resourceHashCacheKey = resourceHashCacheKey(fileSnapshot.getContent().getContentMd5(), configurationHash, false);
 
         HashCode resourceHash = persistentCache.get(resourceHashCacheKey);
         if (resourceHash != null) {
@@ -42,19 +53,48 @@ public class ResourceSnapshotterCacheService {
         }
 
         resourceHash = hasher.hash(fileSnapshot);
+        storeHash(resourceHashCacheKey, resourceHash);
+        return resourceHash;
+    }
+
+    /**
+     * Hashes an entry of a ZIP file. The content of the entry is read to find its cached hash, so this only saves work when hashing the content is
+     * considerably more expensive than reading it, for example when extracting the ABI of a class.
+     */
+    @Nullable
+    public HashCode hashZipEntry(ZipEntry zipEntry, InputStream zipInput, ResourceHasher hasher, byte[] configurationHash) throws IOException {
+        byte[] content = ByteStreams.toByteArray(zipInput);
+        HashCode resourceHashCacheKey = resourceHashCacheKey(Hashing.md5().hashBytes(content), configurationHash, true);
+
+        HashCode resourceHash = persistentCache.get(resourceHashCacheKey);
+        if (resourceHash != null) {
+            if (resourceHash.equals(NO_HASH)) {
+                return null;
+            }
+            return resourceHash;
+        }
 
+        resourceHash = hasher.hash(zipEntry, new ByteArrayInputStream(content));
+        storeHash(resourceHashCacheKey, resourceHash);
+        return resourceHash;
+    }
+
+    private void storeHash(HashCode resourceHashCacheKey, @Nullable HashCode resourceHash) {
         if (resourceHash != null) {
             persistentCache.put(resourceHashCacheKey, resourceHash);
         } else {
             persistentCache.put(resourceHashCacheKey, NO_HASH);
         }
-        return resourceHash;
     }
 
-    private HashCode resourceHashCacheKey(RegularFileSnapshot fileSnapshot, byte[] configurationHash) {
+    private HashCode resourceHashCacheKey(HashCode contentHash, byte[] configurationHash, boolean zipEntry) {
         BuildCacheHasher hasher = new DefaultBuildCacheHasher();
         hasher.putBytes(configurationHash);
-        hasher.putHash(fileSnapshot.getContent().getContentMd5());
+        // Files and ZIP entries are hashed by different methods of the hasher, which may not agree for the same content
+        if (zipEntry) {
+            hasher.putString("zip entry");
+        }
+        hasher.putHash(contentHash);
         return hasher.hash();
     }
 }
@@ -0,0 +1,355 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state;
+
+import com.google.common.collect.Sets;
+import org.gradle.api.Action;
+import org.gradle.api.internal.file.FileSystemSubset;
+import org.gradle.internal.classpath.CachedJarFileStore;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.filewatch.FileWatcher;
+import org.gradle.internal.filewatch.FileWatcherEvent;
+import org.gradle.internal.filewatch.FileWatcherFactory;
+import org.gradle.internal.filewatch.FileWatcherListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A {@link FileSystemMirror} that retains the state of files between builds, for as long as the files are being watched for changes.
+ *
+ * <p>Each path put into the mirror is registered with a {@link FileWatcher}. A change to a path discards the state of that path, its descendants and its ancestors,
+ * so that the following build only needs to visit the files that have actually changed. When the watcher reports an event it cannot attribute to a file, all state
+ * is discarded. When the watcher fails or stops unexpectedly, all state is discarded at the end of the build, as done by {@link DefaultFileSystemMirror}.</p>
+ *
+ * <p>State is only retained for the following build when the watch for the path was registered in an earlier build, and so before the state was calculated, and
+ * when no change to the path was reported during the build. State put into the mirror for a newly watched path is used during the build, then discarded at the end
+ * of the build. At the start of each build, the mirror waits until the watcher has reported all changes made before the build started, by creating a file in the
+ * given barrier directory and waiting for the event for that file. When this takes too long, all state is discarded.</p>
+ *
+ * <p>When a task is about to generate its outputs, all state is discarded, as done by {@link DefaultFileSystemMirror}. The task may change any file, not only its
+ * declared outputs, and the watcher reports these changes only some time later. State calculated after the task has run is retained as usual, and discarded again
+ * once the watcher reports a change made by the task.</p>
+ *
+ * <p>State for files that live in an append-only cache is still discarded at the end of each build, as these files are not watched.</p>
+ *
+ * <p>Enabled by setting the {@value #RETAIN_STATE_PROPERTY} system property to {@code true}.</p>
+ */
+public class WatchingFileSystemMirror extends DefaultFileSystemMirror implements FileWatcherListener, Stoppable {
+    public static final String RETAIN_STATE_PROPERTY = "org.gradle.internal.filesystem.retainstate";
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchingFileSystemMirror.class);
+    private static final long BARRIER_TIMEOUT_MILLIS = 5000;
+
+    private final FileWatcherFactory fileWatcherFactory;
+    private final File barrierDir;
+
+    // Lock ordering: watcherLock, then the lock of the file watcher, then lock. The file watcher holds its own lock while it delivers events to this mirror,
+    // so the watcher must never be called while holding lock.
+    private final Object watcherLock = new Object();
+    private final Object lock = new Object();
+
+    // Guarded by watcherLock
+    private FileWatcher fileWatcher;
+    // Paths whose watch was registered during an earlier build, guarded by lock
+    private final Set<String> watchedPaths = new HashSet<String>();
+    // Paths whose watch was registered during this build
+    private final Set<String> newlyWatchedPaths = Sets.newConcurrentHashSet();
+    // Paths whose state must not be retained at the end of this build, guarded by lock
+    private final Set<String> unconfirmedPaths = new HashSet<String>();
+    // Paths that changed during this build, and their ancestors, guarded by lock
+    private final Set<String> changedPaths = new HashSet<String>();
+    private final Set<String> changedSubtrees = new HashSet<String>();
+    // Guarded by lock
+    private boolean unknownChange;
+    private boolean watchingFailed;
+    private File expectedBarrier;
+    private boolean barrierReached;
+
+    public WatchingFileSystemMirror(List<CachedJarFileStore> fileStores, FileWatcherFactory fileWatcherFactory, File barrierDir) {
+        super(fileStores, true);
+        this.fileWatcherFactory = fileWatcherFactory;
+        this.barrierDir = barrierDir;
+    }
+
+    @Override
+    public void putFile(FileSnapshot file) {
+        String path = file.getPath();
+        boolean watch;
+        synchronized (lock) {
+            watch = beforePut(path);
+            super.putFile(file);
+        }
+        if (watch) {
+            watch(path);
+        }
+    }
+
+    @Override
+    public void putContent(String path, Snapshot snapshot) {
+        boolean watch;
+        synchronized (lock) {
+            watch = beforePut(path);
+            super.putContent(path, snapshot);
+        }
+        if (watch) {
+            watch(path);
+        }
+    }
+
+    @Override
+    public void putDirectory(FileTreeSnapshot directory) {
+        String path = directory.getPath();
+        boolean watch;
+        synchronized (lock) {
+            watch = beforePut(path);
+            super.putDirectory(directory);
+        }
+        if (watch) {
+            watch(path);
+        }
+    }
+
+    /**
+     * Decides whether the state for the given path can be retained at the end of the build. Returns true when the path needs to be watched.
+     */
+    private boolean beforePut(String path) {
+        if (watchingFailed || isInAppendOnlyCache(path)) {
+            return false;
+        }
+        if (isCovered(watchedPaths, path) && !hasChanged(path)) {
+            return false;
+        }
+        // Either the file was not watched when its state was calculated, or it has changed since
+        unconfirmedPaths.add(path);
+        return !isCovered(newlyWatchedPaths, path);
+    }
+
+    private static boolean isCovered(Set<String> watched, String path) {
+        if (watched.contains(path)) {
+            return true;
+        }
+        for (File ancestor = new File(path).getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+            if (watched.contains(ancestor.getPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasChanged(String path) {
+        if (unknownChange || changedSubtrees.contains(path)) {
+            return true;
+        }
+        for (File ancestor = new File(path).getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+            if (changedPaths.contains(ancestor.getPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void watch(String path) {
+        synchronized (watcherLock) {
+            try {
+                FileWatcher watcher = getFileWatcher();
+                if (watcher != null) {
+                    watcher.watch(FileSystemSubset.builder().add(new File(path)).build());
+                    newlyWatchedPaths.add(path);
+                }
+            } catch (IOException e) {
+                onWatchingFailed(e);
+            }
+        }
+    }
+
+    private FileWatcher getFileWatcher() throws IOException {
+        synchronized (lock) {
+            if (watchingFailed) {
+                return null;
+            }
+        }
+        if (fileWatcher == null) {
+            fileWatcher = fileWatcherFactory.watch(new Action<Throwable>() {
+                @Override
+                public void execute(Throwable throwable) {
+                    onWatchingFailed(throwable);
+                }
+            }, this);
+            if (!barrierDir.isDirectory() && !barrierDir.mkdirs()) {
+                throw new IOException("Could not create directory " + barrierDir);
+            }
+            fileWatcher.watch(FileSystemSubset.builder().add(barrierDir).build());
+        }
+        return fileWatcher;
+    }
+
+    private void onWatchingFailed(Throwable failure) {
+        LOGGER.debug("Could not watch the file system for changes, file system state will not be retained between builds.", failure);
+        synchronized (lock) {
+            // Keep the state until the end of the build, as done by DefaultFileSystemMirror
+            watchingFailed = true;
+            lock.notifyAll();
+        }
+    }
+
+    @Override
+    public void onChange(FileWatcher watcher, FileWatcherEvent event) {
+        File file = event.getFile();
+        synchronized (lock) {
+            if (file == null) {
+                // Something happened, but we don't know where
+                discardNonCachedState();
+                unconfirmedPaths.clear();
+                unknownChange = true;
+            } else if (barrierDir.equals(file.getParentFile())) {
+                if (file.equals(expectedBarrier)) {
+                    barrierReached = true;
+                    lock.notifyAll();
+                }
+            } else {
+                discardChanged(file.getAbsolutePath());
+            }
+        }
+    }
+
+    private void discardChanged(String path) {
+        discardStateFor(path);
+        changedPaths.add(path);
+        changedSubtrees.add(path);
+        for (File ancestor = new File(path).getParentFile(); ancestor != null; ancestor = ancestor.getParentFile()) {
+            changedSubtrees.add(ancestor.getPath());
+        }
+    }
+
+    @Override
+    public void beforeTaskOutputsGenerated() {
+        synchronized (lock) {
+            super.beforeTaskOutputsGenerated();
+        }
+    }
+
+    @Override
+    public void afterStart() {
+        synchronized (watcherLock) {
+            if (fileWatcher == null) {
+                return;
+            }
+            if (!awaitReportedChanges()) {
+                LOGGER.debug("File system changes were not reported in time, discarding file system state.");
+                synchronized (lock) {
+                    discardNonCachedState();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until the watcher has reported all changes made before this method was called.
+     */
+    private boolean awaitReportedChanges() {
+        File barrier = new File(barrierDir, "barrier-" + UUID.randomUUID());
+        synchronized (lock) {
+            expectedBarrier = barrier;
+            barrierReached = false;
+        }
+        try {
+            if (!barrier.createNewFile()) {
+                return false;
+            }
+            long deadline = System.currentTimeMillis() + BARRIER_TIMEOUT_MILLIS;
+            synchronized (lock) {
+                while (!barrierReached && !watchingFailed) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    try {
+                        lock.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                return barrierReached;
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not create barrier file.", e);
+            return false;
+        } finally {
+            synchronized (lock) {
+                expectedBarrier = null;
+            }
+            if (!barrier.delete()) {
+                barrier.deleteOnExit();
+            }
+        }
+    }
+
+    @Override
+    public void beforeComplete() {
+        synchronized (watcherLock) {
+            boolean retainState = fileWatcher != null && fileWatcher.isRunning();
+            synchronized (lock) {
+                retainState = retainState && !watchingFailed;
+                if (retainState) {
+                    discardCachedState();
+                    for (String path : unconfirmedPaths) {
+                        discardStateFor(path);
+                    }
+                    watchedPaths.addAll(newlyWatchedPaths);
+                } else {
+                    super.beforeComplete();
+                    watchedPaths.clear();
+                    // Try again with a new watcher in the next build
+                    watchingFailed = false;
+                }
+                newlyWatchedPaths.clear();
+                unconfirmedPaths.clear();
+                changedPaths.clear();
+                changedSubtrees.clear();
+                unknownChange = false;
+            }
+            if (!retainState) {
+                stopWatching();
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (watcherLock) {
+            stopWatching();
+            synchronized (lock) {
+                discardNonCachedState();
+                watchedPaths.clear();
+            }
+        }
+    }
+
+    private void stopWatching() {
+        if (fileWatcher != null) {
+            fileWatcher.stop();
+            fileWatcher = null;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.gradle.api.internal.file.collections;
 
 import org.gradle.api.tasks.util.PatternSet;
 import org.gradle.internal.Factory;
+import org.gradle.internal.FileUtils;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.nativeintegration.services.FileSystems;
 
@@ -26,6 +27,7 @@ import java.io.File;
 public class DefaultDirectoryFileTreeFactory implements DirectoryFileTreeFactory {
     private final Factory<PatternSet> patternSetFactory;
     private final FileSystem fileSystem;
+    private final Factory<DirectoryWalker> directoryWalkerFactory;
 
     public DefaultDirectoryFileTreeFactory() {
         this.patternSetFactory = new Factory<PatternSet>() {
@@ -35,20 +37,26 @@ public class DefaultDirectoryFileTreeFactory implements DirectoryFileTreeFactory
             }
         };
         this.fileSystem = FileSystems.getDefault();
+        this.directoryWalkerFactory = DirectoryFileTree.DEFAULT_DIRECTORY_WALKER_FACTORY;
     }
 
     public DefaultDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, FileSystem fileSystem) {
+        this(patternSetFactory, fileSystem, DirectoryFileTree.DEFAULT_DIRECTORY_WALKER_FACTORY);
+    }
+
+    public DefaultDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, FileSystem fileSystem, Factory<DirectoryWalker> directoryWalkerFactory) {
         this.patternSetFactory = patternSetFactory;
         this.fileSystem = fileSystem;
+        this.directoryWalkerFactory = directoryWalkerFactory;
     }
 
     @Override
     public DirectoryFileTree create(File directory) {
-        return new DirectoryFileTree(directory, patternSetFactory.create(), fileSystem);
+        return create(directory, patternSetFactory.create());
     }
 
     @Override
     public DirectoryFileTree create(File directory, PatternSet patternSet) {
-        return new DirectoryFileTree(directory, patternSet, fileSystem);
+        return new DirectoryFileTree(FileUtils.canonicalize(directory), patternSet, directoryWalkerFactory, fileSystem, false);
     }
 }
@@ -19,20 +19,46 @@ package org.gradle.api.internal.file.collections;
 import com.google.common.base.Charsets;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.internal.file.collections.jdk7.Jdk7DirectoryWalker;
+import org.gradle.api.internal.file.collections.jdk7.ParallelDirectoryWalker;
+import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.ParallelismConfigurationListener;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
 import org.gradle.internal.nativeintegration.services.FileSystems;
-import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 
+import javax.annotation.Nullable;
 import java.nio.charset.Charset;
 
-public class DefaultDirectoryWalkerFactory implements Factory<DirectoryWalker> {
+public class DefaultDirectoryWalkerFactory implements Factory<DirectoryWalker>, ParallelismConfigurationListener, Stoppable {
+    public static final String PARALLEL_WALKER_PROPERTY = "org.gradle.internal.file.parallelwalker";
+
     private final JavaVersion javaVersion;
     private final FileSystem fileSystem;
+    private final ParallelismConfigurationManager parallelismConfigurationManager;
+    private final ManagedExecutor executor;
     private DirectoryWalker instance;
 
     public DefaultDirectoryWalkerFactory(JavaVersion javaVersion, FileSystem fileSystem) {
+        this(javaVersion, fileSystem, null, null);
+    }
+
+    /**
+     * Creates a factory that uses the parallel walker when it is enabled. The listings of all walks share a single pool, sized from the current {@link ParallelismConfiguration}.
+     */
+    public DefaultDirectoryWalkerFactory(JavaVersion javaVersion, FileSystem fileSystem, @Nullable ExecutorFactory executorFactory, @Nullable ParallelismConfigurationManager parallelismConfigurationManager) {
         this.javaVersion = javaVersion;
         this.fileSystem = fileSystem;
+        this.parallelismConfigurationManager = parallelismConfigurationManager;
+        if (executorFactory != null && parallelismConfigurationManager != null && Boolean.getBoolean(PARALLEL_WALKER_PROPERTY)) {
+            this.executor = executorFactory.create("Directory walker", parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount());
+            parallelismConfigurationManager.addListener(this);
+        } else {
+            this.executor = null;
+        }
         reset();
     }
 
@@ -50,6 +76,9 @@ public class DefaultDirectoryWalkerFactory implements Factory<DirectoryWalker> {
 
     private DirectoryWalker createInstance() {
         if (javaVersion.isJava8Compatible() || (javaVersion.isJava7Compatible() && defaultEncodingContainsPlatformEncoding())) {
+            if (executor != null) {
+                return new ParallelDirectoryWalker(fileSystem, executor);
+            }
             return new Jdk7DirectoryWalker(fileSystem);
         } else {
             return new DefaultDirectoryWalker(fileSystem);
@@ -65,4 +94,17 @@ public class DefaultDirectoryWalkerFactory implements Factory<DirectoryWalker> {
         Charset requiredCharset = platformCharset != null ? platformCharset : Charsets.UTF_8;
         return Charset.defaultCharset().contains(requiredCharset);
     }
+
+    @Override
+    public void onParallelismConfigurationChange(ParallelismConfiguration parallelismConfiguration) {
+        executor.setFixedPoolSize(parallelismConfiguration.getMaxWorkerCount());
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            parallelismConfigurationManager.removeListener(this);
+            executor.stop();
+        }
+    }
 }
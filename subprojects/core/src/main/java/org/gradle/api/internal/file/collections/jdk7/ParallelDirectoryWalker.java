@@ -0,0 +1,235 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.collections.jdk7;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.DefaultFileVisitDetails;
+import org.gradle.api.internal.file.collections.DirectoryWalker;
+import org.gradle.api.specs.Spec;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link DirectoryWalker} that lists directories and reads file attributes in parallel using the given {@link Executor}.
+ *
+ * <p>When a directory is visited, the listings of all its subdirectories that are included by the spec are started, so that the executor works ahead of the visitor.
+ * The visitor is only ever called from the thread calling {@link #walkDir(File, RelativePath, FileVisitor, Spec, AtomicBoolean, boolean)},
+ * with the children of each directory sorted by name, so the visit order is the same as for {@link org.gradle.api.internal.file.collections.ReproducibleDirectoryWalker}.</p>
+ *
+ * <p>Like {@link Jdk7DirectoryWalker}, symbolic links are followed, and a directory that is the same as the directory containing it or one of its parents is skipped.</p>
+ */
+public class ParallelDirectoryWalker implements DirectoryWalker {
+    private final FileSystem fileSystem;
+    private final Executor executor;
+
+    public ParallelDirectoryWalker(FileSystem fileSystem, Executor executor) {
+        this.fileSystem = fileSystem;
+        this.executor = executor;
+    }
+
+    @Override
+    public void walkDir(File rootDir, RelativePath rootPath, FileVisitor visitor, Spec<? super FileTreeElement> spec, AtomicBoolean stopFlag, boolean postfix) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        BasicFileAttributes rootAttributes = readAttributes(rootDir);
+        DirectoryListing rootListing = startListing(rootDir, rootAttributes == null ? null : rootAttributes.fileKey(), null, cancelled);
+        try {
+            walkDir(rootListing, rootPath, visitor, spec, stopFlag, postfix);
+        } finally {
+            // Stop any listings that are still pending when the walk has been stopped or has failed
+            cancelled.set(true);
+        }
+    }
+
+    private DirectoryListing startListing(File dir, @Nullable Object fileKey, @Nullable DirectoryListing parent, AtomicBoolean cancelled) {
+        DirectoryListing listing = new DirectoryListing(dir, fileKey, parent, cancelled);
+        executor.execute(listing);
+        return listing;
+    }
+
+    private void walkDir(DirectoryListing listing, RelativePath path, FileVisitor visitor, Spec<? super FileTreeElement> spec, AtomicBoolean stopFlag, boolean postfix) {
+        List<Child> children = listing.getChildren();
+        List<FileVisitDetails> files = new ArrayList<FileVisitDetails>();
+        List<FileVisitDetails> dirs = new ArrayList<FileVisitDetails>();
+        List<DirectoryListing> dirListings = new ArrayList<DirectoryListing>();
+        for (int i = 0; !stopFlag.get() && i < children.size(); i++) {
+            Child child = children.get(i);
+            if (child.isDirectory() && listing.isSameAsOrInside(child)) {
+                // A link back to a parent directory, skip it like Jdk7DirectoryWalker skips a FileSystemLoopException
+                continue;
+            }
+            RelativePath childPath = path.append(child.isFile(), child.file.getName());
+            FileVisitDetails details = child.toDetails(childPath, stopFlag, fileSystem);
+            if (spec.isSatisfiedBy(details)) {
+                if (child.isFile()) {
+                    files.add(details);
+                } else {
+                    // Only list directories that are actually visited
+                    dirs.add(details);
+                    dirListings.add(startListing(child.file, child.attributes == null ? null : child.attributes.fileKey(), listing, listing.cancelled));
+                }
+            }
+        }
+
+        for (int i = 0; !stopFlag.get() && i < files.size(); i++) {
+            visitor.visitFile(files.get(i));
+        }
+
+        // now handle dirs
+        for (int i = 0; !stopFlag.get() && i < dirs.size(); i++) {
+            FileVisitDetails dir = dirs.get(i);
+            if (postfix) {
+                walkDir(dirListings.get(i), dir.getRelativePath(), visitor, spec, stopFlag, postfix);
+                visitor.visitDir(dir);
+            } else {
+                visitor.visitDir(dir);
+                walkDir(dirListings.get(i), dir.getRelativePath(), visitor, spec, stopFlag, postfix);
+            }
+        }
+    }
+
+    @Nullable
+    private static BasicFileAttributes readAttributes(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static class Child {
+        private final File file;
+        private final BasicFileAttributes attributes;
+
+        Child(File file, BasicFileAttributes attributes) {
+            this.file = file;
+            this.attributes = attributes;
+        }
+
+        boolean isFile() {
+            return attributes != null && !attributes.isDirectory();
+        }
+
+        boolean isDirectory() {
+            return attributes != null && attributes.isDirectory();
+        }
+
+        FileVisitDetails toDetails(RelativePath path, AtomicBoolean stopFlag, FileSystem fileSystem) {
+            if (attributes == null) {
+                // Might be a link which points to nothing, or has been removed while we're visiting, or ...
+                return new DefaultFileVisitDetails(file, path, stopFlag, fileSystem, fileSystem, true);
+            }
+            return new DefaultFileVisitDetails(file, path, stopFlag, fileSystem, fileSystem, attributes.isDirectory(), attributes.lastModifiedTime().toMillis(), attributes.size());
+        }
+    }
+
+    /**
+     * Lists a single directory. Failures are only reported when the listing is used by the walk.
+     */
+    private static class DirectoryListing extends FutureTask<List<Child>> {
+        private final File dir;
+        private final Object fileKey;
+        private final DirectoryListing parent;
+        private final AtomicBoolean cancelled;
+
+        DirectoryListing(final File dir, @Nullable Object fileKey, @Nullable DirectoryListing parent, final AtomicBoolean cancelled) {
+            super(new Callable<List<Child>>() {
+                @Override
+                public List<Child> call() {
+                    if (cancelled.get()) {
+                        return null;
+                    }
+                    File[] files = dir.listFiles();
+                    if (files == null) {
+                        return null;
+                    }
+                    Arrays.sort(files);
+                    List<Child> children = new ArrayList<Child>(files.length);
+                    for (File file : files) {
+                        children.add(new Child(file, readAttributes(file)));
+                    }
+                    return children;
+                }
+            });
+            this.dir = dir;
+            this.fileKey = fileKey;
+            this.parent = parent;
+            this.cancelled = cancelled;
+        }
+
+        /**
+         * Returns whether the given child is the directory of this listing or one of its parents.
+         */
+        boolean isSameAsOrInside(Child child) {
+            Object childKey = child.attributes.fileKey();
+            for (DirectoryListing ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (childKey != null && ancestor.fileKey != null) {
+                    if (childKey.equals(ancestor.fileKey)) {
+                        return true;
+                    }
+                } else if (isSameFile(child.file, ancestor.dir)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isSameFile(File file, File other) {
+            try {
+                return Files.isSameFile(file.toPath(), other.toPath());
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        List<Child> getChildren() {
+            List<Child> children;
+            try {
+                children = get();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            } catch (ExecutionException e) {
+                throw UncheckedException.throwAsUncheckedException(e.getCause());
+            }
+            if (children == null) {
+                if (dir.isDirectory() && !dir.canRead()) {
+                    throw new GradleException(String.format("Could not list contents of directory '%s' as it is not readable.", dir));
+                }
+                // else, might be a link which points to nothing, or has been removed while we're visiting, or ...
+                throw new GradleException(String.format("Could not list contents of '%s'.", dir));
+            }
+            return children;
+        }
+    }
+}
@@ -108,6 +108,15 @@ public final class SnapshotTaskInputsBuildOperationType implements BuildOperatio
         @Nullable
         List<String> getOutputPropertyNames();
 
+        /**
+         * The number of files in input directory trees that were hashed, concurrently where possible, while snapshotting the inputs.
+         * Files whose hash was taken from the file hash cache are not counted.
+         *
+         * Null if no files were hashed, for example because all input trees were already known or all files were unchanged since they were last hashed.
+         */
+        @Nullable
+        Integer getHashedTreeFileCount();
+
     }
 
     private SnapshotTaskInputsBuildOperationType() {
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import com.google.common.collect.Sets;
+import org.gradle.api.Task;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.TaskArtifactState;
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository;
+import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.TaskExecutionContext;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.controller.BuildCacheController;
+import org.gradle.caching.internal.tasks.TaskOutputCachingBuildCacheKey;
+import org.gradle.execution.TaskGraphExecuter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link TaskExecuter} which starts loading the cached outputs of an out-of-date task, and of the tasks that are ready to run after it, from the remote build cache.
+ *
+ * <p>The cache keys of the upcoming tasks are calculated ahead of their execution, so that their entries download while the current task is loaded or executed.
+ * Only tasks of the same project as the current task are looked at, as the current task holds the lock of that project. The keys are prefetched in one batch.</p>
+ *
+ * <p>Only used when the remote build cache can prefetch entries or check for several entries at once, see {@link BuildCacheController#canPrefetch()}.</p>
+ */
+public class PrefetchBuildCacheEntryExecuter implements TaskExecuter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrefetchBuildCacheEntryExecuter.class);
+    static final int MAX_UPCOMING_TASKS = 16;
+
+    private final BuildCacheController buildCache;
+    private final TaskArtifactStateRepository repository;
+    private final TaskGraphExecuter taskGraph;
+    private final TaskExecuter delegate;
+    private final Set<Task> lookedAheadTasks = Sets.newConcurrentHashSet();
+    private final Set<String> prefetchedKeys = Sets.newConcurrentHashSet();
+
+    public PrefetchBuildCacheEntryExecuter(BuildCacheController buildCache, TaskArtifactStateRepository repository, TaskGraphExecuter taskGraph, TaskExecuter delegate) {
+        this.buildCache = buildCache;
+        this.repository = repository;
+        this.taskGraph = taskGraph;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(TaskInternal task, TaskStateInternal state, TaskExecutionContext context) {
+        List<BuildCacheKey> keys = new ArrayList<BuildCacheKey>();
+        TaskOutputCachingBuildCacheKey cacheKey = context.getBuildCacheKey();
+        if (state.getTaskOutputCaching().isEnabled() && cacheKey.isValid() && context.getTaskArtifactState().isAllowedToUseCachedResults()) {
+            addKey(cacheKey, keys);
+        }
+        for (Task upcomingTask : taskGraph.getReadyTasks(MAX_UPCOMING_TASKS)) {
+            if (upcomingTask.getProject() == task.getProject() && lookedAheadTasks.add(upcomingTask)) {
+                TaskOutputCachingBuildCacheKey upcomingKey = calculateCacheKey((TaskInternal) upcomingTask);
+                if (upcomingKey != null) {
+                    addKey(upcomingKey, keys);
+                }
+            }
+        }
+        if (!keys.isEmpty()) {
+            buildCache.prefetch(keys);
+        }
+        delegate.execute(task, state, context);
+    }
+
+    private void addKey(BuildCacheKey key, List<BuildCacheKey> keys) {
+        if (prefetchedKeys.add(key.getHashCode())) {
+            keys.add(key);
+        }
+    }
+
+    /**
+     * Calculates the cache key of a task that has not started yet. The key is only used to prefetch the entry, the task calculates its key again when it is executed.
+     */
+    @Nullable
+    private TaskOutputCachingBuildCacheKey calculateCacheKey(TaskInternal task) {
+        try {
+            if (!task.getOutputs().getCachingState().isEnabled()) {
+                return null;
+            }
+            TaskArtifactState taskArtifactState = repository.getStateFor(task);
+            if (!taskArtifactState.isAllowedToUseCachedResults()) {
+                return null;
+            }
+            TaskOutputCachingBuildCacheKey cacheKey = taskArtifactState.calculateCacheKey();
+            return cacheKey.isValid() ? cacheKey : null;
+        } catch (Exception e) {
+            // Any failure is reported when the task is executed
+            LOGGER.debug("Could not calculate the build cache key of upcoming {}", task, e);
+            return null;
+        }
+    }
+}
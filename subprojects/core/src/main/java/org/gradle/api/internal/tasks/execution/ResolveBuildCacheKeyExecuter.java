@@ -25,6 +25,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.changedetection.TaskArtifactState;
+import org.gradle.api.internal.changedetection.state.ParallelFileHasher;
 import org.gradle.api.internal.tasks.SnapshotTaskInputsBuildOperationType;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
@@ -49,10 +50,12 @@ public class ResolveBuildCacheKeyExecuter implements TaskExecuter {
 
     private final TaskExecuter delegate;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final ParallelFileHasher parallelFileHasher;
 
-    public ResolveBuildCacheKeyExecuter(TaskExecuter delegate, BuildOperationExecutor buildOperationExecutor) {
+    public ResolveBuildCacheKeyExecuter(TaskExecuter delegate, BuildOperationExecutor buildOperationExecutor, ParallelFileHasher parallelFileHasher) {
         this.delegate = delegate;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.parallelFileHasher = parallelFileHasher;
     }
 
     @Override
@@ -82,9 +85,14 @@ public class ResolveBuildCacheKeyExecuter implements TaskExecuter {
         buildOperationExecutor.run(new RunnableBuildOperation() {
             @Override
             public void run(BuildOperationContext buildOperationContext) {
-                TaskOutputCachingBuildCacheKey cacheKey = doResolve(task, context);
-                buildOperationContext.setResult(new OperationResultImpl(cacheKey));
-                context.setBuildCacheKey(cacheKey);
+                ParallelFileHasher.Statistics hashingStatistics = parallelFileHasher.startRecording();
+                try {
+                    TaskOutputCachingBuildCacheKey cacheKey = doResolve(task, context);
+                    buildOperationContext.setResult(new OperationResultImpl(cacheKey, hashingStatistics.getHashedFileCount()));
+                    context.setBuildCacheKey(cacheKey);
+                } finally {
+                    hashingStatistics.stop();
+                }
             }
 
             @Override
@@ -117,9 +125,17 @@ public class ResolveBuildCacheKeyExecuter implements TaskExecuter {
 
         @VisibleForTesting
         final TaskOutputCachingBuildCacheKey key;
+        private final int hashedFileCount;
 
-        OperationResultImpl(TaskOutputCachingBuildCacheKey key) {
+        OperationResultImpl(TaskOutputCachingBuildCacheKey key, int hashedFileCount) {
             this.key = key;
+            this.hashedFileCount = hashedFileCount;
+        }
+
+        @Nullable
+        @Override
+        public Integer getHashedTreeFileCount() {
+            return hashedFileCount == 0 ? null : hashedFileCount;
         }
 
         @Nullable
@@ -81,9 +81,12 @@ public class SkipCachedTaskExecuter implements TaskExecuter {
                 outputProperties = TaskPropertyUtils.resolveFileProperties(taskOutputs.getFileProperties());
                 if (taskState.isAllowedToUseCachedResults()) {
                     try {
-                        TaskOutputOriginMetadata originMetadata = buildCache.load(
-                            buildCacheCommandFactory.createLoad(cacheKey, outputProperties, task, taskOutputsGenerationListener, taskState, clock)
-                        );
+                        TaskOutputOriginMetadata originMetadata = buildCacheCommandFactory.loadUnpacked(cacheKey, outputProperties, task, taskOutputsGenerationListener, taskState, clock);
+                        if (originMetadata == null) {
+                            originMetadata = buildCache.load(
+                                buildCacheCommandFactory.createLoad(cacheKey, outputProperties, task, taskOutputsGenerationListener, taskState, clock)
+                            );
+                        }
                         if (originMetadata != null) {
                             state.setOutcome(TaskExecutionOutcome.FROM_CACHE);
                             context.setOriginBuildInvocationId(originMetadata.getBuildInvocationId());
@@ -24,13 +24,22 @@ import org.gradle.api.internal.InstantiatorFactory;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.FileSystemMirror;
 import org.gradle.api.logging.configuration.ShowStacktrace;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.internal.CacheScopeMapping;
+import org.gradle.caching.configuration.BuildCache;
 import org.gradle.caching.configuration.internal.BuildCacheConfigurationInternal;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.caching.internal.controller.BuildCacheControllerFactory;
 import org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode;
 import org.gradle.caching.internal.controller.BuildCacheControllerFactory.RemoteAccessMode;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
+import org.gradle.caching.local.DirectoryBuildCache;
+import org.gradle.caching.local.internal.DirectoryBuildCacheServiceFactory;
 import org.gradle.internal.SystemProperties;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ParallelismConfigurationManager;
+import org.gradle.internal.file.PathToFileResolver;
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeplatform.filesystem.FileSystem;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -45,15 +54,41 @@ import org.gradle.util.SingleMessageLogger;
 
 import java.io.File;
 
+import static org.gradle.cache.FileLockManager.LockMode.None;
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode.DISABLED;
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.BuildCacheMode.ENABLED;
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.RemoteAccessMode.OFFLINE;
 import static org.gradle.caching.internal.controller.BuildCacheControllerFactory.RemoteAccessMode.ONLINE;
 
 public class BuildCacheTaskServices {
+    /**
+     * The format used to pack new cache entries: {@code gzip} (the default), {@code chunked} or {@code chunked-fast}. Entries in any of these formats can be unpacked.
+     */
+    public static final String PACKING_FORMAT_PROPERTY = "org.gradle.internal.buildcache.packing";
 
-    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner) {
-        return new GZipTaskOutputPacker(new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner));
+    /**
+     * When set, the outputs stored in a local directory build cache are also kept unpacked in a directory next to it, named after it with an {@code -unpacked} suffix,
+     * and copied into place without loading the entry from the build cache.
+     */
+    public static final String UNPACKED_ENTRIES_PROPERTY = "org.gradle.internal.buildcache.unpacked";
+
+    /**
+     * When set along with {@link #UNPACKED_ENTRIES_PROPERTY}, unpacked entries are restored with hard links instead of copies.
+     */
+    public static final String UNPACKED_ENTRIES_HARD_LINKS_PROPERTY = "org.gradle.internal.buildcache.unpacked.hardlinks";
+
+    private static final String UNPACKED_ENTRIES_DIR_SUFFIX = "-unpacked";
+
+    TaskOutputPacker createTaskResultPacker(FileSystem fileSystem, StreamHasher fileHasher, StringInterner stringInterner, ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        TaskOutputPacker tarPacker = new TarTaskOutputPacker(fileSystem, fileHasher, stringInterner);
+        TaskOutputPacker gzipPacker = new GZipTaskOutputPacker(tarPacker);
+        String packingFormat = System.getProperty(PACKING_FORMAT_PROPERTY, "gzip");
+        ChunkedTaskOutputPacker.Codec codec = packingFormat.equals("chunked-fast") ? ChunkedTaskOutputPacker.Codec.DEFLATE_FAST : ChunkedTaskOutputPacker.Codec.DEFLATE;
+        int parallelism = parallelismConfigurationManager.getParallelismConfiguration().getMaxWorkerCount();
+        ChunkedTaskOutputPacker chunkedPacker = new ChunkedTaskOutputPacker(tarPacker, codec, executorFactory, parallelism);
+        TaskOutputPacker packer = packingFormat.startsWith("chunked") ? chunkedPacker : gzipPacker;
+        return new FormatDetectingTaskOutputPacker(packer, chunkedPacker, gzipPacker);
     }
 
     TaskOutputOriginFactory createTaskOutputOriginFactory(
@@ -70,9 +105,35 @@ public class BuildCacheTaskServices {
         TaskOutputPacker taskOutputPacker,
         TaskOutputOriginFactory taskOutputOriginFactory,
         FileSystemMirror fileSystemMirror,
-        StringInterner stringInterner
+        StringInterner stringInterner,
+        BuildCacheConfigurationInternal buildCacheConfiguration,
+        CacheRepository cacheRepository,
+        StreamHasher fileHasher,
+        PathToFileResolver resolver,
+        CacheScopeMapping cacheScopeMapping,
+        GradleInternal gradle
     ) {
-        return new TaskOutputCacheCommandFactory(taskOutputPacker, taskOutputOriginFactory, fileSystemMirror, stringInterner);
+        BuildCache local = buildCacheConfiguration.getLocal();
+        if (!Boolean.getBoolean(UNPACKED_ENTRIES_PROPERTY) || !(local instanceof DirectoryBuildCache) || !local.isEnabled() || !local.isPush()) {
+            return new TaskOutputCacheCommandFactory(taskOutputPacker, taskOutputOriginFactory, fileSystemMirror, stringInterner);
+        }
+        DirectoryBuildCache directoryBuildCache = (DirectoryBuildCache) local;
+        File localCacheDir = DirectoryBuildCacheServiceFactory.getCacheDirectory(directoryBuildCache, resolver, cacheScopeMapping);
+        File baseDir = new File(localCacheDir.getPath() + UNPACKED_ENTRIES_DIR_SUFFIX);
+        PersistentCache persistentCache = cacheRepository
+            .cache(baseDir)
+            .withCleanup(new UnpackedTaskOutputCacheCleanup(directoryBuildCache.getTargetSizeInMB()))
+            .withDisplayName("Unpacked build cache entries")
+            .withLockOptions(mode(None))
+            .open();
+        final UnpackedTaskOutputCache unpackedCache = new UnpackedTaskOutputCache(persistentCache, fileHasher, stringInterner, Boolean.getBoolean(UNPACKED_ENTRIES_HARD_LINKS_PROPERTY));
+        gradle.buildFinished(new Action<BuildResult>() {
+            @Override
+            public void execute(BuildResult result) {
+                unpackedCache.stop();
+            }
+        });
+        return new TaskOutputCacheCommandFactory(taskOutputPacker, taskOutputOriginFactory, fileSystemMirror, stringInterner, unpackedCache);
     }
 
     // TODO: Should live in BuildCacheServices
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Adds compression and CRC32 checks to the packed task output, like {@link GZipTaskOutputPacker}, but compresses the packed output in independent chunks
+ * so that chunks can be compressed and decompressed concurrently.
+ *
+ * <p>Packing and unpacking still stream: the delegate writes and reads the packed output on the calling thread, while up to two chunks per worker
+ * are being compressed or decompressed in the background.</p>
+ *
+ * <p>The format starts with {@link #MAGIC}, followed by the format version and the codec. It is followed by the chunks, each made up of the
+ * uncompressed length, the compressed length, the CRC32 of the uncompressed data and the compressed data. A chunk with an uncompressed length of 0 ends the stream.</p>
+ */
+public class ChunkedTaskOutputPacker implements TaskOutputPacker, Stoppable {
+    static final byte[] MAGIC = new byte[]{'G', 'R', 'D', 'L', 'C', 'H', 'N', 'K'};
+    static final int FORMAT_VERSION = 1;
+    static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * The compression used for the chunks.
+     */
+    public enum Codec {
+        /**
+         * Deflate with the default compression level, as used by {@link GZipTaskOutputPacker}.
+         */
+        DEFLATE(Deflater.DEFAULT_COMPRESSION),
+        /**
+         * Deflate tuned for speed rather than size.
+         */
+        DEFLATE_FAST(Deflater.BEST_SPEED);
+
+        private final int level;
+
+        Codec(int level) {
+            this.level = level;
+        }
+    }
+
+    private final TaskOutputPacker delegate;
+    private final Codec codec;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    private final ManagedExecutor executor;
+
+    public ChunkedTaskOutputPacker(TaskOutputPacker delegate, Codec codec, ExecutorFactory executorFactory, int parallelism) {
+        this(delegate, codec, executorFactory, parallelism, DEFAULT_CHUNK_SIZE);
+    }
+
+    ChunkedTaskOutputPacker(TaskOutputPacker delegate, Codec codec, ExecutorFactory executorFactory, int parallelism, int chunkSize) {
+        this.delegate = delegate;
+        this.codec = codec;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = 2 * parallelism;
+        this.executor = executorFactory.create("Build cache entry compression", parallelism);
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.write(MAGIC);
+        dataOutput.writeInt(FORMAT_VERSION);
+        dataOutput.writeByte(codec.ordinal());
+        ChunkedOutputStream chunkedOutput = new ChunkedOutputStream(dataOutput);
+        try {
+            PackResult result = delegate.pack(propertySpecs, outputSnapshots, chunkedOutput, writeOrigin);
+            chunkedOutput.finish();
+            return result;
+        } finally {
+            chunkedOutput.cancel();
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        DataInputStream dataInput = new DataInputStream(input);
+        byte[] magic = new byte[MAGIC.length];
+        dataInput.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IllegalStateException("Cached result format error, not a chunked cache entry.");
+        }
+        int version = dataInput.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalStateException(String.format("Cached result format error, unsupported chunked format version %d.", version));
+        }
+        int codecId = dataInput.readUnsignedByte();
+        if (codecId >= Codec.values().length) {
+            throw new IllegalStateException(String.format("Cached result format error, unsupported codec %d.", codecId));
+        }
+        ChunkedInputStream chunkedInput = new ChunkedInputStream(dataInput);
+        try {
+            return delegate.unpack(propertySpecs, chunkedInput, readOrigin);
+        } finally {
+            chunkedInput.close();
+        }
+    }
+
+    /**
+     * Returns whether the given bytes start with the header of this format.
+     */
+    static boolean isChunked(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void stop() {
+        executor.stop();
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw UncheckedException.throwAsUncheckedException(cause);
+        }
+    }
+
+    private static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                compressed.write(buffer, 0, count);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] compressed, int uncompressedLength, int crc) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            // The extra byte at the end of the input is required by the inflater when using raw deflate data
+            inflater.setInput(compressed);
+            byte[] data = new byte[uncompressedLength];
+            int length = 0;
+            while (length < uncompressedLength && !inflater.finished()) {
+                int count = inflater.inflate(data, length, uncompressedLength - length);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += count;
+            }
+            if (length != uncompressedLength || crc(data, length) != crc) {
+                throw new IOException("Cached result format error, corrupt chunk.");
+            }
+            return data;
+        } catch (DataFormatException e) {
+            throw new IOException("Cached result format error, corrupt chunk.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Returns the maximum size of the compressed data for a chunk of the given size. Raw deflate can be slightly larger than its input when the input does not compress.
+     */
+    private static int maxCompressedLength(int uncompressedLength) {
+        return uncompressedLength + (uncompressedLength >> 12) + (uncompressedLength >> 14) + (uncompressedLength >> 25) + 13;
+    }
+
+    private static int crc(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static class CompressedChunk {
+        private final int uncompressedLength;
+        private final int crc;
+        private final byte[] data;
+
+        CompressedChunk(int uncompressedLength, int crc, byte[] data) {
+            this.uncompressedLength = uncompressedLength;
+            this.crc = crc;
+            this.data = data;
+        }
+    }
+
+    private class ChunkedOutputStream extends OutputStream {
+        private final DataOutputStream output;
+        private final ArrayDeque<Future<CompressedChunk>> pending = new ArrayDeque<Future<CompressedChunk>>();
+        private byte[] buffer = new byte[chunkSize];
+        private int count;
+
+        ChunkedOutputStream(DataOutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                submitChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    submitChunk();
+                }
+                int copied = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, copied);
+                count += copied;
+                offset += copied;
+                length -= copied;
+            }
+        }
+
+        private void submitChunk() throws IOException {
+            final byte[] data = buffer;
+            final int length = count;
+            pending.add(executor.submit(new Callable<CompressedChunk>() {
+                @Override
+                public CompressedChunk call() {
+                    return new CompressedChunk(length, crc(data, length), compress(data, length, codec.level));
+                }
+            }));
+            buffer = new byte[chunkSize];
+            count = 0;
+            while (pending.size() > maxChunksInFlight) {
+                writeChunk(await(pending.remove()));
+            }
+        }
+
+        private void writeChunk(CompressedChunk chunk) throws IOException {
+            output.writeInt(chunk.uncompressedLength);
+            output.writeInt(chunk.data.length);
+            output.writeInt(chunk.crc);
+            output.write(chunk.data);
+        }
+
+        /**
+         * Does not close the target stream. The delegate closes this stream without reporting failures, so the last chunks are written by {@link #finish()} instead.
+         */
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Writes the remaining chunks and the end marker.
+         */
+        void finish() throws IOException {
+            if (count > 0) {
+                submitChunk();
+            }
+            while (!pending.isEmpty()) {
+                writeChunk(await(pending.remove()));
+            }
+            output.writeInt(0);
+            output.flush();
+        }
+
+        void cancel() {
+            while (!pending.isEmpty()) {
+                pending.remove().cancel(false);
+            }
+        }
+    }
+
+    private class ChunkedInputStream extends InputStream {
+        private final DataInputStream input;
+        private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+        private boolean endOfInput;
+        private byte[] current = new byte[0];
+        private int position;
+
+        ChunkedInputStream(DataInputStream input) {
+            this.input = input;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int copied = Math.min(length, current.length - position);
+            System.arraycopy(current, position, bytes, offset, copied);
+            position += copied;
+            return copied;
+        }
+
+        @Override
+        public int available() {
+            return current.length - position;
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            while (position == current.length) {
+                readAhead();
+                if (pending.isEmpty()) {
+                    return false;
+                }
+                current = await(pending.remove());
+                position = 0;
+            }
+            return true;
+        }
+
+        private void readAhead() throws IOException {
+            while (!endOfInput && pending.size() < maxChunksInFlight) {
+                final int uncompressedLength = input.readInt();
+                if (uncompressedLength == 0) {
+                    endOfInput = true;
+                    return;
+                }
+                int compressedLength = input.readInt();
+                final int crc = input.readInt();
+                // The lengths come from the cache entry, so check them before allocating any buffers
+                if (uncompressedLength < 0 || uncompressedLength > chunkSize || compressedLength < 0 || compressedLength > maxCompressedLength(chunkSize)) {
+                    throw new IOException("Cached result format error, corrupt chunk header.");
+                }
+                final byte[] compressed = new byte[compressedLength + 1];
+                try {
+                    input.readFully(compressed, 0, compressedLength);
+                } catch (EOFException e) {
+                    throw new IOException("Cached result format error, truncated chunk.", e);
+                }
+                pending.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return decompress(compressed, uncompressedLength, crc);
+                    }
+                }));
+            }
+        }
+
+        /**
+         * Discards any chunks that have not been read. Does not close the source stream.
+         */
+        @Override
+        public void close() {
+            endOfInput = true;
+            while (!pending.isEmpty()) {
+                pending.remove().cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.concurrent.Stoppable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Packs task output with a given packer, and unpacks cache entries in either the chunked or the gzipped format, so that entries
+ * in both formats can be used from the same cache.
+ */
+public class FormatDetectingTaskOutputPacker implements TaskOutputPacker, Stoppable {
+    private final TaskOutputPacker packer;
+    private final ChunkedTaskOutputPacker chunkedPacker;
+    private final TaskOutputPacker gzipPacker;
+
+    public FormatDetectingTaskOutputPacker(TaskOutputPacker packer, ChunkedTaskOutputPacker chunkedPacker, TaskOutputPacker gzipPacker) {
+        this.packer = packer;
+        this.chunkedPacker = chunkedPacker;
+        this.gzipPacker = gzipPacker;
+    }
+
+    @Override
+    public PackResult pack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, OutputStream output, TaskOutputOriginWriter writeOrigin) throws IOException {
+        return packer.pack(propertySpecs, outputSnapshots, output, writeOrigin);
+    }
+
+    @Override
+    public UnpackResult unpack(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, InputStream input, TaskOutputOriginReader readOrigin) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input);
+        byte[] header = new byte[ChunkedTaskOutputPacker.MAGIC.length];
+        bufferedInput.mark(header.length);
+        int length = 0;
+        while (length < header.length) {
+            int read = bufferedInput.read(header, length, header.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        bufferedInput.reset();
+        if (ChunkedTaskOutputPacker.isChunked(header, length)) {
+            return chunkedPacker.unpack(propertySpecs, bufferedInput, readOrigin);
+        }
+        return gzipPacker.unpack(propertySpecs, bufferedInput, readOrigin);
+    }
+
+    @Override
+    public void stop() {
+        chunkedPacker.stop();
+    }
+}
@@ -46,9 +46,12 @@ import org.gradle.caching.internal.controller.BuildCacheLoadCommand;
 import org.gradle.caching.internal.controller.BuildCacheStoreCommand;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginFactory;
 import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.time.Timer;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -57,6 +60,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.gradle.api.internal.changedetection.state.TaskFilePropertyCompareStrategy.UNORDERED;
 
@@ -74,18 +78,38 @@ public class TaskOutputCacheCommandFactory {
     private final TaskOutputOriginFactory taskOutputOriginFactory;
     private final FileSystemMirror fileSystemMirror;
     private final StringInterner stringInterner;
+    private final UnpackedTaskOutputCache unpackedCache;
 
     public TaskOutputCacheCommandFactory(TaskOutputPacker packer, TaskOutputOriginFactory taskOutputOriginFactory, FileSystemMirror fileSystemMirror, StringInterner stringInterner) {
+        this(packer, taskOutputOriginFactory, fileSystemMirror, stringInterner, null);
+    }
+
+    public TaskOutputCacheCommandFactory(TaskOutputPacker packer, TaskOutputOriginFactory taskOutputOriginFactory, FileSystemMirror fileSystemMirror, StringInterner stringInterner, @Nullable UnpackedTaskOutputCache unpackedCache) {
         this.packer = packer;
         this.taskOutputOriginFactory = taskOutputOriginFactory;
         this.fileSystemMirror = fileSystemMirror;
         this.stringInterner = stringInterner;
+        this.unpackedCache = unpackedCache;
     }
 
     public BuildCacheLoadCommand<TaskOutputOriginMetadata> createLoad(TaskOutputCachingBuildCacheKey cacheKey, SortedSet<ResolvedTaskOutputFilePropertySpec> outputProperties, TaskInternal task, TaskOutputsGenerationListener taskOutputsGenerationListener, TaskArtifactState taskArtifactState, Timer clock) {
         return new LoadCommand(cacheKey, outputProperties, task, taskOutputsGenerationListener, taskArtifactState, clock);
     }
 
+    /**
+     * Restores the outputs of the task from the unpacked copy of its cache entry, when there is one. This is done before the entry is loaded from the build cache,
+     * so that a hit does not need to load, or download, the packed entry.
+     *
+     * @return the origin of the restored outputs, or {@code null} when there is no usable unpacked entry. The outputs have not been touched in that case.
+     */
+    @Nullable
+    public TaskOutputOriginMetadata loadUnpacked(TaskOutputCachingBuildCacheKey cacheKey, SortedSet<ResolvedTaskOutputFilePropertySpec> outputProperties, TaskInternal task, TaskOutputsGenerationListener taskOutputsGenerationListener, TaskArtifactState taskArtifactState, Timer clock) {
+        if (unpackedCache == null) {
+            return null;
+        }
+        return new LoadCommand(cacheKey, outputProperties, task, taskOutputsGenerationListener, taskArtifactState, clock).loadUnpacked(unpackedCache);
+    }
+
     public BuildCacheStoreCommand createStore(TaskOutputCachingBuildCacheKey cacheKey, SortedSet<ResolvedTaskOutputFilePropertySpec> outputProperties, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, TaskInternal task, Timer clock) {
         return new StoreCommand(cacheKey, outputProperties, outputSnapshots, task, clock);
     }
@@ -121,15 +145,7 @@ public class TaskOutputCacheCommandFactory {
                 unpackResult = packer.unpack(outputProperties, input, taskOutputOriginFactory.createReader(task));
                 updateSnapshots(unpackResult.getSnapshots());
             } catch (Exception e) {
-                LOGGER.warn("Cleaning outputs for {} after failed load from cache.", task);
-                try {
-                    cleanupOutputsAfterUnpackFailure();
-                    taskArtifactState.afterOutputsRemovedBeforeTask();
-                } catch (Exception eCleanup) {
-                    LOGGER.warn("Unrecoverable error during cleaning up after task output unpack failure", eCleanup);
-                    throw new UnrecoverableTaskOutputUnpackingException(String.format("Failed to unpack outputs for %s, and then failed to clean up; see log above for details", task), e);
-                }
-                throw new GradleException(String.format("Failed to unpack outputs for %s", task), e);
+                throw failedToUnpack(e);
             } finally {
                 cleanLocalState();
             }
@@ -148,6 +164,50 @@ public class TaskOutputCacheCommandFactory {
             };
         }
 
+        @Nullable
+        private TaskOutputOriginMetadata loadUnpacked(UnpackedTaskOutputCache unpackedCache) {
+            final AtomicBoolean restoring = new AtomicBoolean();
+            TaskOutputOriginReader readOrigin = taskOutputOriginFactory.createReader(task);
+            try {
+                TaskOutputPacker.UnpackResult unpackResult = unpackedCache.restore(cacheKey, outputProperties, readOrigin, new Runnable() {
+                    @Override
+                    public void run() {
+                        taskOutputsGenerationListener.beforeTaskOutputsGenerated();
+                        restoring.set(true);
+                    }
+                });
+                if (unpackResult == null) {
+                    return null;
+                }
+                updateSnapshots(unpackResult.getSnapshots());
+                LOGGER.info("Restored output for {} from unpacked cache entry (took {}).", task, clock.getElapsed());
+                return unpackResult.getOriginMetadata();
+            } catch (Exception e) {
+                if (!restoring.get()) {
+                    // The outputs have not been touched, so the entry can still be loaded from the build cache
+                    LOGGER.warn("Could not restore outputs for {} from unpacked cache entry.", task, e);
+                    return null;
+                }
+                throw failedToUnpack(e);
+            } finally {
+                if (restoring.get()) {
+                    cleanLocalState();
+                }
+            }
+        }
+
+        private RuntimeException failedToUnpack(Exception e) {
+            LOGGER.warn("Cleaning outputs for {} after failed load from cache.", task);
+            try {
+                cleanupOutputsAfterUnpackFailure();
+                taskArtifactState.afterOutputsRemovedBeforeTask();
+            } catch (Exception eCleanup) {
+                LOGGER.warn("Unrecoverable error during cleaning up after task output unpack failure", eCleanup);
+                throw new UnrecoverableTaskOutputUnpackingException(String.format("Failed to unpack outputs for %s, and then failed to clean up; see log above for details", task), e);
+            }
+            return new GradleException(String.format("Failed to unpack outputs for %s", task), e);
+        }
+
         private void updateSnapshots(ImmutableListMultimap<String, FileSnapshot> propertiesFileSnapshots) {
             ImmutableSortedMap.Builder<String, FileCollectionSnapshot> propertySnapshotsBuilder = ImmutableSortedMap.naturalOrder();
             for (ResolvedTaskOutputFilePropertySpec property : outputProperties) {
@@ -248,7 +308,15 @@ public class TaskOutputCacheCommandFactory {
         @Override
         public BuildCacheStoreCommand.Result store(OutputStream output) throws IOException {
             LOGGER.info("Packing {}", task);
-            final TaskOutputPacker.PackResult packResult = packer.pack(outputProperties, outputSnapshots, output, taskOutputOriginFactory.createWriter(task, clock.getElapsedMillis()));
+            TaskOutputOriginWriter writeOrigin = taskOutputOriginFactory.createWriter(task, clock.getElapsedMillis());
+            final TaskOutputPacker.PackResult packResult = packer.pack(outputProperties, outputSnapshots, output, writeOrigin);
+            if (unpackedCache != null) {
+                try {
+                    unpackedCache.store(cacheKey, outputProperties, outputSnapshots, writeOrigin);
+                } catch (Exception e) {
+                    LOGGER.warn("Failed to store unpacked cache entry for {}", task, e);
+                }
+            }
             return new BuildCacheStoreCommand.Result() {
                 @Override
                 public long getArtifactEntryCount() {
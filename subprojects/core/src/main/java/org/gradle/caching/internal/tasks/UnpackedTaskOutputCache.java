@@ -0,0 +1,532 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.collect.ImmutableListMultimap;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.cache.StringInterner;
+import org.gradle.api.internal.changedetection.state.DirectoryFileSnapshot;
+import org.gradle.api.internal.changedetection.state.FileContentSnapshot;
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot;
+import org.gradle.api.internal.changedetection.state.FileSnapshot;
+import org.gradle.api.internal.changedetection.state.RegularFileSnapshot;
+import org.gradle.api.internal.tasks.OutputType;
+import org.gradle.api.internal.tasks.ResolvedTaskOutputFilePropertySpec;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.PersistentCache;
+import org.gradle.caching.BuildCacheKey;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginMetadata;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginReader;
+import org.gradle.caching.internal.tasks.origin.TaskOutputOriginWriter;
+import org.gradle.internal.Factory;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.file.FileType;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.StreamHasher;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.ensureDirectoryForProperty;
+import static org.gradle.caching.internal.tasks.TaskOutputPackerUtils.makeDirectory;
+
+/**
+ * Keeps the outputs of cached tasks unpacked on the local disk, in a directory next to the directory of the local build cache.
+ * Task outputs are restored from here before the entry is loaded from the build cache, see {@link TaskOutputCacheCommandFactory#loadUnpacked}.
+ *
+ * <p>Restoring an entry copies the stored files into place. Each entry has a manifest with the hash, length and modification time of its files,
+ * so that restoring does not need to hash the files. An entry whose files no longer match their length and modification time is discarded on the next restore.</p>
+ *
+ * <p>When hard links are enabled, the stored files are hard linked into place instead, and copied when the file store of the outputs does not support hard links,
+ * for example when the entry and the outputs are on different volumes. A task that modifies a hard linked output in place also modifies the stored file,
+ * possibly without changing its length or modification time. So a stored file that is still linked to from elsewhere is hashed and compared with the manifest before it is restored.
+ * Stored files whose outputs have been removed since, which is the usual case when restoring, are not hashed.</p>
+ *
+ * <p>Entries are written to a temporary directory first and moved into place, so that concurrent builds only ever see complete entries.
+ * All access holds the file lock of the cache, so that another process does not remove an entry while it is used.
+ * The size of the entries is kept under the target size of the local build cache by {@link UnpackedTaskOutputCacheCleanup}.</p>
+ */
+@SuppressWarnings("Since15")
+public class UnpackedTaskOutputCache implements Stoppable {
+    private static final Logger LOGGER = Logging.getLogger(UnpackedTaskOutputCache.class);
+
+    private static final int MANIFEST_VERSION = 1;
+    private static final String MANIFEST = "manifest.bin";
+    private static final String ORIGIN = "origin.bin";
+    private static final String FILES = "files";
+    static final String TEMP_DIR_PREFIX = "tmp-";
+
+    private static final byte MISSING = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte DIRECTORY = 2;
+
+    private final PersistentCache persistentCache;
+    private final File baseDir;
+    private final StreamHasher hasher;
+    private final StringInterner stringInterner;
+    private final boolean useHardLinks;
+    private final Set<FileStore> fileStoresWithoutHardLinks = Collections.newSetFromMap(new ConcurrentHashMap<FileStore, Boolean>());
+
+    public UnpackedTaskOutputCache(PersistentCache persistentCache, StreamHasher hasher, StringInterner stringInterner, boolean useHardLinks) {
+        this.persistentCache = persistentCache;
+        this.baseDir = persistentCache.getBaseDir();
+        this.hasher = hasher;
+        this.stringInterner = stringInterner;
+        this.useHardLinks = useHardLinks;
+    }
+
+    /**
+     * Restores the outputs of the entry with the given key, if present and intact.
+     *
+     * @param beforeRestore called once the entry has been found to be usable, before the outputs are touched.
+     * @return the result, or {@code null} when there is no usable entry. The outputs have not been touched in that case.
+     * @throws IOException when restoring the outputs failed part way through.
+     */
+    @Nullable
+    public TaskOutputPacker.UnpackResult restore(final BuildCacheKey key, final SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, final TaskOutputOriginReader readOrigin, final Runnable beforeRestore) throws IOException {
+        return withFileLock(new IOFactory<TaskOutputPacker.UnpackResult>() {
+            @Override
+            public TaskOutputPacker.UnpackResult create() throws IOException {
+                return restoreInsideLock(key, propertySpecs, readOrigin, beforeRestore);
+            }
+        });
+    }
+
+    @Nullable
+    private TaskOutputPacker.UnpackResult restoreInsideLock(BuildCacheKey key, SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, TaskOutputOriginReader readOrigin, Runnable beforeRestore) throws IOException {
+        File entryDir = new File(baseDir, key.getHashCode());
+        if (!entryDir.isDirectory()) {
+            return null;
+        }
+        Manifest manifest;
+        try {
+            manifest = readManifest(entryDir);
+        } catch (IOException e) {
+            LOGGER.debug("Could not read unpacked cache entry {}, discarding it.", entryDir, e);
+            discard(entryDir);
+            return null;
+        }
+        if (!manifest.matches(propertySpecs) || !manifest.isIntact(entryDir, useHardLinks ? hasher : null)) {
+            LOGGER.info("Unpacked cache entry {} does not match the outputs it was stored for, discarding it.", entryDir);
+            discard(entryDir);
+            return null;
+        }
+
+        // Mark as recently used
+        //noinspection ResultOfMethodCallIgnored
+        entryDir.setLastModified(System.currentTimeMillis());
+
+        TaskOutputOriginMetadata originMetadata;
+        InputStream originInput = new BufferedInputStream(new FileInputStream(new File(entryDir, ORIGIN)));
+        try {
+            originMetadata = readOrigin.execute(originInput);
+        } finally {
+            IOUtils.closeQuietly(originInput);
+        }
+
+        beforeRestore.run();
+        ImmutableListMultimap.Builder<String, FileSnapshot> snapshots = ImmutableListMultimap.builder();
+        long entries = 1;
+        int index = 0;
+        for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
+            PropertyManifest property = manifest.properties.get(index);
+            File storedRoot = new File(new File(entryDir, FILES), String.valueOf(index));
+            index++;
+            entries += restoreProperty(propertySpec, property, storedRoot, snapshots);
+        }
+        return new TaskOutputPacker.UnpackResult(originMetadata, entries, snapshots.build());
+    }
+
+    private long restoreProperty(ResolvedTaskOutputFilePropertySpec propertySpec, PropertyManifest property, File storedRoot, ImmutableListMultimap.Builder<String, FileSnapshot> snapshots) throws IOException {
+        File root = propertySpec.getOutputFile();
+        if (root == null) {
+            return 0;
+        }
+        String propertyName = propertySpec.getPropertyName();
+        if (property.type == MISSING) {
+            if (!makeDirectory(root.getParentFile())) {
+                if (root.exists()) {
+                    FileUtils.forceDelete(root);
+                }
+            }
+            return 1;
+        }
+        ensureDirectoryForProperty(propertySpec.getOutputType(), root);
+        FileStore targetStore = hardLinkTargetStore(property.type == REGULAR_FILE ? root.getParentFile() : root);
+        if (property.type == REGULAR_FILE) {
+            FileManifest file = property.files.get(0);
+            link(storedRoot, root, targetStore);
+            snapshots.put(propertyName, new RegularFileSnapshot(internedPath(root), RelativePath.parse(true, root.getName()), true, new FileHashSnapshot(file.hash, file.lastModified)));
+            return 1;
+        }
+
+        snapshots.put(propertyName, new DirectoryFileSnapshot(internedPath(root), RelativePath.parse(false, root.getName()), true));
+        for (FileManifest file : property.files) {
+            File target = new File(root, file.path);
+            if (file.hash == null) {
+                FileUtils.forceMkdir(target);
+                snapshots.put(propertyName, new DirectoryFileSnapshot(internedPath(target), RelativePath.parse(false, file.path), false));
+            } else {
+                link(new File(storedRoot, file.path), target, targetStore);
+                snapshots.put(propertyName, new RegularFileSnapshot(internedPath(target), RelativePath.parse(true, file.path), false, new FileHashSnapshot(file.hash, file.lastModified)));
+            }
+        }
+        return 1 + property.files.size();
+    }
+
+    /**
+     * Returns the file store to hard link the outputs in the given directory to, or {@code null} when the outputs should be copied.
+     */
+    @Nullable
+    private FileStore hardLinkTargetStore(File dir) {
+        if (!useHardLinks) {
+            return null;
+        }
+        try {
+            FileStore fileStore = Files.getFileStore(dir.toPath());
+            return fileStoresWithoutHardLinks.contains(fileStore) ? null : fileStore;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void link(File source, File target, @Nullable FileStore targetStore) throws IOException {
+        if (targetStore != null && !fileStoresWithoutHardLinks.contains(targetStore)) {
+            try {
+                Files.createLink(target.toPath(), source.toPath());
+                return;
+            } catch (IOException e) {
+                LOGGER.debug("Could not hard link {} to {}, copying files to {} from now on.", source, target, targetStore, e);
+                fileStoresWithoutHardLinks.add(targetStore);
+            } catch (UnsupportedOperationException e) {
+                LOGGER.debug("Hard links are not supported by {}, copying files from now on.", targetStore, e);
+                fileStoresWithoutHardLinks.add(targetStore);
+            }
+        }
+        Files.copy(source.toPath(), target.toPath(), StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Stores a copy of the given outputs under the given key, unless an entry already exists.
+     */
+    public void store(final BuildCacheKey key, final SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, final Map<String, Map<String, FileContentSnapshot>> outputSnapshots, final TaskOutputOriginWriter writeOrigin) throws IOException {
+        withFileLock(new IOFactory<Void>() {
+            @Override
+            public Void create() throws IOException {
+                storeInsideLock(key, propertySpecs, outputSnapshots, writeOrigin);
+                return null;
+            }
+        });
+    }
+
+    private void storeInsideLock(BuildCacheKey key, SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs, Map<String, Map<String, FileContentSnapshot>> outputSnapshots, TaskOutputOriginWriter writeOrigin) throws IOException {
+        File entryDir = new File(baseDir, key.getHashCode());
+        if (entryDir.isDirectory()) {
+            return;
+        }
+        File tempDir = new File(baseDir, TEMP_DIR_PREFIX + UUID.randomUUID());
+        try {
+            FileUtils.forceMkdir(new File(tempDir, FILES));
+            OutputStream originOutput = new BufferedOutputStream(new FileOutputStream(new File(tempDir, ORIGIN)));
+            try {
+                writeOrigin.execute(originOutput);
+            } finally {
+                originOutput.close();
+            }
+
+            Manifest manifest = new Manifest();
+            int index = 0;
+            for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
+                File storedRoot = new File(new File(tempDir, FILES), String.valueOf(index));
+                index++;
+                manifest.properties.add(storeProperty(propertySpec, outputSnapshots.get(propertySpec.getPropertyName()), storedRoot));
+            }
+            writeManifest(tempDir, manifest);
+
+            if (!tempDir.renameTo(entryDir)) {
+                // Another build stored the same entry concurrently
+                LOGGER.debug("Could not move unpacked cache entry to {}, discarding it.", entryDir);
+            }
+        } finally {
+            if (tempDir.exists()) {
+                FileUtils.deleteQuietly(tempDir);
+            }
+        }
+    }
+
+    private PropertyManifest storeProperty(ResolvedTaskOutputFilePropertySpec propertySpec, @Nullable Map<String, FileContentSnapshot> outputSnapshots, File storedRoot) throws IOException {
+        PropertyManifest property = new PropertyManifest(propertySpec.getPropertyName());
+        File root = propertySpec.getOutputFile();
+        if (root == null || outputSnapshots == null || outputSnapshots.isEmpty()) {
+            property.type = MISSING;
+            return property;
+        }
+        if (propertySpec.getOutputType() == OutputType.FILE) {
+            property.type = REGULAR_FILE;
+            FileContentSnapshot snapshot = outputSnapshots.get(root.getAbsolutePath());
+            property.files.add(copy(root, storedRoot, "", snapshot));
+            return property;
+        }
+
+        property.type = DIRECTORY;
+        FileUtils.forceMkdir(storedRoot);
+        String rootPath = root.getAbsolutePath();
+        for (Map.Entry<String, FileContentSnapshot> entry : outputSnapshots.entrySet()) {
+            String absolutePath = entry.getKey();
+            if (absolutePath.equals(rootPath)) {
+                continue;
+            }
+            String relativePath = absolutePath.substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+            File stored = new File(storedRoot, relativePath);
+            if (entry.getValue().getType() == FileType.Directory) {
+                FileUtils.forceMkdir(stored);
+                property.files.add(new FileManifest(relativePath, null, 0, 0));
+            } else if (entry.getValue().getType() == FileType.RegularFile) {
+                property.files.add(copy(new File(absolutePath), stored, relativePath, entry.getValue()));
+            } else {
+                throw new IllegalStateException("File should not be missing: " + absolutePath);
+            }
+        }
+        return property;
+    }
+
+    private static FileManifest copy(File source, File stored, String relativePath, @Nullable FileContentSnapshot snapshot) throws IOException {
+        if (snapshot == null || snapshot.getType() != FileType.RegularFile) {
+            throw new IllegalStateException(String.format("Expected '%s' to be a file", source));
+        }
+        FileUtils.forceMkdir(stored.getParentFile());
+        Files.copy(source.toPath(), stored.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+        return new FileManifest(relativePath, snapshot.getContentMd5(), stored.length(), stored.lastModified());
+    }
+
+    private String internedPath(File file) {
+        return stringInterner.intern(file.getAbsolutePath());
+    }
+
+    private static void discard(File entryDir) {
+        FileUtils.deleteQuietly(entryDir);
+    }
+
+    /**
+     * Closes the cache, which removes the least recently used entries when the cache is due to be cleaned up.
+     */
+    @Override
+    public void stop() {
+        persistentCache.close();
+    }
+
+    private <T> T withFileLock(final IOFactory<T> action) throws IOException {
+        try {
+            return persistentCache.withFileLock(new Factory<T>() {
+                @Override
+                public T create() {
+                    try {
+                        return action.create();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private interface IOFactory<T> {
+        T create() throws IOException;
+    }
+
+    private static Manifest readManifest(File entryDir) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(entryDir, MANIFEST))));
+        try {
+            if (input.readInt() != MANIFEST_VERSION) {
+                throw new IOException("Unsupported manifest version.");
+            }
+            Manifest manifest = new Manifest();
+            int propertyCount = input.readInt();
+            for (int i = 0; i < propertyCount; i++) {
+                PropertyManifest property = new PropertyManifest(input.readUTF());
+                property.type = input.readByte();
+                int fileCount = input.readInt();
+                for (int j = 0; j < fileCount; j++) {
+                    String path = input.readUTF();
+                    boolean regularFile = input.readBoolean();
+                    if (regularFile) {
+                        byte[] hash = new byte[input.readInt()];
+                        input.readFully(hash);
+                        property.files.add(new FileManifest(path, HashCode.fromBytes(hash), input.readLong(), input.readLong()));
+                    } else {
+                        property.files.add(new FileManifest(path, null, 0, 0));
+                    }
+                }
+                manifest.properties.add(property);
+            }
+            return manifest;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    private static void writeManifest(File entryDir, Manifest manifest) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(entryDir, MANIFEST))));
+        try {
+            output.writeInt(MANIFEST_VERSION);
+            output.writeInt(manifest.properties.size());
+            for (PropertyManifest property : manifest.properties) {
+                output.writeUTF(property.name);
+                output.writeByte(property.type);
+                output.writeInt(property.files.size());
+                for (FileManifest file : property.files) {
+                    output.writeUTF(file.path);
+                    output.writeBoolean(file.hash != null);
+                    if (file.hash != null) {
+                        byte[] hash = file.hash.toByteArray();
+                        output.writeInt(hash.length);
+                        output.write(hash);
+                        output.writeLong(file.length);
+                        output.writeLong(file.lastModified);
+                    }
+                }
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static class Manifest {
+        private final List<PropertyManifest> properties = new ArrayList<PropertyManifest>();
+
+        boolean matches(SortedSet<ResolvedTaskOutputFilePropertySpec> propertySpecs) {
+            if (propertySpecs.size() != properties.size()) {
+                return false;
+            }
+            int index = 0;
+            for (ResolvedTaskOutputFilePropertySpec propertySpec : propertySpecs) {
+                PropertyManifest property = properties.get(index++);
+                if (!property.name.equals(propertySpec.getPropertyName())) {
+                    return false;
+                }
+                if (property.type == REGULAR_FILE && propertySpec.getOutputType() != OutputType.FILE
+                    || property.type == DIRECTORY && propertySpec.getOutputType() != OutputType.DIRECTORY) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks the stored files against the manifest. When a hasher is given, the content of the stored files that are also linked to from elsewhere is hashed as well.
+         */
+        boolean isIntact(File entryDir, @Nullable StreamHasher hasher) {
+            File filesDir = new File(entryDir, FILES);
+            for (int index = 0; index < properties.size(); index++) {
+                PropertyManifest property = properties.get(index);
+                File storedRoot = new File(filesDir, String.valueOf(index));
+                for (FileManifest file : property.files) {
+                    File stored = file.path.isEmpty() ? storedRoot : new File(storedRoot, file.path);
+                    if (file.hash == null ? !stored.isDirectory() : stored.length() != file.length || stored.lastModified() != file.lastModified) {
+                        return false;
+                    }
+                    if (file.hash != null && hasher != null && isLinkedElsewhere(stored) && !file.hash.equals(hash(hasher, stored))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns whether there are other hard links to the given file, which may have been used to modify it. Assumes there are when this is not known.
+         */
+        private static boolean isLinkedElsewhere(File file) {
+            try {
+                Object linkCount = Files.getAttribute(file.toPath(), "unix:nlink");
+                return !(linkCount instanceof Integer) || (Integer) linkCount > 1;
+            } catch (UnsupportedOperationException e) {
+                return true;
+            } catch (IllegalArgumentException e) {
+                return true;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        @Nullable
+        private static HashCode hash(StreamHasher hasher, File file) {
+            InputStream input = null;
+            try {
+                input = new FileInputStream(file);
+                return hasher.hash(input);
+            } catch (IOException e) {
+                return null;
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+    }
+
+    private static class PropertyManifest {
+        private final String name;
+        private byte type;
+        private final List<FileManifest> files = new ArrayList<FileManifest>();
+
+        PropertyManifest(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class FileManifest {
+        private final String path;
+        private final HashCode hash;
+        private final long length;
+        private final long lastModified;
+
+        FileManifest(String path, @Nullable HashCode hash, long length, long lastModified) {
+            this.path = path;
+            this.hash = hash;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.tasks;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Ordering;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.Action;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.cache.PersistentCache;
+import org.gradle.internal.Factory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes the least recently used entries of the {@link UnpackedTaskOutputCache} until the entries fit into the target size of the local build cache.
+ * The last modified time of the directory of an entry records when the entry was last used.
+ */
+class UnpackedTaskOutputCacheCleanup implements Action<PersistentCache> {
+    private static final Logger LOGGER = Logging.getLogger(UnpackedTaskOutputCacheCleanup.class);
+    private static final long MAX_TEMP_DIR_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final FileFilter DIRECTORIES = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isDirectory();
+        }
+    };
+    private static final Comparator<File> NEWEST_FIRST = Ordering.natural().onResultOf(new Function<File, Comparable<Long>>() {
+        @Override
+        public Comparable<Long> apply(File input) {
+            return input.lastModified();
+        }
+    }).reverse();
+
+    private final long targetSizeInMB;
+
+    UnpackedTaskOutputCacheCleanup(long targetSizeInMB) {
+        this.targetSizeInMB = targetSizeInMB;
+    }
+
+    @Override
+    public void execute(final PersistentCache cache) {
+        // Holds the file lock, so that no other process uses an entry while it is removed
+        cache.withFileLock(new Factory<Void>() {
+            @Override
+            public Void create() {
+                cleanup(cache);
+                return null;
+            }
+        });
+    }
+
+    private void cleanup(PersistentCache cache) {
+        long now = System.currentTimeMillis();
+        File[] entryDirs = listDirectories(cache.getBaseDir());
+        Arrays.sort(entryDirs, NEWEST_FIRST);
+
+        // All sizes are in bytes
+        long targetSize = targetSizeInMB * 1024 * 1024;
+        long totalSize = 0;
+        long removedSize = 0;
+        int removed = 0;
+        for (File entryDir : entryDirs) {
+            if (entryDir.getName().startsWith(UnpackedTaskOutputCache.TEMP_DIR_PREFIX)) {
+                // Left behind by builds that did not complete
+                if (now - entryDir.lastModified() > MAX_TEMP_DIR_AGE_MILLIS) {
+                    FileUtils.deleteQuietly(entryDir);
+                }
+                continue;
+            }
+            long size = FileUtils.sizeOfDirectory(entryDir);
+            totalSize += size;
+            if (totalSize > targetSize && FileUtils.deleteQuietly(entryDir)) {
+                removedSize += size;
+                removed++;
+            }
+        }
+        LOGGER.info("{} consuming {} (target: {} MB), removed {} entries ({} reclaimed).", cache, FileUtils.byteCountToDisplaySize(totalSize), targetSizeInMB, removed, FileUtils.byteCountToDisplaySize(removedSize));
+    }
+
+    private static File[] listDirectories(File dir) {
+        File[] files = dir.listFiles(DIRECTORIES);
+        return files == null ? new File[0] : files;
+    }
+}
@@ -19,6 +19,7 @@ import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionGraph;
 import org.gradle.api.specs.Spec;
 
+import java.util.List;
 import java.util.Set;
 
 public interface TaskGraphExecuter extends TaskExecutionGraph {
@@ -59,4 +60,9 @@ public interface TaskGraphExecuter extends TaskExecutionGraph {
      * Set of requested tasks.
      */
     Set<Task> getFilteredTasks();
+
+    /**
+     * Returns up to the given number of tasks that are ready to execute but have not started yet, in the order they will be started in.
+     */
+    List<Task> getReadyTasks(int maxTasks);
 }
@@ -66,13 +66,13 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -88,11 +88,21 @@ import static org.gradle.internal.resources.ResourceLockState.Disposition.*;
  * methods.
  */
 public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
+    public static final String CRITICAL_PATH_SCHEDULING_PROPERTY = "org.gradle.internal.tasks.criticalpath";
     private final Set<TaskInfo> tasksInUnknownState = new LinkedHashSet<TaskInfo>();
     private final Set<TaskInfo> entryTasks = new LinkedHashSet<TaskInfo>();
     private final TaskInfoFactory nodeFactory = new TaskInfoFactory();
     private final LinkedHashMap<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
-    private final List<TaskInfo> executionQueue = new LinkedList<TaskInfo>();
+    private final Set<TaskInfo> executionQueue = new LinkedHashSet<TaskInfo>();
+    private final Map<TaskInfo, Integer> queuePositions = Maps.newHashMap();
+    private final HashMultimap<TaskInfo, TaskInfo> mustPredecessors = HashMultimap.create();
+    // Tasks that may be ready to execute, in execution queue order. A task that is not ready is added back when one of its dependencies completes or when it is enforced.
+    private final TreeSet<TaskInfo> readyQueue = new TreeSet<TaskInfo>(new Comparator<TaskInfo>() {
+        @Override
+        public int compare(TaskInfo left, TaskInfo right) {
+            return queuePositions.get(left).compareTo(queuePositions.get(right));
+        }
+    });
     private final Map<Project, ResourceLock> projectLocks = Maps.newHashMap();
     private final List<Throwable> failures = new ArrayList<Throwable>();
     private Spec<? super Task> filter = Specs.satisfyAll();
@@ -109,14 +119,23 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     private final ResourceLockCoordinationService coordinationService;
     private final WorkerLeaseService workerLeaseService;
     private final GradleInternal gradle;
+    private final TaskDurationHistory taskDurationHistory;
 
     private boolean tasksCancelled;
 
     public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle) {
+        this(cancellationToken, coordinationService, workerLeaseService, gradle, null);
+    }
+
+    /**
+     * @param taskDurationHistory When not null, tasks on the longest remaining path through the graph are preferred when selecting the next task to execute.
+     */
+    public DefaultTaskExecutionPlan(BuildCancellationToken cancellationToken, ResourceLockCoordinationService coordinationService, WorkerLeaseService workerLeaseService, GradleInternal gradle, @Nullable TaskDurationHistory taskDurationHistory) {
         this.cancellationToken = cancellationToken;
         this.coordinationService = coordinationService;
         this.workerLeaseService = workerLeaseService;
         this.gradle = gradle;
+        this.taskDurationHistory = taskDurationHistory;
     }
 
     @Override
@@ -354,7 +373,89 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         }
         executionQueue.clear();
         executionQueue.addAll(executionPlan.values());
+        if (taskDurationHistory != null) {
+            prioritizeCriticalPath();
+        }
+        initializeReadyQueue();
+    }
+
+    private void initializeReadyQueue() {
+        queuePositions.clear();
+        mustPredecessors.clear();
+        readyQueue.clear();
+        int position = 0;
+        for (TaskInfo taskInfo : executionQueue) {
+            queuePositions.put(taskInfo, position++);
+            for (TaskInfo mustSuccessor : taskInfo.getMustSuccessors()) {
+                mustPredecessors.put(mustSuccessor, taskInfo);
+            }
+        }
+        readyQueue.addAll(executionQueue);
+    }
+
+    /**
+     * Re-checks the tasks that wait for the given task, once it is complete.
+     */
+    private void dependenciesMayBeComplete(TaskInfo taskInfo) {
+        addToReadyQueue(taskInfo.getDependencyPredecessors());
+        addToReadyQueue(mustPredecessors.get(taskInfo));
+    }
 
+    private void addToReadyQueue(Iterable<TaskInfo> tasks) {
+        for (TaskInfo task : tasks) {
+            if (executionQueue.contains(task)) {
+                readyQueue.add(task);
+            }
+        }
+    }
+
+    /**
+     * Orders the execution queue by the expected duration of the longest path from each task to the end of the build, so that the first ready task in the queue
+     * is the one that delays the end of the build the most. Tasks without history are assumed to take as long as the average known task.
+     *
+     * The sort is stable and a task always has a longer remaining path than the tasks that must or should run after it, unless both are expected to take no time.
+     * So tasks with equal priority stay in plan order.
+     */
+    private void prioritizeCriticalPath() {
+        List<TaskInfo> plan = new ArrayList<TaskInfo>(executionQueue);
+        Map<TaskInfo, Long> durations = new HashMap<TaskInfo, Long>(plan.size());
+        long knownDurationTotal = 0;
+        int knownDurationCount = 0;
+        for (TaskInfo taskInfo : plan) {
+            long duration = taskDurationHistory.getDuration(taskInfo.getTask());
+            if (duration != TaskDurationHistory.UNKNOWN) {
+                durations.put(taskInfo, duration);
+                knownDurationTotal += duration;
+                knownDurationCount++;
+            }
+        }
+        long defaultDuration = knownDurationCount == 0 ? 0 : knownDurationTotal / knownDurationCount;
+
+        // Successors come before the tasks that run after them in the plan, so walk the plan backwards
+        final Map<TaskInfo, Long> remainingPath = new HashMap<TaskInfo, Long>(plan.size());
+        Map<TaskInfo, Long> longestFollowingPath = new HashMap<TaskInfo, Long>();
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            TaskInfo taskInfo = plan.get(i);
+            Long duration = durations.get(taskInfo);
+            Long followingPath = longestFollowingPath.remove(taskInfo);
+            long path = (duration == null ? defaultDuration : duration) + (followingPath == null ? 0 : followingPath);
+            remainingPath.put(taskInfo, path);
+            for (TaskInfo successor : Iterables.concat(taskInfo.getDependencySuccessors(), taskInfo.getMustSuccessors(), taskInfo.getShouldSuccessors())) {
+                Long current = longestFollowingPath.get(successor);
+                if (current == null || current < path) {
+                    longestFollowingPath.put(successor, path);
+                }
+            }
+        }
+
+        Collections.sort(plan, new Comparator<TaskInfo>() {
+            @Override
+            public int compare(TaskInfo left, TaskInfo right) {
+                return remainingPath.get(right).compareTo(remainingPath.get(left));
+            }
+        });
+        executionQueue.clear();
+        executionQueue.addAll(plan);
     }
 
     private TaskMutationInfo getOrCreateMutationsOf(TaskInfo taskInfo) {
@@ -508,6 +609,9 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
                 entryTasks.clear();
                 executionPlan.clear();
                 executionQueue.clear();
+                queuePositions.clear();
+                mustPredecessors.clear();
+                readyQueue.clear();
                 projectLocks.clear();
                 failures.clear();
                 taskMutations.clear();
@@ -580,36 +684,63 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
         return workRemaining.get();
     }
 
+    /**
+     * Returns up to the given number of tasks that can start as soon as a worker and their project are available, in the order they are selected in.
+     */
+    public List<Task> getReadyTasks(final int maxTasks) {
+        final List<Task> readyTasks = new ArrayList<Task>();
+        coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+            @Override
+            public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                for (TaskInfo taskInfo : readyQueue) {
+                    if (readyTasks.size() >= maxTasks) {
+                        break;
+                    }
+                    if (taskInfo.isReady() && allDependenciesComplete(taskInfo) && taskInfo.allDependenciesSuccessful()) {
+                        readyTasks.add(taskInfo.getTask());
+                    }
+                }
+                return FINISHED;
+            }
+        });
+        return readyTasks;
+    }
+
     private TaskInfo selectNextTask(final WorkerLease workerLease) {
         final AtomicReference<TaskInfo> selected = new AtomicReference<TaskInfo>();
-        final Iterator<TaskInfo> iterator = executionQueue.iterator();
+        final Iterator<TaskInfo> iterator = readyQueue.iterator();
         while (iterator.hasNext()) {
             final TaskInfo taskInfo = iterator.next();
-            if (taskInfo.isReady() && allDependenciesComplete(taskInfo)) {
-                coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
-                    @Override
-                    public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
-                        ResourceLock projectLock = getProjectLock(taskInfo);
-                        // TODO: convert output file checks to a resource lock
-                        if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
-                            return FAILED;
-                        }
-
-                        selected.set(taskInfo);
-                        if (taskInfo.allDependenciesSuccessful()) {
-                            recordTaskStarted(taskInfo);
-                            taskInfo.startExecution();
-                        } else {
-                            taskInfo.skipExecution();
-                        }
-                        iterator.remove();
-                        return FINISHED;
+            if (!taskInfo.isReady() || !allDependenciesComplete(taskInfo)) {
+                // Checked again when its dependencies complete or when it is enforced
+                iterator.remove();
+                continue;
+            }
+            coordinationService.withStateLock(new Transformer<ResourceLockState.Disposition, ResourceLockState>() {
+                @Override
+                public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+                    ResourceLock projectLock = getProjectLock(taskInfo);
+                    // TODO: convert output file checks to a resource lock
+                    if (!projectLock.tryLock() || !workerLease.tryLock() || !canRunWithCurrentlyExecutedTasks(taskInfo)) {
+                        return FAILED;
                     }
-                });
 
-                if (selected.get() != null) {
-                    break;
+                    selected.set(taskInfo);
+                    iterator.remove();
+                    executionQueue.remove(taskInfo);
+                    if (taskInfo.allDependenciesSuccessful()) {
+                        recordTaskStarted(taskInfo);
+                        taskInfo.startExecution();
+                    } else {
+                        taskInfo.skipExecution();
+                        dependenciesMayBeComplete(taskInfo);
+                    }
+                    return FINISHED;
                 }
+            });
+
+            if (selected.get() != null) {
+                break;
             }
         }
         return selected.get();
@@ -858,6 +989,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 taskInfo.finishExecution();
                 recordTaskCompleted(taskInfo);
+                dependenciesMayBeComplete(taskInfo);
                 return FINISHED;
             }
         });
@@ -884,6 +1016,7 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
 
                 if (node.isMustNotRun() || node.isRequired()) {
                     node.enforceRun();
+                    addToReadyQueue(Collections.singleton(node));
                 }
             }
         }
@@ -924,12 +1057,14 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
             // Allow currently executing and enforced tasks to complete, but skip everything else.
             if (taskInfo.isRequired()) {
                 taskInfo.skipExecution();
+                dependenciesMayBeComplete(taskInfo);
                 aborted = true;
             }
 
             // If abortAll is set, also stop enforced tasks.
             if (abortAll && taskInfo.isReady()) {
                 taskInfo.abortExecution();
+                dependenciesMayBeComplete(taskInfo);
                 aborted = true;
             }
         }
@@ -975,10 +1110,16 @@ public class DefaultTaskExecutionPlan implements TaskExecutionPlan {
     }
 
     private boolean workRemaining() {
-        for (TaskInfo taskInfo : executionQueue) {
+        Iterator<TaskInfo> iterator = executionQueue.iterator();
+        while (iterator.hasNext()) {
+            TaskInfo taskInfo = iterator.next();
             if (!taskInfo.isComplete()) {
                 return true;
             }
+            if (!taskInfo.isMustNotRun()) {
+                // Skipped tasks never run, so stop checking them. Tasks that must not run can still be enforced.
+                iterator.remove();
+            }
         }
         return false;
     }
@@ -30,6 +30,7 @@ import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.tasks.TaskExecuter;
 import org.gradle.api.internal.tasks.TaskExecutionContext;
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
 import org.gradle.api.internal.tasks.TaskStateInternal;
 import org.gradle.api.internal.tasks.execution.DefaultTaskExecutionContext;
 import org.gradle.api.specs.Spec;
@@ -55,6 +56,7 @@ import org.gradle.listener.ClosureBackedMethodInvocationDispatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -73,18 +75,24 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final ListenerBroadcast<TaskExecutionListener> taskListeners;
     private final DefaultTaskExecutionPlan taskExecutionPlan;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final TaskDurationHistory taskDurationHistory;
     private TaskGraphState taskGraphState = TaskGraphState.EMPTY;
 
     private final Set<Task> requestedTasks = Sets.newTreeSet();
     private Spec<? super Task> filter = Specs.SATISFIES_ALL;
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, GradleInternal gradleInternal) {
+        this(listenerManager, taskPlanExecutor, taskExecuter, cancellationToken, buildOperationExecutor, workerLeaseService, coordinationService, gradleInternal, null);
+    }
+
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecutor taskPlanExecutor, Factory<? extends TaskExecuter> taskExecuter, BuildCancellationToken cancellationToken, BuildOperationExecutor buildOperationExecutor, WorkerLeaseService workerLeaseService, ResourceLockCoordinationService coordinationService, GradleInternal gradleInternal, @Nullable TaskDurationHistory taskDurationHistory) {
         this.taskPlanExecutor = taskPlanExecutor;
         this.taskExecuter = taskExecuter;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.taskDurationHistory = taskDurationHistory;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
-        taskExecutionPlan = new DefaultTaskExecutionPlan(cancellationToken, coordinationService, workerLeaseService, gradleInternal);
+        taskExecutionPlan = new DefaultTaskExecutionPlan(cancellationToken, coordinationService, workerLeaseService, gradleInternal, taskDurationHistory);
     }
 
     public void useFailureHandler(TaskFailureHandler handler) {
@@ -245,7 +253,11 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
 
                     TaskStateInternal state = task.getState();
                     TaskExecutionContext ctx = new DefaultTaskExecutionContext();
+                    Timer timer = Time.startTimer();
                     taskExecuter.execute(task, state, ctx);
+                    if (taskDurationHistory != null && state.getOutcome() == TaskExecutionOutcome.EXECUTED && state.getFailure() == null) {
+                        taskDurationHistory.recordDuration(task, timer.getElapsedMillis());
+                    }
                     context.setResult(new ExecuteTaskBuildOperationResult(state, ctx));
 
                     // If this fails, it masks the task failure.
@@ -285,4 +297,9 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         return taskExecutionPlan.getFilteredTasks();
     }
 
+    @Override
+    public List<Task> getReadyTasks(int maxTasks) {
+        return taskExecutionPlan.getReadyTasks(maxTasks);
+    }
+
 }
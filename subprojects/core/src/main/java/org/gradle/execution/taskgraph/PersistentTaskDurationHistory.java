@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Task;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.state.TaskHistoryStore;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+
+/**
+ * Stores task durations in the task history store, keyed by the identity path of the task.
+ *
+ * The recorded duration is a moving average, so that a single slow or fast execution does not dominate.
+ */
+public class PersistentTaskDurationHistory implements TaskDurationHistory {
+    private final Factory<? extends TaskHistoryStore> taskHistoryStore;
+    private PersistentIndexedCache<String, Long> durations;
+
+    // The task history store is not available when the task graph is created
+    public PersistentTaskDurationHistory(Factory<? extends TaskHistoryStore> taskHistoryStore) {
+        this.taskHistoryStore = taskHistoryStore;
+    }
+
+    @Override
+    public long getDuration(Task task) {
+        Long duration = getDurations().get(key(task));
+        return duration == null ? UNKNOWN : duration;
+    }
+
+    @Override
+    public void recordDuration(Task task, long durationMillis) {
+        String key = key(task);
+        PersistentIndexedCache<String, Long> durations = getDurations();
+        Long previous = durations.get(key);
+        durations.put(key, previous == null ? durationMillis : (previous + durationMillis) / 2);
+    }
+
+    private synchronized PersistentIndexedCache<String, Long> getDurations() {
+        if (durations == null) {
+            durations = taskHistoryStore.create().createCache("taskDurations", String.class, BaseSerializerFactory.LONG_SERIALIZER, 10000, false);
+        }
+        return durations;
+    }
+
+    private static String key(Task task) {
+        return ((TaskInternal) task).getIdentityPath().toString();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.taskgraph;
+
+import org.gradle.api.Task;
+
+/**
+ * Keeps track of how long tasks took to execute in previous builds.
+ */
+public interface TaskDurationHistory {
+    long UNKNOWN = -1;
+
+    /**
+     * Returns the expected duration of the given task in milliseconds, or {@link #UNKNOWN} when the task has not been executed before.
+     */
+    long getDuration(Task task);
+
+    /**
+     * Records the duration of an execution of the given task. Should only be called when the actions of the task were executed.
+     */
+    void recordDuration(Task task, long durationMillis);
+}
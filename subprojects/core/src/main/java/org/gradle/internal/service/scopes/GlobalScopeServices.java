@@ -17,6 +17,7 @@
 package org.gradle.internal.service.scopes;
 
 import com.google.common.collect.Iterables;
+import org.gradle.api.JavaVersion;
 import org.gradle.api.execution.internal.DefaultTaskInputsListener;
 import org.gradle.api.execution.internal.TaskInputsListener;
 import org.gradle.api.internal.AsmBackedClassGenerator;
@@ -39,6 +40,7 @@ import org.gradle.api.internal.file.FileCollectionFactory;
 import org.gradle.api.internal.file.TemporaryFileProvider;
 import org.gradle.api.internal.file.TmpDirTemporaryFileProvider;
 import org.gradle.api.internal.file.collections.DefaultDirectoryFileTreeFactory;
+import org.gradle.api.internal.file.collections.DefaultDirectoryWalkerFactory;
 import org.gradle.api.internal.file.collections.DirectoryFileTreeFactory;
 import org.gradle.api.internal.model.DefaultObjectFactory;
 import org.gradle.api.internal.model.NamedObjectInstantiator;
@@ -242,8 +244,12 @@ public class GlobalScopeServices extends BasicGlobalScopeServices {
     }
 
 
-    DirectoryFileTreeFactory createDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, FileSystem fileSystem) {
-        return new DefaultDirectoryFileTreeFactory(patternSetFactory, fileSystem);
+    DefaultDirectoryWalkerFactory createDirectoryWalkerFactory(FileSystem fileSystem, ExecutorFactory executorFactory, ParallelismConfigurationManager parallelismConfigurationManager) {
+        return new DefaultDirectoryWalkerFactory(JavaVersion.current(), fileSystem, executorFactory, parallelismConfigurationManager);
+    }
+
+    DirectoryFileTreeFactory createDirectoryFileTreeFactory(Factory<PatternSet> patternSetFactory, FileSystem fileSystem, DefaultDirectoryWalkerFactory directoryWalkerFactory) {
+        return new DefaultDirectoryFileTreeFactory(patternSetFactory, fileSystem, directoryWalkerFactory);
     }
 
     FileCollectionFactory createFileCollectionFactory() {
@@ -28,6 +28,8 @@ import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.atomic.AtomicInteger
+
 class CachingFileHasherTest extends Specification {
     @Rule
     TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
@@ -171,6 +173,42 @@ class CachingFileHasherTest extends Specification {
         0 * _._
     }
 
+    def countsFilesThatAreHashedButNotFilesWhoseHashIsCached() {
+        def stat = fileSystem.stat(file)
+        def fileDetails = Stub(FileTreeElement) {
+            getFile() >> file
+            getLastModified() >> stat.lastModified
+            getSize() >> stat.length
+        }
+        def hashedFileCount = new AtomicInteger()
+
+        when:
+        def result = hasher.hash(fileDetails, hashedFileCount)
+
+        then:
+        result == hash
+        hashedFileCount.get() == 1
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * cache.get(file.absolutePath) >> null
+        1 * target.hash(file) >> hash
+        1 * cache.put(file.absolutePath, _)
+        0 * _._
+
+        when:
+        result = hasher.hash(fileDetails, hashedFileCount)
+
+        then:
+        result == hash
+        hashedFileCount.get() == 1
+
+        and:
+        1 * timeStampInspector.timestampCanBeUsedToDetectFileChange(file.absolutePath, stat.lastModified) >> true
+        1 * cache.get(file.absolutePath) >> new FileInfo(hash, stat.length, stat.lastModified)
+        0 * _._
+    }
+
     def hashesGivenFileMetadataSnapshot() {
         long lastModified = 123l
         long length = 321l
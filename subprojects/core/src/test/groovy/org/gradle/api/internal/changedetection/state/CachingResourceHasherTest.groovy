@@ -71,10 +71,10 @@ class CachingResourceHasherTest extends Specification {
         0 * _
     }
 
-    def "does not cache zip entries"() {
+    def "does not cache zip entries that are not class files"() {
         def expectedHash = HashCode.fromInt(123)
         def inputStream = Mock(InputStream)
-        def zipEntry = Mock(ZipEntry)
+        def zipEntry = new ZipEntry("resource.txt")
 
         when:
         def actualHash = cachingHasher.hash(zipEntry, inputStream)
@@ -94,4 +94,36 @@ class CachingResourceHasherTest extends Specification {
 
         actualHash == expectedHash
     }
+
+    def "caches the result for class file zip entries by content"() {
+        def expectedHash = HashCode.fromInt(123)
+        def zipEntry = new ZipEntry("org/gradle/Foo.class")
+        def otherZipEntry = new ZipEntry("org/gradle/Bar.class")
+
+        when:
+        def actualHash = cachingHasher.hash(zipEntry, new ByteArrayInputStream([1, 2, 3] as byte[]))
+
+        then:
+        1 * delegate.hash(zipEntry, { it.bytes == [1, 2, 3] as byte[] }) >> expectedHash
+        0 * _
+
+        actualHash == expectedHash
+
+        when:
+        actualHash = cachingHasher.hash(otherZipEntry, new ByteArrayInputStream([1, 2, 3] as byte[]))
+
+        then:
+        0 * _
+
+        actualHash == expectedHash
+
+        when:
+        actualHash = cachingHasher.hash(zipEntry, new ByteArrayInputStream([4, 5] as byte[]))
+
+        then:
+        1 * delegate.hash(zipEntry, _) >> null
+        0 * _
+
+        actualHash == null
+    }
 }
@@ -20,8 +20,12 @@ import org.gradle.api.internal.cache.StringInterner
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.api.internal.file.collections.DirectoryFileTree
 import org.gradle.caching.internal.DefaultBuildCacheHasher
+import org.gradle.internal.concurrent.DefaultExecutorFactory
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration
+import org.gradle.internal.concurrent.ParallelismConfigurationManager
 import org.gradle.internal.file.FileType
 import org.gradle.internal.hash.TestFileHasher
+import org.gradle.testfixtures.internal.InMemoryIndexedCache
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
 import org.junit.Rule
 import spock.lang.Specification
@@ -95,6 +99,52 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         snapshot2.is(snapshot)
     }
 
+    def "hashes the files of a directory hierarchy in parallel in visit order"() {
+        def d = tmpDir.createDir("d")
+        200.times { d.createFile("d${it % 7}/f${it}").text = "content ${it}" }
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelHasher = parallelFileHasher(executorFactory)
+
+        when:
+        def snapshot = parallelSnapshotter(parallelHasher).snapshotDirectoryTree(d)
+        def serialSnapshot = snapshotter.snapshotDirectoryTree(d)
+
+        then:
+        snapshot.descendants.size() == 207
+        snapshot.descendants*.path == serialSnapshot.descendants*.path
+        snapshot.descendants*.content == serialSnapshot.descendants*.content
+
+        cleanup:
+        parallelHasher.stop()
+        executorFactory.stop()
+    }
+
+    def "counts only the tree files that are hashed rather than taken from the file hash cache"() {
+        def d = tmpDir.createDir("d")
+        200.times { d.createFile("d${it % 7}/f${it}").text = "content ${it}" }
+        def executorFactory = new DefaultExecutorFactory()
+        def parallelHasher = parallelFileHasher(executorFactory)
+        def statistics = parallelHasher.startRecording()
+
+        when:
+        parallelSnapshotter(parallelHasher).snapshotDirectoryTree(d)
+
+        then:
+        statistics.hashedFileCount == 200
+
+        when:
+        d.file("d0/f0").text = "changed content"
+        parallelSnapshotter(parallelHasher).snapshotDirectoryTree(d)
+
+        then:
+        statistics.hashedFileCount == 201
+
+        cleanup:
+        statistics.stop()
+        parallelHasher.stop()
+        executorFactory.stop()
+    }
+
     def "fetches details of an empty directory and caches the result"() {
         def d = tmpDir.createDir("d")
 
@@ -228,4 +278,22 @@ class DefaultFileSystemSnapshotterTest extends Specification {
         snapshot.appendToHasher(builder)
         return builder.hash()
     }
+
+    private ParallelFileHasher parallelFileHasher(DefaultExecutorFactory executorFactory) {
+        def taskHistoryStore = Stub(TaskHistoryStore) {
+            createCache(_, _, _, _, _) >> { args -> new InMemoryIndexedCache(args[2]) }
+        }
+        def timeStampInspector = Stub(FileTimeStampInspector) {
+            timestampCanBeUsedToDetectFileChange(_, _) >> true
+        }
+        def cachingHasher = new CachingFileHasher(fileHasher, taskHistoryStore, new StringInterner(), timeStampInspector, "fileHashes", TestFiles.fileSystem())
+        def parallelismConfigurationManager = Stub(ParallelismConfigurationManager) {
+            getParallelismConfiguration() >> new DefaultParallelismConfiguration(false, 4)
+        }
+        return new ParallelFileHasher(cachingHasher, executorFactory, parallelismConfigurationManager)
+    }
+
+    private DefaultFileSystemSnapshotter parallelSnapshotter(ParallelFileHasher parallelHasher) {
+        return new DefaultFileSystemSnapshotter(fileHasher, new StringInterner(), TestFiles.fileSystem(), TestFiles.directoryFileTreeFactory(), new DefaultFileSystemMirror([]), parallelHasher)
+    }
 }
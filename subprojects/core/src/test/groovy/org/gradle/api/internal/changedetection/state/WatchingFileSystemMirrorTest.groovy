@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection.state
+
+import org.gradle.internal.classpath.CachedJarFileStore
+import org.gradle.internal.filewatch.FileWatcher
+import org.gradle.internal.filewatch.FileWatcherEvent
+import org.gradle.internal.filewatch.FileWatcherFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class WatchingFileSystemMirrorTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def fileWatcher = Mock(FileWatcher)
+    def fileWatcherFactory = Mock(FileWatcherFactory)
+    WatchingFileSystemMirror mirror
+    TestFile cacheDir
+    TestFile barrierDir
+
+    def setup() {
+        cacheDir = tmpDir.createDir("cache")
+        barrierDir = tmpDir.file("barrier")
+        def fileStore = Stub(CachedJarFileStore)
+        fileStore.fileStoreRoots >> [cacheDir]
+        mirror = new WatchingFileSystemMirror([fileStore], fileWatcherFactory, barrierDir)
+    }
+
+    def "retains state about a file between builds once it was watched before its state was calculated"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        fileWatcher.running >> true
+
+        when:
+        mirror.putFile(fileSnapshot)
+
+        then:
+        1 * fileWatcherFactory.watch(_, mirror) >> fileWatcher
+        1 * fileWatcher.watch({ it.contains(barrierDir) })
+        1 * fileWatcher.watch({ it.contains(file) })
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        0 * fileWatcher.stop()
+        mirror.getFile(file.path) == null
+
+        when:
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+
+        then:
+        0 * fileWatcher.watch(_)
+        0 * fileWatcher.stop()
+        mirror.getFile(file.path) == fileSnapshot
+    }
+
+    def "does not retain state about a file that changed during the build"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        fileWatcherFactory.watch(_, _) >> fileWatcher
+        fileWatcher.running >> true
+
+        given:
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+
+        when:
+        mirror.onChange(fileWatcher, FileWatcherEvent.modify(file))
+        mirror.putFile(fileSnapshot)
+
+        then:
+        mirror.getFile(file.path) == fileSnapshot
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "waits at the start of the build until the changes made before the build have been reported"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        fileWatcherFactory.watch(_, _) >> fileWatcher
+        fileWatcher.running >> true
+
+        given:
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+        mirror.putFile(fileSnapshot)
+        mirror.beforeComplete()
+        assert mirror.getFile(file.path) == fileSnapshot
+        def watcherThread = Thread.start {
+            def barrier = null
+            for (int i = 0; i < 500 && barrier == null; i++) {
+                def barriers = barrierDir.listFiles()
+                barrier = barriers ? barriers[0] : null
+                Thread.sleep(10)
+            }
+            mirror.onChange(fileWatcher, FileWatcherEvent.modify(file))
+            mirror.onChange(fileWatcher, FileWatcherEvent.create(barrier))
+        }
+
+        when:
+        mirror.afterStart()
+
+        then:
+        mirror.getFile(file.path) == null
+
+        cleanup:
+        watcherThread?.join()
+    }
+
+    def "discards all state except for cached files when a task is about to generate its outputs"() {
+        def input = tmpDir.file("input")
+        def output = tmpDir.file("output")
+        def cachedFile = cacheDir.file("some.jar")
+        def inputSnapshot = Stub(FileSnapshot) { getPath() >> input.path }
+        def outputSnapshot = Stub(FileSnapshot) { getPath() >> output.path }
+        def cachedSnapshot = Stub(FileSnapshot) { getPath() >> cachedFile.path }
+        fileWatcherFactory.watch(_, _) >> fileWatcher
+
+        given:
+        mirror.putFile(inputSnapshot)
+        mirror.putFile(outputSnapshot)
+        mirror.putFile(cachedSnapshot)
+
+        when:
+        mirror.beforeTaskOutputsGenerated()
+
+        then:
+        mirror.getFile(input.path) == null
+        mirror.getFile(output.path) == null
+        mirror.getFile(cachedFile.path) == cachedSnapshot
+    }
+
+    def "discards state about a changed file, its descendants and its ancestors"() {
+        def dir = tmpDir.file("dir")
+        def file = dir.file("sub/a")
+        def child = file.file("child")
+        def sibling = dir.file("sub/b")
+        def similarSibling = dir.file("sub/a-other")
+        def dirSnapshot = Stub(FileTreeSnapshot) { getPath() >> dir.path }
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        def childSnapshot = Stub(FileSnapshot) { getPath() >> child.path }
+        def siblingSnapshot = Stub(FileSnapshot) { getPath() >> sibling.path }
+        def similarSiblingSnapshot = Stub(FileSnapshot) { getPath() >> similarSibling.path }
+        fileWatcherFactory.watch(_, _) >> fileWatcher
+
+        given:
+        mirror.putDirectory(dirSnapshot)
+        mirror.putFile(fileSnapshot)
+        mirror.putFile(childSnapshot)
+        mirror.putFile(siblingSnapshot)
+        mirror.putFile(similarSiblingSnapshot)
+
+        when:
+        mirror.onChange(fileWatcher, FileWatcherEvent.modify(file))
+
+        then:
+        mirror.getDirectoryTree(dir.path) == null
+        mirror.getFile(file.path) == null
+        mirror.getFile(child.path) == null
+        mirror.getFile(sibling.path) == siblingSnapshot
+        mirror.getFile(similarSibling.path) == similarSiblingSnapshot
+    }
+
+    def "discards all state when change cannot be attributed to a file"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        fileWatcherFactory.watch(_, _) >> fileWatcher
+
+        given:
+        mirror.putFile(fileSnapshot)
+
+        when:
+        mirror.onChange(fileWatcher, FileWatcherEvent.undefined())
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "discards all state at the end of the build when the watcher is no longer running"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        fileWatcherFactory.watch(_, _) >> fileWatcher
+
+        given:
+        mirror.putFile(fileSnapshot)
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        _ * fileWatcher.running >> false
+        1 * fileWatcher.stop()
+        mirror.getFile(file.path) == null
+    }
+
+    def "keeps state for the build when watching fails"() {
+        def file = tmpDir.file("a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+        fileWatcherFactory.watch(_, _) >> fileWatcher
+        fileWatcher.watch(_) >> { throw new IOException("broken") }
+
+        when:
+        mirror.putFile(fileSnapshot)
+
+        then:
+        mirror.getFile(file.path) == fileSnapshot
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+
+    def "does not watch files that live in the caches and discards their state at the end of the build"() {
+        def file = cacheDir.file("some/dir/a")
+        def fileSnapshot = Stub(FileSnapshot) { getPath() >> file.path }
+
+        when:
+        mirror.putFile(fileSnapshot)
+
+        then:
+        0 * fileWatcherFactory._
+        mirror.getFile(file.path) == fileSnapshot
+
+        when:
+        mirror.beforeComplete()
+
+        then:
+        mirror.getFile(file.path) == null
+    }
+}
@@ -35,10 +35,13 @@ import org.gradle.util.TestPrecondition
 import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Issue
+import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import java.nio.charset.Charset
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import java.util.concurrent.atomic.AtomicInteger
 
 import static org.gradle.api.internal.file.TestFiles.directoryFileTreeFactory
@@ -51,6 +54,12 @@ class Jdk7DirectoryWalkerTest extends Specification {
     @Rule
     SetSystemProperties setSystemPropertiesRule
 
+    @Shared
+    ExecutorService executor = Executors.newFixedThreadPool(4)
+
+    def cleanupSpec() {
+        executor.shutdown()
+    }
 
     def cleanup() {
         Charset.defaultCharset = null // clear cache
@@ -109,7 +118,7 @@ class Jdk7DirectoryWalkerTest extends Specification {
         !visited.contains(doesNotExist.absolutePath)
 
         where:
-        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker()]
+        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker(), new ParallelDirectoryWalker(TestFiles.fileSystem(), executor)]
     }
 
     def "both DirectoryWalker implementations return same set of files and attributes"() {
@@ -127,6 +136,40 @@ class Jdk7DirectoryWalkerTest extends Specification {
         checkFileVisitDetailsEqual(visitedWithDefaultWalker, visitedWithJdk7Walker)
     }
 
+    @Unroll
+    def "parallel walker visits files in the same order as the reproducible walker - postfix: #postfix"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        generateFilesAndSubDirectories(rootDir, 10, 5, 3, 1, new AtomicInteger(0))
+
+        when:
+        def visitedWithParallelWalker = walkFiles(rootDir, new ParallelDirectoryWalker(TestFiles.fileSystem(), executor), postfix)
+        def visitedWithReproducibleWalker = walkFiles(rootDir, new ReproducibleDirectoryWalker(TestFiles.fileSystem()), postfix)
+
+        then:
+        visitedWithParallelWalker.size() == 340
+        visitedWithParallelWalker*.file == visitedWithReproducibleWalker*.file
+        checkFileVisitDetailsEqual(visitedWithReproducibleWalker, visitedWithParallelWalker)
+
+        where:
+        postfix << [false, true]
+    }
+
+    def "parallel walker stops visiting when requested"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        generateFilesAndSubDirectories(rootDir, 10, 5, 3, 1, new AtomicInteger(0))
+        def fileTree = new DirectoryFileTree(rootDir, new PatternSet(), { new ParallelDirectoryWalker(TestFiles.fileSystem(), executor) } as Factory, TestFiles.fileSystem(), false)
+        def visited = []
+        def fileVisitor = [visitFile: { visited << it; it.stopVisiting() }, visitDir: { visited << it }] as FileVisitor
+
+        when:
+        fileTree.visit(fileVisitor)
+
+        then:
+        visited.size() == 1
+    }
+
     private void checkFileVisitDetailsEqual(List<FileVisitDetails> visitedWithDefaultWalker, List<FileVisitDetails> visitedWithJdk7Walker) {
         visitedWithDefaultWalker.each { FileVisitDetails details ->
             def detailsFromJdk7Walker = visitedWithJdk7Walker.find { it.file.absolutePath == details.file.absolutePath }
@@ -154,8 +197,8 @@ class Jdk7DirectoryWalkerTest extends Specification {
         }
     }
 
-    private List<FileVisitDetails> walkFiles(rootDir, walkerInstance) {
-        def fileTree = new DirectoryFileTree(rootDir, new PatternSet(), { walkerInstance } as Factory, TestFiles.fileSystem(), false)
+    private List<FileVisitDetails> walkFiles(rootDir, walkerInstance, boolean postfix = false) {
+        def fileTree = new DirectoryFileTree(rootDir, new PatternSet(), { walkerInstance } as Factory, TestFiles.fileSystem(), postfix)
         def visited = []
         def visitClosure = { visited << it }
         def fileVisitor = [visitFile: visitClosure, visitDir: visitClosure] as FileVisitor
@@ -191,7 +234,7 @@ class Jdk7DirectoryWalkerTest extends Specification {
         link.delete()
 
         where:
-        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker()]
+        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker(), new ParallelDirectoryWalker(TestFiles.fileSystem(), executor)]
     }
 
     @Requires(TestPrecondition.SYMLINKS)
@@ -222,7 +265,7 @@ class Jdk7DirectoryWalkerTest extends Specification {
         link.delete()
 
         where:
-        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker()]
+        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker(), new ParallelDirectoryWalker(TestFiles.fileSystem(), executor)]
     }
 
     @Requires(TestPrecondition.SYMLINKS)
@@ -251,7 +294,7 @@ class Jdk7DirectoryWalkerTest extends Specification {
         link.delete()
 
         where:
-        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker()]
+        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker(), new ParallelDirectoryWalker(TestFiles.fileSystem(), executor)]
     }
 
     @Issue("GRADLE-3400")
@@ -285,7 +328,34 @@ class Jdk7DirectoryWalkerTest extends Specification {
         link.delete()
 
         where:
-        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker()]
+        walkerInstance << [new DefaultDirectoryWalker(), new Jdk7DirectoryWalker(), new ReproducibleDirectoryWalker(), new ParallelDirectoryWalker(TestFiles.fileSystem(), executor)]
+    }
+
+    @Requires(TestPrecondition.SYMLINKS)
+    @Unroll
+    def "symbolic link cycles are not followed - walker: #walkerInstance.class.simpleName"() {
+        given:
+        def rootDir = tmpDir.createDir("root")
+        def file = rootDir.createFile("a/b/c.txt")
+        def link = rootDir.file("a/b/d")
+        link.createLink(rootDir.file("a"))
+
+        def fileTree = new DirectoryFileTree(rootDir, new PatternSet(), { walkerInstance } as Factory, TestFiles.fileSystem(), false)
+        def visited = []
+        def visitClosure = { visited << it.file.absolutePath }
+        def fileVisitor = [visitFile: visitClosure, visitDir: visitClosure] as FileVisitor
+
+        when:
+        fileTree.visit(fileVisitor)
+
+        then:
+        visited as Set == [rootDir.file("a"), rootDir.file("a/b"), file]*.absolutePath as Set
+
+        cleanup:
+        link.delete()
+
+        where:
+        walkerInstance << [new Jdk7DirectoryWalker(), new ParallelDirectoryWalker(TestFiles.fileSystem(), executor)]
     }
 
     def "file walker sees a snapshot of file metadata even if files are deleted after walking has started"() {
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution
+
+import org.gradle.api.Project
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputCachingState
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.changedetection.TaskArtifactStateRepository
+import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskExecutionContext
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.caching.internal.PrefetchingBuildCacheService
+import org.gradle.caching.internal.QueryableBuildCacheService
+import org.gradle.caching.internal.controller.BuildCacheController
+import org.gradle.caching.internal.controller.DefaultBuildCacheController
+import org.gradle.caching.internal.controller.service.BuildCacheServicesConfiguration
+import org.gradle.caching.internal.tasks.TaskOutputCachingBuildCacheKey
+import org.gradle.execution.TaskGraphExecuter
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.tasks.execution.PrefetchBuildCacheEntryExecuter.MAX_UPCOMING_TASKS
+
+class PrefetchBuildCacheEntryExecuterTest extends Specification {
+    @Rule
+    final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+
+    def project = Mock(Project)
+    def task = Mock(TaskInternal)
+    def taskState = Mock(TaskStateInternal)
+    def taskContext = Mock(TaskExecutionContext)
+    def taskArtifactState = Mock(TaskArtifactState)
+    def taskOutputCaching = Mock(TaskOutputCachingState)
+    def cacheKey = Mock(TaskOutputCachingBuildCacheKey)
+    def buildCache = Mock(BuildCacheController)
+    def repository = Mock(TaskArtifactStateRepository)
+    def taskGraph = Mock(TaskGraphExecuter)
+    def delegate = Mock(TaskExecuter)
+    def executer = new PrefetchBuildCacheEntryExecuter(buildCache, repository, taskGraph, delegate)
+
+    def "prefetches entry when task can be loaded from cache"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.buildCacheKey >> cacheKey
+        1 * taskState.taskOutputCaching >> taskOutputCaching
+        1 * taskOutputCaching.enabled >> true
+        1 * cacheKey.valid >> true
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.allowedToUseCachedResults >> true
+        1 * cacheKey.hashCode >> "current"
+        1 * taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >> []
+        1 * buildCache.prefetch([cacheKey])
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        0 * _
+    }
+
+    def "does not prefetch entry when caching is disabled"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.buildCacheKey >> cacheKey
+        1 * taskState.taskOutputCaching >> taskOutputCaching
+        1 * taskOutputCaching.enabled >> false
+        1 * taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >> []
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        0 * _
+    }
+
+    def "does not prefetch entry when cache key is invalid"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.buildCacheKey >> cacheKey
+        1 * taskState.taskOutputCaching >> taskOutputCaching
+        1 * taskOutputCaching.enabled >> true
+        1 * cacheKey.valid >> false
+        1 * taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >> []
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        0 * _
+    }
+
+    def "does not prefetch entry when task is not allowed to use cached results"() {
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.buildCacheKey >> cacheKey
+        1 * taskState.taskOutputCaching >> taskOutputCaching
+        1 * taskOutputCaching.enabled >> true
+        1 * cacheKey.valid >> true
+        1 * taskContext.taskArtifactState >> taskArtifactState
+        1 * taskArtifactState.allowedToUseCachedResults >> false
+        1 * taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >> []
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+        0 * _
+    }
+
+    def "prefetches entries of upcoming tasks of the same project in one batch"() {
+        def upcomingKey = Stub(TaskOutputCachingBuildCacheKey) {
+            isValid() >> true
+            getHashCode() >> "upcoming"
+        }
+        def upcoming = upcomingTask(project, upcomingKey)
+        def otherProjectTask = Mock(TaskInternal) {
+            getProject() >> Mock(Project)
+        }
+
+        given:
+        currentTaskCanBeLoaded()
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >> [upcoming, otherProjectTask]
+        1 * buildCache.prefetch([cacheKey, upcomingKey])
+        0 * repository.getStateFor(otherProjectTask)
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+    }
+
+    def "does not prefetch entry of upcoming task again when it is executed"() {
+        def upcomingKey = Stub(TaskOutputCachingBuildCacheKey) {
+            isValid() >> true
+            getHashCode() >> "upcoming"
+        }
+        def upcoming = upcomingTask(project, upcomingKey)
+        def upcomingContext = Stub(TaskExecutionContext) {
+            getBuildCacheKey() >> upcomingKey
+            getTaskArtifactState() >> Stub(TaskArtifactState) {
+                isAllowedToUseCachedResults() >> true
+            }
+        }
+
+        given:
+        currentTaskCanBeLoaded()
+        taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >>> [[upcoming], [upcoming]]
+
+        when:
+        executer.execute(task, taskState, taskContext)
+        executer.execute(upcoming, taskState, upcomingContext)
+
+        then:
+        1 * buildCache.prefetch([cacheKey, upcomingKey])
+        0 * buildCache.prefetch(_)
+    }
+
+    def "ignores upcoming task whose cache key cannot be calculated"() {
+        def upcoming = Mock(TaskInternal) {
+            getProject() >> project
+            getOutputs() >> { throw new RuntimeException("broken") }
+        }
+
+        given:
+        currentTaskCanBeLoaded()
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >> [upcoming]
+        1 * buildCache.prefetch([cacheKey])
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+    }
+
+    def "queries remote build cache for the entries of current and upcoming tasks in one batch"() {
+        def remote = Mock(QueryablePrefetching)
+        def buildCacheController = new DefaultBuildCacheController(new BuildCacheServicesConfiguration(null, false, remote, false), new TestBuildOperationExecutor(), tmpDir.testDirectory, false)
+        def executer = new PrefetchBuildCacheEntryExecuter(buildCacheController, repository, taskGraph, delegate)
+        def upcomingKey = Stub(TaskOutputCachingBuildCacheKey) {
+            isValid() >> true
+            getHashCode() >> "upcoming"
+        }
+        def upcoming = upcomingTask(project, upcomingKey)
+
+        given:
+        currentTaskCanBeLoaded()
+        taskGraph.getReadyTasks(MAX_UPCOMING_TASKS) >> [upcoming]
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * remote.contains([cacheKey, upcomingKey]) >> ([upcomingKey] as Set)
+        1 * remote.prefetch(upcomingKey)
+        0 * remote.prefetch(_)
+
+        then:
+        1 * delegate.execute(task, taskState, taskContext)
+    }
+
+    interface QueryablePrefetching extends QueryableBuildCacheService, PrefetchingBuildCacheService {}
+
+    private void currentTaskCanBeLoaded() {
+        task.project >> project
+        taskContext.buildCacheKey >> cacheKey
+        taskState.taskOutputCaching >> taskOutputCaching
+        taskOutputCaching.enabled >> true
+        cacheKey.valid >> true
+        cacheKey.hashCode >> "current"
+        taskContext.taskArtifactState >> taskArtifactState
+        taskArtifactState.allowedToUseCachedResults >> true
+    }
+
+    private TaskInternal upcomingTask(Project project, TaskOutputCachingBuildCacheKey key) {
+        def upcomingState = Stub(TaskArtifactState) {
+            isAllowedToUseCachedResults() >> true
+            calculateCacheKey() >> key
+        }
+        def upcoming = Mock(TaskInternal) {
+            getProject() >> project
+            getOutputs() >> Stub(TaskOutputsInternal) {
+                getCachingState() >> Stub(TaskOutputCachingState) {
+                    isEnabled() >> true
+                }
+            }
+        }
+        repository.getStateFor(upcoming) >> upcomingState
+        return upcoming
+    }
+}
@@ -22,12 +22,16 @@ import com.google.common.collect.ImmutableSortedSet
 import org.gradle.api.internal.TaskInternal
 import org.gradle.api.internal.TaskOutputsInternal
 import org.gradle.api.internal.changedetection.TaskArtifactState
+import org.gradle.api.internal.changedetection.state.CachingFileHasher
+import org.gradle.api.internal.changedetection.state.ParallelFileHasher
 import org.gradle.api.internal.tasks.SnapshotTaskInputsBuildOperationType
 import org.gradle.api.internal.tasks.TaskExecuter
 import org.gradle.api.internal.tasks.TaskExecutionContext
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.caching.internal.tasks.BuildCacheKeyInputs
 import org.gradle.caching.internal.tasks.TaskOutputCachingBuildCacheKey
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ParallelismConfigurationManager
 import org.gradle.internal.hash.HashCode
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.testing.internal.util.Specification
@@ -42,7 +46,8 @@ class ResolveBuildCacheKeyExecuterTest extends Specification {
     def taskOutputs = Mock(TaskOutputsInternal)
     def delegate = Mock(TaskExecuter)
     def buildOperationExecutor = new TestBuildOperationExecutor()
-    def executer = new ResolveBuildCacheKeyExecuter(delegate, buildOperationExecutor)
+    def parallelFileHasher = new ParallelFileHasher(Stub(CachingFileHasher), Stub(ExecutorFactory), Stub(ParallelismConfigurationManager))
+    def executer = new ResolveBuildCacheKeyExecuter(delegate, buildOperationExecutor, parallelFileHasher)
     def cacheKey = Mock(TaskOutputCachingBuildCacheKey)
 
     def "calculates build cache key"() {
@@ -125,7 +130,7 @@ class ResolveBuildCacheKeyExecuterTest extends Specification {
         def key = Mock(TaskOutputCachingBuildCacheKey) {
             getInputs() >> inputs
         }
-        def adapter = new ResolveBuildCacheKeyExecuter.OperationResultImpl(key)
+        def adapter = new ResolveBuildCacheKeyExecuter.OperationResultImpl(key, 0)
 
         when:
         inputs.inputHashes >> ImmutableSortedMap.copyOf(b: HashCode.fromInt(0x000000bb), a: HashCode.fromInt(0x000000aa))
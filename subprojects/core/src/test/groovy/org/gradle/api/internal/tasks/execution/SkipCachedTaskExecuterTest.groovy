@@ -74,6 +74,9 @@ class SkipCachedTaskExecuterTest extends Specification {
         1 * taskArtifactState.isAllowedToUseCachedResults() >> true
         1 * cacheKey.isValid() >> true
 
+        then:
+        1 * buildCacheCommandFactory.loadUnpacked(cacheKey, _, task, taskOutputGenerationListener, _, _) >> null
+
         then:
         1 * buildCacheCommandFactory.createLoad(cacheKey, _, task, taskOutputGenerationListener, _, _) >> loadCommand
 
@@ -86,6 +89,31 @@ class SkipCachedTaskExecuterTest extends Specification {
         0 * _
     }
 
+    def "skip task without loading from the build cache when unpacked cached results exist"() {
+        def originId = UniqueId.generate()
+
+        when:
+        executer.execute(task, taskState, taskContext)
+
+        then:
+        1 * taskContext.buildCacheKey >> cacheKey
+        interaction { cachingEnabled() }
+
+        then:
+        1 * outputs.getFileProperties() >> ImmutableSortedSet.of()
+        1 * taskContext.getTaskArtifactState() >> taskArtifactState
+        1 * taskArtifactState.isAllowedToUseCachedResults() >> true
+        1 * cacheKey.isValid() >> true
+
+        then:
+        1 * buildCacheCommandFactory.loadUnpacked(cacheKey, _, task, taskOutputGenerationListener, taskArtifactState, _) >> new TaskOutputOriginMetadata(originId)
+
+        then:
+        1 * taskState.setOutcome(TaskExecutionOutcome.FROM_CACHE)
+        1 * taskContext.setOriginBuildInvocationId(originId)
+        0 * _
+    }
+
     def "executes task and stores result when no cached result is available"() {
         when:
         executer.execute(task, taskState, taskContext)
@@ -100,6 +128,9 @@ class SkipCachedTaskExecuterTest extends Specification {
         1 * taskArtifactState.isAllowedToUseCachedResults() >> true
         1 * cacheKey.isValid() >> true
 
+        then:
+        1 * buildCacheCommandFactory.loadUnpacked(cacheKey, _, task, taskOutputGenerationListener, _, _) >> null
+
         then:
         1 * buildCacheCommandFactory.createLoad(cacheKey, _, task, taskOutputGenerationListener, _, _) >> loadCommand
 
@@ -167,6 +198,7 @@ class SkipCachedTaskExecuterTest extends Specification {
         1 * cacheKey.isValid() >> true
 
         then:
+        1 * buildCacheCommandFactory.loadUnpacked(*_)
         1 * buildCacheCommandFactory.createLoad(*_)
         1 * buildCacheController.load(_)
 
@@ -224,6 +256,7 @@ class SkipCachedTaskExecuterTest extends Specification {
         1 * outputs.getFileProperties() >> ImmutableSortedSet.of()
 
         then:
+        1 * buildCacheCommandFactory.loadUnpacked(*_)
         1 * buildCacheCommandFactory.createLoad(*_)
         1 * buildCacheController.load(_) >> { throw new RuntimeException("unknown error") }
 
@@ -259,6 +292,7 @@ class SkipCachedTaskExecuterTest extends Specification {
         1 * outputs.getFileProperties() >> ImmutableSortedSet.of()
 
         then:
+        1 * buildCacheCommandFactory.loadUnpacked(*_)
         1 * buildCacheCommandFactory.createLoad(*_)
         1 * buildCacheController.load(_) >> { throw new UnrecoverableTaskOutputUnpackingException("unknown error") }
 
@@ -284,6 +318,7 @@ class SkipCachedTaskExecuterTest extends Specification {
         1 * taskArtifactState.isAllowedToUseCachedResults() >> true
 
         then:
+        1 * buildCacheCommandFactory.loadUnpacked(*_)
         1 * buildCacheCommandFactory.createLoad(*_)
         1 * buildCacheController.load(_)
 
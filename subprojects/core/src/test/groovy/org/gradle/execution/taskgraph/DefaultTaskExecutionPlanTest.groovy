@@ -56,14 +56,15 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
     def coordinationService = Mock(ResourceLockCoordinationService)
     def workerLease = Mock(WorkerLeaseRegistry.WorkerLease)
     def gradle = Mock(GradleInternal)
+    def projectLock = Mock(ResourceLock)
+    boolean projectLockAvailable = true
 
     def setup() {
         root = createRootProject(temporaryFolder.testDirectory);
         executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal))
-        _ * workerLeaseService.getProjectLock(_, _) >> Mock(ResourceLock) {
-            _ * isLocked() >> false
-            _ * tryLock() >> true
-        }
+        _ * workerLeaseService.getProjectLock(_, _) >> projectLock
+        _ * projectLock.isLocked() >> false
+        _ * projectLock.tryLock() >> { projectLockAvailable }
         _ * workerLease.tryLock() >> true
         _ * coordinationService.withStateLock(_) >> { args ->
             args[0].transform(Mock(ResourceLockState))
@@ -871,6 +872,160 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         filtered(b)
     }
 
+    def "prefers tasks on the longest remaining path when task durations are known"() {
+        given:
+        def durations = [a: 1L, b: 1L, c: 1L, z1: 100L, z2: 100L]
+        useDurationHistory(durations)
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c")
+        Task z1 = task("z1")
+        Task z2 = task("z2", dependsOn: [z1])
+
+        when:
+        addToGraphAndPopulate([a, b, c, z2])
+
+        then:
+        executes(a, b, c, z1, z2)
+        executedTasks == [z1, z2, a, b, c]
+    }
+
+    def "keeps plan order for tasks with unknown durations"() {
+        given:
+        useDurationHistory([:])
+        Task a = task("a")
+        Task b = task("b", shouldRunAfter: [a])
+        Task c = task("c", dependsOn: [a])
+
+        when:
+        addToGraphAndPopulate([c, b])
+
+        then:
+        executedTasks == [a, b, c]
+    }
+
+    def "returns tasks that are ready to execute"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [a])
+        addToGraphAndPopulate([a, b, c])
+
+        expect:
+        executionPlan.getReadyTasks(10) == [a, b]
+        executionPlan.getReadyTasks(1) == [a]
+
+        when:
+        executionPlan.executeWithTask(workerLease, new Action<TaskInfo>() {
+            @Override
+            void execute(TaskInfo taskInfo) {
+                executionPlan.taskComplete(taskInfo)
+            }
+        })
+
+        then:
+        executionPlan.getReadyTasks(10) == [b, c]
+    }
+
+    def "selects a waiting task once its dependency completes"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [a])
+        Task d = task("d")
+        addToGraphAndPopulate([a, b, c, d])
+
+        when:
+        def selectedA = selectNextTask()
+        def selectedB = selectNextTask()
+        def selectedD = selectNextTask()
+
+        then:
+        [selectedA, selectedB, selectedD]*.task == [a, b, d]
+        selectNextTask() == null
+
+        when:
+        executionPlan.taskComplete(selectedA)
+
+        then:
+        selectNextTask().task == c
+    }
+
+    def "selects tasks that become ready in plan order regardless of the order their dependencies complete in"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        Task c = task("c", dependsOn: [b])
+        Task d = task("d", dependsOn: [a])
+        addToGraphAndPopulate([a, b, c, d])
+
+        when:
+        def selectedA = selectNextTask()
+        def selectedB = selectNextTask()
+
+        then:
+        [selectedA, selectedB]*.task == [a, b]
+        selectNextTask() == null
+
+        when:
+        executionPlan.taskComplete(selectedA)
+        executionPlan.taskComplete(selectedB)
+
+        then:
+        executedTasks == [c, d]
+    }
+
+    def "a task stays selectable while its locks are not available"() {
+        given:
+        Task a = task("a")
+        Task b = task("b")
+        addToGraphAndPopulate([a, b])
+        def busyWorkerLease = Mock(WorkerLeaseRegistry.WorkerLease) {
+            _ * tryLock() >> false
+        }
+
+        when:
+        projectLockAvailable = false
+
+        then:
+        selectNextTask() == null
+        executionPlan.getReadyTasks(10) == [a, b]
+
+        when:
+        projectLockAvailable = true
+
+        then:
+        selectNextTask(busyWorkerLease) == null
+        executionPlan.getReadyTasks(10) == [a, b]
+
+        when:
+        def executed = executedTasks
+
+        then:
+        executed == [a, b]
+    }
+
+    def "releases the worker lease and project lock once the selected task has executed"() {
+        given:
+        Task a = task("a")
+        addToGraphAndPopulate([a])
+
+        when:
+        def executed = executedTasks
+
+        then:
+        executed == [a]
+        1 * workerLease.unlock()
+        1 * projectLock.unlock()
+    }
+
+    private void useDurationHistory(Map<String, Long> durations) {
+        def history = Stub(TaskDurationHistory) {
+            getDuration(_) >> { Task task -> durations.containsKey(task.name) ? durations[task.name] : TaskDurationHistory.UNKNOWN }
+        }
+        executionPlan = new DefaultTaskExecutionPlan(cancellationHandler, coordinationService, workerLeaseService, Mock(GradleInternal), history)
+    }
+
     private void addToGraphAndPopulate(List tasks) {
         executionPlan.addToTaskGraph(tasks)
         executionPlan.determineExecutionPlan()
@@ -906,6 +1061,17 @@ class DefaultTaskExecutionPlanTest extends AbstractProjectBuilderSpec {
         return tasks
     }
 
+    private TaskInfo selectNextTask(WorkerLeaseRegistry.WorkerLease lease = workerLease) {
+        def selected = []
+        executionPlan.executeWithTask(lease, new Action<TaskInfo>() {
+            @Override
+            void execute(TaskInfo taskInfo) {
+                selected << taskInfo
+            }
+        })
+        return selected ? selected[0] : null
+    }
+
     private TaskDependency taskDependencyResolvingTo(TaskInternal task, List<Task> tasks) {
         Mock(TaskDependency) {
             getDependencies(task) >> tasks
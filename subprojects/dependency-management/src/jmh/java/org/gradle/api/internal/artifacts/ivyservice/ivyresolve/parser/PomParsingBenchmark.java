@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.ivyresolve.parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares building a DOM for a POM, as was done previously, with reading it using {@link PomStreamParser}.
+ * The POMs are shaped like those published by typical open source libraries: a parent, properties, managed and direct dependencies
+ * with exclusions, plus build, reporting, developer and license sections that Gradle does not use.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class PomParsingBenchmark {
+    private static final EntityResolver M2_ENTITY_RESOLVER = new EntityResolver() {
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) {
+            if ((systemId != null) && systemId.endsWith("m2-entities.ent")) {
+                return new InputSource(org.apache.ivy.plugins.parser.m2.PomReader.class.getResourceAsStream("m2-entities.ent"));
+            }
+            return null;
+        }
+    };
+
+    @Param({"10", "100"})
+    int dependencies;
+
+    private final List<byte[]> poms = new ArrayList<byte[]>();
+    private DocumentBuilderFactory documentBuilderFactory;
+
+    @Setup
+    public void setup() {
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setValidating(false);
+        for (int i = 0; i < 20; i++) {
+            poms.add(pom(i).getBytes());
+        }
+    }
+
+    @Benchmark
+    public void dom(Blackhole blackhole) throws Exception {
+        for (byte[] pom : poms) {
+            DocumentBuilder builder = documentBuilderFactory.newDocumentBuilder();
+            builder.setEntityResolver(M2_ENTITY_RESOLVER);
+            blackhole.consume(builder.parse(new PomStreamParser.AddDTDFilterInputStream(new ByteArrayInputStream(pom)), "pom.xml"));
+        }
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) throws Exception {
+        for (byte[] pom : poms) {
+            blackhole.consume(PomStreamParser.parse(new ByteArrayInputStream(pom), "pom.xml"));
+        }
+    }
+
+    private String pom(int index) {
+        StringBuilder pom = new StringBuilder();
+        pom.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        pom.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/maven-v4_0_0.xsd\">\n");
+        pom.append("  <modelVersion>4.0.0</modelVersion>\n");
+        pom.append("  <parent><groupId>org.example</groupId><artifactId>parent</artifactId><version>1.0</version></parent>\n");
+        pom.append("  <artifactId>module-").append(index).append("</artifactId>\n");
+        pom.append("  <packaging>jar</packaging>\n");
+        pom.append("  <name>Module ").append(index).append("</name>\n");
+        pom.append("  <description><![CDATA[A module with a long description & some <markup>.]]></description>\n");
+        pom.append("  <url>https://example.org/module</url>\n");
+        pom.append("  <licenses><license><name>The Apache Software License, Version 2.0</name><url>http://www.apache.org/licenses/LICENSE-2.0.txt</url><distribution>repo</distribution></license></licenses>\n");
+        pom.append("  <developers>\n");
+        for (int i = 0; i < 5; i++) {
+            pom.append("    <developer><id>dev").append(i).append("</id><name>Developer ").append(i).append("</name><email>dev").append(i).append("@example.org</email><roles><role>developer</role></roles></developer>\n");
+        }
+        pom.append("  </developers>\n");
+        pom.append("  <scm><connection>scm:git:git://example.org/module.git</connection><url>https://example.org/module</url></scm>\n");
+        pom.append("  <properties>\n");
+        pom.append("    <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n");
+        pom.append("    <lib.version>2.").append(index).append("</lib.version>\n");
+        pom.append("  </properties>\n");
+        pom.append("  <dependencyManagement><dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            dependency(pom, "managed", i, "${lib.version}", null);
+        }
+        pom.append("  </dependencies></dependencyManagement>\n");
+        pom.append("  <dependencies>\n");
+        for (int i = 0; i < dependencies; i++) {
+            dependency(pom, "lib", i, i % 2 == 0 ? "1." + i : null, i % 5 == 0 ? "test" : null);
+        }
+        pom.append("  </dependencies>\n");
+        pom.append("  <build><plugins>\n");
+        for (int i = 0; i < 10; i++) {
+            pom.append("    <plugin><groupId>org.apache.maven.plugins</groupId><artifactId>maven-plugin-").append(i).append("</artifactId><version>3.").append(i).append("</version>");
+            pom.append("<configuration><source>1.6</source><target>1.6</target><excludes><exclude>**/*Test.java</exclude></excludes></configuration>");
+            pom.append("<executions><execution><id>default</id><phase>package</phase><goals><goal>run</goal></goals></execution></executions></plugin>\n");
+        }
+        pom.append("  </plugins></build>\n");
+        pom.append("  <reporting><plugins><plugin><artifactId>maven-javadoc-plugin</artifactId></plugin></plugins></reporting>\n");
+        pom.append("  <profiles><profile><id>release</id><build><plugins><plugin><artifactId>maven-gpg-plugin</artifactId></plugin></plugins></build></profile></profiles>\n");
+        pom.append("</project>\n");
+        return pom.toString();
+    }
+
+    private static void dependency(StringBuilder pom, String prefix, int index, String version, String scope) {
+        pom.append("    <dependency><groupId>org.example.").append(prefix).append("</groupId><artifactId>").append(prefix).append("-").append(index).append("</artifactId>");
+        if (version != null) {
+            pom.append("<version>").append(version).append("</version>");
+        }
+        if (scope != null) {
+            pom.append("<scope>").append(scope).append("</scope>");
+        }
+        if (index % 3 == 0) {
+            pom.append("<exclusions><exclusion><groupId>commons-logging</groupId><artifactId>commons-logging</artifactId></exclusion></exclusions>");
+        }
+        pom.append("</dependency>\n");
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.excludes;
+
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.internal.component.external.descriptor.DefaultExclude;
+import org.gradle.internal.component.model.DefaultIvyArtifactName;
+import org.gradle.internal.component.model.ExcludeMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Simulates the exclude algebra of a graph traversal: exclusions are intersected along each path, and unioned where paths meet.
+ * The exclude rules are taken from commonly seen POM files.
+ */
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class ModuleExclusionsBenchmark {
+    private static final String[][] COMMON_EXCLUDES = {
+        {"commons-logging", "commons-logging"},
+        {"log4j", "log4j"},
+        {"org.slf4j", "slf4j-log4j12"},
+        {"org.slf4j", "slf4j-simple"},
+        {"javax.servlet", "servlet-api"},
+        {"javax.servlet", "*"},
+        {"xml-apis", "xml-apis"},
+        {"xerces", "xercesImpl"},
+        {"junit", "junit"},
+        {"org.hamcrest", "hamcrest-core"},
+        {"com.sun.jmx", "jmxri"},
+        {"com.sun.jdmk", "jmxtools"},
+        {"javax.jms", "jms"},
+        {"org.mortbay.jetty", "*"},
+        {"*", "jsr305"},
+        {"asm", "asm"},
+        {"org.ow2.asm", "*"},
+        {"*", "*"},
+    };
+
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory = new DefaultImmutableModuleIdentifierFactory();
+
+    @Param({"1000", "10000"})
+    int edges;
+
+    private List<ImmutableList<ExcludeMetadata>> edgeExcludes;
+    private int[] parents;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<ExcludeMetadata> rules = new ArrayList<ExcludeMetadata>();
+        for (String[] exclude : COMMON_EXCLUDES) {
+            rules.add(new DefaultExclude(moduleIdentifierFactory.module(exclude[0], exclude[1])));
+        }
+        rules.add(new DefaultExclude(moduleIdentifierFactory.module("*", "*"), new DefaultIvyArtifactName("tests", "jar", "jar"), new String[0], PatternMatchers.EXACT));
+        rules.add(new DefaultExclude(moduleIdentifierFactory.module("org.apache.*", "*"), new String[0], "regexp"));
+
+        edgeExcludes = new ArrayList<ImmutableList<ExcludeMetadata>>(edges);
+        parents = new int[edges];
+        for (int i = 0; i < edges; i++) {
+            // Most dependencies declare no excludes, some declare a few
+            int count = random.nextInt(10) < 7 ? 0 : 1 + random.nextInt(4);
+            ImmutableList.Builder<ExcludeMetadata> builder = ImmutableList.builder();
+            for (int j = 0; j < count; j++) {
+                builder.add(rules.get(random.nextInt(rules.size())));
+            }
+            edgeExcludes.add(builder.build());
+            parents[i] = i == 0 ? -1 : random.nextInt(i);
+        }
+    }
+
+    @Benchmark
+    public void resolveExclusions(Blackhole blackhole) {
+        ModuleExclusions moduleExclusions = new ModuleExclusions(moduleIdentifierFactory);
+        ModuleExclusion[] pathExclusions = new ModuleExclusion[edges];
+        ModuleExclusion[] nodeExclusions = new ModuleExclusion[edges];
+        for (int i = 0; i < edges; i++) {
+            ModuleExclusion edgeExclusion = moduleExclusions.excludeAny(edgeExcludes.get(i));
+            ModuleExclusion inherited = parents[i] < 0 ? ModuleExclusions.excludeNone() : pathExclusions[parents[i]];
+            pathExclusions[i] = moduleExclusions.intersect(inherited, edgeExclusion);
+
+            // Several paths lead to the same node
+            int node = i % (edges / 4 + 1);
+            nodeExclusions[node] = nodeExclusions[node] == null ? pathExclusions[i] : moduleExclusions.union(nodeExclusions[node], pathExclusions[i]);
+        }
+        blackhole.consume(nodeExclusions);
+    }
+}
@@ -39,6 +39,7 @@ import org.gradle.api.internal.artifacts.dsl.dependencies.DefaultDependencyHandl
 import org.gradle.api.internal.artifacts.dsl.dependencies.DependencyFactory;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
 import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.CachingResolvedGraphConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.DefaultConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.ErrorHandlingConfigurationResolver;
 import org.gradle.api.internal.artifacts.ivyservice.IvyContextManager;
@@ -54,6 +55,7 @@ import org.gradle.api.internal.artifacts.ivyservice.publisher.DefaultIvyDependen
 import org.gradle.api.internal.artifacts.ivyservice.publisher.IvyBackedArtifactPublisher;
 import org.gradle.api.internal.artifacts.ivyservice.publisher.IvyXmlModuleDescriptorWriter;
 import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolutionResultsStoreFactory;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
 import org.gradle.api.internal.artifacts.mvnsettings.LocalMavenRepositoryLocator;
 import org.gradle.api.internal.artifacts.query.ArtifactResolutionQueryFactory;
 import org.gradle.api.internal.artifacts.query.DefaultArtifactResolutionQueryFactory;
@@ -68,6 +70,7 @@ import org.gradle.api.internal.artifacts.type.DefaultArtifactTypeRegistry;
 import org.gradle.api.internal.attributes.AttributesSchemaInternal;
 import org.gradle.api.internal.attributes.DefaultAttributesSchema;
 import org.gradle.api.internal.attributes.ImmutableAttributesFactory;
+import org.gradle.api.internal.changedetection.state.ValueSnapshotter;
 import org.gradle.api.internal.changedetection.state.isolation.IsolatableFactory;
 import org.gradle.api.internal.component.ComponentTypeRegistry;
 import org.gradle.api.internal.file.FileCollectionFactory;
@@ -244,27 +247,34 @@ public class DefaultDependencyManagementServices implements DependencyManagement
                                                        BuildOperationExecutor buildOperationExecutor,
                                                        ArtifactTypeRegistry artifactTypeRegistry,
                                                        VersionSelectorScheme versionSelectorScheme,
-                                                       ComponentSelectorConverter componentSelectorConverter) {
+                                                       ComponentSelectorConverter componentSelectorConverter,
+                                                       ResolvedGraphCache resolvedGraphCache,
+                                                       ClassLoaderHierarchyHasher classLoaderHierarchyHasher,
+                                                       ValueSnapshotter valueSnapshotter) {
+            ConfigurationResolver resolver = new DefaultConfigurationResolver(
+                artifactDependencyResolver,
+                repositories,
+                metadataHandler,
+                resolutionResultsStoreFactory,
+                startParameter.isBuildProjectDependencies(),
+                attributesSchema,
+                new DefaultArtifactTransforms(
+                    new VariantAttributeMatchingCache(
+                        variantTransforms,
+                        attributesSchema,
+                        attributesFactory),
+                    attributesSchema),
+                moduleIdentifierFactory,
+                buildOperationExecutor,
+                artifactTypeRegistry,
+                versionSelectorScheme,
+                componentSelectorConverter);
+            if (Boolean.getBoolean(CachingResolvedGraphConfigurationResolver.GRAPH_CACHE_PROPERTY)) {
+                resolver = new CachingResolvedGraphConfigurationResolver(resolver, resolvedGraphCache, repositories, metadataHandler, versionSelectorScheme, attributesSchema, classLoaderHierarchyHasher, valueSnapshotter, startParameter.isRefreshDependencies());
+            }
             return new ErrorHandlingConfigurationResolver(
                     new ShortCircuitEmptyConfigurationResolver(
-                        new DefaultConfigurationResolver(
-                            artifactDependencyResolver,
-                            repositories,
-                            metadataHandler,
-                            resolutionResultsStoreFactory,
-                            startParameter.isBuildProjectDependencies(),
-                            attributesSchema,
-                            new DefaultArtifactTransforms(
-                                new VariantAttributeMatchingCache(
-                                    variantTransforms,
-                                    attributesSchema,
-                                    attributesFactory),
-                                attributesSchema),
-                            moduleIdentifierFactory,
-                            buildOperationExecutor,
-                            artifactTypeRegistry,
-                            versionSelectorScheme,
-                            componentSelectorConverter),
+                        resolver,
                         componentIdentifierFactory,
                         moduleIdentifierFactory));
         }
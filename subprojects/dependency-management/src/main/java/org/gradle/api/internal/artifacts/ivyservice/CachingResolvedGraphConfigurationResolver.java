@@ -0,0 +1,439 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.artifacts.ClientModule;
+import org.gradle.api.artifacts.Configuration;
+import org.gradle.api.artifacts.Dependency;
+import org.gradle.api.artifacts.DependencyArtifact;
+import org.gradle.api.artifacts.ExcludeRule;
+import org.gradle.api.artifacts.ExternalModuleDependency;
+import org.gradle.api.artifacts.ModuleIdentifier;
+import org.gradle.api.artifacts.ModuleVersionSelector;
+import org.gradle.api.artifacts.ResolveException;
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.artifacts.dsl.RepositoryHandler;
+import org.gradle.api.artifacts.repositories.ArtifactRepository;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolutionResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.attributes.Attribute;
+import org.gradle.api.attributes.AttributeMatchingStrategy;
+import org.gradle.api.internal.artifacts.ConfigurationResolver;
+import org.gradle.api.internal.artifacts.DefaultModuleIdentifier;
+import org.gradle.api.internal.artifacts.DefaultResolverResults;
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules;
+import org.gradle.api.internal.artifacts.Module;
+import org.gradle.api.internal.artifacts.ResolverResults;
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal;
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal;
+import org.gradle.api.internal.artifacts.configurations.dynamicversion.CachePolicy;
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData;
+import org.gradle.api.internal.artifacts.ivyservice.dynamicversions.DefaultResolvedModuleVersion;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.BuildDependenciesVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResultGraphVisitor;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache;
+import org.gradle.api.internal.artifacts.repositories.ResolutionAwareRepository;
+import org.gradle.api.internal.artifacts.result.DefaultResolutionResult;
+import org.gradle.api.internal.attributes.AttributeContainerInternal;
+import org.gradle.api.internal.attributes.AttributesSchemaInternal;
+import org.gradle.api.internal.attributes.DefaultCompatibilityRuleChain;
+import org.gradle.api.internal.attributes.DefaultDisambiguationRuleChain;
+import org.gradle.api.internal.changedetection.state.ValueSnapshotter;
+import org.gradle.api.internal.changedetection.state.isolation.IsolationException;
+import org.gradle.api.specs.Spec;
+import org.gradle.caching.internal.BuildCacheHasher;
+import org.gradle.caching.internal.DefaultBuildCacheHasher;
+import org.gradle.internal.Factory;
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.util.GradleVersion;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reuses the dependency graph of a configuration from a previous build when none of the inputs of the resolution have changed.
+ *
+ * <p>Only configurations that consist of external module dependencies, and that have no dependency substitution, component selection or component metadata rules, are cached.
+ * The key of a graph includes the attributes schema, so a configuration whose attribute matching rules cannot be snapshotted is not cached either.
+ * A cached graph is discarded when the cache policy of the configuration requires a dynamic version or a changing module in the graph to be refreshed, or when a module in the graph
+ * takes part in a module replacement.</p>
+ *
+ * <p>Only the resolution result is cached, not the artifacts of the configuration: the artifact sets of the graph refer to the component metadata
+ * and repositories of the build that resolved it. So only consumers of the resolution result, such as dependency reports and insight tasks, skip
+ * the graph traversal. Resolving the files of a configuration, for example of a compile or runtime classpath, still traverses the whole graph:
+ * when the artifacts of a cached graph are requested, the configuration is resolved once more, in full.</p>
+ */
+public class CachingResolvedGraphConfigurationResolver implements ConfigurationResolver {
+    /**
+     * Enables the cache. Worth it only for builds that query the resolution result of configurations without resolving their files.
+     */
+    public static final String GRAPH_CACHE_PROPERTY = "org.gradle.internal.resolution.graphcache";
+
+    private final ConfigurationResolver delegate;
+    private final ResolvedGraphCache graphCache;
+    private final RepositoryHandler repositories;
+    private final GlobalDependencyResolutionRules metadataHandler;
+    private final VersionSelectorScheme versionSelectorScheme;
+    private final AttributesSchemaInternal attributesSchema;
+    private final ClassLoaderHierarchyHasher classLoaderHierarchyHasher;
+    private final ValueSnapshotter valueSnapshotter;
+    private final boolean refreshDependencies;
+
+    public CachingResolvedGraphConfigurationResolver(ConfigurationResolver delegate, ResolvedGraphCache graphCache, RepositoryHandler repositories, GlobalDependencyResolutionRules metadataHandler, VersionSelectorScheme versionSelectorScheme,
+                                                     AttributesSchemaInternal attributesSchema, ClassLoaderHierarchyHasher classLoaderHierarchyHasher, ValueSnapshotter valueSnapshotter, boolean refreshDependencies) {
+        this.delegate = delegate;
+        this.graphCache = graphCache;
+        this.repositories = repositories;
+        this.metadataHandler = metadataHandler;
+        this.versionSelectorScheme = versionSelectorScheme;
+        this.attributesSchema = attributesSchema;
+        this.classLoaderHierarchyHasher = classLoaderHierarchyHasher;
+        this.valueSnapshotter = valueSnapshotter;
+        this.refreshDependencies = refreshDependencies;
+    }
+
+    @Override
+    public void resolveBuildDependencies(ConfigurationInternal configuration, ResolverResults result) {
+        delegate.resolveBuildDependencies(configuration, result);
+    }
+
+    @Override
+    public void resolveGraph(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
+        String key = graphKey(configuration);
+        if (key == null) {
+            delegate.resolveGraph(configuration, results);
+            return;
+        }
+
+        ResolvedGraphCache.CachedGraph cachedGraph = graphCache.get(key);
+        if (cachedGraph != null && isUpToDate(configuration, cachedGraph)) {
+            CachedGraphArtifacts artifacts = new CachedGraphArtifacts(configuration);
+            results.graphResolved(resolutionResult(cachedGraph.getRoot()), new ResolvedLocalComponentsResultGraphVisitor(), artifacts);
+            results.retainState(artifacts);
+            return;
+        }
+
+        delegate.resolveGraph(configuration, results);
+        if (!results.hasError()) {
+            ResolvedComponentResult root = results.getResolutionResult().getRoot();
+            if (isCacheable(root) && !hasReplacements(root)) {
+                graphCache.put(key, root);
+            }
+        }
+    }
+
+    @Override
+    public void resolveArtifacts(ConfigurationInternal configuration, ResolverResults results) throws ResolveException {
+        Object artifactResolveState = results.getArtifactResolveState();
+        if (artifactResolveState instanceof CachedGraphArtifacts) {
+            // The artifacts are calculated while traversing the graph, so resolve the configuration in full
+            ResolverResults fullResults = ((CachedGraphArtifacts) artifactResolveState).resolveFully();
+            results.artifactsResolved(fullResults.getResolvedConfiguration(), fullResults.getVisitedArtifacts());
+            return;
+        }
+        delegate.resolveArtifacts(configuration, results);
+    }
+
+    /**
+     * Calculates a key from the inputs of the resolution, or returns null when the graph of the configuration cannot be cached.
+     */
+    @Nullable
+    private String graphKey(ConfigurationInternal configuration) {
+        ResolutionStrategyInternal resolutionStrategy = configuration.getResolutionStrategy();
+        if (refreshDependencies
+            || metadataHandler.getDependencySubstitutionRules().hasRules()
+            || resolutionStrategy.getDependencySubstitution().hasRules()
+            || !resolutionStrategy.getComponentSelection().getRules().isEmpty()
+            || metadataHandler.getComponentMetadataProcessor().hasRules()) {
+            return null;
+        }
+
+        BuildCacheHasher hasher = new DefaultBuildCacheHasher();
+        hasher.putString(GradleVersion.current().getVersion());
+        hasher.putString(configuration.getPath());
+        Module module = configuration.getModule();
+        putNullableString(hasher, module.getProjectPath());
+        putNullableString(hasher, module.getGroup());
+        putNullableString(hasher, module.getName());
+        putNullableString(hasher, module.getVersion());
+        putNullableString(hasher, module.getStatus());
+
+        AttributeContainerInternal attributes = configuration.getAttributes();
+        for (Attribute<?> attribute : sortedByName(attributes.keySet())) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            hasher.putString(String.valueOf(attributes.getAttribute(attribute)));
+        }
+        if (!putAttributesSchema(hasher)) {
+            return null;
+        }
+
+        hasher.putString(resolutionStrategy.getConflictResolution().name());
+        for (ModuleVersionSelector forcedModule : resolutionStrategy.getForcedModules()) {
+            putNullableString(hasher, forcedModule.getGroup());
+            hasher.putString(forcedModule.getName());
+            putNullableString(hasher, forcedModule.getVersion());
+        }
+
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            if (!(dependency instanceof ExternalModuleDependency) || dependency instanceof ClientModule) {
+                return null;
+            }
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            putNullableString(hasher, moduleDependency.getGroup());
+            hasher.putString(moduleDependency.getName());
+            putNullableString(hasher, moduleDependency.getVersion());
+            hasher.putInt(moduleDependency.getVersionConstraint().getRejectedVersions().size());
+            for (String rejectedVersion : moduleDependency.getVersionConstraint().getRejectedVersions()) {
+                hasher.putString(rejectedVersion);
+            }
+            putNullableString(hasher, moduleDependency.getTargetConfiguration());
+            hasher.putBoolean(moduleDependency.isTransitive());
+            hasher.putBoolean(moduleDependency.isForce());
+            hasher.putBoolean(moduleDependency.isChanging());
+            putExcludeRules(hasher, moduleDependency.getExcludeRules());
+            hasher.putInt(moduleDependency.getArtifacts().size());
+            for (DependencyArtifact artifact : moduleDependency.getArtifacts()) {
+                hasher.putString(artifact.getName());
+                putNullableString(hasher, artifact.getType());
+                putNullableString(hasher, artifact.getExtension());
+                putNullableString(hasher, artifact.getClassifier());
+            }
+        }
+        for (Configuration configurationInHierarchy : configuration.getHierarchy()) {
+            putExcludeRules(hasher, configurationInHierarchy.getExcludeRules());
+        }
+
+        for (ArtifactRepository repository : repositories) {
+            hasher.putString(((ResolutionAwareRepository) repository).createResolver().getId());
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Adds the attributes of the schema and their matching rules to the key, or returns false when a rule cannot be snapshotted.
+     */
+    private boolean putAttributesSchema(BuildCacheHasher hasher) {
+        for (Attribute<?> attribute : sortedByName(attributesSchema.getAttributes())) {
+            hasher.putString(attribute.getName());
+            hasher.putString(attribute.getType().getName());
+            AttributeMatchingStrategy<?> matchingStrategy = attributesSchema.getMatchingStrategy(attribute);
+            if (!(matchingStrategy.getCompatibilityRules() instanceof DefaultCompatibilityRuleChain)
+                || !(matchingStrategy.getDisambiguationRules() instanceof DefaultDisambiguationRuleChain)) {
+                return false;
+            }
+            if (!putRuleDefinition(hasher, ((DefaultCompatibilityRuleChain<?>) matchingStrategy.getCompatibilityRules()).getRuleDefinitions())
+                || !putRuleDefinition(hasher, ((DefaultDisambiguationRuleChain<?>) matchingStrategy.getDisambiguationRules()).getRuleDefinitions())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean putRuleDefinition(BuildCacheHasher hasher, @Nullable Object definition) {
+        if (definition instanceof List) {
+            List<?> elements = (List<?>) definition;
+            hasher.putInt(elements.size());
+            for (Object element : elements) {
+                if (!putRuleDefinition(hasher, element)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (definition instanceof Class) {
+            Class<?> ruleType = (Class<?>) definition;
+            HashCode classLoaderHash = classLoaderHierarchyHasher.getClassLoaderHash(ruleType.getClassLoader());
+            if (classLoaderHash == null) {
+                return false;
+            }
+            hasher.putString(ruleType.getName());
+            hasher.putHash(classLoaderHash);
+            return true;
+        }
+        try {
+            valueSnapshotter.snapshot(definition).appendToHasher(hasher);
+            return true;
+        } catch (UncheckedIOException e) {
+            return false;
+        } catch (IsolationException e) {
+            return false;
+        }
+    }
+
+    private static List<Attribute<?>> sortedByName(Set<Attribute<?>> attributes) {
+        List<Attribute<?>> sorted = new ArrayList<Attribute<?>>(attributes);
+        Collections.sort(sorted, new Comparator<Attribute<?>>() {
+            @Override
+            public int compare(Attribute<?> left, Attribute<?> right) {
+                return left.getName().compareTo(right.getName());
+            }
+        });
+        return sorted;
+    }
+
+    private static void putExcludeRules(BuildCacheHasher hasher, Set<ExcludeRule> excludeRules) {
+        hasher.putInt(excludeRules.size());
+        for (ExcludeRule excludeRule : excludeRules) {
+            putNullableString(hasher, excludeRule.getGroup());
+            putNullableString(hasher, excludeRule.getModule());
+        }
+    }
+
+    private static void putNullableString(BuildCacheHasher hasher, @Nullable String value) {
+        if (value == null) {
+            hasher.putNull();
+        } else {
+            hasher.putString(value);
+        }
+    }
+
+    /**
+     * Only graphs where all dependencies were resolved to external modules are cached, as these have no build dependencies.
+     */
+    private static boolean isCacheable(ResolvedComponentResult root) {
+        Set<ResolvedComponentResult> seen = new HashSet<ResolvedComponentResult>();
+        seen.add(root);
+        return isCacheable(root, seen);
+    }
+
+    private static boolean isCacheable(ResolvedComponentResult component, Set<ResolvedComponentResult> seen) {
+        for (DependencyResult dependency : component.getDependencies()) {
+            if (!(dependency instanceof ResolvedDependencyResult)) {
+                return false;
+            }
+            ResolvedComponentResult selected = ((ResolvedDependencyResult) dependency).getSelected();
+            if (!(selected.getId() instanceof ModuleComponentIdentifier)) {
+                return false;
+            }
+            if (seen.add(selected) && !isCacheable(selected, seen)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Module replacements are applied during conflict resolution, so a graph that contains a module taking part in a replacement is not reused.
+     */
+    private boolean hasReplacements(ResolvedComponentResult root) {
+        ModuleReplacementsData moduleReplacements = metadataHandler.getModuleMetadataProcessor().getModuleReplacements();
+        for (ResolvedComponentResult component : resolutionResult(root).getAllComponents()) {
+            if (moduleReplacements.participatesInReplacements(component.getModuleVersion().getModule())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isUpToDate(ConfigurationInternal configuration, ResolvedGraphCache.CachedGraph cachedGraph) {
+        if (hasReplacements(cachedGraph.getRoot())) {
+            return false;
+        }
+        CachePolicy cachePolicy = configuration.getResolutionStrategy().getCachePolicy();
+        long ageMillis = cachedGraph.getAgeMillis();
+
+        Set<ModuleIdentifier> changingModules = new HashSet<ModuleIdentifier>();
+        for (Dependency dependency : configuration.getAllDependencies()) {
+            ExternalModuleDependency moduleDependency = (ExternalModuleDependency) dependency;
+            if (moduleDependency.isChanging()) {
+                changingModules.add(DefaultModuleIdentifier.newId(moduleDependency.getGroup(), moduleDependency.getName()));
+            }
+        }
+
+        Set<ResolvedComponentResult> checked = new HashSet<ResolvedComponentResult>();
+        for (DependencyResult dependency : resolutionResult(cachedGraph.getRoot()).getAllDependencies()) {
+            ComponentSelector requested = dependency.getRequested();
+            ResolvedComponentResult selected = ((ResolvedDependencyResult) dependency).getSelected();
+            if (requested instanceof ModuleComponentSelector
+                && versionSelectorScheme.parseSelector(((ModuleComponentSelector) requested).getVersion()).isDynamic()
+                && cachePolicy.mustRefreshVersionList(selected.getModuleVersion().getModule(), Collections.singleton(selected.getModuleVersion()), ageMillis)) {
+                return false;
+            }
+            if (checked.add(selected)) {
+                ModuleComponentIdentifier componentId = (ModuleComponentIdentifier) selected.getId();
+                boolean changing = componentId.getVersion().endsWith("-SNAPSHOT") || changingModules.contains(selected.getModuleVersion().getModule());
+                if (changing && cachePolicy.mustRefreshChangingModule(componentId, new DefaultResolvedModuleVersion(selected.getModuleVersion()), ageMillis)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static ResolutionResult resolutionResult(final ResolvedComponentResult root) {
+        return new DefaultResolutionResult(new Factory<ResolvedComponentResult>() {
+            @Override
+            public ResolvedComponentResult create() {
+                return root;
+            }
+        });
+    }
+
+    /**
+     * The artifacts of a cached graph. The graph only contains external modules, so there are no build dependencies. The artifacts themselves are
+     * calculated by resolving the configuration in full, at most once, when they are first requested.
+     */
+    private class CachedGraphArtifacts implements VisitedArtifactSet {
+        private final ConfigurationInternal configuration;
+        private ResolverResults fullResults;
+
+        CachedGraphArtifacts(ConfigurationInternal configuration) {
+            this.configuration = configuration;
+        }
+
+        synchronized ResolverResults resolveFully() {
+            if (fullResults == null) {
+                ResolverResults results = new DefaultResolverResults();
+                delegate.resolveGraph(configuration, results);
+                delegate.resolveArtifacts(configuration, results);
+                fullResults = results;
+            }
+            return fullResults;
+        }
+
+        @Override
+        public SelectedArtifactSet select(final Spec<? super Dependency> dependencySpec, final AttributeContainerInternal requestedAttributes, final Spec<? super ComponentIdentifier> componentSpec, final boolean allowNoMatchingVariant) {
+            return new SelectedArtifactSet() {
+                @Override
+                public void collectBuildDependencies(BuildDependenciesVisitor visitor) {
+                }
+
+                @Override
+                public void visitArtifacts(ArtifactVisitor visitor, boolean continueOnSelectionFailure) {
+                    resolveFully().getVisitedArtifacts().select(dependencySpec, requestedAttributes, componentSpec, allowNoMatchingVariant).visitArtifacts(visitor, continueOnSelectionFailure);
+                }
+            };
+        }
+    }
+}
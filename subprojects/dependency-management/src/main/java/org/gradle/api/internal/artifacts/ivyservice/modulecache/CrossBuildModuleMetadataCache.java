@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache;
+
+import org.gradle.cache.internal.CrossBuildInMemoryCache;
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+
+import javax.annotation.Nullable;
+
+/**
+ * Retains the module metadata read from the module metadata store across the builds run by this process, so that each descriptor is deserialized once.
+ *
+ * <p>A value is only reused while the index entry it was read for is unchanged: once the entry is refreshed, by this or another process, the descriptor is read again.
+ * Whether the entry itself is still up-to-date is left to the cache policy, exactly as for metadata read from the store. Values that have not been used
+ * by the current or previous build are only softly referenced, so the cache is bounded by the available memory.</p>
+ *
+ * <p>Only metadata without variants is retained. The attributes of variants are interned by the {@link org.gradle.api.internal.attributes.ImmutableAttributesFactory}
+ * of the build session that read them, so metadata with variants is read from the store again by each build session.</p>
+ */
+public class CrossBuildModuleMetadataCache {
+    private final CrossBuildInMemoryCache<ModuleComponentAtRepositoryKey, CachedModuleMetadata> cache;
+
+    public CrossBuildModuleMetadataCache(CrossBuildInMemoryCacheFactory cacheFactory) {
+        this.cache = cacheFactory.newCache();
+    }
+
+    @Nullable
+    ModuleComponentResolveMetadata get(ModuleComponentAtRepositoryKey key, long createTimestamp) {
+        CachedModuleMetadata cached = cache.get(key);
+        if (cached == null || cached.createTimestamp != createTimestamp) {
+            return null;
+        }
+        return cached.metadata;
+    }
+
+    void put(ModuleComponentAtRepositoryKey key, long createTimestamp, ModuleComponentResolveMetadata metadata) {
+        if (!metadata.getVariants().isEmpty()) {
+            return;
+        }
+        cache.put(key, new CachedModuleMetadata(createTimestamp, metadata));
+    }
+
+    private static class CachedModuleMetadata {
+        private final long createTimestamp;
+        private final ModuleComponentResolveMetadata metadata;
+
+        CachedModuleMetadata(long createTimestamp, ModuleComponentResolveMetadata metadata) {
+            this.createTimestamp = createTimestamp;
+            this.metadata = metadata;
+        }
+    }
+}
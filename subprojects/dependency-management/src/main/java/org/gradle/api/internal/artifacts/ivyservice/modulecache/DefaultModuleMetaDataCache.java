@@ -43,11 +43,13 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
     private final CacheLockingManager cacheLockingManager;
 
     private final ModuleMetadataStore moduleMetadataStore;
+    private final CrossBuildModuleMetadataCache crossBuildCache;
     private PersistentIndexedCache<ModuleComponentAtRepositoryKey, ModuleMetadataCacheEntry> cache;
 
-    public DefaultModuleMetaDataCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ArtifactCacheMetaData artifactCacheMetaData, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ImmutableAttributesFactory attributesFactory, NamedObjectInstantiator instantiator) {
+    public DefaultModuleMetaDataCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ArtifactCacheMetaData artifactCacheMetaData, ImmutableModuleIdentifierFactory moduleIdentifierFactory, ImmutableAttributesFactory attributesFactory, NamedObjectInstantiator instantiator, CrossBuildModuleMetadataCache crossBuildCache) {
         this.timeProvider = timeProvider;
         this.cacheLockingManager = cacheLockingManager;
+        this.crossBuildCache = crossBuildCache;
 
         moduleMetadataStore = new ModuleMetadataStore(new DefaultPathKeyFileStore(artifactCacheMetaData.getMetaDataStoreDirectory()), new ModuleMetadataSerializer(attributesFactory, instantiator), moduleIdentifierFactory);
     }
@@ -76,13 +78,19 @@ public class DefaultModuleMetaDataCache implements ModuleMetaDataCache {
                 if (entry.isMissing()) {
                     return new DefaultCachedMetaData(entry, null, timeProvider);
                 }
+                ModuleComponentResolveMetadata cachedMetadata = crossBuildCache.get(key, entry.createTimestamp);
+                if (cachedMetadata != null) {
+                    return new DefaultCachedMetaData(entry, cachedMetadata, timeProvider);
+                }
                 MutableModuleComponentResolveMetadata metadata = moduleMetadataStore.getModuleDescriptor(key);
                 if (metadata == null) {
                     // Descriptor file has been deleted - ignore the entry
                     cache.remove(key);
                     return null;
                 }
-                return new DefaultCachedMetaData(entry, entry.configure(metadata), timeProvider);
+                ModuleComponentResolveMetadata configured = entry.configure(metadata);
+                crossBuildCache.put(key, entry.createTimestamp, configured);
+                return new DefaultCachedMetaData(entry, configured, timeProvider);
             }
         });
     }
@@ -60,6 +60,10 @@ public class ModuleExclusions {
     private final Map<MergeOperation, AbstractModuleExclusion> mergeCache = Maps.newConcurrentMap();
     private final Map<ImmutableList<ExcludeMetadata>, AbstractModuleExclusion> excludeAnyCache = Maps.newConcurrentMap();
     private final Map<ImmutableSet<AbstractModuleExclusion>, IntersectionExclusion> intersectionCache = Maps.newConcurrentMap();
+    private final Map<List<AbstractModuleExclusion>, UnionExclusion> unionCache = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> intersectResults = Maps.newConcurrentMap();
+    private final Map<ExclusionPair, ModuleExclusion> unionResults = Maps.newConcurrentMap();
+    private final Map<AbstractModuleExclusion, AbstractModuleExclusion> otherSpecs = Maps.newConcurrentMap();
     private final Map<AbstractModuleExclusion[], Map<AbstractModuleExclusion[], MergeOperation>> mergeOperationCache = Maps.newIdentityHashMap();
     private final Map<ModuleIdentifier, ModuleIdExcludeSpec> moduleIdSpecs = Maps.newConcurrentMap();
     private final Map<String, ModuleNameExcludeSpec> moduleNameSpecs = Maps.newConcurrentMap();
@@ -111,7 +115,7 @@ public class ModuleExclusions {
     private AbstractModuleExclusion forExclude(ExcludeMetadata rule) {
         // For custom ivy pattern matchers, don't inspect the rule any more deeply: this prevents us from doing smart merging later
         if (!PatternMatchers.isExactMatcher(rule.getMatcher())) {
-            return new IvyPatternMatcherExcludeRuleSpec(rule);
+            return intern(new IvyPatternMatcherExcludeRuleSpec(rule));
         }
 
         ModuleIdentifier moduleId = rule.getModuleId();
@@ -131,10 +135,19 @@ public class ModuleExclusions {
                 return EXCLUDE_ALL_MODULES_SPEC;
             }
         } else {
-            return new ArtifactExcludeSpec(moduleId, artifact);
+            return intern(new ArtifactExcludeSpec(moduleId, artifact));
         }
     }
 
+    private AbstractModuleExclusion intern(AbstractModuleExclusion spec) {
+        AbstractModuleExclusion interned = otherSpecs.get(spec);
+        if (interned == null) {
+            interned = spec;
+            otherSpecs.put(spec, spec);
+        }
+        return interned;
+    }
+
     private ModuleIdExcludeSpec moduleIdExcludeSpec(ModuleIdentifier id) {
         ModuleIdExcludeSpec spec = moduleIdSpecs.get(id);
         if (spec == null) {
@@ -175,6 +188,17 @@ public class ModuleExclusions {
         if (two == EXCLUDE_NONE) {
             return one;
         }
+        // Exclusions are interned, so the same operands are seen many times while traversing the graph
+        ExclusionPair pair = new ExclusionPair(one, two);
+        ModuleExclusion result = intersectResults.get(pair);
+        if (result == null) {
+            result = doIntersect(one, two);
+            intersectResults.put(pair, result);
+        }
+        return result;
+    }
+
+    private ModuleExclusion doIntersect(ModuleExclusion one, ModuleExclusion two) {
         if (one.equals(two)) {
             return one;
         }
@@ -213,6 +237,16 @@ public class ModuleExclusions {
         if (one == EXCLUDE_NONE || two == EXCLUDE_NONE) {
             return EXCLUDE_NONE;
         }
+        ExclusionPair pair = new ExclusionPair(one, two);
+        ModuleExclusion result = unionResults.get(pair);
+        if (result == null) {
+            result = doUnion(one, two);
+            unionResults.put(pair, result);
+        }
+        return result;
+    }
+
+    private ModuleExclusion doUnion(ModuleExclusion one, ModuleExclusion two) {
         if (one.equals(two)) {
             return one;
         }
@@ -241,7 +275,16 @@ public class ModuleExclusions {
         if (specs.size() == 1) {
             return specs.get(0);
         }
-        return new UnionExclusion(specs);
+        return asUnion(specs);
+    }
+
+    private UnionExclusion asUnion(List<AbstractModuleExclusion> specs) {
+        UnionExclusion cached = unionCache.get(specs);
+        if (cached == null) {
+            cached = new UnionExclusion(specs);
+            unionCache.put(specs, cached);
+        }
+        return cached;
     }
 
     /**
@@ -444,6 +487,39 @@ public class ModuleExclusions {
         }
     }
 
+    /**
+     * The operands of an intersection or union. Uses identity, as exclusions are interned and the comparison needs to be cheaper than the operation itself.
+     */
+    private static final class ExclusionPair {
+        private final ModuleExclusion one;
+        private final ModuleExclusion two;
+        private final int hashCode;
+
+        private ExclusionPair(ModuleExclusion one, ModuleExclusion two) {
+            this.one = one;
+            this.two = two;
+            this.hashCode = 31 * System.identityHashCode(one) + System.identityHashCode(two);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            ExclusionPair that = (ExclusionPair) o;
+            return one == that.one && two == that.two;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
     private static final class MergeSet extends HashSet<AbstractModuleExclusion> {
         private final BitSet remaining;
         private int idx;
@@ -59,6 +59,11 @@ import java.util.List;
 import java.util.Map;
 
 public class DependencyGraphBuilder {
+    /**
+     * The maximum number of components whose metadata is speculatively downloaded ahead of the traversal of a single graph. Prefetching is disabled when not set.
+     */
+    public static final String PREFETCH_METADATA_PROPERTY = "org.gradle.internal.resolution.prefetch";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DependencyGraphBuilder.class);
     private static final Predicate<SelectorState> ALL_SELECTORS = Predicates.alwaysTrue();
     private final ConflictHandler conflictHandler;
@@ -73,6 +78,7 @@ public class DependencyGraphBuilder {
     private final ComponentSelectorConverter componentSelectorConverter;
     private final DependencySubstitutionApplicator dependencySubstitutionApplicator;
     private final ExperimentalFeatures experimentalFeatures;
+    private final int prefetchLimit;
 
     public DependencyGraphBuilder(DependencyToComponentIdResolver componentIdResolver, ComponentMetaDataResolver componentMetaDataResolver,
                                   ResolveContextToComponentResolver resolveContextToComponentResolver,
@@ -94,6 +100,7 @@ public class DependencyGraphBuilder {
         this.dependencySubstitutionApplicator = dependencySubstitutionApplicator;
         this.componentSelectorConverter = componentSelectorConverter;
         this.experimentalFeatures = experimentalFeatures;
+        this.prefetchLimit = Integer.getInteger(PREFETCH_METADATA_PROPERTY, 0);
     }
 
     public void resolve(final ResolveContext resolveContext, final DependencyGraphVisitor modelVisitor) {
@@ -121,6 +128,7 @@ public class DependencyGraphBuilder {
         final List<EdgeState> dependencies = Lists.newArrayList();
         final List<EdgeState> dependenciesMissingLocalMetadata = Lists.newArrayList();
         final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache = Maps.newHashMap();
+        final MetadataPrefetcher prefetcher = prefetchLimit > 0 ? new MetadataPrefetcher(metaDataResolver, prefetchLimit) : null;
 
         final OptionalDependenciesHandler optionalDependenciesHandler;
         if (experimentalFeatures.isEnabled()) {
@@ -139,7 +147,7 @@ public class DependencyGraphBuilder {
                 dependenciesMissingLocalMetadata.clear();
                 node.visitOutgoingDependencies(dependencies, optionalDependenciesHandler);
 
-                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache);
+                resolveEdges(node, dependencies, dependenciesMissingLocalMetadata, resolveState, componentIdentifierCache, prefetcher);
             } else {
                 // We have some batched up conflicts. Resolve the first, and continue traversing the graph
                 conflictHandler.resolveNextConflict(resolveState.getReplaceSelectionWithConflictResultAction());
@@ -218,13 +226,14 @@ public class DependencyGraphBuilder {
                               final List<EdgeState> dependencies,
                               final List<EdgeState> dependenciesMissingMetadataLocally,
                               final ResolveState resolveState,
-                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+                              final Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache,
+                              @Nullable final MetadataPrefetcher prefetcher) {
         if (dependencies.isEmpty()) {
             return;
         }
         performSelectionSerially(dependencies, resolveState);
-        computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, componentIdentifierCache);
-        downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally);
+        computePreemptiveDownloadList(dependencies, dependenciesMissingMetadataLocally, componentIdentifierCache, prefetcher != null);
+        downloadMetadataConcurrently(node, dependenciesMissingMetadataLocally, componentIdentifierCache, prefetcher);
         attachToTargetRevisionsSerially(dependencies);
 
     }
@@ -240,16 +249,22 @@ public class DependencyGraphBuilder {
         }
     }
 
-    private void downloadMetadataConcurrently(NodeState node, final List<EdgeState> dependencies) {
+    private void downloadMetadataConcurrently(NodeState node, final List<EdgeState> dependencies, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, @Nullable final MetadataPrefetcher prefetcher) {
         if (dependencies.isEmpty()) {
             return;
         }
         LOGGER.debug("Submitting {} metadata files to resolve in parallel for {}", dependencies.size(), node);
+        if (prefetcher != null) {
+            // Don't speculatively download what is about to be downloaded anyway
+            for (EdgeState dependency : dependencies) {
+                prefetcher.downloading(toComponentId(dependency.getTargetComponent().getId(), componentIdentifierCache));
+            }
+        }
         buildOperationExecutor.runAll(new Action<BuildOperationQueue<RunnableBuildOperation>>() {
             @Override
             public void execute(BuildOperationQueue<RunnableBuildOperation> buildOperationQueue) {
                 for (final EdgeState dependency : dependencies) {
-                    buildOperationQueue.add(new DownloadMetadataOperation(dependency.getTargetComponent()));
+                    buildOperationQueue.add(new DownloadMetadataOperation(dependency.getTargetComponent(), prefetcher, buildOperationQueue));
                 }
             }
         });
@@ -270,8 +285,9 @@ public class DependencyGraphBuilder {
      *
      * @param dependencies the dependencies to be resolved
      * @param dependenciesToBeResolvedInParallel output, edges which will need parallel metadata download
+     * @param prefetching whether the metadata of the dependencies of the downloaded edges will be prefetched, in which case a single edge is worth downloading in parallel too
      */
-    private void computePreemptiveDownloadList(List<EdgeState> dependencies, List<EdgeState> dependenciesToBeResolvedInParallel, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache) {
+    private void computePreemptiveDownloadList(List<EdgeState> dependencies, List<EdgeState> dependenciesToBeResolvedInParallel, Map<ModuleVersionIdentifier, ComponentIdentifier> componentIdentifierCache, boolean prefetching) {
         for (EdgeState dependency : dependencies) {
             ComponentState targetComponent = dependency.getTargetComponent();
             if (targetComponent != null && !targetComponent.fastResolve() && performPreemptiveDownload(targetComponent)) {
@@ -280,7 +296,7 @@ public class DependencyGraphBuilder {
                 }
             }
         }
-        if (dependenciesToBeResolvedInParallel.size() == 1) {
+        if (dependenciesToBeResolvedInParallel.size() == 1 && !prefetching) {
             // don't bother doing anything in parallel if there's a single edge
             dependenciesToBeResolvedInParallel.clear();
         }
@@ -15,20 +15,31 @@
  */
 package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
 
+import org.gradle.internal.component.model.ComponentResolveMetadata;
 import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationQueue;
 import org.gradle.internal.operations.RunnableBuildOperation;
 import org.gradle.internal.progress.BuildOperationDescriptor;
 
+import javax.annotation.Nullable;
+
 class DownloadMetadataOperation implements RunnableBuildOperation {
     private final ComponentState state;
+    private final MetadataPrefetcher prefetcher;
+    private final BuildOperationQueue<RunnableBuildOperation> queue;
 
-    DownloadMetadataOperation(ComponentState state) {
+    DownloadMetadataOperation(ComponentState state, @Nullable MetadataPrefetcher prefetcher, BuildOperationQueue<RunnableBuildOperation> queue) {
         this.state = state;
+        this.prefetcher = prefetcher;
+        this.queue = queue;
     }
 
     @Override
     public void run(BuildOperationContext context) {
-        state.getMetaData();
+        ComponentResolveMetadata metadata = state.getMetaData();
+        if (prefetcher != null && metadata != null) {
+            prefetcher.prefetchDependenciesOf(metadata, queue);
+        }
     }
 
     @Override
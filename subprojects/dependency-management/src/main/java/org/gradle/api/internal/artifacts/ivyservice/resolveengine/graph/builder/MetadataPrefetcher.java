@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder;
+
+import org.gradle.api.artifacts.component.ComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentIdentifier;
+import org.gradle.api.artifacts.component.ModuleComponentSelector;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionComparator;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.DefaultVersionSelectorScheme;
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme;
+import org.gradle.internal.component.external.descriptor.MavenScope;
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier;
+import org.gradle.internal.component.external.model.MavenDependencyMetadata;
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata;
+import org.gradle.internal.component.external.model.ModuleDependencyMetadata;
+import org.gradle.internal.component.model.ComponentResolveMetadata;
+import org.gradle.internal.component.model.DefaultComponentOverrideMetadata;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver;
+import org.gradle.internal.resolve.result.DefaultBuildableComponentResolveResult;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Speculatively downloads the metadata of the dependencies of a component as soon as the metadata of the component is available,
+ * rather than waiting for the graph traversal to reach them. The downloads are added to the queue that is downloading the metadata
+ * for the current node, so that a deep graph is fetched in a single batch rather than one round-trip per level.
+ *
+ * <p>The prefetched metadata is not attached to the graph. It only warms the in-memory caches of the repositories, so that the
+ * traversal finds the metadata cheap to fetch when it reaches the component. Dependencies with dynamic versions, and Maven dependencies
+ * that are never part of a resolved graph, are not prefetched.</p>
+ */
+class MetadataPrefetcher {
+    private static final VersionSelectorScheme VERSION_SELECTOR_SCHEME = new DefaultVersionSelectorScheme(new DefaultVersionComparator());
+
+    private final ComponentMetaDataResolver resolver;
+    private final int limit;
+    private final Set<ComponentIdentifier> requested = Collections.newSetFromMap(new ConcurrentHashMap<ComponentIdentifier, Boolean>());
+    private final AtomicInteger prefetched = new AtomicInteger();
+
+    /**
+     * @param limit the maximum number of components to prefetch for a single resolution
+     */
+    MetadataPrefetcher(ComponentMetaDataResolver resolver, int limit) {
+        this.resolver = resolver;
+        this.limit = limit;
+    }
+
+    /**
+     * Records that the traversal is downloading the metadata of the given component itself.
+     */
+    void downloading(ComponentIdentifier id) {
+        requested.add(id);
+    }
+
+    void prefetchDependenciesOf(ComponentResolveMetadata metadata, BuildOperationQueue<RunnableBuildOperation> queue) {
+        if (!(metadata instanceof ModuleComponentResolveMetadata)) {
+            return;
+        }
+        for (ModuleDependencyMetadata dependency : ((ModuleComponentResolveMetadata) metadata).getDependencies()) {
+            if (!shouldPrefetch(dependency)) {
+                continue;
+            }
+            ModuleComponentSelector selector = dependency.getSelector();
+            ModuleComponentIdentifier id = DefaultModuleComponentIdentifier.newId(selector.getGroup(), selector.getModule(), selector.getVersionConstraint().getPreferredVersion());
+            if (!requested.add(id) || resolver.isFetchingMetadataCheap(id)) {
+                continue;
+            }
+            if (prefetched.incrementAndGet() > limit) {
+                return;
+            }
+            queue.add(new PrefetchMetadataOperation(id, dependency, queue));
+        }
+    }
+
+    private static boolean shouldPrefetch(ModuleDependencyMetadata dependency) {
+        if (dependency.isOptional()) {
+            return false;
+        }
+        if (dependency instanceof MavenDependencyMetadata) {
+            MavenScope scope = ((MavenDependencyMetadata) dependency).getScope();
+            if (scope == MavenScope.Test || scope == MavenScope.Provided || scope == MavenScope.System) {
+                return false;
+            }
+        }
+        String version = dependency.getSelector().getVersionConstraint().getPreferredVersion();
+        return version != null && version.length() > 0 && !VERSION_SELECTOR_SCHEME.parseSelector(version).isDynamic();
+    }
+
+    private class PrefetchMetadataOperation implements RunnableBuildOperation {
+        private final ModuleComponentIdentifier id;
+        private final ModuleDependencyMetadata dependency;
+        private final BuildOperationQueue<RunnableBuildOperation> queue;
+
+        PrefetchMetadataOperation(ModuleComponentIdentifier id, ModuleDependencyMetadata dependency, BuildOperationQueue<RunnableBuildOperation> queue) {
+            this.id = id;
+            this.dependency = dependency;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            DefaultBuildableComponentResolveResult result = new DefaultBuildableComponentResolveResult();
+            resolver.resolve(id, DefaultComponentOverrideMetadata.forDependency(dependency), result);
+            // Failures are ignored here: the traversal reports them if the component ends up in the graph
+            if (result.getFailure() == null && dependency.isTransitive()) {
+                prefetchDependenciesOf(result.getMetaData(), queue);
+            }
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Prefetch " + id);
+        }
+    }
+}
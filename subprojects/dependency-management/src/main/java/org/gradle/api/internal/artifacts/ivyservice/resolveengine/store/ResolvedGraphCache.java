@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store;
+
+import org.gradle.api.artifacts.component.ComponentSelector;
+import org.gradle.api.artifacts.result.DependencyResult;
+import org.gradle.api.artifacts.result.ResolvedComponentResult;
+import org.gradle.api.artifacts.result.ResolvedDependencyResult;
+import org.gradle.api.internal.artifacts.ImmutableModuleIdentifierFactory;
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentResultSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.ComponentSelectorSerializer;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultComponentResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultDependencyResult;
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultResolutionResultBuilder;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.Factory;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.util.BuildCommencedTimeProvider;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent cache of resolved dependency graphs, keyed by a hash of the inputs of the resolution.
+ *
+ * <p>Only graphs where every dependency was resolved can be cached.</p>
+ */
+public class ResolvedGraphCache {
+    private final BuildCommencedTimeProvider timeProvider;
+    private final CacheLockingManager cacheLockingManager;
+    private final ImmutableModuleIdentifierFactory moduleIdentifierFactory;
+    private PersistentIndexedCache<String, ResolvedGraphCacheEntry> cache;
+
+    public ResolvedGraphCache(BuildCommencedTimeProvider timeProvider, CacheLockingManager cacheLockingManager, ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+        this.timeProvider = timeProvider;
+        this.cacheLockingManager = cacheLockingManager;
+        this.moduleIdentifierFactory = moduleIdentifierFactory;
+    }
+
+    private synchronized PersistentIndexedCache<String, ResolvedGraphCacheEntry> getCache() {
+        if (cache == null) {
+            cache = cacheLockingManager.createCache("resolved-graphs", BaseSerializerFactory.STRING_SERIALIZER, new ResolvedGraphCacheEntrySerializer(moduleIdentifierFactory));
+        }
+        return cache;
+    }
+
+    @Nullable
+    public CachedGraph get(final String key) {
+        ResolvedGraphCacheEntry entry = cacheLockingManager.useCache(new Factory<ResolvedGraphCacheEntry>() {
+            @Override
+            public ResolvedGraphCacheEntry create() {
+                return getCache().get(key);
+            }
+        });
+        if (entry == null) {
+            return null;
+        }
+        return new CachedGraph(entry.root, timeProvider.getCurrentTime() - entry.createTimestamp);
+    }
+
+    public void put(final String key, ResolvedComponentResult root) {
+        final ResolvedGraphCacheEntry entry = new ResolvedGraphCacheEntry(root, timeProvider.getCurrentTime());
+        cacheLockingManager.useCache(new Runnable() {
+            @Override
+            public void run() {
+                getCache().put(key, entry);
+            }
+        });
+    }
+
+    public static class CachedGraph {
+        private final ResolvedComponentResult root;
+        private final long ageMillis;
+
+        private CachedGraph(ResolvedComponentResult root, long ageMillis) {
+            this.root = root;
+            this.ageMillis = ageMillis;
+        }
+
+        public ResolvedComponentResult getRoot() {
+            return root;
+        }
+
+        public long getAgeMillis() {
+            return ageMillis;
+        }
+    }
+
+    private static class ResolvedGraphCacheEntry {
+        private final ResolvedComponentResult root;
+        private final long createTimestamp;
+
+        ResolvedGraphCacheEntry(ResolvedComponentResult root, long createTimestamp) {
+            this.root = root;
+            this.createTimestamp = createTimestamp;
+        }
+    }
+
+    /**
+     * Writes the components of the graph in breadth first order, so that the position of a component is its id, followed by the outgoing edges of each component.
+     */
+    private static class ResolvedGraphCacheEntrySerializer extends AbstractSerializer<ResolvedGraphCacheEntry> {
+        private final ComponentResultSerializer componentResultSerializer;
+        private final ComponentSelectorSerializer componentSelectorSerializer = new ComponentSelectorSerializer();
+
+        ResolvedGraphCacheEntrySerializer(ImmutableModuleIdentifierFactory moduleIdentifierFactory) {
+            this.componentResultSerializer = new ComponentResultSerializer(moduleIdentifierFactory);
+        }
+
+        @Override
+        public void write(Encoder encoder, ResolvedGraphCacheEntry value) throws Exception {
+            encoder.writeLong(value.createTimestamp);
+            Map<ResolvedComponentResult, Long> components = new LinkedHashMap<ResolvedComponentResult, Long>();
+            List<ResolvedComponentResult> queue = new ArrayList<ResolvedComponentResult>();
+            components.put(value.root, 0L);
+            queue.add(value.root);
+            for (int i = 0; i < queue.size(); i++) {
+                for (DependencyResult dependency : queue.get(i).getDependencies()) {
+                    ResolvedComponentResult selected = ((ResolvedDependencyResult) dependency).getSelected();
+                    if (!components.containsKey(selected)) {
+                        components.put(selected, (long) queue.size());
+                        queue.add(selected);
+                    }
+                }
+            }
+
+            encoder.writeSmallInt(queue.size());
+            for (ResolvedComponentResult component : queue) {
+                componentResultSerializer.write(encoder, new DefaultComponentResult(components.get(component), component.getModuleVersion(), component.getSelectionReason(), component.getId()));
+            }
+            for (ResolvedComponentResult component : queue) {
+                encoder.writeSmallInt(component.getDependencies().size());
+                for (DependencyResult dependency : component.getDependencies()) {
+                    componentSelectorSerializer.write(encoder, dependency.getRequested());
+                    encoder.writeSmallLong(components.get(((ResolvedDependencyResult) dependency).getSelected()));
+                }
+            }
+        }
+
+        @Override
+        public ResolvedGraphCacheEntry read(Decoder decoder) throws Exception {
+            long createTimestamp = decoder.readLong();
+            DefaultResolutionResultBuilder builder = new DefaultResolutionResultBuilder();
+            int componentCount = decoder.readSmallInt();
+            for (int i = 0; i < componentCount; i++) {
+                builder.visitComponent(componentResultSerializer.read(decoder));
+            }
+            for (long id = 0; id < componentCount; id++) {
+                int dependencyCount = decoder.readSmallInt();
+                List<DefaultDependencyResult> dependencies = new ArrayList<DefaultDependencyResult>(dependencyCount);
+                for (int i = 0; i < dependencyCount; i++) {
+                    ComponentSelector requested = componentSelectorSerializer.read(decoder);
+                    dependencies.add(new DefaultDependencyResult(requested, decoder.readSmallLong(), null, null));
+                }
+                builder.visitOutgoingEdges(id, dependencies);
+            }
+            return new ResolvedGraphCacheEntry(builder.complete(0L).getRoot(), createTimestamp);
+        }
+    }
+}
@@ -35,17 +35,17 @@ import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.hash.HashCode;
-import org.gradle.internal.resource.local.DefaultPathKeyFileStore;
-import org.gradle.internal.resource.local.FileStore;
-import org.gradle.internal.resource.local.FileStoreAddActionException;
 import org.gradle.internal.serialize.BaseSerializerFactory;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.ListSerializer;
 import org.gradle.internal.util.BiFunction;
+import org.gradle.util.GFileUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static org.gradle.api.internal.artifacts.ivyservice.CacheLayout.TRANSFORMS_META_DATA;
@@ -55,7 +55,8 @@ import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 public class DefaultTransformedFileCache implements TransformedFileCache, Stoppable, RootBuildLifecycleListener {
     private final PersistentCache cache;
     private final PersistentIndexedCache<HashCode, List<File>> indexedCache;
-    private final FileStore<String> fileStore;
+    private final File filesOutputDirectory;
+    private final File tempDirectory;
     private final ProducerGuard<HashCode> producing = ProducerGuard.adaptive();
     private final Map<HashCode, List<File>> resultHashToResult = new ConcurrentHashMap<HashCode, List<File>>();
     private final FileSystemSnapshotter fileSystemSnapshotter;
@@ -63,13 +64,14 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
     public DefaultTransformedFileCache(ArtifactCacheMetaData artifactCacheMetaData, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory cacheDecoratorFactory, FileSystemSnapshotter fileSystemSnapshotter) {
         this.fileSystemSnapshotter = fileSystemSnapshotter;
         File transformsStoreDirectory = artifactCacheMetaData.getTransformsStoreDirectory();
-        File filesOutputDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey());
-        fileStore = new DefaultPathKeyFileStore(filesOutputDirectory);
+        filesOutputDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey());
+        tempDirectory = new File(transformsStoreDirectory, TRANSFORMS_STORE.getKey() + "-tmp");
         cache = cacheRepository
             .cache(transformsStoreDirectory)
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .withDisplayName("Artifact transforms cache")
             .withLockOptions(mode(FileLockManager.LockMode.None)) // Lock on demand
+            .withCleanup(new UnusedTransformOutputsCleanup(filesOutputDirectory, tempDirectory))
             .open();
         String cacheName = TRANSFORMS_META_DATA.getKey() + "/results";
         PersistentIndexedCacheParameters<HashCode, List<File>> cacheParameters = new PersistentIndexedCacheParameters<HashCode, List<File>>(cacheName, new HashCodeSerializer(), new ListSerializer<File>(BaseSerializerFactory.FILE_SERIALIZER))
@@ -119,35 +121,18 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
                 if (files != null) {
                     return files;
                 }
+                File outputDir = new File(filesOutputDirectory, inputFile.getName() + "/" + cacheKey);
                 files = cache.withFileLock(new Factory<List<File>>() {
                     @Override
                     public List<File> create() {
-                        List<File> files = indexedCache.get(cacheKey);
-                        if (files != null) {
-                            boolean allExist = true;
-                            for (File file : files) {
-                                if (!file.exists()) {
-                                    allExist = false;
-                                    break;
-                                }
-                            }
-                            if (allExist) {
-                                return files;
-                            }
-                        }
-
-                        String key = inputFile.getName() + "/" + cacheKey;
-                        TransformAction action = new TransformAction(transformer, inputFile);
-                        try {
-                            fileStore.add(key, action);
-                        } catch (FileStoreAddActionException e) {
-                            throw UncheckedException.throwAsUncheckedException(e.getCause());
-                        }
-
-                        indexedCache.put(cacheKey, action.result);
-                        return action.result;
+                        return getPreviousResult(cacheKey);
                     }
                 });
+                if (files != null) {
+                    UnusedTransformOutputsCleanup.markUsed(outputDir);
+                } else {
+                    files = transform(inputFile, cacheKey, outputDir, transformer);
+                }
 
                 resultHashToResult.put(cacheKey, files);
                 return files;
@@ -155,6 +140,69 @@ public class DefaultTransformedFileCache implements TransformedFileCache, Stoppa
         });
     }
 
+    @Nullable
+    private List<File> getPreviousResult(HashCode cacheKey) {
+        List<File> files = indexedCache.get(cacheKey);
+        if (files == null) {
+            return null;
+        }
+        for (File file : files) {
+            if (!file.exists()) {
+                return null;
+            }
+        }
+        return files;
+    }
+
+    /*
+     * Runs the transform into a temporary directory without holding the cache lock, so that other processes are not blocked while the transform runs,
+     * then moves the result into the store. When another process has produced the result in the meantime, its result is used instead.
+     */
+    private List<File> transform(File inputFile, final HashCode cacheKey, final File outputDir, BiFunction<List<File>, File, File> transformer) {
+        final File tempDir = new File(tempDirectory, UUID.randomUUID().toString());
+        final TransformAction action = new TransformAction(transformer, inputFile);
+        try {
+            action.execute(tempDir);
+        } catch (Throwable t) {
+            GFileUtils.deleteQuietly(tempDir);
+            throw UncheckedException.throwAsUncheckedException(t);
+        }
+        return cache.withFileLock(new Factory<List<File>>() {
+            @Override
+            public List<File> create() {
+                List<File> files = getPreviousResult(cacheKey);
+                if (files != null) {
+                    GFileUtils.deleteQuietly(tempDir);
+                    return files;
+                }
+                GFileUtils.deleteDirectory(outputDir);
+                GFileUtils.parentMkdirs(outputDir);
+                if (!tempDir.renameTo(outputDir)) {
+                    GFileUtils.moveDirectory(tempDir, outputDir);
+                }
+                files = relocate(action.result, tempDir, outputDir);
+                indexedCache.put(cacheKey, files);
+                return files;
+            }
+        });
+    }
+
+    private static List<File> relocate(List<File> files, File fromDir, File toDir) {
+        String fromPrefix = fromDir.getAbsolutePath() + File.separator;
+        ImmutableList.Builder<File> builder = ImmutableList.builder();
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            if (path.startsWith(fromPrefix)) {
+                builder.add(new File(toDir, path.substring(fromPrefix.length())));
+            } else if (path.equals(fromDir.getAbsolutePath())) {
+                builder.add(toDir);
+            } else {
+                builder.add(file);
+            }
+        }
+        return builder.build();
+    }
+
     private HashCode getCacheKey(File inputFile, HashCode inputsHash) {
         Snapshot inputFileSnapshot = fileSystemSnapshotter.snapshotAll(inputFile);
         DefaultBuildCacheHasher hasher = new DefaultBuildCacheHasher();
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform;
+
+import org.gradle.api.Action;
+import org.gradle.cache.PersistentCache;
+import org.gradle.util.GFileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes transform outputs that have not been used for some time. The last modified time of the output directory of a result records when the result was
+ * last used, and is updated at most once a day.
+ *
+ * <p>The index entries for the deleted outputs are left in place, and the transform runs again when an entry refers to a deleted output.</p>
+ */
+class UnusedTransformOutputsCleanup implements Action<PersistentCache> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnusedTransformOutputsCleanup.class);
+    static final long MAX_UNUSED_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static final long MARK_USED_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final FileFilter DIRECTORIES = new FileFilter() {
+        @Override
+        public boolean accept(File file) {
+            return file.isDirectory();
+        }
+    };
+
+    private final File filesOutputDirectory;
+    private final File tempDirectory;
+
+    UnusedTransformOutputsCleanup(File filesOutputDirectory, File tempDirectory) {
+        this.filesOutputDirectory = filesOutputDirectory;
+        this.tempDirectory = tempDirectory;
+    }
+
+    static void markUsed(File outputDir) {
+        long now = System.currentTimeMillis();
+        long lastModified = outputDir.lastModified();
+        if (lastModified != 0 && now - lastModified > MARK_USED_INTERVAL_MILLIS) {
+            outputDir.setLastModified(now);
+        }
+    }
+
+    @Override
+    public void execute(PersistentCache cache) {
+        long now = System.currentTimeMillis();
+        int deleted = 0;
+        for (File inputDir : listDirectories(filesOutputDirectory)) {
+            for (File outputDir : listDirectories(inputDir)) {
+                if (now - outputDir.lastModified() > MAX_UNUSED_MILLIS && GFileUtils.deleteQuietly(outputDir)) {
+                    deleted++;
+                }
+            }
+            // Only removes the directory when it is empty
+            inputDir.delete();
+        }
+        // Left behind by transforms in processes that did not complete
+        for (File tempDir : listDirectories(tempDirectory)) {
+            if (now - tempDir.lastModified() > MARK_USED_INTERVAL_MILLIS) {
+                GFileUtils.deleteQuietly(tempDir);
+            }
+        }
+        LOGGER.info("{} removed {} unused transform results.", cache, deleted);
+    }
+
+    private static File[] listDirectories(File dir) {
+        File[] files = dir.listFiles(DIRECTORIES);
+        return files == null ? new File[0] : files;
+    }
+}
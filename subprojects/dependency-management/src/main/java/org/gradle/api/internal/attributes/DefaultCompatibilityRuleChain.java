@@ -25,12 +25,15 @@ import org.gradle.api.internal.DefaultActionConfiguration;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.model.internal.type.ModelType;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
 public class DefaultCompatibilityRuleChain<T> implements CompatibilityRuleChain<T>, CompatibilityRule<T> {
     private static final Object[] NO_PARAMS = new Object[0];
     private final List<Action<? super CompatibilityCheckDetails<T>>> rules = Lists.newArrayList();
+    // The definition of each rule, used to tell whether two chains contain the same rules
+    private final List<Object> ruleDefinitions = Lists.newArrayList();
     private final Instantiator instantiator;
 
     public DefaultCompatibilityRuleChain(Instantiator instantiator) {
@@ -39,12 +42,14 @@ public class DefaultCompatibilityRuleChain<T> implements CompatibilityRuleChain<
 
     @Override
     public void ordered(Comparator<? super T> comparator) {
+        ruleDefinitions.add(Arrays.<Object>asList("ordered", comparator));
         Action<? super CompatibilityCheckDetails<T>> rule = AttributeMatchingRules.orderedCompatibility(comparator, false);
         rules.add(rule);
     }
 
     @Override
     public void reverseOrdered(Comparator<? super T> comparator) {
+        ruleDefinitions.add(Arrays.<Object>asList("reverseOrdered", comparator));
         Action<? super CompatibilityCheckDetails<T>> rule = AttributeMatchingRules.orderedCompatibility(comparator, true);
         rules.add(rule);
     }
@@ -53,14 +58,24 @@ public class DefaultCompatibilityRuleChain<T> implements CompatibilityRuleChain<
     public void add(Class<? extends AttributeCompatibilityRule<T>> rule, Action<? super ActionConfiguration> configureAction) {
         DefaultActionConfiguration configuration = new DefaultActionConfiguration();
         configureAction.execute(configuration);
+        ruleDefinitions.add(Arrays.<Object>asList(rule, Arrays.asList(configuration.getParams())));
         rules.add(new InstantiatingAction<T>(rule, configuration.getParams(), instantiator));
     }
 
     @Override
     public void add(final Class<? extends AttributeCompatibilityRule<T>> rule) {
+        ruleDefinitions.add(Arrays.<Object>asList(rule, Arrays.asList(NO_PARAMS)));
         rules.add(new InstantiatingAction<T>(rule, NO_PARAMS, instantiator));
     }
 
+    /**
+     * Returns the definitions of the rules in this chain, in order. Each definition is a list containing either a rule class and its parameters, or the kind
+     * of an ordered rule and its comparator.
+     */
+    public List<Object> getRuleDefinitions() {
+        return ruleDefinitions;
+    }
+
     @Override
     public void execute(CompatibilityCheckResult<T> result) {
         for (Action<? super CompatibilityCheckDetails<T>> rule : rules) {
@@ -26,12 +26,15 @@ import org.gradle.api.internal.DefaultActionConfiguration;
 import org.gradle.internal.reflect.Instantiator;
 import org.gradle.model.internal.type.ModelType;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
 public class DefaultDisambiguationRuleChain<T> implements DisambiguationRuleChain<T>, DisambiguationRule<T> {
     private static final Object[] NO_PARAMS = new Object[0];
     private final List<Action<? super MultipleCandidatesDetails<T>>> rules = Lists.newArrayList();
+    // The definition of each rule, used to tell whether two chains contain the same rules
+    private final List<Object> ruleDefinitions = Lists.newArrayList();
     private final Instantiator instantiator;
 
     public DefaultDisambiguationRuleChain(Instantiator instantiator) {
@@ -42,26 +45,38 @@ public class DefaultDisambiguationRuleChain<T> implements DisambiguationRuleChai
     public void add(Class<? extends AttributeDisambiguationRule<T>> rule, Action<? super ActionConfiguration> configureAction) {
         DefaultActionConfiguration configuration = new DefaultActionConfiguration();
         configureAction.execute(configuration);
+        ruleDefinitions.add(Arrays.<Object>asList(rule, Arrays.asList(configuration.getParams())));
         this.rules.add(new InstantiatingAction<T>(rule, configuration.getParams(), instantiator));
     }
 
     @Override
     public void add(final Class<? extends AttributeDisambiguationRule<T>> rule) {
+        ruleDefinitions.add(Arrays.<Object>asList(rule, Arrays.asList(NO_PARAMS)));
         this.rules.add(new InstantiatingAction<T>(rule, NO_PARAMS, instantiator));
     }
 
     @Override
     public void pickFirst(Comparator<? super T> comparator) {
+        ruleDefinitions.add(Arrays.<Object>asList("pickFirst", comparator));
         Action<? super MultipleCandidatesDetails<T>> rule = AttributeMatchingRules.orderedDisambiguation(comparator, true);
         rules.add(rule);
     }
 
     @Override
     public void pickLast(Comparator<? super T> comparator) {
+        ruleDefinitions.add(Arrays.<Object>asList("pickLast", comparator));
         Action<? super MultipleCandidatesDetails<T>> rule = AttributeMatchingRules.orderedDisambiguation(comparator, false);
         rules.add(rule);
     }
 
+    /**
+     * Returns the definitions of the rules in this chain, in order. Each definition is a list containing either a rule class and its parameters, or the kind
+     * of an ordered rule and its comparator.
+     */
+    public List<Object> getRuleDefinitions() {
+        return ruleDefinitions;
+    }
+
     @Override
     public void execute(MultipleCandidatesResult<T> details) {
         for (Action<? super MultipleCandidatesDetails<T>> rule : rules) {
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice
+
+import org.gradle.api.artifacts.DependencySet
+import org.gradle.api.artifacts.ExternalModuleDependency
+import org.gradle.api.artifacts.ResolvedConfiguration
+import org.gradle.api.artifacts.VersionConstraint
+import org.gradle.api.artifacts.dsl.RepositoryHandler
+import org.gradle.api.attributes.Attribute
+import org.gradle.api.attributes.AttributeCompatibilityRule
+import org.gradle.api.attributes.CompatibilityCheckDetails
+import org.gradle.api.internal.artifacts.ComponentMetadataProcessor
+import org.gradle.api.internal.artifacts.ComponentModuleMetadataProcessor
+import org.gradle.api.internal.artifacts.ConfigurationResolver
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
+import org.gradle.api.internal.artifacts.DefaultResolverResults
+import org.gradle.api.internal.artifacts.GlobalDependencyResolutionRules
+import org.gradle.api.internal.artifacts.Module
+import org.gradle.api.internal.artifacts.ResolverResults
+import org.gradle.api.internal.artifacts.configurations.ConfigurationInternal
+import org.gradle.api.internal.artifacts.configurations.ConflictResolution
+import org.gradle.api.internal.artifacts.configurations.ResolutionStrategyInternal
+import org.gradle.api.internal.artifacts.dsl.ModuleReplacementsData
+import org.gradle.api.internal.artifacts.ivyservice.dependencysubstitution.DependencySubstitutionRules
+import org.gradle.api.internal.artifacts.ivyservice.ivyresolve.strategy.VersionSelectorScheme
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.ArtifactVisitor
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.SelectedArtifactSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.artifact.VisitedArtifactSet
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.projectresult.ResolvedLocalComponentsResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultComponentResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultDependencyResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultResolutionResultBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.store.ResolvedGraphCache
+import org.gradle.api.internal.attributes.DefaultAttributesSchema
+import org.gradle.api.internal.attributes.ImmutableAttributes
+import org.gradle.api.internal.changedetection.state.ValueSnapshotter
+import org.gradle.api.specs.Specs
+import org.gradle.internal.Factory
+import org.gradle.internal.classloader.ClassLoaderHierarchyHasher
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.component.model.ComponentAttributeMatcher
+import org.gradle.internal.hash.HashCode
+import org.gradle.internal.serialize.Serializer
+import org.gradle.testfixtures.internal.InMemoryIndexedCache
+import org.gradle.util.BuildCommencedTimeProvider
+import org.gradle.util.TestUtil
+import spock.lang.Specification
+
+class CachingResolvedGraphConfigurationResolverTest extends Specification {
+    def delegate = Mock(ConfigurationResolver) {
+        resolveGraph(_, _) >> { ConfigurationInternal c, ResolverResults r -> attachGraph(r) }
+    }
+    def cacheLockingManager = Stub(CacheLockingManager) {
+        useCache(_) >> { args ->
+            def action = args[0]
+            if (action instanceof Factory) {
+                return action.create()
+            } else {
+                action.run()
+            }
+        }
+        createCache(_, _, _) >> { String name, Serializer keySerializer, Serializer valueSerializer ->
+            return new InMemoryIndexedCache<>(valueSerializer)
+        }
+    }
+    def graphCache = new ResolvedGraphCache(Stub(BuildCommencedTimeProvider), cacheLockingManager, new DefaultImmutableModuleIdentifierFactory())
+    def repositories = Stub(RepositoryHandler) {
+        iterator() >> { [].iterator() }
+    }
+    def componentMetadataProcessor = Stub(ComponentMetadataProcessor)
+    def replacedModules = []
+    def moduleReplacements = Stub(ModuleReplacementsData) {
+        participatesInReplacements(_) >> { args -> replacedModules.contains(args[0].name) }
+    }
+    def metadataHandler = Stub(GlobalDependencyResolutionRules) {
+        getDependencySubstitutionRules() >> DependencySubstitutionRules.NO_OP
+        getComponentMetadataProcessor() >> componentMetadataProcessor
+        getModuleMetadataProcessor() >> Stub(ComponentModuleMetadataProcessor) {
+            getModuleReplacements() >> moduleReplacements
+        }
+    }
+    def attributesSchema = new DefaultAttributesSchema(new ComponentAttributeMatcher(), TestUtil.instantiatorFactory())
+    def classLoaderHierarchyHasher = Stub(ClassLoaderHierarchyHasher) {
+        getClassLoaderHash(_) >> HashCode.fromInt(123)
+    }
+    def valueSnapshotter = new ValueSnapshotter(classLoaderHierarchyHasher, null)
+    def moduleDependency = Stub(ExternalModuleDependency) {
+        getGroup() >> "org"
+        getName() >> "a"
+        getVersion() >> "1.0"
+        getVersionConstraint() >> Stub(VersionConstraint)
+    }
+    def dependencies = Stub(DependencySet) {
+        iterator() >> { [moduleDependency].iterator() }
+    }
+    def configuration = Stub(ConfigurationInternal) {
+        getPath() >> ":compile"
+        getModule() >> Stub(Module)
+        getAttributes() >> ImmutableAttributes.EMPTY
+        getHierarchy() >> ([] as Set)
+        getResolutionStrategy() >> Stub(ResolutionStrategyInternal) {
+            getConflictResolution() >> ConflictResolution.latest
+        }
+        getAllDependencies() >> dependencies
+    }
+
+    def resolver = new CachingResolvedGraphConfigurationResolver(delegate, graphCache, repositories, metadataHandler, Stub(VersionSelectorScheme), attributesSchema, classLoaderHierarchyHasher, valueSnapshotter, false)
+
+    def "reuses graph resolved by a previous resolution"() {
+        given:
+        resolveAndCache()
+
+        when:
+        def results = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, results)
+
+        then:
+        0 * delegate._
+
+        and:
+        results.resolutionResult.root.id.displayName == "org:root:1.0"
+        results.resolutionResult.allComponents*.id*.displayName as Set == ["org:root:1.0", "org:a:1.0"] as Set
+    }
+
+    def "resolves configuration in full when artifacts of a cached graph are requested"() {
+        def resolvedConfiguration = Stub(ResolvedConfiguration)
+        def fullArtifacts = Stub(VisitedArtifactSet)
+
+        given:
+        resolveAndCache()
+        def results = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, results)
+
+        when:
+        resolver.resolveArtifacts(configuration, results)
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { ConfigurationInternal c, ResolverResults r -> attachGraph(r) }
+        1 * delegate.resolveArtifacts(configuration, _) >> { ConfigurationInternal c, ResolverResults r -> r.artifactsResolved(resolvedConfiguration, fullArtifacts) }
+        0 * delegate._
+
+        and:
+        results.resolvedConfiguration.is(resolvedConfiguration)
+        results.visitedArtifacts.is(fullArtifacts)
+    }
+
+    def "visits artifacts of a cached graph by resolving configuration in full once"() {
+        def visitor = Stub(ArtifactVisitor)
+        def selectedArtifacts = Mock(SelectedArtifactSet)
+        def fullArtifacts = Stub(VisitedArtifactSet) {
+            select(_, _, _, _) >> selectedArtifacts
+        }
+
+        given:
+        resolveAndCache()
+        def results = new DefaultResolverResults()
+        resolver.resolveGraph(configuration, results)
+        def artifacts = results.visitedArtifacts.select(Specs.satisfyAll(), ImmutableAttributes.EMPTY, Specs.satisfyAll(), false)
+
+        when:
+        artifacts.visitArtifacts(visitor, false)
+        artifacts.visitArtifacts(visitor, false)
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { ConfigurationInternal c, ResolverResults r -> attachGraph(r) }
+        1 * delegate.resolveArtifacts(configuration, _) >> { ConfigurationInternal c, ResolverResults r -> r.artifactsResolved(Stub(ResolvedConfiguration), fullArtifacts) }
+        2 * selectedArtifacts.visitArtifacts(visitor, false)
+        0 * delegate._
+    }
+
+    def "does not cache graph when component metadata rules are defined"() {
+        given:
+        componentMetadataProcessor.hasRules() >> true
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        2 * delegate.resolveGraph(configuration, _) >> { ConfigurationInternal c, ResolverResults r -> attachGraph(r) }
+    }
+
+    def "does not reuse graph when attribute matching rules have changed"() {
+        given:
+        def usage = attributesSchema.attribute(Attribute.of("usage", String))
+        resolveAndCache()
+        usage.compatibilityRules.add(AnyUsageIsCompatible)
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { ConfigurationInternal c, ResolverResults r -> attachGraph(r) }
+    }
+
+    def "does not reuse graph when a module in the graph takes part in a module replacement"() {
+        given:
+        resolveAndCache()
+        replacedModules << "a"
+
+        when:
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+
+        then:
+        1 * delegate.resolveGraph(configuration, _) >> { ConfigurationInternal c, ResolverResults r -> attachGraph(r) }
+    }
+
+    private void resolveAndCache() {
+        resolver.resolveGraph(configuration, new DefaultResolverResults())
+    }
+
+    private void attachGraph(ResolverResults results) {
+        def builder = new DefaultResolutionResultBuilder()
+        builder.visitComponent(component(0L, "root"))
+        builder.visitComponent(component(1L, "a"))
+        builder.visitOutgoingEdges(0L, [new DefaultDependencyResult(DefaultModuleComponentSelector.newSelector("org", "a", "1.0"), 1L, null, null)])
+        results.graphResolved(builder.complete(0L), Stub(ResolvedLocalComponentsResult), Stub(VisitedArtifactSet))
+    }
+
+    private static DefaultComponentResult component(Long id, String name) {
+        return new DefaultComponentResult(id, DefaultModuleVersionIdentifier.newId("org", name, "1.0"), id == 0L ? VersionSelectionReasons.ROOT : VersionSelectionReasons.REQUESTED, DefaultModuleComponentIdentifier.newId("org", name, "1.0"))
+    }
+
+    static class AnyUsageIsCompatible implements AttributeCompatibilityRule<String> {
+        @Override
+        void execute(CompatibilityCheckDetails<String> details) {
+            details.compatible()
+        }
+    }
+}
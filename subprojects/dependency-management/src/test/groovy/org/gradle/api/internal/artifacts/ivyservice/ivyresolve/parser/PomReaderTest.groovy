@@ -100,6 +100,58 @@ class PomReaderTest extends AbstractPomReaderTest {
         pomReader.relocation == null
     }
 
+    def "ignores sections of POM that are not used"() {
+        when:
+        pomFile << """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <modelVersion>4.0.0</modelVersion>
+    <groupId>group-one</groupId>
+    <artifactId>artifact-one</artifactId>
+    <version>version-one</version>
+    <name>Test Artifact &copy; One</name>
+    <build>
+        <dependencies>
+            <dependency>
+                <groupId>group-two</groupId>
+                <artifactId>artifact-two</artifactId>
+            </dependency>
+        </dependencies>
+    </build>
+    <properties>
+        <some.prop>a &amp; b <![CDATA[<c>]]></some.prop>
+    </properties>
+    <dependencies>
+        <dependency>
+            <groupId>group-three</groupId>
+            <artifactId>artifact-three</artifactId>
+            <version>version-three</version>
+        </dependency>
+    </dependencies>
+    <profiles>
+        <profile>
+            <id>profile-1</id>
+            <activation>
+                <activeByDefault>true</activeByDefault>
+            </activation>
+            <build>
+                <properties>
+                    <some.prop>ignored</some.prop>
+                </properties>
+            </build>
+        </profile>
+    </profiles>
+</project>
+"""
+        pomReader = new PomReader(locallyAvailableExternalResource, moduleIdentifierFactory)
+
+        then:
+        pomReader.groupId == 'group-one'
+        pomReader.properties['some.prop'] == 'a & b <c>'
+        pomReader.dependencies.size() == 1
+        pomReader.dependencies.values()[0].groupId == 'group-three'
+        pomReader.toString() == pomFile.toURI().toASCIIString()
+    }
+
     def "use custom properties in POM project coordinates"() {
         when:
         pomFile << """
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.modulecache
+
+import com.google.common.collect.ImmutableList
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
+import org.gradle.internal.component.external.model.ComponentVariant
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import org.gradle.internal.event.DefaultListenerManager
+import spock.lang.Specification
+
+import static org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier.newId
+
+class CrossBuildModuleMetadataCacheTest extends Specification {
+    def cache = new CrossBuildModuleMetadataCache(new CrossBuildInMemoryCacheFactory(new DefaultListenerManager()))
+    def key = new ModuleComponentAtRepositoryKey("repo", newId("org", "foo", "1.0"))
+    def metadata = metadataWithoutVariants()
+
+    def "returns metadata cached for the same index entry"() {
+        when:
+        cache.put(key, 100L, metadata)
+
+        then:
+        cache.get(key, 100L).is(metadata)
+        cache.get(new ModuleComponentAtRepositoryKey("repo", newId("org", "foo", "1.0")), 100L).is(metadata)
+    }
+
+    def "does not return metadata cached for a different index entry"() {
+        when:
+        cache.put(key, 100L, metadata)
+
+        then:
+        cache.get(key, 200L) == null
+        cache.get(new ModuleComponentAtRepositoryKey("other", newId("org", "foo", "1.0")), 100L) == null
+    }
+
+    def "replaces metadata when index entry is refreshed"() {
+        def refreshed = metadataWithoutVariants()
+
+        when:
+        cache.put(key, 100L, metadata)
+        cache.put(key, 200L, refreshed)
+
+        then:
+        cache.get(key, 100L) == null
+        cache.get(key, 200L).is(refreshed)
+    }
+
+    def "does not retain metadata with variants"() {
+        def withVariants = Stub(ModuleComponentResolveMetadata) {
+            getVariants() >> ImmutableList.of(Stub(ComponentVariant))
+        }
+
+        when:
+        cache.put(key, 100L, withVariants)
+
+        then:
+        cache.get(key, 100L) == null
+    }
+
+    def metadataWithoutVariants() {
+        return Stub(ModuleComponentResolveMetadata) {
+            getVariants() >> ImmutableList.of()
+        }
+    }
+}
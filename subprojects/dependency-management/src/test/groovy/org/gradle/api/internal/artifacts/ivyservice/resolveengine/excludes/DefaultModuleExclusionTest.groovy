@@ -758,6 +758,17 @@ class DefaultModuleExclusionTest extends Specification {
         union(intersection, simpleExclude)
     }
 
+    def "equivalent exclusions are represented by the same instance"() {
+        def spec = excludeAny(excludeRule("org", "module"), excludeRule("org", "module", "a"), regexpExcludeRule("org2", "*"))
+        def spec2 = excludeAny(excludeRule("org", "module2"), excludeRule("org", "module", "a"), regexpExcludeRule("org2", "*"))
+
+        expect:
+        excludeAny(excludeRule("org", "module"), excludeRule("org", "module", "a"), regexpExcludeRule("org2", "*")).is(spec)
+        intersect(spec, spec2).is(intersect(spec, spec2))
+        union(spec, spec2).is(union(spec, spec2))
+        union(intersect(spec, spec2), spec).is(union(intersect(spec, spec2), spec))
+    }
+
     ModuleExclusion union(ModuleExclusion spec, ModuleExclusion otherRule) {
         moduleExclusions.union(spec, otherRule)
     }
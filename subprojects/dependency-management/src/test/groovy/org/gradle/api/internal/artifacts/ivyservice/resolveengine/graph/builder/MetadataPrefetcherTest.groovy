@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.graph.builder
+
+import org.gradle.internal.component.external.descriptor.MavenScope
+import org.gradle.internal.component.external.model.MavenDependencyMetadata
+import org.gradle.internal.component.external.model.ModuleComponentResolveMetadata
+import org.gradle.internal.operations.BuildOperationContext
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.resolve.resolver.ComponentMetaDataResolver
+import spock.lang.Specification
+
+import static org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier.newId
+import static org.gradle.internal.component.external.model.DefaultModuleComponentSelector.newSelector
+
+class MetadataPrefetcherTest extends Specification {
+    def resolver = Mock(ComponentMetaDataResolver)
+    def queue = Stub(BuildOperationQueue) {
+        add(_) >> { args ->
+            args[0].run(Stub(BuildOperationContext))
+        }
+    }
+
+    def "prefetches static runtime dependencies transitively"() {
+        def prefetcher = new MetadataPrefetcher(resolver, 10)
+        def root = component(
+            dependency("a", "1.0"),
+            dependency("dynamic", "1.+"),
+            dependency("test", "1.0", MavenScope.Test),
+            dependency("provided", "1.0", MavenScope.Provided),
+            dependency("optional", "1.0", MavenScope.Compile, true))
+        def a = component(dependency("b", "2.0"))
+
+        when:
+        prefetcher.prefetchDependenciesOf(root, queue)
+
+        then:
+        1 * resolver.resolve(newId("org", "a", "1.0"), _, _) >> { args -> args[2].resolved(a) }
+        1 * resolver.resolve(newId("org", "b", "2.0"), _, _) >> { args -> args[2].resolved(component()) }
+        0 * resolver.resolve(_, _, _)
+    }
+
+    def "does not prefetch components that are already being downloaded or are cheap to fetch"() {
+        def prefetcher = new MetadataPrefetcher(resolver, 10)
+        def root = component(dependency("a", "1.0"), dependency("b", "1.0"), dependency("c", "1.0"))
+        resolver.isFetchingMetadataCheap(newId("org", "b", "1.0")) >> true
+
+        when:
+        prefetcher.downloading(newId("org", "a", "1.0"))
+        prefetcher.prefetchDependenciesOf(root, queue)
+
+        then:
+        1 * resolver.resolve(newId("org", "c", "1.0"), _, _) >> { args -> args[2].resolved(component()) }
+        0 * resolver.resolve(_, _, _)
+    }
+
+    def "prefetches each component once and stops at the limit"() {
+        def prefetcher = new MetadataPrefetcher(resolver, 2)
+        def root = component(dependency("a", "1.0"), dependency("a", "1.0"), dependency("b", "1.0"), dependency("c", "1.0"))
+
+        when:
+        prefetcher.prefetchDependenciesOf(root, queue)
+
+        then:
+        1 * resolver.resolve(newId("org", "a", "1.0"), _, _) >> { args -> args[2].resolved(component()) }
+        1 * resolver.resolve(newId("org", "b", "1.0"), _, _) >> { args -> args[2].resolved(component()) }
+        0 * resolver.resolve(_, _, _)
+    }
+
+    private ModuleComponentResolveMetadata component(MavenDependencyMetadata... dependencies) {
+        return Stub(ModuleComponentResolveMetadata) {
+            getDependencies() >> (dependencies as List)
+        }
+    }
+
+    private static MavenDependencyMetadata dependency(String name, String version, MavenScope scope = MavenScope.Compile, boolean optional = false) {
+        return new MavenDependencyMetadata(scope, optional, newSelector("org", name, version), [], [])
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.ivyservice.resolveengine.store
+
+import org.gradle.api.artifacts.result.ResolvedComponentResult
+import org.gradle.api.internal.artifacts.DefaultImmutableModuleIdentifierFactory
+import org.gradle.api.internal.artifacts.DefaultModuleVersionIdentifier
+import org.gradle.api.internal.artifacts.ivyservice.CacheLockingManager
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultComponentResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultDependencyResult
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.DefaultResolutionResultBuilder
+import org.gradle.api.internal.artifacts.ivyservice.resolveengine.result.VersionSelectionReasons
+import org.gradle.internal.Factory
+import org.gradle.internal.component.external.model.DefaultModuleComponentIdentifier
+import org.gradle.internal.component.external.model.DefaultModuleComponentSelector
+import org.gradle.internal.serialize.Serializer
+import org.gradle.testfixtures.internal.InMemoryIndexedCache
+import org.gradle.util.BuildCommencedTimeProvider
+import spock.lang.Specification
+
+class ResolvedGraphCacheTest extends Specification {
+    def currentTime = 1000L
+    def timeProvider = Stub(BuildCommencedTimeProvider) {
+        getCurrentTime() >> { currentTime }
+    }
+    def cacheLockingManager = Stub(CacheLockingManager) {
+        useCache(_) >> { args ->
+            def action = args[0]
+            if (action instanceof Factory) {
+                return action.create()
+            } else {
+                action.run()
+            }
+        }
+        createCache(_, _, _) >> { String name, Serializer keySerializer, Serializer valueSerializer ->
+            return new InMemoryIndexedCache<>(valueSerializer)
+        }
+    }
+    def cache = new ResolvedGraphCache(timeProvider, cacheLockingManager, new DefaultImmutableModuleIdentifierFactory())
+
+    def "returns null when graph is not cached"() {
+        expect:
+        cache.get("key") == null
+    }
+
+    def "restores cached graph"() {
+        given:
+        def builder = new DefaultResolutionResultBuilder()
+        builder.visitComponent(component(0L, "root", "1.0"))
+        builder.visitComponent(component(1L, "a", "1.2"))
+        builder.visitComponent(component(2L, "b", "2.0"))
+        builder.visitOutgoingEdges(0L, [dependency("a", "1.+", 1L), dependency("b", "2.0", 2L)])
+        builder.visitOutgoingEdges(1L, [dependency("b", "1.0", 2L)])
+        cache.put("key", builder.complete(0L).root)
+        currentTime = 1500L
+
+        when:
+        def cached = cache.get("key")
+
+        then:
+        cached.ageMillis == 500L
+        def root = cached.root
+        root.id.displayName == "org:root:1.0"
+        root.dependencies*.requested*.displayName == ["org:a:1.+", "org:b:2.0"]
+        def a = selected(root, 0)
+        def b = selected(root, 1)
+        a.id.displayName == "org:a:1.2"
+        a.selectionReason == VersionSelectionReasons.REQUESTED
+        selected(a, 0).is(b)
+        b.dependents*.from == [root, a]
+    }
+
+    def "keeps graphs for different keys separate"() {
+        given:
+        def builder = new DefaultResolutionResultBuilder()
+        builder.visitComponent(component(0L, "root", "1.0"))
+        cache.put("one", builder.complete(0L).root)
+
+        expect:
+        cache.get("one") != null
+        cache.get("two") == null
+    }
+
+    private static ResolvedComponentResult selected(ResolvedComponentResult component, int index) {
+        return (component.dependencies as List)[index].selected
+    }
+
+    private static DefaultComponentResult component(Long id, String name, String version) {
+        return new DefaultComponentResult(id, DefaultModuleVersionIdentifier.newId("org", name, version), id == 0L ? VersionSelectionReasons.ROOT : VersionSelectionReasons.REQUESTED, DefaultModuleComponentIdentifier.newId("org", name, version))
+    }
+
+    private static DefaultDependencyResult dependency(String name, String version, Long selected) {
+        return new DefaultDependencyResult(DefaultModuleComponentSelector.newSelector("org", name, version), selected, null, null)
+    }
+}
@@ -345,6 +345,33 @@ class DefaultTransformedFileCacheTest extends ConcurrentSpec {
         0 * transform._
     }
 
+    def "runs transform in a temporary directory and moves result into the store"() {
+        def transform = Mock(BiFunction)
+        def inputFile = tmpDir.file("a")
+        def transformDir = null
+
+        when:
+        def result = cache.getResult(inputFile, HashCode.fromInt(123), transform)
+
+        then:
+        1 * snapshotter.snapshotAll(inputFile) >> snapshot(HashCode.fromInt(234))
+        1 * transform.apply(inputFile, _) >>  { File file, File dir ->
+            transformDir = dir
+            def r = new File(dir, "nested/a.1")
+            r.parentFile.mkdirs()
+            r.text = "result"
+            [r, file]
+        }
+
+        and:
+        !transformDir.exists()
+        result.size() == 2
+        result[0].text == "result"
+        result[0].path.startsWith(tmpDir.file("output/files-1.1/a").path)
+        result[0].parentFile.name == "nested"
+        result[1] == inputFile
+    }
+
     def snapshot(HashCode hashCode) {
         FileCollectionSnapshot snapshot = Stub(FileCollectionSnapshot)
         snapshot.appendToHasher(_) >> { BuildCacheHasher hasher -> hasher.putHash(hashCode) }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.artifacts.transform
+
+import org.gradle.cache.PersistentCache
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class UnusedTransformOutputsCleanupTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def filesDir = tmpDir.file("files")
+    def tempDir = tmpDir.file("tmp")
+    def cleanup = new UnusedTransformOutputsCleanup(filesDir, tempDir)
+
+    def "deletes outputs that have not been used recently"() {
+        given:
+        def unused = output("a.jar/1234", 40)
+        def used = output("a.jar/5678", 2)
+        def allUnused = output("b.jar/1234", 40)
+
+        when:
+        cleanup.execute(Stub(PersistentCache))
+
+        then:
+        !unused.exists()
+        used.exists()
+        !allUnused.exists()
+        !allUnused.parentFile.exists()
+    }
+
+    def "deletes abandoned temporary directories"() {
+        given:
+        def abandoned = tempDir.file("abc").createDir()
+        abandoned.lastModified = daysAgo(2)
+        def inProgress = tempDir.file("def").createDir()
+
+        when:
+        cleanup.execute(Stub(PersistentCache))
+
+        then:
+        !abandoned.exists()
+        inProgress.exists()
+    }
+
+    def "marks output as used at most once a day"() {
+        given:
+        def recent = output("a.jar/1234", 0)
+        def lastModified = recent.lastModified()
+        def old = output("a.jar/5678", 40)
+
+        when:
+        UnusedTransformOutputsCleanup.markUsed(recent)
+        UnusedTransformOutputsCleanup.markUsed(old)
+
+        then:
+        recent.lastModified() == lastModified
+        System.currentTimeMillis() - old.lastModified() < TimeUnit.DAYS.toMillis(1)
+    }
+
+    def output(String path, int ageInDays) {
+        def dir = filesDir.file(path)
+        dir.file("out.jar").createFile()
+        dir.lastModified = daysAgo(ageInDays)
+        return dir
+    }
+
+    private static long daysAgo(int days) {
+        System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days)
+    }
+}
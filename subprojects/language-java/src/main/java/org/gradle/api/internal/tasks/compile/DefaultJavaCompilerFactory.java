@@ -29,12 +29,14 @@ public class DefaultJavaCompilerFactory implements JavaCompilerFactory {
     private final WorkerDaemonFactory workerDaemonFactory;
     private final Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory;
     private final FileResolver fileResolver;
+    private final JavaFileManagerCache fileManagerCache;
 
-    public DefaultJavaCompilerFactory(File daemonWorkingDir, WorkerDaemonFactory workerDaemonFactory, Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, FileResolver fileResolver) {
+    public DefaultJavaCompilerFactory(File daemonWorkingDir, WorkerDaemonFactory workerDaemonFactory, Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, FileResolver fileResolver, JavaFileManagerCache fileManagerCache) {
         this.daemonWorkingDir = daemonWorkingDir;
         this.workerDaemonFactory = workerDaemonFactory;
         this.javaHomeBasedJavaCompilerFactory = javaHomeBasedJavaCompilerFactory;
         this.fileResolver = fileResolver;
+        this.fileManagerCache = fileManagerCache;
     }
 
     @Override
@@ -57,11 +59,13 @@ public class DefaultJavaCompilerFactory implements JavaCompilerFactory {
             return new CommandLineJavaCompiler();
         }
 
-        Compiler<JavaCompileSpec> compiler = new JdkJavaCompiler(javaHomeBasedJavaCompilerFactory);
         if (ForkingJavaCompileSpec.class.isAssignableFrom(type) && !jointCompilation) {
-            return new DaemonJavaCompiler(daemonWorkingDir, compiler, workerDaemonFactory, fileResolver);
+            return new DaemonJavaCompiler(daemonWorkingDir, new JdkJavaCompiler(javaHomeBasedJavaCompilerFactory), workerDaemonFactory, fileResolver);
         }
-
-        return compiler;
+        if (jointCompilation || !Boolean.getBoolean(JdkJavaCompiler.REUSE_FILE_MANAGER_PROPERTY)) {
+            // A joint compilation runs in a Groovy compiler worker, which is given a serialized copy of the compiler
+            return new JdkJavaCompiler(javaHomeBasedJavaCompilerFactory);
+        }
+        return new JdkJavaCompiler(javaHomeBasedJavaCompilerFactory, fileManagerCache);
     }
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.compile;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.os.OperatingSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the file managers of finished in-process compilations of the build session, so that the next compilation reuses the JARs they have already opened
+ * and indexed, rather than reading the classpath and the platform classes again.
+ *
+ * <p>A file manager is only reused by a compilation with the same compiler, encoding and options, apart from the options that set the locations.
+ * Those locations are reset before the file manager is handed out again. A file manager is discarded when a JAR that was on the classpath or the
+ * annotation processor path of one of its compilations has changed or disappeared since.</p>
+ *
+ * <p>An idle file manager keeps its JARs open. Idle file managers are closed when the build session ends. On Windows, where an open JAR cannot be
+ * deleted or replaced, file managers are closed as soon as they become idle instead, so they are not reused.</p>
+ */
+public class JavaFileManagerCache implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JavaFileManagerCache.class);
+    private static final int MAX_IDLE_FILE_MANAGERS = 4;
+    private static final Set<String> LOCATION_OPTIONS = ImmutableSet.of("-classpath", "-cp", "--class-path", "-sourcepath", "--source-path",
+        "-processorpath", "--processor-path", "-d", "-s", "-h");
+    private static final StandardLocation[] RESET_LOCATIONS = {StandardLocation.CLASS_PATH, StandardLocation.SOURCE_PATH, StandardLocation.ANNOTATION_PROCESSOR_PATH,
+        StandardLocation.CLASS_OUTPUT, StandardLocation.SOURCE_OUTPUT};
+
+    private final int maxIdle;
+    private final LinkedList<CachedFileManager> idle = new LinkedList<CachedFileManager>();
+
+    public JavaFileManagerCache() {
+        this(OperatingSystem.current().isWindows() ? 0 : MAX_IDLE_FILE_MANAGERS);
+    }
+
+    JavaFileManagerCache(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Returns a file manager for a compilation with the given options, classpath and annotation processor path. The file manager must be given back using {@link #release(CachedFileManager, boolean)}.
+     */
+    CachedFileManager acquire(JavaCompiler compiler, @Nullable Charset charset, List<String> options, Iterable<File> classpath, @Nullable Iterable<File> processorPath) {
+        Key key = new Key(compiler.getClass(), charset, withoutLocationOptions(options));
+        CachedFileManager fileManager = takeIdle(key);
+        if (fileManager == null) {
+            fileManager = new CachedFileManager(key, compiler.getStandardFileManager(null, null, charset));
+        } else {
+            LOGGER.debug("Reusing Java file manager from a previous compilation.");
+        }
+        fileManager.resetLocations();
+        fileManager.recordJars(classpath);
+        if (processorPath != null) {
+            fileManager.recordJars(processorPath);
+        }
+        return fileManager;
+    }
+
+    /**
+     * Gives back a file manager once the compilation is done. A file manager that must not be reused, for example because the compilation failed unexpectedly, is closed.
+     */
+    void release(CachedFileManager fileManager, boolean reusable) {
+        CachedFileManager evicted = null;
+        if (reusable && maxIdle > 0) {
+            synchronized (idle) {
+                idle.addFirst(fileManager);
+                if (idle.size() > maxIdle) {
+                    evicted = idle.removeLast();
+                }
+            }
+        } else {
+            evicted = fileManager;
+        }
+        if (evicted != null) {
+            evicted.close();
+        }
+    }
+
+    /**
+     * Closes the idle file managers, and with them the JARs they have opened.
+     */
+    @Override
+    public void stop() {
+        List<CachedFileManager> closing;
+        synchronized (idle) {
+            closing = new ArrayList<CachedFileManager>(idle);
+            idle.clear();
+        }
+        for (CachedFileManager fileManager : closing) {
+            fileManager.close();
+        }
+    }
+
+    @Nullable
+    private CachedFileManager takeIdle(Key key) {
+        List<CachedFileManager> stale = new LinkedList<CachedFileManager>();
+        CachedFileManager match = null;
+        synchronized (idle) {
+            Iterator<CachedFileManager> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                CachedFileManager candidate = iterator.next();
+                if (!candidate.key.equals(key)) {
+                    continue;
+                }
+                iterator.remove();
+                if (candidate.isUpToDate()) {
+                    match = candidate;
+                    break;
+                }
+                stale.add(candidate);
+            }
+        }
+        for (CachedFileManager fileManager : stale) {
+            LOGGER.debug("Discarding Java file manager as a JAR it has read has changed.");
+            fileManager.close();
+        }
+        return match;
+    }
+
+    private static List<String> withoutLocationOptions(List<String> options) {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        Iterator<String> iterator = options.iterator();
+        while (iterator.hasNext()) {
+            String option = iterator.next();
+            if (LOCATION_OPTIONS.contains(option)) {
+                if (iterator.hasNext()) {
+                    iterator.next();
+                }
+            } else {
+                builder.add(option);
+            }
+        }
+        return builder.build();
+    }
+
+    static class CachedFileManager {
+        private final Key key;
+        private final StandardJavaFileManager fileManager;
+        private final Map<File, JarState> jars = new HashMap<File, JarState>();
+
+        private CachedFileManager(Key key, StandardJavaFileManager fileManager) {
+            this.key = key;
+            this.fileManager = fileManager;
+        }
+
+        StandardJavaFileManager getFileManager() {
+            return fileManager;
+        }
+
+        private void resetLocations() {
+            try {
+                for (StandardLocation location : RESET_LOCATIONS) {
+                    fileManager.setLocation(location, null);
+                }
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        private void recordJars(Iterable<File> classpath) {
+            for (File file : classpath) {
+                if (file.isFile()) {
+                    jars.put(file, new JarState(file));
+                }
+            }
+        }
+
+        private boolean isUpToDate() {
+            for (Map.Entry<File, JarState> entry : jars.entrySet()) {
+                if (!entry.getValue().equals(new JarState(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void close() {
+            try {
+                fileManager.close();
+            } catch (IOException e) {
+                LOGGER.debug("Could not close Java file manager.", e);
+            }
+        }
+    }
+
+    private static class JarState {
+        private final long length;
+        private final long lastModified;
+
+        JarState(File file) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            JarState other = (JarState) obj;
+            return length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (length ^ lastModified);
+        }
+    }
+
+    private static class Key {
+        private final Class<?> compilerType;
+        private final Charset charset;
+        private final List<String> options;
+
+        Key(Class<?> compilerType, @Nullable Charset charset, List<String> options) {
+            this.compilerType = compilerType;
+            this.charset = charset;
+            this.options = options;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return compilerType == other.compilerType && Objects.equal(charset, other.charset) && options.equals(other.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(compilerType, charset, options);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.gradle.language.base.internal.compile.Compiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
@@ -33,19 +34,47 @@ import java.util.Iterator;
 import java.util.List;
 
 public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable {
+    /**
+     * When set to true, the file manager of an in-process compilation is kept after the compilation and reused by the next compilation of the build session,
+     * together with the JARs it has opened. See {@link JavaFileManagerCache}.
+     */
+    public static final String REUSE_FILE_MANAGER_PROPERTY = "org.gradle.internal.java.compile.reusefilemanager";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(JdkJavaCompiler.class);
     private final Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory;
+    // Only used in the build process, not sent to compiler daemons
+    private final transient JavaFileManagerCache fileManagerCache;
 
     public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory) {
+        this(javaHomeBasedJavaCompilerFactory, null);
+    }
+
+    public JdkJavaCompiler(Factory<JavaCompiler> javaHomeBasedJavaCompilerFactory, @Nullable JavaFileManagerCache fileManagerCache) {
         this.javaHomeBasedJavaCompilerFactory = javaHomeBasedJavaCompilerFactory;
+        this.fileManagerCache = fileManagerCache;
     }
 
     @Override
     public WorkResult execute(JavaCompileSpec spec) {
         LOGGER.info("Compiling with JDK Java compiler API.");
 
-        JavaCompiler.CompilationTask task = createCompileTask(spec);
-        boolean success = task.call();
+        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
+        JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
+        MinimalJavaCompileOptions compileOptions = spec.getCompileOptions();
+        Charset charset = compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null;
+        boolean success;
+        if (fileManagerCache != null) {
+            JavaFileManagerCache.CachedFileManager fileManager = fileManagerCache.acquire(compiler, charset, options, spec.getCompileClasspath(), spec.getAnnotationProcessorPath());
+            boolean reusable = false;
+            try {
+                success = createCompileTask(spec, options, compiler, fileManager.getFileManager()).call();
+                reusable = true;
+            } finally {
+                fileManagerCache.release(fileManager, reusable);
+            }
+        } else {
+            success = createCompileTask(spec, options, compiler, compiler.getStandardFileManager(null, null, charset)).call();
+        }
         if (!success) {
             throw new CompilationFailedException();
         }
@@ -53,11 +82,7 @@ public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable
         return WorkResults.didWork(true);
     }
 
-    private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec) {
-        List<String> options = new JavaCompilerArgumentsBuilder(spec).build();
-        JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
-        MinimalJavaCompileOptions compileOptions = spec.getCompileOptions();
-        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null);
+    private JavaCompiler.CompilationTask createCompileTask(JavaCompileSpec spec, List<String> options, JavaCompiler compiler, StandardJavaFileManager standardFileManager) {
         Iterable<? extends JavaFileObject> compilationUnits = standardFileManager.getJavaFileObjectsFromFiles(spec.getSource());
         StandardJavaFileManager fileManager = standardFileManager;
         if (JavaVersion.current().isJava9Compatible() && emptySourcepathIn(options)) {
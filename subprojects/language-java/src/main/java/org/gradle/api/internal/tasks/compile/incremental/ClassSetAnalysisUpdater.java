@@ -23,10 +23,10 @@ import org.gradle.api.internal.file.FileOperations;
 import org.gradle.api.internal.tasks.compile.JavaCompileSpec;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenciesAnalyzer;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer;
-import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassFilesAnalysisData;
+import org.gradle.api.internal.tasks.compile.incremental.deps.LocalClassSetAnalysisStore;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
-import org.gradle.cache.internal.Stash;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.time.Time;
 import org.gradle.internal.time.Timer;
@@ -44,13 +44,13 @@ public class ClassSetAnalysisUpdater {
         }
     };
 
-    private final Stash<ClassSetAnalysisData> stash;
+    private final LocalClassSetAnalysisStore store;
     private final FileOperations fileOperations;
     private ClassDependenciesAnalyzer analyzer;
     private final FileHasher fileHasher;
 
-    public ClassSetAnalysisUpdater(Stash<ClassSetAnalysisData> stash, FileOperations fileOperations, ClassDependenciesAnalyzer analyzer, FileHasher fileHasher) {
-        this.stash = stash;
+    public ClassSetAnalysisUpdater(LocalClassSetAnalysisStore store, FileOperations fileOperations, ClassDependenciesAnalyzer analyzer, FileHasher fileHasher) {
+        this.store = store;
         this.fileOperations = fileOperations;
         this.analyzer = analyzer;
         this.fileHasher = fileHasher;
@@ -61,12 +61,13 @@ public class ClassSetAnalysisUpdater {
         Set<File> baseDirs = Sets.newLinkedHashSet();
         baseDirs.add(spec.getDestinationDir());
         Iterables.addAll(baseDirs, Iterables.filter(spec.getCompileClasspath(), IS_CLASS_DIRECTORY));
-        ClassFilesAnalyzer analyzer = new ClassFilesAnalyzer(this.analyzer, fileHasher);
+        // Only the class files that were written since the previous analysis are analysed again
+        ClassFilesAnalyzer analyzer = new ClassFilesAnalyzer(this.analyzer, fileHasher, store.getClassFiles());
         for (File baseDir : baseDirs) {
             fileOperations.fileTree(baseDir).visit(analyzer);
         }
-        ClassSetAnalysisData data = analyzer.getAnalysis();
-        stash.put(data);
-        LOG.info("Class dependency analysis for incremental compilation took {}.", clock.getElapsed());
+        ClassFilesAnalysisData data = analyzer.getClassFilesAnalysis();
+        store.put(data);
+        LOG.info("Class dependency analysis for incremental compilation took {} ({} of {} class files analysed).", clock.getElapsed(), analyzer.getAnalysedFiles(), data.getClassFiles().size());
     }
 }
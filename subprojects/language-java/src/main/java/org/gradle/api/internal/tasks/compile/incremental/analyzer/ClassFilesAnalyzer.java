@@ -20,24 +20,46 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.file.FileVisitor;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassFileAnalysis;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassFilesAnalysisData;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
 import org.gradle.internal.hash.FileHasher;
 import org.gradle.internal.hash.HashCode;
 
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Analyses the visited class files. When the analysis of a previous visit is given, the class files that have not changed since are not analysed again.
+ */
 public class ClassFilesAnalyzer implements FileVisitor {
     private final ClassDependenciesAnalyzer analyzer;
     private final ClassDependentsAccumulator accumulator;
     private final FileHasher hasher;
+    private final ClassFilesAnalysisData previous;
+    private final Map<String, ClassFileAnalysis> classFiles = new LinkedHashMap<String, ClassFileAnalysis>();
+    private int analysedFiles;
 
     public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher) {
-        this(analyzer, fileHasher, new ClassDependentsAccumulator());
+        this(analyzer, fileHasher, (ClassFilesAnalysisData) null);
+    }
+
+    public ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, @Nullable ClassFilesAnalysisData previous) {
+        this(analyzer, fileHasher, new ClassDependentsAccumulator(), previous);
+    }
+
+    ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, ClassDependentsAccumulator accumulator) {
+        this(analyzer, fileHasher, accumulator, null);
     }
 
-   ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, ClassDependentsAccumulator accumulator) {
-       this.analyzer = analyzer;
-       this.hasher = fileHasher;
-       this.accumulator = accumulator;
-   }
+    private ClassFilesAnalyzer(ClassDependenciesAnalyzer analyzer, FileHasher fileHasher, ClassDependentsAccumulator accumulator, @Nullable ClassFilesAnalysisData previous) {
+        this.analyzer = analyzer;
+        this.hasher = fileHasher;
+        this.accumulator = accumulator;
+        this.previous = previous;
+    }
 
     @Override
     public void visitDir(FileVisitDetails dirDetails) {}
@@ -48,13 +70,34 @@ public class ClassFilesAnalyzer implements FileVisitor {
             return;
         }
 
-        HashCode hash = hasher.hash(fileDetails);
-        ClassAnalysis analysis = analyzer.getClassAnalysis(hash, fileDetails);
+        File file = fileDetails.getFile();
+        String filePath = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        ClassFileAnalysis classFile = previous == null ? null : previous.getClassFile(filePath);
+        if (classFile == null || !classFile.isUpToDate(lastModified, length)) {
+            HashCode hash = hasher.hash(fileDetails);
+            classFile = new ClassFileAnalysis(lastModified, length, analyzer.getClassAnalysis(hash, fileDetails));
+            analysedFiles++;
+        }
+        ClassAnalysis analysis = classFile.getAnalysis();
 
-        accumulator.addClass(fileDetails.getFile(), analysis);
+        classFiles.put(filePath, classFile);
+        accumulator.addClass(file, analysis);
     }
 
     public ClassSetAnalysisData getAnalysis() {
         return accumulator.getAnalysis();
     }
+
+    public ClassFilesAnalysisData getClassFilesAnalysis() {
+        return new ClassFilesAnalysisData(classFiles, accumulator.getAnalysis());
+    }
+
+    /**
+     * Returns the number of visited class files that had to be analysed, as opposed to those reused from the previous analysis.
+     */
+    public int getAnalysedFiles() {
+        return analysedFiles;
+    }
 }
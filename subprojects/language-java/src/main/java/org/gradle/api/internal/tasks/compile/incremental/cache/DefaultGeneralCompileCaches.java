@@ -21,7 +21,7 @@ import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisC
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassAnalysisSerializer;
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.DefaultClassAnalysisCache;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
-import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.api.internal.tasks.compile.incremental.deps.ClassFilesAnalysisData;
 import org.gradle.api.internal.tasks.compile.incremental.deps.LocalClassSetAnalysisStore;
 import org.gradle.api.internal.tasks.compile.incremental.jar.DefaultJarSnapshotCache;
 import org.gradle.api.internal.tasks.compile.incremental.jar.JarClasspathSnapshotData;
@@ -48,7 +48,7 @@ public class DefaultGeneralCompileCaches implements GeneralCompileCaches, Closea
     private final JarSnapshotCache jarSnapshotCache;
     private final PersistentCache cache;
     private final PersistentIndexedCache<String, JarClasspathSnapshotData> taskJarCache;
-    private final PersistentIndexedCache<String, ClassSetAnalysisData> taskCompileCache;
+    private final PersistentIndexedCache<String, ClassFilesAnalysisData> taskCompileCache;
 
     public DefaultGeneralCompileCaches(CacheRepository cacheRepository, Gradle gradle, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
         cache = cacheRepository
@@ -68,7 +68,7 @@ public class DefaultGeneralCompileCaches implements GeneralCompileCaches, Closea
                 .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(2000, false));
         taskJarCache = cache.createCache(taskJarCacheParameters);
 
-        PersistentIndexedCacheParameters<String, ClassSetAnalysisData> taskCompileCacheParameters = new PersistentIndexedCacheParameters<String, ClassSetAnalysisData>("taskHistory", String.class, new ClassSetAnalysisData.Serializer())
+        PersistentIndexedCacheParameters<String, ClassFilesAnalysisData> taskCompileCacheParameters = new PersistentIndexedCacheParameters<String, ClassFilesAnalysisData>("taskClassFiles", String.class, new ClassFilesAnalysisData.Serializer())
                 .cacheDecorator(inMemoryCacheDecoratorFactory.decorator(2000, false));
         taskCompileCache = cache.createCache(taskCompileCacheParameters);
     }
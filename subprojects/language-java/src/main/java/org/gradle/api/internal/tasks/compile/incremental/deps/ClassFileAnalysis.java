@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.deps;
+
+/**
+ * The analysis of a class file, along with the length and modification time the file had when it was analysed.
+ */
+public class ClassFileAnalysis {
+    private final long lastModified;
+    private final long length;
+    private final ClassAnalysis analysis;
+
+    public ClassFileAnalysis(long lastModified, long length, ClassAnalysis analysis) {
+        this.lastModified = lastModified;
+        this.length = length;
+        this.analysis = analysis;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public ClassAnalysis getAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Returns true when a class file with the given modification time and length can be assumed to have the same content as the analysed file.
+     */
+    public boolean isUpToDate(long lastModified, long length) {
+        return this.lastModified == lastModified && this.length == length;
+    }
+}
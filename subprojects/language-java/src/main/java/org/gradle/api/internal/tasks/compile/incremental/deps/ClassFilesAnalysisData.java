@@ -0,0 +1,166 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.deps;
+
+import com.google.common.collect.ImmutableSet;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.SetSerializer;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.gradle.internal.serialize.BaseSerializerFactory.INTEGER_SERIALIZER;
+
+/**
+ * The analysis of each class file of a class set, keyed by the absolute path of the class file, in the order in which the files were visited.
+ *
+ * <p>Unlike {@link ClassSetAnalysisData}, which holds the dependents of each class, this keeps what each class depends on. The contribution of a single
+ * class file can therefore be replaced or removed without touching the others, so that the analysis can be updated by reanalysing only the class files
+ * that changed. The {@link ClassSetAnalysisData} is derived from it when needed.</p>
+ */
+public class ClassFilesAnalysisData {
+    private final Map<String, ClassFileAnalysis> classFiles;
+    private ClassSetAnalysisData analysis;
+
+    public ClassFilesAnalysisData(Map<String, ClassFileAnalysis> classFiles) {
+        this(classFiles, null);
+    }
+
+    public ClassFilesAnalysisData(Map<String, ClassFileAnalysis> classFiles, @Nullable ClassSetAnalysisData analysis) {
+        this.classFiles = classFiles;
+        this.analysis = analysis;
+    }
+
+    public Map<String, ClassFileAnalysis> getClassFiles() {
+        return classFiles;
+    }
+
+    @Nullable
+    public ClassFileAnalysis getClassFile(String filePath) {
+        return classFiles.get(filePath);
+    }
+
+    public ClassSetAnalysisData getAnalysis() {
+        ClassSetAnalysisData analysis = this.analysis;
+        if (analysis == null) {
+            ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+            for (Map.Entry<String, ClassFileAnalysis> entry : classFiles.entrySet()) {
+                accumulator.addClass(new File(entry.getKey()), entry.getValue().getAnalysis());
+            }
+            analysis = accumulator.getAnalysis();
+            this.analysis = analysis;
+        }
+        return analysis;
+    }
+
+    public static class Serializer extends AbstractSerializer<ClassFilesAnalysisData> {
+        private static final SetSerializer<Integer> INTEGER_SET_SERIALIZER = new SetSerializer<Integer>(INTEGER_SERIALIZER, false);
+
+        @Override
+        public ClassFilesAnalysisData read(Decoder decoder) throws Exception {
+            // Directories and class names are de-duplicated when encoded
+            Map<Integer, String> directoryMap = new HashMap<Integer, String>();
+            Map<Integer, String> classNameMap = new HashMap<Integer, String>();
+
+            int count = decoder.readSmallInt();
+            Map<String, ClassFileAnalysis> classFiles = new LinkedHashMap<String, ClassFileAnalysis>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String directory = readString(decoder, directoryMap);
+                String fileName = decoder.readString();
+                long lastModified = decoder.readLong();
+                long length = decoder.readSmallLong();
+                String className = readString(decoder, classNameMap);
+                boolean dependencyToAll = decoder.readBoolean();
+                Set<String> classDependencies = readClassNames(decoder, classNameMap);
+                Set<Integer> constants = INTEGER_SET_SERIALIZER.read(decoder);
+                Set<Integer> literals = INTEGER_SET_SERIALIZER.read(decoder);
+                Set<String> superTypes = readClassNames(decoder, classNameMap);
+                ClassAnalysis analysis = new ClassAnalysis(className, classDependencies, dependencyToAll, constants, literals, superTypes);
+                classFiles.put(directory + File.separatorChar + fileName, new ClassFileAnalysis(lastModified, length, analysis));
+            }
+            return new ClassFilesAnalysisData(classFiles);
+        }
+
+        @Override
+        public void write(Encoder encoder, ClassFilesAnalysisData value) throws Exception {
+            Map<String, Integer> directoryMap = new HashMap<String, Integer>();
+            Map<String, Integer> classNameMap = new HashMap<String, Integer>();
+
+            encoder.writeSmallInt(value.classFiles.size());
+            for (Map.Entry<String, ClassFileAnalysis> entry : value.classFiles.entrySet()) {
+                String filePath = entry.getKey();
+                int separator = filePath.lastIndexOf(File.separatorChar);
+                writeString(filePath.substring(0, separator), directoryMap, encoder);
+                encoder.writeString(filePath.substring(separator + 1));
+                ClassFileAnalysis classFile = entry.getValue();
+                encoder.writeLong(classFile.getLastModified());
+                encoder.writeSmallLong(classFile.getLength());
+                ClassAnalysis analysis = classFile.getAnalysis();
+                writeString(analysis.getClassName(), classNameMap, encoder);
+                encoder.writeBoolean(analysis.isDependencyToAll());
+                writeClassNames(analysis.getClassDependencies(), classNameMap, encoder);
+                INTEGER_SET_SERIALIZER.write(encoder, analysis.getConstants());
+                INTEGER_SET_SERIALIZER.write(encoder, analysis.getLiterals());
+                writeClassNames(analysis.getSuperTypes(), classNameMap, encoder);
+            }
+        }
+
+        private Set<String> readClassNames(Decoder decoder, Map<Integer, String> classNameMap) throws IOException {
+            int count = decoder.readSmallInt();
+            ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+            for (int i = 0; i < count; i++) {
+                builder.add(readString(decoder, classNameMap));
+            }
+            return builder.build();
+        }
+
+        private void writeClassNames(Set<String> classNames, Map<String, Integer> classNameMap, Encoder encoder) throws IOException {
+            encoder.writeSmallInt(classNames.size());
+            for (String className : classNames) {
+                writeString(className, classNameMap, encoder);
+            }
+        }
+
+        private String readString(Decoder decoder, Map<Integer, String> stringMap) throws IOException {
+            int id = decoder.readSmallInt();
+            if (id == 0) {
+                String value = decoder.readString();
+                stringMap.put(stringMap.size() + 1, value);
+                return value;
+            }
+            return stringMap.get(id);
+        }
+
+        private void writeString(String value, Map<String, Integer> stringMap, Encoder encoder) throws IOException {
+            Integer id = stringMap.get(value);
+            if (id == null) {
+                stringMap.put(value, stringMap.size() + 1);
+                encoder.writeSmallInt(0);
+                encoder.writeString(value);
+            } else {
+                encoder.writeSmallInt(id);
+            }
+        }
+    }
+}
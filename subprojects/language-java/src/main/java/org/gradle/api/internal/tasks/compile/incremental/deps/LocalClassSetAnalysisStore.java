@@ -20,23 +20,31 @@ import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.internal.Loader;
 import org.gradle.cache.internal.Stash;
 
-//Keeps the class set analysis of the given JavaCompile task
-public class LocalClassSetAnalysisStore implements Loader<ClassSetAnalysisData>, Stash<ClassSetAnalysisData> {
+import javax.annotation.Nullable;
+
+//Keeps the analysis of the class files of the given JavaCompile task, from which its class set analysis is derived
+public class LocalClassSetAnalysisStore implements Loader<ClassSetAnalysisData>, Stash<ClassFilesAnalysisData> {
     private final String taskPath;
-    private final PersistentIndexedCache<String, ClassSetAnalysisData> cache;
+    private final PersistentIndexedCache<String, ClassFilesAnalysisData> cache;
 
-    public LocalClassSetAnalysisStore(String taskPath, PersistentIndexedCache<String, ClassSetAnalysisData> cache) {
+    public LocalClassSetAnalysisStore(String taskPath, PersistentIndexedCache<String, ClassFilesAnalysisData> cache) {
         this.taskPath = taskPath;
         this.cache = cache;
     }
 
     @Override
-    public void put(ClassSetAnalysisData analysis) {
+    public void put(ClassFilesAnalysisData analysis) {
         cache.put(taskPath, analysis);
     }
 
     @Override
     public ClassSetAnalysisData get() {
+        ClassFilesAnalysisData classFiles = getClassFiles();
+        return classFiles == null ? null : classFiles.getAnalysis();
+    }
+
+    @Nullable
+    public ClassFilesAnalysisData getClassFiles() {
         return cache.get(taskPath);
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import javax.tools.JavaCompiler
+import javax.tools.StandardJavaFileManager
+import java.nio.charset.Charset
+
+class JavaFileManagerCacheTest extends Specification {
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def compiler = Mock(JavaCompiler)
+    def cache = new JavaFileManagerCache(2)
+
+    def "reuses file manager of a previous compilation with the same options"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        def jar = tmpDir.file("lib.jar").createFile()
+
+        when:
+        def first = cache.acquire(compiler, null, ["-g", "-classpath", jar.path], [jar], [])
+        cache.release(first, true)
+        def second = cache.acquire(compiler, null, ["-g", "-classpath", ""], [], [])
+
+        then:
+        1 * compiler.getStandardFileManager(null, null, null) >> fileManager
+        second.is(first)
+        second.fileManager.is(fileManager)
+        0 * fileManager.close()
+    }
+
+    def "does not reuse file manager of a compilation with different options or encoding"() {
+        when:
+        cache.release(cache.acquire(compiler, null, ["-g"], [], []), true)
+        def differentOptions = cache.acquire(compiler, null, ["-nowarn"], [], [])
+        def differentEncoding = cache.acquire(compiler, Charset.forName("UTF-8"), ["-g"], [], [])
+
+        then:
+        3 * compiler.getStandardFileManager(_, _, _) >> { Mock(StandardJavaFileManager) }
+        !differentOptions.is(differentEncoding)
+    }
+
+    def "discards file manager when a JAR on the classpath has changed"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        def jar = tmpDir.file("lib.jar").createFile()
+
+        given:
+        compiler.getStandardFileManager(_, _, _) >>> [fileManager, Mock(StandardJavaFileManager)]
+        def first = cache.acquire(compiler, null, [], [jar], [])
+        cache.release(first, true)
+
+        when:
+        jar << "changed"
+        def second = cache.acquire(compiler, null, [], [jar], [])
+
+        then:
+        !second.is(first)
+        1 * fileManager.close()
+    }
+
+    def "closes file manager that cannot be reused"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        compiler.getStandardFileManager(_, _, _) >> fileManager
+
+        when:
+        cache.release(cache.acquire(compiler, null, [], [], []), false)
+
+        then:
+        1 * fileManager.close()
+    }
+
+    def "closes least recently used file managers when too many are idle"() {
+        def fileManagers = [Mock(StandardJavaFileManager), Mock(StandardJavaFileManager), Mock(StandardJavaFileManager)]
+        compiler.getStandardFileManager(_, _, _) >>> fileManagers
+        def acquired = (1..3).collect { cache.acquire(compiler, null, ["-Xmaxerrs", it as String], [], []) }
+
+        when:
+        acquired.each { cache.release(it, true) }
+
+        then:
+        1 * fileManagers[0].close()
+        0 * fileManagers[1].close()
+        0 * fileManagers[2].close()
+    }
+
+    def "discards file manager when a JAR on the annotation processor path has changed"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        def processorJar = tmpDir.file("processor.jar").createFile()
+
+        given:
+        compiler.getStandardFileManager(_, _, _) >>> [fileManager, Mock(StandardJavaFileManager)]
+        def first = cache.acquire(compiler, null, [], [], [processorJar])
+        cache.release(first, true)
+
+        when:
+        processorJar << "changed"
+        def second = cache.acquire(compiler, null, [], [], [processorJar])
+
+        then:
+        !second.is(first)
+        1 * fileManager.close()
+    }
+
+    def "closes idle file managers when stopped"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        compiler.getStandardFileManager(_, _, _) >> fileManager
+        cache.release(cache.acquire(compiler, null, [], [], []), true)
+
+        when:
+        cache.stop()
+
+        then:
+        1 * fileManager.close()
+    }
+
+    def "closes file managers as soon as they are idle when none may be kept"() {
+        def fileManager = Mock(StandardJavaFileManager)
+        compiler.getStandardFileManager(_, _, _) >> fileManager
+        def noIdleCache = new JavaFileManagerCache(0)
+
+        when:
+        noIdleCache.release(noIdleCache.acquire(compiler, null, [], [], []), true)
+
+        then:
+        1 * fileManager.close()
+    }
+}
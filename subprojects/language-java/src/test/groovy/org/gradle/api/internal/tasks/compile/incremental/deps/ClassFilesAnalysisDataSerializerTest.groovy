@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.compile.incremental.deps
+
+import org.gradle.internal.serialize.InputStreamBackedDecoder
+import org.gradle.internal.serialize.OutputStreamBackedEncoder
+import spock.lang.Specification
+import spock.lang.Subject
+
+class ClassFilesAnalysisDataSerializerTest extends Specification {
+
+    @Subject serializer = new ClassFilesAnalysisData.Serializer()
+
+    def "serializes"() {
+        def a = new File("classes/org/A.class").absolutePath
+        def b = new File("classes/org/B.class").absolutePath
+        def c = new File("other/C.class").absolutePath
+        def data = new ClassFilesAnalysisData([
+            (a): new ClassFileAnalysis(1000L, 12L, new ClassAnalysis("org.A", ["org.B", "C"] as Set, false, [1, 2] as Set, [3] as Set, ["java.lang.Object"] as Set)),
+            (b): new ClassFileAnalysis(2000L, 34L, new ClassAnalysis("org.B", [] as Set, true, [] as Set, [] as Set, ["org.A"] as Set)),
+            (c): new ClassFileAnalysis(3000L, 56L, new ClassAnalysis("C", ["org.A"] as Set, false, [] as Set, [3] as Set, ["java.lang.Object"] as Set))
+        ])
+        def os = new ByteArrayOutputStream()
+        def e = new OutputStreamBackedEncoder(os)
+
+        when:
+        serializer.write(e, data)
+        ClassFilesAnalysisData read = serializer.read(new InputStreamBackedDecoder(new ByteArrayInputStream(os.toByteArray())))
+
+        then:
+        read.classFiles.keySet() as List == [a, b, c]
+        read.classFiles.each { path, classFile ->
+            def original = data.classFiles[path]
+            assert classFile.lastModified == original.lastModified
+            assert classFile.length == original.length
+            assert classFile.analysis.className == original.analysis.className
+            assert classFile.analysis.dependencyToAll == original.analysis.dependencyToAll
+            assert classFile.analysis.classDependencies == original.analysis.classDependencies
+            assert classFile.analysis.constants == original.analysis.constants
+            assert classFile.analysis.literals == original.analysis.literals
+            assert classFile.analysis.superTypes == original.analysis.superTypes
+        }
+    }
+
+    def "derives class set analysis from class files"() {
+        def a = new File("classes/A.class").absolutePath
+        def b = new File("classes/B.class").absolutePath
+        def data = new ClassFilesAnalysisData([
+            (a): new ClassFileAnalysis(1000L, 12L, new ClassAnalysis("A", ["B"] as Set, false, [1] as Set, [] as Set, ["B"] as Set)),
+            (b): new ClassFileAnalysis(2000L, 34L, new ClassAnalysis("B", [] as Set, false, [] as Set, [] as Set, [] as Set))
+        ])
+
+        when:
+        def analysis = data.analysis
+
+        then:
+        analysis.getClassNameForFile(a) == "A"
+        analysis.getDependents("B").dependentClasses == ["A"] as Set
+        analysis.getConstants("A") == [1] as Set
+        analysis.getChildren("B") == ["A"] as Set
+        data.analysis.is(analysis)
+    }
+}
@@ -23,6 +23,8 @@ import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenc
 import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassFilesAnalyzer
 import org.gradle.internal.hash.FileHasher
 import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Specification
 import spock.lang.Subject
 
@@ -32,6 +34,7 @@ class ClassFilesAnalyzerTest extends Specification {
     def accumulator = Mock(ClassDependentsAccumulator)
     def fileHasher = Mock(FileHasher)
     @Subject analyzer = new ClassFilesAnalyzer(classAnalyzer, fileHasher, accumulator)
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
 
     def "does not visit dirs"() {
         when: analyzer.visitDir(null)
@@ -66,4 +69,42 @@ class ClassFilesAnalyzerTest extends Specification {
         1 * accumulator.addClass(file, analysis)
         0 * _
     }
+
+    def "reanalyses only class files that changed since the previous analysis"() {
+        def unchanged = tmpDir.file("Unchanged.class").createFile()
+        def changed = tmpDir.file("Changed.class").createFile()
+        def added = tmpDir.file("Added.class").createFile()
+        def unchangedAnalysis = new ClassAnalysis("Unchanged", [] as Set, false, [] as Set, [] as Set, [] as Set)
+        def previous = new ClassFilesAnalysisData([
+            (unchanged.absolutePath): new ClassFileAnalysis(unchanged.lastModified(), unchanged.length(), unchangedAnalysis),
+            (changed.absolutePath): new ClassFileAnalysis(changed.lastModified() - 2000, changed.length(), new ClassAnalysis("Changed", [] as Set, false, [] as Set, [] as Set, [] as Set)),
+            (tmpDir.file("Deleted.class").absolutePath): new ClassFileAnalysis(0, 0, new ClassAnalysis("Deleted", [] as Set, false, [] as Set, [] as Set, [] as Set))
+        ])
+        def analyzer = new ClassFilesAnalyzer(classAnalyzer, fileHasher, previous)
+        def changedAnalysis = new ClassAnalysis("Changed", ["Unchanged"] as Set, false, [] as Set, [] as Set, [] as Set)
+        def addedAnalysis = new ClassAnalysis("Added", [] as Set, false, [] as Set, [] as Set, [] as Set)
+
+        when:
+        [unchanged, changed, added].each { file ->
+            analyzer.visitFile(Stub(FileVisitDetails) {
+                getFile() >> file
+                getName() >> file.name
+            })
+        }
+
+        then:
+        2 * fileHasher.hash(_) >> HashCode.fromInt(123)
+        1 * classAnalyzer.getClassAnalysis(_, { it.name == "Changed.class" }) >> changedAnalysis
+        1 * classAnalyzer.getClassAnalysis(_, { it.name == "Added.class" }) >> addedAnalysis
+        0 * _
+
+        and:
+        analyzer.analysedFiles == 2
+        def data = analyzer.classFilesAnalysis
+        data.classFiles.keySet() as List == [unchanged.absolutePath, changed.absolutePath, added.absolutePath]
+        data.getClassFile(unchanged.absolutePath).analysis.is(unchangedAnalysis)
+        data.getClassFile(changed.absolutePath).analysis.is(changedAnalysis)
+        data.analysis.getDependents("Unchanged").dependentClasses == ["Changed"] as Set
+        data.analysis.getClassNameForFile(tmpDir.file("Deleted.class").absolutePath) == null
+    }
 }
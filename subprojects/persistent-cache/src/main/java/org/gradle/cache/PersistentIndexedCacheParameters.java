@@ -26,6 +26,7 @@ public class PersistentIndexedCacheParameters<K, V> {
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private CacheDecorator cacheDecorator;
+    private StoreType storeType = StoreType.BTREE;
 
     public PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
         this.cacheName = cacheName;
@@ -67,4 +68,29 @@ public class PersistentIndexedCacheParameters<K, V> {
         this.cacheDecorator = cacheDecorator;
         return this;
     }
+
+    public StoreType getStoreType() {
+        return storeType;
+    }
+
+    public PersistentIndexedCacheParameters<K, V> storeType(StoreType storeType) {
+        assert storeType != null;
+        this.storeType = storeType;
+        return this;
+    }
+
+    /**
+     * The on-disk format used to store the entries of the cache.
+     */
+    public enum StoreType {
+        /**
+         * A B-tree in a single file. Suitable for any cache.
+         */
+        BTREE,
+        /**
+         * A memory-mapped hash table index plus an append-only data file. Lookups do not take the file lock and do not block each other or writers, at the cost of more disk space between compactions.
+         * The cache decorator is not applied to these caches. Suitable for large caches with many concurrent reads.
+         */
+        HASH_TABLE
+    }
 }
@@ -30,6 +30,7 @@ import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.hashtable.HashTablePersistentIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -178,6 +179,11 @@ public class DefaultCacheAccess implements CacheCoordinator {
                 fileLockHeldByOwner.run();
             }
             crossProcessCacheAccess.close();
+            for (IndexedCacheEntry<?, ?> entry : caches.values()) {
+                if (entry.getCache() instanceof LockFreeReadingPersistentIndexedCache) {
+                    ((LockFreeReadingPersistentIndexedCache<?, ?>) entry.getCache()).close();
+                }
+            }
             if (cacheClosedCount != 1) {
                 LOG.debug("Cache {} was closed {} times.", cacheDisplayName, cacheClosedCount);
             }
@@ -282,20 +288,35 @@ public class DefaultCacheAccess implements CacheCoordinator {
         IndexedCacheEntry<K, V> entry = Cast.uncheckedCast(caches.get(parameters.getCacheName()));
         try {
             if (entry == null) {
-                final File cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
-                LOG.info("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
-                    public BTreePersistentIndexedCache<K, V> create() {
-                        return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
-                    }
-                };
-
-                MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
-                CacheDecorator decorator = parameters.getCacheDecorator();
-                if (decorator != null) {
-                    indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
-                    if (fileLock == null) {
-                        useCache(NO_OP);
+                final File cacheFile;
+                MultiProcessSafePersistentIndexedCache<K, V> indexedCache;
+                if (parameters.getStoreType() == PersistentIndexedCacheParameters.StoreType.HASH_TABLE) {
+                    cacheFile = new File(baseDir, parameters.getCacheName() + ".data");
+                    final File indexFile = new File(baseDir, parameters.getCacheName() + ".index");
+                    Factory<HashTablePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<HashTablePersistentIndexedCache<K, V>>() {
+                        public HashTablePersistentIndexedCache<K, V> create() {
+                            return new HashTablePersistentIndexedCache<K, V>(cacheFile, indexFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                        }
+                    };
+                    LOG.info("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
+                    // Lookups read the store directly, so the cache decorator is not applied: it would put them back behind the file lock and the cache access worker
+                    indexedCache = new LockFreeReadingPersistentIndexedCache<K, V>(indexedCacheFactory, this, fileAccess);
+                } else {
+                    cacheFile = new File(baseDir, parameters.getCacheName() + ".bin");
+                    Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
+                        public BTreePersistentIndexedCache<K, V> create() {
+                            return doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                        }
+                    };
+                    LOG.info("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
+
+                    indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+                    CacheDecorator decorator = parameters.getCacheDecorator();
+                    if (decorator != null) {
+                        indexedCache = decorator.decorate(cacheFile.getAbsolutePath(), parameters.getCacheName(), indexedCache, crossProcessCacheAccess, getCacheAccessWorker());
+                        if (fileLock == null) {
+                            useCache(NO_OP);
+                        }
                     }
                 }
                 entry = new IndexedCacheEntry<K, V>(parameters, indexedCache);
@@ -444,6 +465,7 @@ public class DefaultCacheAccess implements CacheCoordinator {
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStoreType(faultMessages, parameters.getStoreType());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -486,6 +508,14 @@ public class DefaultCacheAccess implements CacheCoordinator {
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStoreType(Collection<String> faultMessages, PersistentIndexedCacheParameters.StoreType storeType) {
+            if (storeType != parameters.getStoreType()) {
+                faultMessages.add(
+                    String.format(" * Requested store type (%s) doesn't match current store type (%s)",
+                        storeType, parameters.getStoreType()));
+            }
+        }
     }
 
     private static class InvalidCacheReuseException extends GradleException {
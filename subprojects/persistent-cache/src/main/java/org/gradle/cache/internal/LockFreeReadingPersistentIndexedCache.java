@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import org.gradle.api.Transformer;
+import org.gradle.cache.CacheAccess;
+import org.gradle.cache.FileAccess;
+import org.gradle.cache.FileLock;
+import org.gradle.cache.IndexedCacheBackingStore;
+import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
+import org.gradle.internal.Factory;
+
+import javax.annotation.Nullable;
+
+/**
+ * A cache for a store that can be read without the file lock, such as {@link org.gradle.cache.internal.hashtable.HashTablePersistentIndexedCache}.
+ * Lookups go straight to the store, from the calling thread. Writes hold the file lock of the cache and are applied before they return.
+ * The store is opened while holding the file lock, and then stays open until the cache is closed.
+ */
+public class LockFreeReadingPersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
+    private final Factory<? extends IndexedCacheBackingStore<K, V>> factory;
+    private final CacheAccess cacheAccess;
+    private final FileAccess fileAccess;
+    private volatile IndexedCacheBackingStore<K, V> store;
+
+    public LockFreeReadingPersistentIndexedCache(Factory<? extends IndexedCacheBackingStore<K, V>> factory, CacheAccess cacheAccess, FileAccess fileAccess) {
+        this.factory = factory;
+        this.cacheAccess = cacheAccess;
+        this.fileAccess = fileAccess;
+    }
+
+    @Override
+    public String toString() {
+        return fileAccess.toString();
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        return getStore().get(key);
+    }
+
+    @Override
+    public V get(K key, Transformer<? extends V, ? super K> producer) {
+        V value = get(key);
+        if (value == null) {
+            value = producer.transform(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(final K key, final V value) {
+        final IndexedCacheBackingStore<K, V> store = getStore();
+        withWriteAccess(new Runnable() {
+            public void run() {
+                store.put(key, value);
+            }
+        });
+    }
+
+    @Override
+    public void remove(final K key) {
+        final IndexedCacheBackingStore<K, V> store = getStore();
+        withWriteAccess(new Runnable() {
+            public void run() {
+                store.remove(key);
+            }
+        });
+    }
+
+    private IndexedCacheBackingStore<K, V> getStore() {
+        if (store == null) {
+            // Opening the store may discard or compact its content. Only the owner of the cache can do this, so the store is opened once
+            withWriteAccess(new Runnable() {
+                public void run() {
+                    if (store == null) {
+                        store = factory.create();
+                    }
+                }
+            });
+        }
+        return store;
+    }
+
+    private void withWriteAccess(final Runnable action) {
+        cacheAccess.useCache(new Runnable() {
+            public void run() {
+                fileAccess.writeFile(action);
+            }
+        });
+    }
+
+    @Override
+    public void afterLockAcquire(FileLock.State currentCacheState) {
+    }
+
+    @Override
+    public void finishWork() {
+    }
+
+    @Override
+    public void beforeLockRelease(FileLock.State currentCacheState) {
+    }
+
+    public void close() {
+        IndexedCacheBackingStore<K, V> current = store;
+        if (current != null) {
+            store = null;
+            current.close();
+        }
+    }
+}
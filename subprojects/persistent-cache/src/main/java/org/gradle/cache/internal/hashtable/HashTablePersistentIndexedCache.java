@@ -0,0 +1,717 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.hashtable;
+
+import com.google.common.hash.Hashing;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.IndexedCacheBackingStore;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * An indexed cache store that keeps an open-addressing hash table of its keys in a memory-mapped index file, and appends the serialized entries to a data file.
+ *
+ * <p>Lookups do not need the file lock of the cache and do not wait for writes: they probe the mapped table and read the entry with a positional read from the data file.
+ * Entries are never updated in place. Writes must hold the file lock. They append a new record to the data file and then publish it by pointing the table slot at it,
+ * so a concurrent lookup sees either the old or the new entry. Each record carries a checksum, so a record that did not fully reach the disk reads as a missing entry.
+ * When the table becomes too full, a table of twice the size is written after the current one, forced to disk, and then replaces it.</p>
+ *
+ * <p>The index header is shared with the other processes that use the store, and lookups check it to pick up tables grown by another process, and files replaced by another process.
+ * Space used by replaced and removed entries is reclaimed when the store is opened and there is enough of it: the live entries are written to a new pair of files, which are
+ * forced to disk and then atomically moved over the current files. This is skipped when the index cannot be replaced, for example on Windows while another process has it mapped.
+ * Mapped buffers are not unmapped explicitly, they are released when they are garbage collected.
+ * Any inconsistency found when opening the store causes its content to be discarded, as done by {@link org.gradle.cache.internal.btree.BTreePersistentIndexedCache}.</p>
+ */
+public class HashTablePersistentIndexedCache<K, V> implements IndexedCacheBackingStore<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HashTablePersistentIndexedCache.class);
+    private static final Random GENERATIONS = new Random();
+
+    private static final int MAGIC = 0x48544331;
+    private static final int VERSION = 2;
+
+    // Index header: magic, version, table offset, slot count, used slots, data end, live bytes, generation, superseded flag
+    private static final int HEADER_SIZE = 64;
+    private static final int TABLE_OFFSET_POS = 8;
+    private static final int SLOT_COUNT_POS = 16;
+    private static final int USED_SLOTS_POS = 20;
+    private static final int DATA_END_POS = 24;
+    private static final int LIVE_BYTES_POS = 32;
+    private static final int GENERATION_POS = 40;
+    private static final int SUPERSEDED_POS = 48;
+
+    // Data header: generation, which must match the generation of the index
+    private static final int DATA_HEADER_SIZE = 8;
+
+    // Slot: key hash, record position + 1
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0;
+    private static final long REMOVED = -1;
+    private static final int INITIAL_SLOT_COUNT = 1024;
+
+    // Record: key length, value length, checksum of key and value, key bytes, value bytes
+    private static final int RECORD_HEADER_SIZE = 12;
+    private static final long MIN_GARBAGE_TO_COMPACT = 1024 * 1024;
+
+    private final File dataFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Object writeLock = new Object();
+    // Held for reading by all operations, and for writing when the open files are replaced or closed
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+    private volatile OpenFiles files;
+
+    public HashTablePersistentIndexedCache(File dataFile, File indexFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this.dataFile = dataFile;
+        this.indexFile = indexFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            LOGGER.debug("Opening {}", this);
+            compactIfRequired();
+            files = open(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + dataFile.getName() + " (" + dataFile + ")";
+    }
+
+    /**
+     * Opens the files of the store. When they are inconsistent, discards their content if allowed to, which requires the file lock of the cache, and otherwise returns null.
+     */
+    @Nullable
+    private OpenFiles open(boolean discardInconsistent) throws IOException {
+        RandomAccessFile data = new RandomAccessFile(dataFile, "rw");
+        RandomAccessFile index = null;
+        try {
+            index = new RandomAccessFile(indexFile, "rw");
+            boolean newIndex = index.length() < HEADER_SIZE;
+            if (!newIndex || discardInconsistent) {
+                MappedByteBuffer header = index.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                OpenFiles openFiles = read(data, index, header);
+                if (openFiles == null && discardInconsistent) {
+                    if (!newIndex) {
+                        LOGGER.warn("{} is corrupt. Discarding.", this);
+                    }
+                    // Any existing entries of a new index are unreachable
+                    openFiles = initialize(data, index, header);
+                }
+                if (openFiles != null) {
+                    return openFiles;
+                }
+            }
+        } catch (IOException e) {
+            close(data, index);
+            throw e;
+        }
+        close(data, index);
+        return null;
+    }
+
+    @Nullable
+    private static OpenFiles read(RandomAccessFile data, RandomAccessFile index, MappedByteBuffer header) throws IOException {
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(SUPERSEDED_POS) != 0) {
+            return null;
+        }
+        long tableOffset = header.getLong(TABLE_OFFSET_POS);
+        int slotCount = header.getInt(SLOT_COUNT_POS);
+        int usedSlots = header.getInt(USED_SLOTS_POS);
+        long dataEnd = header.getLong(DATA_END_POS);
+        long liveBytes = header.getLong(LIVE_BYTES_POS);
+        long generation = header.getLong(GENERATION_POS);
+        if (slotCount <= 0 || Integer.bitCount(slotCount) != 1 || tableOffset < HEADER_SIZE || tableOffset + (long) slotCount * SLOT_SIZE > index.length()
+            || usedSlots < 0 || usedSlots > slotCount || dataEnd < DATA_HEADER_SIZE || dataEnd > data.length() || liveBytes < 0 || liveBytes > dataEnd - DATA_HEADER_SIZE
+            || readGeneration(data) != generation) {
+            return null;
+        }
+        return new OpenFiles(data, index, header, generation, new Table(tableOffset, slotCount, map(index, tableOffset, slotCount)));
+    }
+
+    private static OpenFiles initialize(RandomAccessFile data, RandomAccessFile index, MappedByteBuffer header) throws IOException {
+        long generation = GENERATIONS.nextLong();
+        data.setLength(0);
+        writeFully(data.getChannel(), generationBuffer(generation), 0);
+        Table table = new Table(HEADER_SIZE, INITIAL_SLOT_COUNT, map(index, HEADER_SIZE, INITIAL_SLOT_COUNT));
+        table.clear();
+        writeHeader(header, table, 0, DATA_HEADER_SIZE, 0, generation);
+        return new OpenFiles(data, index, header, generation, table);
+    }
+
+    private static void writeHeader(ByteBuffer header, Table table, int usedSlots, long dataEnd, long liveBytes, long generation) {
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(SLOT_COUNT_POS, table.slotCount);
+        header.putLong(TABLE_OFFSET_POS, table.offset);
+        header.putInt(USED_SLOTS_POS, usedSlots);
+        header.putLong(DATA_END_POS, dataEnd);
+        header.putLong(LIVE_BYTES_POS, liveBytes);
+        header.putLong(GENERATION_POS, generation);
+        header.putInt(SUPERSEDED_POS, 0);
+    }
+
+    private static MappedByteBuffer map(RandomAccessFile index, long offset, int slotCount) throws IOException {
+        return index.getChannel().map(FileChannel.MapMode.READ_WRITE, offset, (long) slotCount * SLOT_SIZE);
+    }
+
+    private static long readGeneration(RandomAccessFile data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(DATA_HEADER_SIZE);
+        return readFully(data.getChannel(), buffer, 0) ? buffer.getLong(0) : 0;
+    }
+
+    private static ByteBuffer generationBuffer(long generation) {
+        ByteBuffer buffer = ByteBuffer.allocate(DATA_HEADER_SIZE);
+        buffer.putLong(0, generation);
+        return buffer;
+    }
+
+    /**
+     * Writes the live entries to a new data file and a new index file, forces both to disk, and then moves them over the current files.
+     * The files are read and written without mapping them, so that the index can be replaced on platforms that do not allow replacing a mapped file.
+     * The current index is then marked as superseded, so that other processes that have it open switch to the new files.
+     */
+    private void compactIfRequired() throws IOException {
+        if (!dataFile.isFile() || !indexFile.isFile()) {
+            return;
+        }
+        RandomAccessFile data = new RandomAccessFile(dataFile, "rw");
+        RandomAccessFile index = null;
+        try {
+            index = new RandomAccessFile(indexFile, "rw");
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (!readFully(index.getChannel(), header, 0) || header.getInt(0) != MAGIC || header.getInt(4) != VERSION || header.getInt(SUPERSEDED_POS) != 0) {
+                return;
+            }
+            long tableOffset = header.getLong(TABLE_OFFSET_POS);
+            int slotCount = header.getInt(SLOT_COUNT_POS);
+            long dataEnd = header.getLong(DATA_END_POS);
+            long liveBytes = header.getLong(LIVE_BYTES_POS);
+            long garbage = dataEnd - DATA_HEADER_SIZE - liveBytes;
+            if (garbage <= Math.max(liveBytes, MIN_GARBAGE_TO_COMPACT) || slotCount <= 0 || Integer.bitCount(slotCount) != 1
+                || tableOffset < HEADER_SIZE || tableOffset + (long) slotCount * SLOT_SIZE > index.length() || readGeneration(data) != header.getLong(GENERATION_POS)) {
+                // Nothing to reclaim, or inconsistent files which are discarded on open
+                return;
+            }
+            ByteBuffer slots = ByteBuffer.allocate(slotCount * SLOT_SIZE);
+            if (!readFully(index.getChannel(), slots, tableOffset)) {
+                return;
+            }
+            compact(data, new Table(tableOffset, slotCount, slots), header.getInt(USED_SLOTS_POS));
+            // Tell processes that still use the replaced files to reopen the store
+            ByteBuffer superseded = ByteBuffer.allocate(4);
+            superseded.putInt(0, 1);
+            writeFully(index.getChannel(), superseded, SUPERSEDED_POS);
+        } catch (StoreNotReplacedException e) {
+            LOGGER.debug("Could not compact {}.", this, e.getCause());
+        } finally {
+            close(data, index);
+        }
+    }
+
+    private void compact(RandomAccessFile data, Table table, int usedSlots) throws IOException {
+        LOGGER.debug("Compacting {}", this);
+        File compactedDataFile = new File(dataFile.getPath() + ".compact");
+        File compactedIndexFile = new File(indexFile.getPath() + ".compact");
+        long generation = GENERATIONS.nextLong();
+        int slotCount = INITIAL_SLOT_COUNT;
+        while (usedSlots > slotCount / 2) {
+            slotCount *= 2;
+        }
+        Table compactedTable = new Table(HEADER_SIZE, slotCount, ByteBuffer.allocate(slotCount * SLOT_SIZE));
+        RandomAccessFile compactedData = new RandomAccessFile(compactedDataFile, "rw");
+        RandomAccessFile compactedIndex = null;
+        try {
+            compactedIndex = new RandomAccessFile(compactedIndexFile, "rw");
+            compactedData.setLength(0);
+            compactedIndex.setLength(0);
+            writeFully(compactedData.getChannel(), generationBuffer(generation), 0);
+            long compactedEnd = DATA_HEADER_SIZE;
+            int count = 0;
+            for (int slot = 0; slot < table.slotCount; slot++) {
+                long position = table.getPosition(slot);
+                if (position == EMPTY || position == REMOVED) {
+                    continue;
+                }
+                Record record = readRecord(data, position - 1);
+                if (record == null || count == usedSlots) {
+                    continue;
+                }
+                ByteBuffer buffer = record.toBuffer();
+                int length = buffer.remaining();
+                writeFully(compactedData.getChannel(), buffer, compactedEnd);
+                compactedTable.insert(table.getHash(slot), compactedEnd + 1);
+                compactedEnd += length;
+                count++;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            writeHeader(header, compactedTable, count, compactedEnd, compactedEnd - DATA_HEADER_SIZE, generation);
+            writeFully(compactedIndex.getChannel(), header, 0);
+            writeFully(compactedIndex.getChannel(), compactedTable.slots, HEADER_SIZE);
+            // Make the new files durable before they are published in place of the current files
+            compactedData.getChannel().force(true);
+            compactedIndex.getChannel().force(true);
+        } catch (IOException e) {
+            close(compactedData, compactedIndex);
+            deleteCompactedFiles(compactedDataFile, compactedIndexFile);
+            throw e;
+        }
+        close(compactedData, compactedIndex);
+
+        try {
+            Files.move(compactedIndexFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The current files are still in place and consistent
+            deleteCompactedFiles(compactedDataFile, compactedIndexFile);
+            throw new StoreNotReplacedException(e);
+        }
+        try {
+            Files.move(compactedDataFile.toPath(), dataFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The generations of the files no longer match, so the entries are discarded when the store is opened
+            LOGGER.debug("Could not replace {} with its compacted copy.", dataFile, e);
+            compactedDataFile.delete();
+        }
+    }
+
+    private static void deleteCompactedFiles(File compactedDataFile, File compactedIndexFile) {
+        compactedDataFile.delete();
+        compactedIndexFile.delete();
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            long hash = hash(keyBytes);
+            reopenIfReplaced();
+            closeLock.readLock().lock();
+            try {
+                OpenFiles files = getOpenFiles();
+                // Reads the volatile table field before the slots, so all writes published before are visible
+                Record record = find(files, files.table, hash, keyBytes);
+                return record == null ? null : valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(record.valueBytes)));
+            } finally {
+                closeLock.readLock().unlock();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Nullable
+    private static Record find(OpenFiles files, Table table, long hash, byte[] keyBytes) throws IOException {
+        int slot = table.firstSlot(hash);
+        for (int i = 0; i < table.slotCount; i++, slot = table.nextSlot(slot)) {
+            long position = table.getPosition(slot);
+            if (position == EMPTY) {
+                return null;
+            }
+            if (position != REMOVED && table.getHash(slot) == hash) {
+                Record record = readRecord(files.data, position - 1);
+                if (record != null && Arrays.equals(record.keyBytes, keyBytes)) {
+                    record.slot = slot;
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            byte[] valueBytes = serialize(valueSerializer, value);
+            long hash = hash(keyBytes);
+            reopenIfReplaced();
+            closeLock.readLock().lock();
+            try {
+                synchronized (writeLock) {
+                    OpenFiles files = getOpenFiles();
+                    MappedByteBuffer header = files.header;
+                    Table table = files.table;
+                    Record existing = find(files, table, hash, keyBytes);
+                    ByteBuffer buffer = new Record(keyBytes, valueBytes).toBuffer();
+                    int length = buffer.remaining();
+                    // The header is shared with other processes, which may have written to the store since the last write of this process
+                    long position = header.getLong(DATA_END_POS);
+                    long liveBytes = header.getLong(LIVE_BYTES_POS) + length;
+                    writeFully(files.data.getChannel(), buffer, position);
+                    if (existing != null) {
+                        liveBytes -= existing.length();
+                        table.setPosition(existing.slot, position + 1);
+                    } else {
+                        int usedSlots = header.getInt(USED_SLOTS_POS);
+                        if (table.insert(hash, position + 1)) {
+                            usedSlots++;
+                        }
+                        if (usedSlots > table.slotCount / 4 * 3) {
+                            usedSlots = grow(files);
+                        }
+                        header.putInt(USED_SLOTS_POS, usedSlots);
+                    }
+                    header.putLong(DATA_END_POS, position + length);
+                    header.putLong(LIVE_BYTES_POS, liveBytes);
+                    publish(files);
+                }
+            } finally {
+                closeLock.readLock().unlock();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            byte[] keyBytes = serialize(keySerializer, key);
+            long hash = hash(keyBytes);
+            reopenIfReplaced();
+            closeLock.readLock().lock();
+            try {
+                synchronized (writeLock) {
+                    OpenFiles files = getOpenFiles();
+                    Record existing = find(files, files.table, hash, keyBytes);
+                    if (existing != null) {
+                        files.table.setPosition(existing.slot, REMOVED);
+                        files.header.putLong(LIVE_BYTES_POS, files.header.getLong(LIVE_BYTES_POS) - existing.length());
+                        publish(files);
+                    }
+                }
+            } finally {
+                closeLock.readLock().unlock();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    private OpenFiles getOpenFiles() {
+        OpenFiles current = files;
+        if (current == null) {
+            throw new IllegalStateException(String.format("%s has been closed.", this));
+        }
+        return current;
+    }
+
+    /**
+     * Reopens the files when another process has grown the table or replaced the files since they were opened.
+     * Keeps using the current files when the new files cannot be read yet, which happens while another process is replacing them.
+     */
+    private void reopenIfReplaced() throws IOException {
+        OpenFiles current = files;
+        if (current == null || current.isCurrent()) {
+            return;
+        }
+        closeLock.writeLock().lock();
+        try {
+            synchronized (writeLock) {
+                current = files;
+                if (current == null || current.isCurrent()) {
+                    return;
+                }
+                OpenFiles reopened = open(false);
+                if (reopened != null) {
+                    files = reopened;
+                    current.close();
+                }
+            }
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the volatile table field after the slots have been updated. Writes to the mapped slots are plain memory writes,
+     * so this is what makes them visible to lookups that start afterwards. A lookup that races with a write may still see the
+     * position of a slot without its new hash, in which case it misses, as the key of each record is compared before it is returned.
+     */
+    private static void publish(OpenFiles files) {
+        files.table = files.table;
+    }
+
+    /**
+     * Writes a table with twice the number of slots after the current table, without the removed entries, forces it to disk and then publishes it to readers.
+     * Returns the number of used slots of the new table.
+     */
+    private static int grow(OpenFiles files) throws IOException {
+        Table oldTable = files.table;
+        long offset = oldTable.offset + (long) oldTable.slotCount * SLOT_SIZE;
+        int slotCount = oldTable.slotCount * 2;
+        Table newTable = new Table(offset, slotCount, map(files.index, offset, slotCount));
+        newTable.clear();
+        int count = 0;
+        for (int slot = 0; slot < oldTable.slotCount; slot++) {
+            long position = oldTable.getPosition(slot);
+            if (position != EMPTY && position != REMOVED) {
+                newTable.insert(oldTable.getHash(slot), position);
+                count++;
+            }
+        }
+        newTable.force();
+        // Lookups may still be probing the old table, which stays mapped until it is garbage collected
+        files.header.putInt(SLOT_COUNT_POS, slotCount);
+        files.header.putLong(TABLE_OFFSET_POS, offset);
+        files.table = newTable;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        closeLock.writeLock().lock();
+        try {
+            OpenFiles current = files;
+            if (current == null) {
+                return;
+            }
+            files = null;
+            current.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+    }
+
+    private static void close(RandomAccessFile data, @Nullable RandomAccessFile index) throws IOException {
+        try {
+            data.close();
+        } finally {
+            if (index != null) {
+                index.close();
+            }
+        }
+    }
+
+    @Nullable
+    private static Record readRecord(RandomAccessFile data, long position) throws IOException {
+        FileChannel channel = data.getChannel();
+        ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        if (!readFully(channel, recordHeader, position)) {
+            return null;
+        }
+        int keyLength = recordHeader.getInt(0);
+        int valueLength = recordHeader.getInt(4);
+        if (keyLength < 0 || valueLength < 0 || position + RECORD_HEADER_SIZE + keyLength + valueLength > channel.size()) {
+            // A torn or truncated record, treat as a miss
+            return null;
+        }
+        ByteBuffer content = ByteBuffer.allocate(keyLength + valueLength);
+        if (!readFully(channel, content, position + RECORD_HEADER_SIZE)) {
+            return null;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        byte[] valueBytes = new byte[valueLength];
+        content.flip();
+        content.get(keyBytes);
+        content.get(valueBytes);
+        if (checksum(keyBytes, valueBytes) != recordHeader.getInt(8)) {
+            // A record whose content did not reach the disk, treat as a miss
+            return null;
+        }
+        return new Record(keyBytes, valueBytes);
+    }
+
+    private static int checksum(byte[] keyBytes, byte[] valueBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(keyBytes);
+        crc.update(valueBytes);
+        return (int) crc.getValue();
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int written = channel.write(buffer, position + buffer.position());
+            if (written < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static <T> byte[] serialize(Serializer<T> serializer, T value) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder encoder = new KryoBackedEncoder(outputStream);
+        serializer.write(encoder, value);
+        encoder.flush();
+        return outputStream.toByteArray();
+    }
+
+    private static long hash(byte[] keyBytes) {
+        return Hashing.murmur3_128().hashBytes(keyBytes).asLong();
+    }
+
+    /**
+     * Thrown when the compacted files cannot replace the current files, which are then left as they were.
+     */
+    private static class StoreNotReplacedException extends IOException {
+        StoreNotReplacedException(IOException cause) {
+            super(cause);
+        }
+    }
+
+    private static class OpenFiles {
+        private final RandomAccessFile data;
+        private final RandomAccessFile index;
+        private final MappedByteBuffer header;
+        private final long generation;
+        private volatile Table table;
+
+        OpenFiles(RandomAccessFile data, RandomAccessFile index, MappedByteBuffer header, long generation, Table table) {
+            this.data = data;
+            this.index = index;
+            this.header = header;
+            this.generation = generation;
+            this.table = table;
+        }
+
+        /**
+         * Returns false when another process has grown the table, replaced the files or discarded their content since they were opened.
+         */
+        boolean isCurrent() {
+            return header.getInt(SUPERSEDED_POS) == 0 && header.getLong(GENERATION_POS) == generation && header.getLong(TABLE_OFFSET_POS) == table.offset;
+        }
+
+        void close() throws IOException {
+            HashTablePersistentIndexedCache.close(data, index);
+        }
+    }
+
+    private static class Record {
+        private final byte[] keyBytes;
+        private final byte[] valueBytes;
+        private int slot;
+
+        Record(byte[] keyBytes, byte[] valueBytes) {
+            this.keyBytes = keyBytes;
+            this.valueBytes = valueBytes;
+        }
+
+        int length() {
+            return RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+        }
+
+        ByteBuffer toBuffer() {
+            ByteBuffer buffer = ByteBuffer.allocate(length());
+            buffer.putInt(keyBytes.length);
+            buffer.putInt(valueBytes.length);
+            buffer.putInt(checksum(keyBytes, valueBytes));
+            buffer.put(keyBytes);
+            buffer.put(valueBytes);
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static class Table {
+        private final long offset;
+        private final int slotCount;
+        private final ByteBuffer slots;
+
+        Table(long offset, int slotCount, ByteBuffer slots) {
+            this.offset = offset;
+            this.slotCount = slotCount;
+            this.slots = slots;
+        }
+
+        int firstSlot(long hash) {
+            return (int) (hash ^ (hash >>> 32)) & (slotCount - 1);
+        }
+
+        int nextSlot(int slot) {
+            return (slot + 1) & (slotCount - 1);
+        }
+
+        long getHash(int slot) {
+            return slots.getLong(slot * SLOT_SIZE);
+        }
+
+        long getPosition(int slot) {
+            return slots.getLong(slot * SLOT_SIZE + 8);
+        }
+
+        void setPosition(int slot, long position) {
+            slots.putLong(slot * SLOT_SIZE + 8, position);
+        }
+
+        /**
+         * Inserts an entry for a key that is not in the table. Returns true when an empty slot was used, false when a removed slot was reused.
+         */
+        boolean insert(long hash, long position) {
+            int slot = firstSlot(hash);
+            for (int i = 0; i < slotCount; i++, slot = nextSlot(slot)) {
+                long current = getPosition(slot);
+                if (current == EMPTY || current == REMOVED) {
+                    // Write the hash before the position. Lookups only see both once the write is published, see publish()
+                    slots.putLong(slot * SLOT_SIZE, hash);
+                    setPosition(slot, position);
+                    return current == EMPTY;
+                }
+            }
+            throw new IllegalStateException("Hash table is full.");
+        }
+
+        void clear() {
+            for (int i = 0; i < slotCount * SLOT_SIZE; i += 8) {
+                slots.putLong(i, 0);
+            }
+        }
+
+        void force() {
+            if (slots instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) slots).force();
+            }
+        }
+    }
+}
@@ -618,6 +618,34 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access?.close()
     }
 
+    def "reads hash table cache without the file lock once the store is open"() {
+        def decorator = Mock(CacheDecorator)
+        def access = newAccess(None)
+
+        given:
+        cacheDir.mkdirs()
+        lockManager.lock(lockFile, mode(Exclusive), "<display-name>", "", _ as Runnable) >> lock
+        lock.writeFile(_) >> { Runnable r -> r.run() }
+        access.open()
+        def cache = access.newCache(new PersistentIndexedCacheParameters('cache', String.class, Integer.class)
+            .cacheDecorator(decorator)
+            .storeType(PersistentIndexedCacheParameters.StoreType.HASH_TABLE))
+        cache.put("key", 12)
+
+        when:
+        def value = cache.get("key")
+
+        then:
+        value == 12
+        cache instanceof LockFreeReadingPersistentIndexedCache
+        0 * lockManager._
+        0 * lock._
+        0 * decorator._
+
+        cleanup:
+        access?.close()
+    }
+
     def "returns the same cache object when using same cache parameters"() {
         def access = newAccess(None)
 
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.hashtable
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.internal.serialize.DefaultSerializer
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class HashTablePersistentIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def dataFile = tmpDir.file("cache.data")
+    def indexFile = tmpDir.file("cache.index")
+    HashTablePersistentIndexedCache<String, Integer> cache
+
+    def setup() {
+        cache = open()
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "returns null for missing entry"() {
+        expect:
+        cache.get("unknown") == null
+    }
+
+    def "can add, replace and remove entries"() {
+        when:
+        cache.put("a", 1)
+        cache.put("b", 2)
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == 2
+
+        when:
+        cache.put("a", 3)
+        cache.remove("b")
+
+        then:
+        cache.get("a") == 3
+        cache.get("b") == null
+
+        when:
+        cache.put("b", 4)
+
+        then:
+        cache.get("b") == 4
+    }
+
+    def "persists entries across reopen"() {
+        given:
+        cache.put("a", 1)
+        cache.put("b", 2)
+        cache.remove("b")
+
+        when:
+        reopen()
+
+        then:
+        cache.get("a") == 1
+        cache.get("b") == null
+    }
+
+    def "grows table when it fills up"() {
+        given:
+        def count = 5000
+
+        when:
+        count.times { cache.put("key-$it".toString(), it) }
+
+        then:
+        count.times { assert cache.get("key-$it".toString()) == it }
+
+        when:
+        reopen()
+
+        then:
+        count.times { assert cache.get("key-$it".toString()) == it }
+    }
+
+    def "reclaims space used by replaced entries on open"() {
+        given:
+        100.times { cache.put("key-$it".toString(), it) }
+        def liveLength = dataFile.length()
+        1000.times { round -> 100.times { cache.put("key-$it".toString(), round) } }
+
+        expect:
+        dataFile.length() > liveLength * 100
+
+        when:
+        reopen()
+
+        then:
+        dataFile.length() == liveLength
+        100.times { assert cache.get("key-$it".toString()) == 999 }
+    }
+
+    def "does not rewrite store on open when table has grown"() {
+        given:
+        5000.times { cache.put("key-$it".toString(), it) }
+        cache.close()
+        def indexLength = indexFile.length()
+        def dataLength = dataFile.length()
+
+        when:
+        cache = open()
+
+        then:
+        indexFile.length() == indexLength
+        dataFile.length() == dataLength
+        5000.times { assert cache.get("key-$it".toString()) == it }
+    }
+
+    def "truncates replaced tables when reclaiming space"() {
+        given:
+        1000.times { cache.put("key-$it".toString(), it) }
+        20.times { round -> 1000.times { cache.put("key-$it".toString(), round) } }
+        cache.close()
+        def indexLength = indexFile.length()
+
+        when:
+        cache = open()
+
+        then:
+        indexFile.length() < indexLength
+        1000.times { assert cache.get("key-$it".toString()) == 19 }
+    }
+
+    def "fails to read after close"() {
+        given:
+        cache.put("a", 1)
+        cache.close()
+
+        when:
+        cache.get("a")
+
+        then:
+        thrown(UncheckedIOException)
+
+        cleanup:
+        cache = null
+    }
+
+    def "discards content of corrupt index"() {
+        given:
+        cache.put("a", 1)
+        cache.close()
+        def raf = new RandomAccessFile(indexFile, "rw")
+        try {
+            raf.writeInt(12)
+        } finally {
+            raf.close()
+        }
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("a") == null
+
+        when:
+        cache.put("a", 2)
+
+        then:
+        cache.get("a") == 2
+    }
+
+    def "discards entries when index is missing"() {
+        given:
+        cache.put("a", 1)
+        cache.close()
+        def dataLength = dataFile.length()
+        indexFile.delete()
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("a") == null
+        dataFile.length() < dataLength
+    }
+
+    def "reads entry whose content was not written as missing"() {
+        given:
+        cache.put("a", 1)
+        cache.close()
+        def raf = new RandomAccessFile(dataFile, "rw")
+        try {
+            raf.seek(raf.length() - 1)
+            raf.write(0xff)
+        } finally {
+            raf.close()
+        }
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("a") == null
+    }
+
+    def "sees entries written through another instance"() {
+        given:
+        def other = open()
+
+        when:
+        other.put("a", 1)
+        cache.put("b", 2)
+
+        then:
+        cache.get("a") == 1
+        other.get("b") == 2
+
+        when:
+        other.put("a", 3)
+        other.remove("b")
+
+        then:
+        cache.get("a") == 3
+        cache.get("b") == null
+
+        cleanup:
+        other?.close()
+    }
+
+    def "sees table grown by another instance"() {
+        given:
+        def other = open()
+        cache.put("a", 1)
+
+        when:
+        5000.times { other.put("key-$it".toString(), it) }
+
+        then:
+        5000.times { assert cache.get("key-$it".toString()) == it }
+        cache.get("a") == 1
+
+        when:
+        cache.put("b", 2)
+
+        then:
+        other.get("b") == 2
+
+        cleanup:
+        other?.close()
+    }
+
+    def "switches to files compacted by another instance"() {
+        given:
+        100.times { cache.put("key-$it".toString(), it) }
+        1000.times { round -> 100.times { cache.put("key-$it".toString(), round) } }
+        def dataLength = dataFile.length()
+
+        when:
+        def other = open()
+
+        then:
+        dataFile.length() < dataLength
+        100.times { assert cache.get("key-$it".toString()) == 999 }
+
+        when:
+        cache.put("key-0", 1000)
+
+        then:
+        other.get("key-0") == 1000
+        !new File(dataFile.path + ".compact").exists()
+        !new File(indexFile.path + ".compact").exists()
+
+        cleanup:
+        other?.close()
+    }
+
+    def "can read while entries are being written"() {
+        given:
+        def executor = Executors.newFixedThreadPool(4)
+        def count = 2000
+        def done = new CountDownLatch(1)
+        def failures = Collections.synchronizedList([])
+        count.times { cache.put("key-$it".toString(), it) }
+
+        when:
+        4.times {
+            executor.execute {
+                try {
+                    while (done.count > 0) {
+                        count.times { i ->
+                            def value = cache.get("key-$i".toString())
+                            if (value != i && value != -i) {
+                                failures << "key-$i: $value"
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    failures << t
+                }
+            }
+        }
+        count.times { cache.put("key-$it".toString(), -it) }
+        count.times { cache.put("other-$it".toString(), it) }
+        done.countDown()
+        executor.shutdown()
+        executor.awaitTermination(30, TimeUnit.SECONDS)
+
+        then:
+        failures.empty
+    }
+
+    private void reopen() {
+        cache.close()
+        cache = open()
+    }
+
+    private HashTablePersistentIndexedCache<String, Integer> open() {
+        new HashTablePersistentIndexedCache<String, Integer>(dataFile, indexFile, new DefaultSerializer<String>(), new DefaultSerializer<Integer>())
+    }
+}
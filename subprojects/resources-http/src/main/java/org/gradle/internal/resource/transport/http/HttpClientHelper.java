@@ -28,6 +28,7 @@ import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.HttpClientUtils;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.entity.BufferedHttpEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
@@ -36,6 +37,7 @@ import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Locale;
@@ -49,6 +51,7 @@ public class HttpClientHelper implements Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientHelper.class);
     private CloseableHttpClient client;
     private final HttpSettings settings;
+    private final HttpClientConnectionManager sharedConnectionManager;
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -60,7 +63,15 @@ public class HttpClientHelper implements Closeable {
     private final ConcurrentLinkedQueue<HttpContext> sharedContext;
 
     public HttpClientHelper(HttpSettings settings) {
+        this(settings, null);
+    }
+
+    /**
+     * @param sharedConnectionManager the connection pool to use, which is not closed when this helper is closed. When null, the client uses a pool of its own.
+     */
+    public HttpClientHelper(HttpSettings settings, @Nullable HttpClientConnectionManager sharedConnectionManager) {
         this.settings = settings;
+        this.sharedConnectionManager = sharedConnectionManager;
         if (!settings.getAuthenticationSettings().isEmpty()) {
             sharedContext = new ConcurrentLinkedQueue<HttpContext>();
         } else {
@@ -165,6 +176,10 @@ public class HttpClientHelper implements Closeable {
         if (client == null) {
             HttpClientBuilder builder = HttpClientBuilder.create();
             new HttpClientConfigurer(settings).configure(builder);
+            if (sharedConnectionManager != null) {
+                builder.setConnectionManager(sharedConnectionManager);
+                builder.setConnectionManagerShared(true);
+            }
             this.client = builder.build();
         }
         return client;
@@ -21,6 +21,7 @@ import org.gradle.authentication.Authentication;
 import org.gradle.authentication.http.BasicAuthentication;
 import org.gradle.authentication.http.DigestAuthentication;
 import org.gradle.internal.authentication.AllSchemesAuthentication;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.resource.connector.ResourceConnectorFactory;
 import org.gradle.internal.resource.connector.ResourceConnectorSpecification;
 import org.gradle.internal.resource.transfer.DefaultExternalResourceConnector;
@@ -28,7 +29,7 @@ import org.gradle.internal.resource.transfer.ExternalResourceConnector;
 
 import java.util.Set;
 
-public class HttpConnectorFactory implements ResourceConnectorFactory {
+public class HttpConnectorFactory implements ResourceConnectorFactory, Stoppable {
     private final static Set<String> SUPPORTED_PROTOCOLS = ImmutableSet.of("http", "https");
     private final static Set<Class<? extends Authentication>> SUPPORTED_AUTHENTICATION = ImmutableSet.of(
         BasicAuthentication.class,
@@ -37,6 +38,7 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
     );
 
     private SslContextFactory sslContextFactory;
+    private SharedHttpConnectionManager connectionManager;
 
     public HttpConnectorFactory(SslContextFactory sslContextFactory) {
         this.sslContextFactory = sslContextFactory;
@@ -57,11 +59,27 @@ public class HttpConnectorFactory implements ResourceConnectorFactory {
         HttpClientHelper http = new HttpClientHelper(DefaultHttpSettings.builder()
             .withAuthenticationSettings(connectionDetails.getAuthentications())
             .withSslContextFactory(sslContextFactory)
-            .build()
+            .build(),
+            getConnectionManager()
         );
         HttpResourceAccessor accessor = new HttpResourceAccessor(http);
         HttpResourceLister lister = new HttpResourceLister(accessor);
         HttpResourceUploader uploader = new HttpResourceUploader(http);
         return new DefaultExternalResourceConnector(accessor, lister, uploader);
     }
+
+    private synchronized SharedHttpConnectionManager getConnectionManager() {
+        if (connectionManager == null) {
+            connectionManager = new SharedHttpConnectionManager(sslContextFactory, new JavaSystemPropertiesHttpTimeoutSettings());
+        }
+        return connectionManager;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (connectionManager != null) {
+            connectionManager.stop();
+            connectionManager = null;
+        }
+    }
 }
@@ -24,6 +24,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 
 public class HttpResourceAccessor implements ExternalResourceAccessor {
@@ -42,7 +44,7 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
 
         CloseableHttpResponse response = http.performGet(location, revalidate);
         if (response != null) {
-            return wrapResponse(uri, response);
+            return new ResumableHttpResponseResource(uri, response);
         }
 
         return null;
@@ -80,4 +82,23 @@ public class HttpResourceAccessor implements ExternalResourceAccessor {
         return new HttpResponseResource("GET", uri, response);
     }
 
+    /**
+     * Resumes the download with a range request if the connection fails part way through, when the server supports it.
+     */
+    private class ResumableHttpResponseResource extends HttpResponseResource {
+        ResumableHttpResponseResource(URI source, CloseableHttpResponse response) {
+            super("GET", source, response);
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            InputStream content = super.openStream();
+            String validator = ResumingHttpInputStream.getResumeValidator(this);
+            if (validator == null) {
+                return content;
+            }
+            return new ResumingHttpInputStream(http, getURI(), content, validator, getContentLength());
+        }
+    }
+
 }
@@ -30,6 +30,10 @@ public class HttpResourcesPluginServiceRegistry extends AbstractPluginServiceReg
         registration.addProvider(new GlobalScopeServices());
     }
 
+    public void registerBuildSessionServices(ServiceRegistration registration) {
+        registration.addProvider(new BuildSessionScopeServices());
+    }
+
     public void registerBuildServices(ServiceRegistration registration) {
         registration.addProvider(new AuthenticationSchemeAction());
     }
@@ -38,7 +42,9 @@ public class HttpResourcesPluginServiceRegistry extends AbstractPluginServiceReg
         SslContextFactory createSslContextFactory() {
             return new DefaultSslContextFactory();
         }
+    }
 
+    private static class BuildSessionScopeServices {
         ResourceConnectorFactory createHttpConnectorFactory(SslContextFactory sslContextFactory) {
             return new HttpConnectorFactory(sslContextFactory);
         }
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.HttpClientUtils;
+import org.gradle.internal.IoActions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * Reads the content of a GET response, and continues from the current position using a range request when the connection fails part way through.
+ * The range request is conditional on the resource not having changed, using {@code If-Range}.
+ */
+class ResumingHttpInputStream extends InputStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResumingHttpInputStream.class);
+    static final int MAX_RESUMES = 3;
+
+    private final HttpClientHelper http;
+    private final URI source;
+    private final String validator;
+    private final long contentLength;
+    private InputStream content;
+    private CloseableHttpResponse rangeResponse;
+    private long position;
+    private int resumes;
+
+    ResumingHttpInputStream(HttpClientHelper http, URI source, InputStream content, String validator, long contentLength) {
+        this.http = http;
+        this.source = source;
+        this.content = content;
+        this.validator = validator;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Returns the value to use for {@code If-Range} when the response can be resumed, or null if it cannot.
+     */
+    @Nullable
+    static String getResumeValidator(HttpResponseResource response) {
+        if (!"bytes".equalsIgnoreCase(response.getHeaderValue(HttpHeaders.ACCEPT_RANGES)) || response.getContentLength() <= 0) {
+            return null;
+        }
+        String etag = response.getHeaderValue(HttpHeaders.ETAG);
+        // Weak validators are not allowed in If-Range
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.getHeaderValue(HttpHeaders.LAST_MODIFIED);
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            try {
+                int result = content.read();
+                if (result >= 0) {
+                    position++;
+                }
+                return result;
+            } catch (IOException e) {
+                resumeAfter(e);
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        while (true) {
+            try {
+                int result = content.read(buffer, offset, length);
+                if (result > 0) {
+                    position += result;
+                }
+                return result;
+            } catch (IOException e) {
+                resumeAfter(e);
+            }
+        }
+    }
+
+    private void resumeAfter(IOException failure) throws IOException {
+        if (resumes >= MAX_RESUMES || position >= contentLength) {
+            throw failure;
+        }
+        resumes++;
+        closeContent();
+
+        HttpGet request = new HttpGet(source);
+        request.addHeader(HttpHeaders.RANGE, "bytes=" + position + "-");
+        request.addHeader(HttpHeaders.IF_RANGE, validator);
+        CloseableHttpResponse response;
+        try {
+            response = http.performHttpRequest(request);
+        } catch (IOException e) {
+            throw failure;
+        } catch (HttpRequestException e) {
+            throw failure;
+        }
+        HttpEntity entity = response.getEntity();
+        if (response.getStatusLine().getStatusCode() != HttpStatus.SC_PARTIAL_CONTENT || entity == null || !startsAtPosition(response.getFirstHeader(HttpHeaders.CONTENT_RANGE))) {
+            HttpClientUtils.closeQuietly(response);
+            throw failure;
+        }
+        LOGGER.info("Resuming download of {} from byte {} after: {}", source, position, failure.getMessage());
+        rangeResponse = response;
+        content = entity.getContent();
+    }
+
+    private boolean startsAtPosition(@Nullable Header contentRange) {
+        return contentRange != null && contentRange.getValue().startsWith("bytes " + position + "-");
+    }
+
+    private void closeContent() {
+        IoActions.closeQuietly(content);
+        if (rangeResponse != null) {
+            HttpClientUtils.closeQuietly(rangeResponse);
+            rangeResponse = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            content.close();
+        } finally {
+            if (rangeResponse != null) {
+                HttpClientUtils.closeQuietly(rangeResponse);
+            }
+        }
+    }
+}
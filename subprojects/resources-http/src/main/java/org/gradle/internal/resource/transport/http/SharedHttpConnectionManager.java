@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpHost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.net.ssl.HostnameVerifier;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A connection pool that is shared by the HTTP clients of all repositories, so that the total number of connections made by a build is bounded,
+ * and connections to a host are reused by every repository on that host.
+ *
+ * <p>The number of concurrent connections to each host is limited, which also limits the number of concurrent downloads from the host. The limit can
+ * be changed for all hosts, or for a single host by appending the host name to the property name, e.g.
+ * {@code -Dorg.gradle.internal.http.maxConnectionsPerHost.repo.example.org=4}. The limits are read when the pool is created, which happens once for
+ * each build session, so changes to them are picked up by the next build run by a daemon.</p>
+ */
+public class SharedHttpConnectionManager extends PoolingHttpClientConnectionManager implements Stoppable {
+    public static final String MAX_CONNECTIONS_PROPERTY = "org.gradle.internal.http.maxConnections";
+    public static final String MAX_CONNECTIONS_PER_HOST_PROPERTY = "org.gradle.internal.http.maxConnectionsPerHost";
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    private final Set<HttpRoute> configuredRoutes = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+
+    public SharedHttpConnectionManager(SslContextFactory sslContextFactory, HttpTimeoutSettings timeoutSettings) {
+        this(sslContextFactory, timeoutSettings, Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS), Integer.getInteger(MAX_CONNECTIONS_PER_HOST_PROPERTY, DEFAULT_MAX_CONNECTIONS_PER_HOST));
+    }
+
+    public SharedHttpConnectionManager(SslContextFactory sslContextFactory, HttpTimeoutSettings timeoutSettings, int maxConnections, int maxConnectionsPerHost) {
+        super(RegistryBuilder.<ConnectionSocketFactory>create()
+            .register("http", PlainConnectionSocketFactory.getSocketFactory())
+            .register("https", new CurrentSslContextSocketFactory(sslContextFactory, new DefaultHostnameVerifier(null)))
+            .build());
+        setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(timeoutSettings.getSocketTimeoutMs()).build());
+        setMaxTotal(maxConnections);
+        setDefaultMaxPerRoute(Math.min(maxConnectionsPerHost, maxConnections));
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        if (configuredRoutes.add(route)) {
+            Integer maxConnectionsForHost = Integer.getInteger(MAX_CONNECTIONS_PER_HOST_PROPERTY + "." + route.getTargetHost().getHostName());
+            if (maxConnectionsForHost != null) {
+                setMaxPerRoute(route, maxConnectionsForHost);
+            }
+        }
+        return super.requestConnection(route, state);
+    }
+
+    @Override
+    public void stop() {
+        shutdown();
+    }
+
+    /**
+     * Uses the SSL context that is current when the connection is made, as the pool outlives changes to the SSL system properties.
+     */
+    private static class CurrentSslContextSocketFactory implements LayeredConnectionSocketFactory {
+        private final SslContextFactory sslContextFactory;
+        private final HostnameVerifier hostnameVerifier;
+
+        CurrentSslContextSocketFactory(SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
+            this.sslContextFactory = sslContextFactory;
+            this.hostnameVerifier = hostnameVerifier;
+        }
+
+        private SSLConnectionSocketFactory getDelegate() {
+            return new SSLConnectionSocketFactory(sslContextFactory.createSslContext(), hostnameVerifier);
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return getDelegate().createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress, InetSocketAddress localAddress, HttpContext context) throws IOException {
+            return getDelegate().connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
+            return getDelegate().createLayeredSocket(socket, target, port, context);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.apache.http.ssl.SSLContexts
+import org.junit.Rule
+import org.mortbay.jetty.HttpConnection
+import spock.lang.Specification
+
+class ResumingHttpInputStreamTest extends Specification {
+    @Rule StandInHttpServer server = new StandInHttpServer()
+    def content = (0..<200000).collect { (byte) (it % 251) } as byte[]
+    def requests = []
+    def http = new HttpClientHelper(httpSettings)
+
+    def cleanup() {
+        http.close()
+    }
+
+    def "resumes download with range request when connection fails part way through"() {
+        given:
+        server.handler = { request, response ->
+            requests << request.getHeader("Range")
+            respond(request, response, '"v1"', requests.size() == 1)
+        }
+
+        when:
+        def bytes = download()
+
+        then:
+        bytes == content
+        requests.size() == 2
+        requests[0] == null
+        requests[1] ==~ /bytes=\d+-/
+    }
+
+    def "does not resume download when resource has changed"() {
+        given:
+        server.handler = { request, response ->
+            requests << request.getHeader("Range")
+            respond(request, response, requests.size() == 1 ? '"v1"' : '"v2"', true)
+        }
+
+        when:
+        download()
+
+        then:
+        thrown(IOException)
+        requests.size() == 2
+    }
+
+    def "does not resume download when server does not support range requests"() {
+        given:
+        server.handler = { request, response ->
+            requests << request.getHeader("Range")
+            response.contentLength = content.length
+            response.outputStream.write(content, 0, 1000)
+            response.outputStream.flush()
+            HttpConnection.currentConnection.endPoint.close()
+        }
+
+        when:
+        download()
+
+        then:
+        thrown(IOException)
+        requests.size() == 1
+    }
+
+    private byte[] download() {
+        def resource = new HttpResourceAccessor(http).openResource(server.uri("large.jar"), false)
+        try {
+            return resource.openStream().bytes
+        } finally {
+            resource.close()
+        }
+    }
+
+    private void respond(request, response, String etag, boolean fail) {
+        response.setHeader("ETag", etag)
+        response.setHeader("Accept-Ranges", "bytes")
+        def range = request.getHeader("Range")
+        def start = 0
+        if (range != null && request.getHeader("If-Range") == etag) {
+            start = (range =~ /bytes=(\d+)-/)[0][1] as int
+            response.status = 206
+            response.setHeader("Content-Range", "bytes ${start}-${content.length - 1}/${content.length}")
+        }
+        response.contentLength = content.length - start
+        if (fail) {
+            response.outputStream.write(content, start, 50000)
+            response.outputStream.flush()
+            HttpConnection.currentConnection.endPoint.close()
+        } else {
+            response.outputStream.write(content, start, content.length - start)
+        }
+    }
+
+    private HttpSettings getHttpSettings() {
+        Stub(HttpSettings) {
+            getProxySettings() >> Mock(HttpProxySettings)
+            getSecureProxySettings() >> Mock(HttpProxySettings)
+            getTimeoutSettings() >> new JavaSystemPropertiesHttpTimeoutSettings()
+            getAuthenticationSettings() >> []
+            isFollowRedirects() >> true
+            getSslContextFactory() >> Mock(SslContextFactory) {
+                createSslContext() >> SSLContexts.createDefault()
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.apache.http.ssl.SSLContexts
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+class SharedHttpConnectionManagerTest extends Specification {
+    @Rule StandInHttpServer server = new StandInHttpServer()
+    @Rule SetSystemProperties systemProperties = new SetSystemProperties()
+    def active = new AtomicInteger()
+    def maxActive = new AtomicInteger()
+    def sslContextFactory = Stub(SslContextFactory) {
+        createSslContext() >> SSLContexts.createDefault()
+    }
+    def timeoutSettings = new JavaSystemPropertiesHttpTimeoutSettings()
+
+    def setup() {
+        server.handler = { request, response ->
+            def current = active.incrementAndGet()
+            while (true) {
+                def max = maxActive.get()
+                if (current <= max || maxActive.compareAndSet(max, current)) {
+                    break
+                }
+            }
+            Thread.sleep(100)
+            response.contentType = "application/octet-stream"
+            response.outputStream.write(new byte[4096])
+            active.decrementAndGet()
+        }
+    }
+
+    @Unroll
+    def "downloads from a host concurrently up to the limit for the host (limit #limit)"() {
+        given:
+        def connectionManager = new SharedHttpConnectionManager(sslContextFactory, timeoutSettings, 100, limit)
+
+        when:
+        downloadConcurrently(connectionManager, 12)
+
+        then:
+        maxActive.get() <= limit
+
+        cleanup:
+        connectionManager.stop()
+
+        where:
+        limit << [1, 4]
+    }
+
+    def "limit for a host can be overridden"() {
+        given:
+        System.setProperty(SharedHttpConnectionManager.MAX_CONNECTIONS_PER_HOST_PROPERTY + ".localhost", "2")
+        def connectionManager = new SharedHttpConnectionManager(sslContextFactory, timeoutSettings, 100, 6)
+
+        when:
+        downloadConcurrently(connectionManager, 12)
+
+        then:
+        maxActive.get() <= 2
+
+        cleanup:
+        connectionManager.stop()
+    }
+
+    def "total number of connections is limited"() {
+        given:
+        def connectionManager = new SharedHttpConnectionManager(sslContextFactory, timeoutSettings, 3, 6)
+
+        when:
+        downloadConcurrently(connectionManager, 12)
+
+        then:
+        maxActive.get() <= 3
+
+        cleanup:
+        connectionManager.stop()
+    }
+
+    /**
+     * Downloads using a separate client for each request, as each repository has its own client.
+     */
+    private void downloadConcurrently(SharedHttpConnectionManager connectionManager, int count) {
+        def executor = Executors.newFixedThreadPool(count)
+        try {
+            def downloads = (1..count).collect { index ->
+                executor.submit({
+                    def http = new HttpClientHelper(httpSettings, connectionManager)
+                    def resource = new HttpResourceAccessor(http).openResource(server.uri("file-${index}"), false)
+                    try {
+                        assert resource.openStream().bytes.length == 4096
+                    } finally {
+                        resource.close()
+                        http.close()
+                    }
+                } as Callable)
+            }
+            downloads*.get()
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private HttpSettings getHttpSettings() {
+        Stub(HttpSettings) {
+            getProxySettings() >> Mock(HttpProxySettings)
+            getSecureProxySettings() >> Mock(HttpProxySettings)
+            getTimeoutSettings() >> timeoutSettings
+            getAuthenticationSettings() >> []
+            isFollowRedirects() >> true
+            getSslContextFactory() >> sslContextFactory
+        }
+    }
+}
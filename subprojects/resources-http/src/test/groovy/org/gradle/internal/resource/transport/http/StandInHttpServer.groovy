@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http
+
+import org.junit.rules.ExternalResource
+import org.mortbay.jetty.Server
+import org.mortbay.jetty.handler.AbstractHandler
+
+import javax.servlet.http.HttpServletRequest
+import javax.servlet.http.HttpServletResponse
+
+/**
+ * A local HTTP server that handles every request with the given closure.
+ */
+class StandInHttpServer extends ExternalResource {
+    private final Server server = new Server(0)
+    Closure handler
+
+    @Override
+    protected void before() {
+        server.addHandler(new AbstractHandler() {
+            void handle(String target, HttpServletRequest request, HttpServletResponse response, int dispatch) {
+                handler.call(request, response)
+                request.handled = true
+            }
+        })
+        server.start()
+    }
+
+    @Override
+    protected void after() {
+        server.stop()
+    }
+
+    URI uri(String path) {
+        new URI("http://localhost:${server.connectors[0].localPort}/${path}")
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit.result;
+
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent;
+import org.gradle.api.internal.tasks.testing.report.DefaultTestReport;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.initialization.DefaultParallelismConfigurationManager;
+import org.gradle.internal.concurrent.DefaultExecutorFactory;
+import org.gradle.internal.concurrent.DefaultParallelismConfiguration;
+import org.gradle.internal.event.DefaultListenerManager;
+import org.gradle.internal.logging.events.ProgressCompleteEvent;
+import org.gradle.internal.logging.events.ProgressEvent;
+import org.gradle.internal.logging.events.ProgressStartEvent;
+import org.gradle.internal.logging.progress.DefaultProgressLoggerFactory;
+import org.gradle.internal.logging.progress.ProgressListener;
+import org.gradle.internal.operations.DefaultBuildOperationIdFactory;
+import org.gradle.internal.operations.DefaultBuildOperationQueueFactory;
+import org.gradle.internal.progress.BuildOperationDescriptor;
+import org.gradle.internal.progress.BuildOperationListener;
+import org.gradle.internal.progress.DefaultBuildOperationExecutor;
+import org.gradle.internal.progress.OperationFinishEvent;
+import org.gradle.internal.progress.OperationProgressEvent;
+import org.gradle.internal.progress.OperationStartEvent;
+import org.gradle.internal.resources.DefaultResourceLockCoordinationService;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.work.DefaultWorkerLeaseService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates the JUnit XML and HTML reports for a synthetic result set with many test classes, where every test writes some output.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+@SuppressWarnings("Since15")
+public class TestReportGenerationBenchmark {
+    private static final int TESTS_PER_CLASS = 20;
+    private static final int LINES_PER_TEST = 50;
+
+    @Param({"2000"})
+    int classCount;
+
+    @Param({"1", "8"})
+    int workerCount;
+
+    File tempDir;
+    File xmlReportDir;
+    File htmlReportDir;
+    DefaultWorkerLeaseService workerLeaseService;
+    DefaultBuildOperationExecutor buildOperationExecutor;
+    TestResultsProvider resultsProvider;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        tempDir = Files.createTempDirectory("test-report-generation-benchmark").toFile();
+        File binaryResultsDir = new File(tempDir, "binary");
+        xmlReportDir = new File(tempDir, "xml");
+        htmlReportDir = new File(tempDir, "html");
+        binaryResultsDir.mkdirs();
+        xmlReportDir.mkdirs();
+
+        TestOutputStore outputStore = new TestOutputStore(binaryResultsDir);
+        TestOutputStore.Writer writer = outputStore.writer();
+        List<TestClassResult> classResults = new ArrayList<TestClassResult>(classCount);
+        long id = 1;
+        for (int i = 0; i < classCount; i++) {
+            long classId = id++;
+            TestClassResult classResult = new TestClassResult(classId, "org.gradle.sample" + i % 50 + ".SampleTest" + i, 0);
+            writer.onOutput(classId, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "Starting test class " + i + "\n"));
+            for (int j = 0; j < TESTS_PER_CLASS; j++) {
+                long testId = id++;
+                TestMethodResult methodResult = new TestMethodResult(testId, "test" + j, TestResult.ResultType.SUCCESS, 10, 10);
+                for (int k = 0; k < LINES_PER_TEST; k++) {
+                    TestOutputEvent.Destination destination = k % 10 == 0 ? TestOutputEvent.Destination.StdErr : TestOutputEvent.Destination.StdOut;
+                    writer.onOutput(classId, testId, new DefaultTestOutputEvent(destination, "Output line " + k + " of test " + j + " with <some> & \"markup\"\n"));
+                }
+                classResult.add(methodResult);
+            }
+            classResults.add(classResult);
+        }
+        writer.close();
+        resultsProvider = new InMemoryTestResultsProvider(classResults, outputStore);
+
+        DefaultParallelismConfigurationManager parallelismConfigurationManager = new DefaultParallelismConfigurationManager(new DefaultListenerManager());
+        parallelismConfigurationManager.setParallelismConfiguration(new DefaultParallelismConfiguration(true, workerCount));
+        DefaultResourceLockCoordinationService coordinationService = new DefaultResourceLockCoordinationService();
+        workerLeaseService = new DefaultWorkerLeaseService(coordinationService, parallelismConfigurationManager);
+        buildOperationExecutor = new DefaultBuildOperationExecutor(new NoOpBuildOperationListener(), Time.clock(),
+            new DefaultProgressLoggerFactory(new NoOpProgressListener(), Time.clock()), new DefaultBuildOperationQueueFactory(workerLeaseService),
+            new DefaultExecutorFactory(), coordinationService, parallelismConfigurationManager, new DefaultBuildOperationIdFactory());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        buildOperationExecutor.stop();
+        workerLeaseService.stop();
+        FileUtils.forceDelete(tempDir);
+    }
+
+    @Benchmark
+    public void generateXmlReport() {
+        workerLeaseService.withLocks(Collections.singleton(workerLeaseService.getWorkerLease()), new Runnable() {
+            @Override
+            public void run() {
+                new Binary2JUnitXmlReportGenerator(xmlReportDir, resultsProvider, TestOutputAssociation.WITH_SUITE, buildOperationExecutor, "localhost").generate();
+            }
+        });
+    }
+
+    @Benchmark
+    public void generateHtmlReport() {
+        workerLeaseService.withLocks(Collections.singleton(workerLeaseService.getWorkerLease()), new Runnable() {
+            @Override
+            public void run() {
+                new DefaultTestReport(buildOperationExecutor).generateReport(resultsProvider, htmlReportDir);
+            }
+        });
+    }
+
+    private static class NoOpBuildOperationListener implements BuildOperationListener {
+        @Override
+        public void started(BuildOperationDescriptor buildOperation, OperationStartEvent startEvent) {
+        }
+
+        @Override
+        public void progress(BuildOperationDescriptor buildOperation, OperationProgressEvent progressEvent) {
+        }
+
+        @Override
+        public void finished(BuildOperationDescriptor buildOperation, OperationFinishEvent finishEvent) {
+        }
+    }
+
+    private static class NoOpProgressListener implements ProgressListener {
+        @Override
+        public void started(ProgressStartEvent event) {
+        }
+
+        @Override
+        public void progress(ProgressEvent event) {
+        }
+
+        @Override
+        public void completed(ProgressCompleteEvent event) {
+        }
+    }
+}
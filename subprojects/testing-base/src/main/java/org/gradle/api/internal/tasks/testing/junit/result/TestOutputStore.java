@@ -21,17 +21,26 @@ import com.esotericsoftware.kryo.io.Output;
 import com.google.common.collect.ImmutableMap;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.Factory;
 import org.gradle.internal.io.RandomAccessFileInputStream;
 import org.gradle.internal.UncheckedException;
+import org.gradle.internal.serialize.Decoder;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import javax.annotation.Nullable;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class TestOutputStore {
+    private static final int MESSAGE_BUFFER_SIZE = 8192;
 
     private final File resultsDir;
     private final Charset messageStorageCharset;
@@ -217,62 +226,79 @@ public class TestOutputStore {
         }
     }
 
-    public class Reader implements Closeable {
-        private final Index index;
-        private final RandomAccessFile dataFile;
+    /**
+     * Reads the index of the outputs file, or returns null when there is no output.
+     */
+    @Nullable
+    private Index readIndex() {
+        File indexFile = getIndexFile();
+        File outputsFile = getOutputsFile();
+
+        if (!outputsFile.exists()) {
+            if (indexFile.exists()) {
+                throw new IllegalStateException(String.format("Test outputs data file '%s' does not exist but the index file '%s' does", outputsFile, indexFile));
+            }
+            return null;
+        }
+        if (!indexFile.exists()) {
+            throw new IllegalStateException(String.format("Test outputs data file '%s' exists but the index file '%s' does not", outputsFile, indexFile));
+        }
 
-        public Reader() {
-            File indexFile = getIndexFile();
-            File outputsFile = getOutputsFile();
+        Input input;
+        try {
+            input = new Input(new FileInputStream(indexFile));
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
 
-            if (outputsFile.exists()) {
-                if (!indexFile.exists()) {
-                    throw new IllegalStateException(String.format("Test outputs data file '%s' exists but the index file '%s' does not", outputsFile, indexFile));
+        IndexBuilder rootBuilder;
+        try {
+            int numClasses = input.readInt(true);
+            rootBuilder = new IndexBuilder();
+
+            for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
+                long classId = input.readLong(true);
+                IndexBuilder classBuilder = new IndexBuilder();
+
+                int numEntries = input.readInt(true);
+                for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
+                    long testId = input.readLong(true);
+                    Region stdOut = new Region(input.readLong(), input.readLong());
+                    Region stdErr = new Region(input.readLong(), input.readLong());
+                    classBuilder.add(testId, new Index(stdOut, stdErr));
                 }
 
-                Input input;
-                try {
-                    input = new Input(new FileInputStream(indexFile));
-                } catch (FileNotFoundException e) {
-                    throw new UncheckedIOException(e);
-                }
+                rootBuilder.add(classId, classBuilder.build());
+            }
+        } finally {
+            input.close();
+        }
 
-                IndexBuilder rootBuilder = null;
-                try {
-                    int numClasses = input.readInt(true);
-                    rootBuilder = new IndexBuilder();
-
-                    for (int classCounter = 0; classCounter < numClasses; ++classCounter) {
-                        long classId = input.readLong(true);
-                        IndexBuilder classBuilder = new IndexBuilder();
-
-                        int numEntries = input.readInt(true);
-                        for (int entryCounter = 0; entryCounter < numEntries; ++entryCounter) {
-                            long testId = input.readLong(true);
-                            Region stdOut = new Region(input.readLong(), input.readLong());
-                            Region stdErr = new Region(input.readLong(), input.readLong());
-                            classBuilder.add(testId, new Index(stdOut, stdErr));
-                        }
-
-                        rootBuilder.add(classId, classBuilder.build());
-                    }
-                } finally {
-                    input.close();
-                }
+        return rootBuilder.build();
+    }
+
+    public class Reader implements Closeable {
+        private final Index index;
+        private final RandomAccessFile dataFile;
+        private final ByteBuffer messageBytes = ByteBuffer.allocate(MESSAGE_BUFFER_SIZE);
+        private final CharBuffer messageChars = CharBuffer.allocate(MESSAGE_BUFFER_SIZE);
+        private final CharsetDecoder messageDecoder = messageStorageCharset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
 
-                index = rootBuilder.build();
+        public Reader() {
+            this(readIndex());
+        }
 
+        private Reader(@Nullable Index index) {
+            this.index = index;
+            if (index != null) {
                 try {
                     dataFile = new RandomAccessFile(getOutputsFile(), "r");
                 } catch (FileNotFoundException e) {
                     throw new UncheckedIOException(e);
                 }
             } else { // no outputs file
-                if (indexFile.exists()) {
-                    throw new IllegalStateException(String.format("Test outputs data file '%s' does not exist but the index file '%s' does", outputsFile, indexFile));
-                }
-
-                index = null;
                 dataFile = null;
             }
         }
@@ -362,17 +388,7 @@ public class TestOutputStore {
                     }
 
                     if (testId == 0 || testId == readTestId) {
-                        byte[] stringBytes = new byte[readLength];
-                        decoder.readBytes(stringBytes);
-                        String message;
-                        try {
-                            message = new String(stringBytes, messageStorageCharset.name());
-                        } catch (UnsupportedEncodingException e) {
-                            // shouldn't happen
-                            throw UncheckedException.throwAsUncheckedException(e);
-                        }
-
-                        writer.write(message);
+                        writeMessage(decoder, readLength, writer);
                     } else {
                         decoder.skipBytes(readLength);
                     }
@@ -381,10 +397,71 @@ public class TestOutputStore {
                 throw new UncheckedIOException(e1);
             }
         }
+
+        /**
+         * Decodes a message in chunks into the given writer, so that a large message is never held in memory as a whole.
+         */
+        private void writeMessage(Decoder decoder, int length, java.io.Writer writer) throws IOException {
+            messageDecoder.reset();
+            messageBytes.clear();
+            int remaining = length;
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                int count = Math.min(remaining, messageBytes.remaining());
+                decoder.readBytes(messageBytes.array(), messageBytes.position(), count);
+                messageBytes.position(messageBytes.position() + count);
+                remaining -= count;
+                endOfInput = remaining == 0;
+
+                messageBytes.flip();
+                CoderResult result;
+                do {
+                    result = messageDecoder.decode(messageBytes, messageChars, endOfInput);
+                    writeChars(writer);
+                } while (result.isOverflow());
+                // Keep any incomplete character for the next chunk
+                messageBytes.compact();
+            }
+            CoderResult result;
+            do {
+                result = messageDecoder.flush(messageChars);
+                writeChars(writer);
+            } while (result.isOverflow());
+        }
+
+        private void writeChars(java.io.Writer writer) throws IOException {
+            messageChars.flip();
+            if (messageChars.hasRemaining()) {
+                writer.write(messageChars.array(), 0, messageChars.limit());
+            }
+            messageChars.clear();
+        }
     }
 
     // IMPORTANT: return must be closed when done with.
     public Reader reader() {
         return new Reader();
     }
+
+    /**
+     * Returns a factory for readers that share a single copy of the index, which is read when the first reader is created. This is intended for
+     * reading the output from several threads, where each thread uses its own reader. Each reader must be closed when done with.
+     */
+    public Factory<Reader> readers() {
+        return new SharedIndexReaderFactory();
+    }
+
+    private class SharedIndexReaderFactory implements Factory<Reader> {
+        private boolean indexRead;
+        private Index index;
+
+        @Override
+        public synchronized Reader create() {
+            if (!indexRead) {
+                index = readIndex();
+                indexRead = true;
+            }
+            return new Reader(index);
+        }
+    }
 }
@@ -18,17 +18,19 @@ package org.gradle.api.internal.tasks.testing.junit.result;
 
 import com.google.common.collect.Maps;
 import org.gradle.api.Action;
+import org.gradle.internal.Factory;
 import org.gradle.internal.concurrent.CompositeStoppable;
 
 import java.io.IOException;
 import java.util.concurrent.ConcurrentMap;
 
 abstract public class TestOutputStoreBackedResultsProvider implements TestResultsProvider {
-    private final TestOutputStore outputStore;
+    private final Factory<TestOutputStore.Reader> readerFactory;
     private final ConcurrentMap<Thread, TestOutputStore.Reader> readers;
 
     public TestOutputStoreBackedResultsProvider(TestOutputStore outputStore) {
-        this.outputStore = outputStore;
+        // Reports are generated from several threads, each with its own reader. Share the index between them rather than reading it for each thread
+        this.readerFactory = outputStore.readers();
         this.readers = Maps.newConcurrentMap();
     }
 
@@ -40,7 +42,7 @@ abstract public class TestOutputStoreBackedResultsProvider implements TestResult
         Thread thread = Thread.currentThread();
         TestOutputStore.Reader reader = readers.get(thread);
         if (reader == null) {
-            reader = outputStore.reader();
+            reader = readerFactory.create();
             readers.put(thread, reader);
         }
         return reader;
@@ -27,26 +27,44 @@ import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
  * processors.
+ *
+ * <p>When the durations of the test classes in a previous run are known, the test classes are instead held back until all of them have been found.
+ * They are then assigned longest first, each to the processor with the least expected work, so that the processors finish at about the same time
+ * rather than leaving one processor running a slow test class at the end. A test class that did not run before is expected to take the average
+ * duration.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final Map<String, Long> previousDurations;
     private TestResultProcessor resultProcessor;
     private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
+    private List<TestClassRunInfo> pending = new ArrayList<TestClassRunInfo>();
     private Actor resultProcessorActor;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, Collections.<String, Long>emptyMap());
+    }
+
+    /**
+     * @param previousDurations the duration in milliseconds of each test class in a previous run, by class name
+     */
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<TestClassProcessor> factory, ActorFactory actorFactory, Map<String, Long> previousDurations) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.previousDurations = previousDurations;
     }
 
     @Override
@@ -58,14 +76,13 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
 
     @Override
     public void processTestClass(TestClassRunInfo testClass) {
+        if (maxProcessors > 1 && !previousDurations.isEmpty()) {
+            pending.add(testClass);
+            return;
+        }
         TestClassProcessor processor;
         if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
+            processor = startProcessor();
         } else {
             processor = processors.get(pos);
             pos = (pos + 1) % processors.size();
@@ -73,9 +90,60 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
         processor.processTestClass(testClass);
     }
 
+    private TestClassProcessor startProcessor() {
+        TestClassProcessor processor = factory.create();
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    private void processPendingLongestFirst() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long totalDuration = 0;
+        for (Long duration : previousDurations.values()) {
+            totalDuration += duration;
+        }
+        final long averageDuration = totalDuration / previousDurations.size();
+        List<TestClassRunInfo> testClasses = pending;
+        pending = new ArrayList<TestClassRunInfo>();
+        Collections.sort(testClasses, new Comparator<TestClassRunInfo>() {
+            @Override
+            public int compare(TestClassRunInfo left, TestClassRunInfo right) {
+                long leftDuration = expectedDuration(left, averageDuration);
+                long rightDuration = expectedDuration(right, averageDuration);
+                return leftDuration > rightDuration ? -1 : leftDuration < rightDuration ? 1 : 0;
+            }
+        });
+
+        long[] expectedWork = new long[maxProcessors];
+        for (TestClassRunInfo testClass : testClasses) {
+            // Processors that have not been started yet have no work, and come after those that have been started
+            int index = 0;
+            for (int i = 1; i < maxProcessors; i++) {
+                if (expectedWork[i] < expectedWork[index]) {
+                    index = i;
+                }
+            }
+            expectedWork[index] += expectedDuration(testClass, averageDuration);
+            TestClassProcessor processor = index < processors.size() ? processors.get(index) : startProcessor();
+            processor.processTestClass(testClass);
+        }
+    }
+
+    private long expectedDuration(TestClassRunInfo testClass, long averageDuration) {
+        Long duration = previousDurations.get(testClass.getTestClassName());
+        return duration != null ? duration : averageDuration;
+    }
+
     @Override
     public void stop() {
         try {
+            processPendingLongestFirst();
             CompositeStoppable.stoppable(processors).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.throwAsUncheckedException(e.getCause());
@@ -30,6 +30,7 @@ import org.gradle.process.internal.worker.WorkerProcessBuilder;
 import org.gradle.process.internal.worker.WorkerProcessFactory;
 import org.gradle.util.CollectionUtils;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.net.URL;
 import java.util.List;
@@ -42,12 +43,21 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
     private final ModuleRegistry moduleRegistry;
+    private final TestWorkerPool workerPool;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
+    private PooledTestWorker pooledWorker;
     private TestResultProcessor resultProcessor;
     private WorkerLeaseRegistry.WorkerLeaseCompletion completion;
 
     public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry) {
+        this(parentWorkerLease, workerFactory, processorFactory, options, classPath, buildConfigAction, moduleRegistry, null);
+    }
+
+    /**
+     * @param workerPool the pool to take the worker process from, or null to start a new worker process that is stopped once the tests have run
+     */
+    public ForkingTestClassProcessor(WorkerLeaseRegistry.WorkerLease parentWorkerLease, WorkerProcessFactory workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, ModuleRegistry moduleRegistry, @Nullable TestWorkerPool workerPool) {
         this.currentWorkerLease = parentWorkerLease;
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
@@ -55,6 +65,7 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
         this.moduleRegistry = moduleRegistry;
+        this.workerPool = workerPool;
     }
 
     @Override
@@ -66,21 +77,14 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     public void processTestClass(TestClassRunInfo testClass) {
         if (remoteProcessor == null) {
             completion = currentWorkerLease.startChild();
-            remoteProcessor = forkProcess();
+            remoteProcessor = workerPool == null ? forkProcess() : reserveWorker();
         }
 
         remoteProcessor.processTestClass(testClass);
     }
 
     RemoteTestClassProcessor forkProcess() {
-        WorkerProcessBuilder builder = workerFactory.create(new TestWorker(processorFactory));
-        builder.setBaseName("Gradle Test Executor");
-        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
-        builder.applicationClasspath(classPath);
-        options.copyTo(builder.getJavaCommand());
-        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
-        buildConfigAction.execute(builder);
-
+        WorkerProcessBuilder builder = createWorkerProcessBuilder(new TestWorker(processorFactory));
         workerProcess = builder.build();
         workerProcess.start();
 
@@ -93,6 +97,23 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         return remoteProcessor;
     }
 
+    RemoteTestClassProcessor reserveWorker() {
+        WorkerProcessBuilder builder = createWorkerProcessBuilder(new TestWorker());
+        pooledWorker = workerPool.reserve(builder);
+        return pooledWorker.startProcessing(resultProcessor, processorFactory, builder.getApplicationClasspath(), builder.getSharedPackages());
+    }
+
+    private WorkerProcessBuilder createWorkerProcessBuilder(TestWorker testWorker) {
+        WorkerProcessBuilder builder = workerFactory.create(testWorker);
+        builder.setBaseName("Gradle Test Executor");
+        builder.setImplementationClasspath(getTestWorkerImplementationClasspath());
+        builder.applicationClasspath(classPath);
+        options.copyTo(builder.getJavaCommand());
+        builder.getJavaCommand().jvmArgs("-Dorg.gradle.native=false");
+        buildConfigAction.execute(builder);
+        return builder;
+    }
+
     List<URL> getTestWorkerImplementationClasspath() {
         return CollectionUtils.flattenCollections(URL.class,
             moduleRegistry.getModule("gradle-core-api").getImplementationClasspath().getAsURLs(),
@@ -118,11 +139,25 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     public void stop() {
         if (remoteProcessor != null) {
             try {
-                remoteProcessor.stop();
-                workerProcess.waitForStop();
+                if (pooledWorker != null) {
+                    stopPooledWorker();
+                } else {
+                    remoteProcessor.stop();
+                    workerProcess.waitForStop();
+                }
             } finally {
                 completion.leaseFinish();
             }
         }
     }
+
+    private void stopPooledWorker() {
+        try {
+            pooledWorker.stopProcessing();
+        } catch (RuntimeException e) {
+            workerPool.discard(pooledWorker);
+            throw e;
+        }
+        workerPool.release(pooledWorker);
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.dispatch.StreamCompletion;
+import org.gradle.internal.remote.ObjectConnection;
+import org.gradle.process.internal.worker.WorkerProcess;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A test worker process that is kept alive after a test execution, so that it can run the tests of a later compatible test execution.
+ */
+class PooledTestWorker implements Stoppable {
+    private final TestWorkerPool.WorkerKey key;
+    private final WorkerProcess workerProcess;
+    private final RemoteTestClassProcessor remoteProcessor;
+    private final SessionResultProcessor resultProcessor;
+
+    private PooledTestWorker(TestWorkerPool.WorkerKey key, WorkerProcess workerProcess, RemoteTestClassProcessor remoteProcessor, SessionResultProcessor resultProcessor) {
+        this.key = key;
+        this.workerProcess = workerProcess;
+        this.remoteProcessor = remoteProcessor;
+        this.resultProcessor = resultProcessor;
+    }
+
+    static PooledTestWorker start(TestWorkerPool.WorkerKey key, WorkerProcess workerProcess) {
+        workerProcess.start();
+
+        SessionResultProcessor resultProcessor = new SessionResultProcessor();
+        ObjectConnection connection = workerProcess.getConnection();
+        connection.useParameterSerializers(TestEventSerializer.create());
+        connection.addIncoming(PooledTestResultProcessor.class, resultProcessor);
+        RemoteTestClassProcessor remoteProcessor = connection.addOutgoing(RemoteTestClassProcessor.class);
+        connection.connect();
+        return new PooledTestWorker(key, workerProcess, remoteProcessor, resultProcessor);
+    }
+
+    TestWorkerPool.WorkerKey getKey() {
+        return key;
+    }
+
+    /**
+     * Returns true when the worker process is still connected, and so can be used by another test execution.
+     */
+    boolean isAlive() {
+        return !resultProcessor.isDisconnected();
+    }
+
+    /**
+     * Starts a test execution in this worker, with the results sent to the given processor.
+     */
+    RemoteTestClassProcessor startProcessing(TestResultProcessor target, WorkerTestClassProcessorFactory factory, Set<File> classpath, Set<String> sharedPackages) {
+        resultProcessor.startSession(target);
+        remoteProcessor.startProcessing(factory, new ArrayList<File>(classpath), new LinkedHashSet<String>(sharedPackages));
+        return remoteProcessor;
+    }
+
+    /**
+     * Ends the current test execution and waits until the worker has sent all of its results. Fails when the worker process has stopped meanwhile.
+     */
+    void stopProcessing() {
+        remoteProcessor.stop();
+        if (!resultProcessor.awaitSessionEnd()) {
+            // The worker has disconnected, so report how the process finished
+            workerProcess.waitForStop();
+            throw new IllegalStateException("Test worker process stopped before all tests were completed.");
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (isAlive()) {
+            remoteProcessor.shutdown();
+        }
+        workerProcess.waitForStop();
+    }
+
+    private static class SessionResultProcessor implements PooledTestResultProcessor, StreamCompletion {
+        private final Object lock = new Object();
+        private TestResultProcessor target;
+        private boolean sessionRunning;
+        private boolean disconnected;
+
+        void startSession(TestResultProcessor target) {
+            synchronized (lock) {
+                this.target = target;
+                sessionRunning = true;
+            }
+        }
+
+        boolean awaitSessionEnd() {
+            synchronized (lock) {
+                while (sessionRunning && !disconnected) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.throwAsUncheckedException(e);
+                    }
+                }
+                return !sessionRunning;
+            }
+        }
+
+        boolean isDisconnected() {
+            synchronized (lock) {
+                return disconnected;
+            }
+        }
+
+        private TestResultProcessor getTarget() {
+            synchronized (lock) {
+                return target;
+            }
+        }
+
+        @Override
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            getTarget().started(test, event);
+        }
+
+        @Override
+        public void completed(Object testId, TestCompleteEvent event) {
+            getTarget().completed(testId, event);
+        }
+
+        @Override
+        public void output(Object testId, TestOutputEvent event) {
+            getTarget().output(testId, event);
+        }
+
+        @Override
+        public void failure(Object testId, Throwable result) {
+            getTarget().failure(testId, result);
+        }
+
+        @Override
+        public void processingStopped() {
+            synchronized (lock) {
+                sessionRunning = false;
+                target = null;
+                lock.notifyAll();
+            }
+        }
+
+        @Override
+        public void endStream() {
+            synchronized (lock) {
+                disconnected = true;
+                lock.notifyAll();
+            }
+        }
+    }
+}
@@ -17,6 +17,11 @@
 package org.gradle.api.internal.tasks.testing.worker;
 
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
 
 /**
  * @see org.gradle.api.internal.tasks.testing.TestClassProcessor
@@ -27,6 +32,13 @@ public interface RemoteTestClassProcessor {
      */
     void startProcessing();
 
+    /**
+     * Starts processing test classes in a worker that is reused by several test executions, using a processor created by the given factory.
+     * The test classes are loaded from the given classpath by a new class loader, which shares only the given packages with the worker.
+     * Does not block.
+     */
+    void startProcessing(WorkerTestClassProcessorFactory factory, List<File> classpath, Set<String> sharedPackages);
+
     /**
      * Does not block.
      */
@@ -36,4 +48,9 @@ public interface RemoteTestClassProcessor {
      * Does not block.
      */
     void stop();
+
+    /**
+     * Stops a worker that is reused by several test executions. Does not block.
+     */
+    void shutdown();
 }
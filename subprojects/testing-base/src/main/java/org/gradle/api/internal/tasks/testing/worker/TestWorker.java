@@ -24,6 +24,10 @@ import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.actor.ActorFactory;
 import org.gradle.internal.actor.internal.DefaultActorFactory;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+import org.gradle.internal.classloader.FilteringClassLoader;
+import org.gradle.internal.classloader.VisitableURLClassLoader;
+import org.gradle.internal.classpath.DefaultClassPath;
 import org.gradle.internal.concurrent.DefaultExecutorFactory;
 import org.gradle.internal.concurrent.ExecutorFactory;
 import org.gradle.internal.dispatch.ContextClassLoaderProxy;
@@ -38,7 +42,11 @@ import org.gradle.process.internal.worker.WorkerProcessContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.Serializable;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 
 public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClassProcessor, Serializable {
@@ -48,11 +56,24 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     private CountDownLatch completed;
     private TestClassProcessor processor;
     private TestResultProcessor resultProcessor;
+    private WorkerProcessContext workerProcessContext;
+    private ServiceRegistry testServices;
+    private PooledTestResultProcessor pooledResultProcessor;
+    private VisitableURLClassLoader sessionClassLoader;
+    private Properties sessionSystemProperties;
 
     public TestWorker(WorkerTestClassProcessorFactory factory) {
         this.factory = factory;
     }
 
+    /**
+     * Creates a worker that is reused by several test executions. The processor for each test execution is created when it starts, by
+     * {@link #startProcessing(WorkerTestClassProcessorFactory, List, Set)}.
+     */
+    public TestWorker() {
+        this.factory = null;
+    }
+
     @Override
     public void execute(final WorkerProcessContext workerProcessContext) {
         LOGGER.info("{} started executing tests.", workerProcessContext.getDisplayName());
@@ -62,7 +83,11 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         System.setProperty(WORKER_ID_SYS_PROPERTY, workerProcessContext.getWorkerId().toString());
 
         DefaultServiceRegistry testServices = new TestFrameworkServiceRegistry(workerProcessContext);
-        startReceivingTests(workerProcessContext, testServices);
+        if (factory == null) {
+            startReceivingSessions(workerProcessContext, testServices);
+        } else {
+            startReceivingTests(workerProcessContext, testServices);
+        }
 
         try {
             try {
@@ -79,14 +104,7 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
     }
 
     private void startReceivingTests(WorkerProcessContext workerProcessContext, ServiceRegistry testServices) {
-        TestClassProcessor targetProcessor = factory.create(testServices);
-        IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
-
-        targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
-                workerProcessContext.getDisplayName(), testServices.get(Clock.class));
-        ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
-                TestClassProcessor.class, targetProcessor, workerProcessContext.getApplicationClassLoader());
-        processor = proxy.getSource();
+        processor = createProcessor(factory, workerProcessContext, testServices, workerProcessContext.getApplicationClassLoader());
 
         ObjectConnection serverConnection = workerProcessContext.getServerConnection();
         serverConnection.useParameterSerializers(TestEventSerializer.create());
@@ -95,12 +113,50 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         serverConnection.connect();
     }
 
+    private void startReceivingSessions(WorkerProcessContext workerProcessContext, ServiceRegistry testServices) {
+        this.workerProcessContext = workerProcessContext;
+        this.testServices = testServices;
+
+        ObjectConnection serverConnection = workerProcessContext.getServerConnection();
+        serverConnection.useParameterSerializers(TestEventSerializer.create());
+        this.pooledResultProcessor = serverConnection.addOutgoing(PooledTestResultProcessor.class);
+        this.resultProcessor = pooledResultProcessor;
+        serverConnection.addIncoming(RemoteTestClassProcessor.class, this);
+        serverConnection.connect();
+    }
+
+    private static TestClassProcessor createProcessor(WorkerTestClassProcessorFactory factory, WorkerProcessContext workerProcessContext, ServiceRegistry testServices, ClassLoader applicationClassLoader) {
+        TestClassProcessor targetProcessor = factory.create(testServices);
+        IdGenerator<Object> idGenerator = testServices.get(IdGenerator.class);
+
+        targetProcessor = new WorkerTestClassProcessor(targetProcessor, idGenerator.generateId(),
+                workerProcessContext.getDisplayName(), testServices.get(Clock.class));
+        ContextClassLoaderProxy<TestClassProcessor> proxy = new ContextClassLoaderProxy<TestClassProcessor>(
+                TestClassProcessor.class, targetProcessor, applicationClassLoader);
+        return proxy.getSource();
+    }
+
     @Override
     public void startProcessing() {
         Thread.currentThread().setName("Test worker");
         processor.startProcessing(resultProcessor);
     }
 
+    @Override
+    public void startProcessing(WorkerTestClassProcessorFactory factory, List<File> classpath, Set<String> sharedPackages) {
+        Thread.currentThread().setName("Test worker");
+        // Load the test classes in a new class loader for each test execution, so that classes and their static state do not leak between executions.
+        // Only the packages of the test framework are shared with the worker
+        FilteringClassLoader.Spec spec = new FilteringClassLoader.Spec();
+        for (String sharedPackage : sharedPackages) {
+            spec.allowPackage(sharedPackage);
+        }
+        sessionClassLoader = new VisitableURLClassLoader(new FilteringClassLoader(workerProcessContext.getApplicationClassLoader(), spec), DefaultClassPath.of(classpath));
+        sessionSystemProperties = (Properties) System.getProperties().clone();
+        processor = createProcessor(factory, workerProcessContext, testServices, sessionClassLoader);
+        processor.startProcessing(resultProcessor);
+    }
+
     @Override
     public void processTestClass(final TestClassRunInfo testClass) {
         Thread.currentThread().setName("Test worker");
@@ -118,8 +174,32 @@ public class TestWorker implements Action<WorkerProcessContext>, RemoteTestClass
         try {
             processor.stop();
         } finally {
-            completed.countDown();
+            if (factory == null) {
+                endSession();
+            } else {
+                completed.countDown();
+            }
+        }
+    }
+
+    private void endSession() {
+        processor = null;
+        // Undo the changes to the worker that the tests of this execution might have made
+        System.setSecurityManager(null);
+        if (sessionSystemProperties != null) {
+            System.setProperties(sessionSystemProperties);
+            sessionSystemProperties = null;
         }
+        if (sessionClassLoader != null) {
+            ClassLoaderUtils.tryClose(sessionClassLoader);
+            sessionClassLoader = null;
+        }
+        pooledResultProcessor.processingStopped();
+    }
+
+    @Override
+    public void shutdown() {
+        completed.countDown();
     }
 
     private static class TestFrameworkServiceRegistry extends DefaultServiceRegistry {
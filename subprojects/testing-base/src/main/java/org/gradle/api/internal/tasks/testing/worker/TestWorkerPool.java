@@ -0,0 +1,208 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker;
+
+import com.google.common.base.Objects;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.process.internal.JavaExecHandleBuilder;
+import org.gradle.process.internal.worker.WorkerProcessBuilder;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps test worker processes alive between test executions, so that a later test execution with the same JVM options and test runtime classpath
+ * can reuse them, rather than paying again for the startup and warm-up of new worker processes. Test workers are kept for the lifetime of the
+ * Gradle daemon.
+ *
+ * <p>Each test execution loads the test classes in a new class loader of the worker. The JVM itself is shared between the test executions, so tests
+ * that rely on a fresh JVM should use {@code forkEvery} to opt out.</p>
+ */
+public class TestWorkerPool implements Stoppable {
+    /**
+     * The maximum number of idle test workers to keep. Test workers are not reused when this is 0, which is the default.
+     */
+    public static final String MAX_IDLE_WORKERS_PROPERTY = "org.gradle.internal.testing.pooledworkers";
+
+    private static final Logger LOGGER = Logging.getLogger(TestWorkerPool.class);
+
+    private final Object lock = new Object();
+    private final List<PooledTestWorker> allWorkers = new ArrayList<PooledTestWorker>();
+    private final LinkedList<PooledTestWorker> idleWorkers = new LinkedList<PooledTestWorker>();
+    private final int maxIdleWorkers;
+
+    public TestWorkerPool(int maxIdleWorkers) {
+        this.maxIdleWorkers = maxIdleWorkers;
+    }
+
+    public boolean isEnabled() {
+        return maxIdleWorkers > 0;
+    }
+
+    /**
+     * Returns an idle worker that was started with the same settings as the given builder, or starts a new worker using the builder. The worker must be
+     * given back using {@link #release(PooledTestWorker)} or {@link #discard(PooledTestWorker)}.
+     */
+    PooledTestWorker reserve(WorkerProcessBuilder builder) {
+        WorkerKey key = new WorkerKey(builder);
+        PooledTestWorker worker = reserveIdleWorker(key);
+        if (worker != null) {
+            LOGGER.info("Reusing test worker from a previous test execution.");
+            return worker;
+        }
+        worker = PooledTestWorker.start(key, builder.build());
+        synchronized (lock) {
+            allWorkers.add(worker);
+        }
+        return worker;
+    }
+
+    @Nullable
+    private PooledTestWorker reserveIdleWorker(WorkerKey key) {
+        List<PooledTestWorker> stale = new ArrayList<PooledTestWorker>();
+        PooledTestWorker match = null;
+        synchronized (lock) {
+            Iterator<PooledTestWorker> iterator = idleWorkers.iterator();
+            while (iterator.hasNext()) {
+                PooledTestWorker candidate = iterator.next();
+                if (!candidate.isAlive()) {
+                    iterator.remove();
+                    allWorkers.remove(candidate);
+                    stale.add(candidate);
+                } else if (candidate.getKey().equals(key)) {
+                    iterator.remove();
+                    match = candidate;
+                    break;
+                }
+            }
+        }
+        stopWorkers(stale);
+        return match;
+    }
+
+    /**
+     * Gives back a worker once its test execution has finished, so that it can be used by another test execution.
+     */
+    void release(PooledTestWorker worker) {
+        PooledTestWorker evicted = null;
+        synchronized (lock) {
+            idleWorkers.addFirst(worker);
+            if (idleWorkers.size() > maxIdleWorkers) {
+                evicted = idleWorkers.removeLast();
+                allWorkers.remove(evicted);
+            }
+        }
+        if (evicted != null) {
+            LOGGER.debug("Stopping idle test worker as there are more than {} idle test workers.", maxIdleWorkers);
+            evicted.stop();
+        }
+    }
+
+    /**
+     * Stops a worker that must not be used again, for example because its test execution failed.
+     */
+    void discard(PooledTestWorker worker) {
+        synchronized (lock) {
+            allWorkers.remove(worker);
+        }
+        try {
+            worker.stop();
+        } catch (RuntimeException e) {
+            LOGGER.debug("Could not stop test worker.", e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        List<PooledTestWorker> workers;
+        synchronized (lock) {
+            workers = new ArrayList<PooledTestWorker>(allWorkers);
+            allWorkers.clear();
+            idleWorkers.clear();
+        }
+        stopWorkers(workers);
+    }
+
+    private static void stopWorkers(List<PooledTestWorker> workers) {
+        if (!workers.isEmpty()) {
+            LOGGER.debug("Stopping {} test worker(s).", workers.size());
+            CompositeStoppable.stoppable(workers).stop();
+        }
+    }
+
+    /**
+     * The settings that a worker was started with. A worker is only reused by a test execution that would start a worker with the same settings.
+     */
+    static class WorkerKey {
+        private final String executable;
+        private final List<String> jvmArgs;
+        private final Map<String, String> environment;
+        private final File workingDir;
+        private final List<File> applicationClasspath;
+        private final Set<String> sharedPackages;
+        private final LogLevel logLevel;
+
+        WorkerKey(WorkerProcessBuilder builder) {
+            JavaExecHandleBuilder javaCommand = builder.getJavaCommand();
+            this.executable = javaCommand.getExecutable();
+            this.jvmArgs = new ArrayList<String>(javaCommand.getAllJvmArgs());
+            this.environment = new HashMap<String, String>();
+            for (Map.Entry<String, Object> entry : javaCommand.getEnvironment().entrySet()) {
+                environment.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+            this.workingDir = javaCommand.getWorkingDir();
+            this.applicationClasspath = new ArrayList<File>(builder.getApplicationClasspath());
+            this.sharedPackages = new HashSet<String>(builder.getSharedPackages());
+            this.logLevel = builder.getLogLevel();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            WorkerKey other = (WorkerKey) obj;
+            return Objects.equal(executable, other.executable)
+                && jvmArgs.equals(other.jvmArgs)
+                && environment.equals(other.environment)
+                && Objects.equal(workingDir, other.workingDir)
+                && applicationClasspath.equals(other.applicationClasspath)
+                && sharedPackages.equals(other.sharedPackages)
+                && logLevel == other.logLevel;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(executable, jvmArgs, workingDir, applicationClasspath);
+        }
+    }
+}
@@ -78,6 +78,7 @@ import org.gradle.util.ConfigureUtil;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -104,6 +105,7 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
     private final TestLoggingContainer testLogging;
     private final DirectoryProperty binaryResultsDirectory;
     private TestReporter testReporter;
+    private Map<String, Long> previousTestClassDurations = Collections.emptyMap();
     private boolean ignoreFailures;
 
     public AbstractTestTask() {
@@ -180,6 +182,14 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
         return testListenerInternalBroadcaster;
     }
 
+    /**
+     * Returns the duration in milliseconds of each test class in the previous run of this task, by class name. Only available while the tests are executed.
+     */
+    @Internal
+    Map<String, Long> getPreviousTestClassDurations() {
+        return previousTestClassDurations;
+    }
+
     @VisibleForTesting
     void setTestReporter(TestReporter testReporter) {
         this.testReporter = testReporter;
@@ -430,6 +440,7 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
         addTestOutputListener(eventLogger);
 
         File binaryResultsDir = getBinResultsDir();
+        previousTestClassDurations = readTestClassDurations(binaryResultsDir);
         getProject().delete(binaryResultsDir);
         getProject().mkdir(binaryResultsDir);
 
@@ -466,6 +477,7 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
             getTestOutputListenerBroadcaster().removeAll();
             getTestListenerInternalBroadcaster().removeAll();
             outputWriter.close();
+            previousTestClassDurations = Collections.emptyMap();
         }
 
         new TestResultSerializer(binaryResultsDir).write(results.values());
@@ -477,6 +489,23 @@ public abstract class AbstractTestTask extends ConventionTask implements Verific
         }
     }
 
+    private Map<String, Long> readTestClassDurations(File binaryResultsDir) {
+        final Map<String, Long> durations = new HashMap<String, Long>();
+        try {
+            new TestResultSerializer(binaryResultsDir).read(new Action<TestClassResult>() {
+                @Override
+                public void execute(TestClassResult result) {
+                    durations.put(result.getClassName(), result.getDuration());
+                }
+            });
+        } catch (RuntimeException e) {
+            // The results may have been written by a different version of Gradle, in which case the tests are scheduled without them
+            getLogger().debug("Could not read the test class durations of the previous run.", e);
+            return Collections.emptyMap();
+        }
+        return durations;
+    }
+
     private String createNoMatchingTestErrorMessage() {
         return "No tests found for given includes: "
             + Joiner.on(' ').join(getNoMatchingTestErrorReasons());
@@ -98,6 +98,44 @@ class TestOutputStoreSpec extends WorkspaceTest {
         reader.close()
     }
 
+    def "reads messages that are larger than the read buffer"() {
+        def message = "é中€-" * 5000
+
+        when:
+        def writer = output.writer()
+        writer.onOutput(1, 1, output(StdOut, "[out-1]"))
+        writer.onOutput(1, 1, output(StdOut, message))
+        writer.onOutput(1, 1, output(StdOut, "[out-2]"))
+        writer.close()
+        def reader = output.reader()
+
+        then:
+        collectOutput(reader, 1, 1, StdOut) == "[out-1]" + message + "[out-2]"
+
+        cleanup:
+        reader.close()
+    }
+
+    def "readers created by the same factory share the index"() {
+        when:
+        def writer = output.writer()
+        writer.onOutput(1, 1, output(StdOut, "[out-1]"))
+        writer.onOutput(2, 1, output(StdErr, "[out-2]"))
+        writer.close()
+        def readers = output.readers()
+        def reader1 = readers.create()
+        def reader2 = readers.create()
+
+        then:
+        collectAllOutput(reader1, 1, StdOut) == "[out-1]"
+        collectAllOutput(reader2, 1, StdOut) == "[out-1]"
+        collectAllOutput(reader2, 2, StdErr) == "[out-2]"
+
+        cleanup:
+        reader1?.close()
+        reader2?.close()
+    }
+
     def DefaultTestOutputEvent output(TestOutputEvent.Destination destination, String msg) {
         new DefaultTestOutputEvent(destination, msg)
     }
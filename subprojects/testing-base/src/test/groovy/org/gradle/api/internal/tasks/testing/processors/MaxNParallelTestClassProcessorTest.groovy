@@ -167,4 +167,60 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         then:
         1 * asyncProcessor2.processTestClass(test)
     }
+
+    def assignsTestClassesLongestFirstToProcessorWithLeastExpectedWorkWhenPreviousDurationsAreKnown() {
+        def processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, [Slow: 100L, Medium: 60L, Fast1: 30L, Fast2: 20L])
+        def slow = Stub(TestClassRunInfo) { getTestClassName() >> "Slow" }
+        def medium = Stub(TestClassRunInfo) { getTestClassName() >> "Medium" }
+        def fast1 = Stub(TestClassRunInfo) { getTestClassName() >> "Fast1" }
+        def fast2 = Stub(TestClassRunInfo) { getTestClassName() >> "Fast2" }
+        def unknown = Stub(TestClassRunInfo) { getTestClassName() >> "Unknown" }
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
+
+        when:
+        [fast1, unknown, slow, fast2, medium].each { processor.processTestClass(it) }
+
+        then:
+        0 * factory.create()
+
+        when:
+        processor.stop()
+
+        then:
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor1.processTestClass(slow)
+
+        then:
+        1 * factory.create() >> processor2
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor2.processTestClass(medium)
+
+        then:
+        // Unknown is expected to take the average duration of 52ms
+        1 * asyncProcessor2.processTestClass(unknown)
+
+        then:
+        1 * asyncProcessor1.processTestClass(fast1)
+
+        then:
+        1 * asyncProcessor2.processTestClass(fast2)
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
 }
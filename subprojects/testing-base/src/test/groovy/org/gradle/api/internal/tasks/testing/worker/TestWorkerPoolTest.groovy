@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.logging.LogLevel
+import org.gradle.internal.remote.ObjectConnection
+import org.gradle.process.internal.JavaExecHandleBuilder
+import org.gradle.process.internal.worker.WorkerProcess
+import org.gradle.process.internal.worker.WorkerProcessBuilder
+import spock.lang.Specification
+
+class TestWorkerPoolTest extends Specification {
+    def pool = new TestWorkerPool(2)
+
+    def "is enabled only when idle workers may be kept"() {
+        expect:
+        pool.enabled
+        !new TestWorkerPool(0).enabled
+    }
+
+    def "reuses released worker that was started with the same settings"() {
+        def process = Mock(WorkerProcess)
+
+        when:
+        def worker = pool.reserve(builder("a.jar", process))
+        pool.release(worker)
+        def reused = pool.reserve(builder("a.jar", Mock(WorkerProcess)))
+
+        then:
+        reused.is(worker)
+        1 * process.start()
+        1 * process.connection >> connection()
+    }
+
+    def "starts new worker when idle workers were started with different settings"() {
+        def process1 = Mock(WorkerProcess)
+        def process2 = Mock(WorkerProcess)
+
+        when:
+        def worker1 = pool.reserve(builder("a.jar", process1))
+        pool.release(worker1)
+        def worker2 = pool.reserve(builder("b.jar", process2))
+
+        then:
+        !worker2.is(worker1)
+        1 * process1.start()
+        1 * process1.connection >> connection()
+        1 * process2.start()
+        1 * process2.connection >> connection()
+    }
+
+    def "does not reuse worker that is in use"() {
+        def process2 = Mock(WorkerProcess)
+
+        when:
+        def worker1 = pool.reserve(builder("a.jar", Stub(WorkerProcess) { getConnection() >> connection() }))
+        def worker2 = pool.reserve(builder("a.jar", process2))
+
+        then:
+        !worker2.is(worker1)
+        1 * process2.start()
+        1 * process2.connection >> connection()
+    }
+
+    def "stops least recently used idle worker when too many workers are idle"() {
+        def remote1 = Mock(RemoteTestClassProcessor)
+        def process1 = Mock(WorkerProcess) { getConnection() >> connection(remote1) }
+        def worker1 = pool.reserve(builder("a.jar", process1))
+        def worker2 = pool.reserve(builder("b.jar", Stub(WorkerProcess) { getConnection() >> connection() }))
+        def worker3 = pool.reserve(builder("c.jar", Stub(WorkerProcess) { getConnection() >> connection() }))
+
+        when:
+        pool.release(worker1)
+        pool.release(worker2)
+
+        then:
+        0 * remote1.shutdown()
+
+        when:
+        pool.release(worker3)
+
+        then:
+        1 * remote1.shutdown()
+        1 * process1.waitForStop()
+    }
+
+    def "stops all workers when stopped"() {
+        def remote1 = Mock(RemoteTestClassProcessor)
+        def remote2 = Mock(RemoteTestClassProcessor)
+        def worker1 = pool.reserve(builder("a.jar", Stub(WorkerProcess) { getConnection() >> connection(remote1) }))
+        pool.reserve(builder("b.jar", Stub(WorkerProcess) { getConnection() >> connection(remote2) }))
+        pool.release(worker1)
+
+        when:
+        pool.stop()
+
+        then:
+        1 * remote1.shutdown()
+        1 * remote2.shutdown()
+    }
+
+    def builder(String classpath, WorkerProcess process) {
+        return Stub(WorkerProcessBuilder) {
+            getJavaCommand() >> Stub(JavaExecHandleBuilder) {
+                getExecutable() >> "java"
+                getAllJvmArgs() >> ["-Xmx64m"]
+                getEnvironment() >> [:]
+            }
+            getApplicationClasspath() >> ([new File(classpath)] as Set)
+            getSharedPackages() >> (["org.junit"] as Set)
+            getLogLevel() >> LogLevel.LIFECYCLE
+            build() >> process
+        }
+    }
+
+    def connection(RemoteTestClassProcessor remote = Stub(RemoteTestClassProcessor)) {
+        return Stub(ObjectConnection) {
+            addOutgoing(RemoteTestClassProcessor) >> remote
+        }
+    }
+}
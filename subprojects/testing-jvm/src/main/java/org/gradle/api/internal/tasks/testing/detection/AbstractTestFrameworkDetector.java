@@ -21,6 +21,9 @@ import org.apache.commons.lang.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.cache.internal.FileContentCache;
+import org.gradle.cache.internal.FileContentCacheFactory;
+import org.gradle.internal.file.FileType;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Type;
 
@@ -34,6 +37,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.gradle.internal.FileUtils.hasExtension;
 
@@ -47,6 +51,8 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     private final Map<File, Boolean> superClasses;
     private TestClassProcessor testClassProcessor;
     private final List<String> knownTestCaseClassNames;
+    private final Map<File, TestClassDetails> readClasses = new ConcurrentHashMap<File, TestClassDetails>();
+    private FileContentCache<TestClassDetails> classDetailsCache;
 
     private Set<File> testClassesDirectories;
     private Set<File> testClasspath;
@@ -120,7 +126,44 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         this.testClasspath = testClasspath;
     }
 
-    protected TestClassVisitor classVisitor(final File testClassFile) {
+    @Override
+    public void setClassDetailsCache(TestClassDetailsCache classDetailsCache) {
+        this.classDetailsCache = classDetailsCache.getCache(getClass().getSimpleName(), new FileContentCacheFactory.Calculator<TestClassDetails>() {
+            @Override
+            public TestClassDetails calculate(File file, FileType fileType) {
+                return parseClassFile(file);
+            }
+        });
+    }
+
+    /**
+     * Returns the details of the given class file, which are read ahead by {@link #readTestClass(File)} where possible.
+     */
+    protected TestClassDetails classDetails(File testClassFile) {
+        TestClassDetails classDetails = readClasses.get(testClassFile);
+        if (classDetails == null) {
+            classDetails = readClassDetails(testClassFile);
+        }
+        return classDetails;
+    }
+
+    @Override
+    public void readTestClass(File testClassFile) {
+        try {
+            readClasses.put(testClassFile, readClassDetails(testClassFile));
+        } catch (GradleException e) {
+            // Reported when the class is processed, so that failures surface in the same way as without reading ahead
+        }
+    }
+
+    private TestClassDetails readClassDetails(File testClassFile) {
+        if (classDetailsCache != null) {
+            return classDetailsCache.get(testClassFile);
+        }
+        return parseClassFile(testClassFile);
+    }
+
+    private TestClassDetails parseClassFile(File testClassFile) {
         final TestClassVisitor classVisitor = createClassVisitor();
 
         InputStream classStream = null;
@@ -134,7 +177,7 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
             IOUtils.closeQuietly(classStream);
         }
 
-        return classVisitor;
+        return new TestClassDetails(classVisitor);
     }
 
     @Override
@@ -164,9 +207,9 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
      * In none super class mode a test class is published when the class is a test and it is not abstract. In super class mode it must not publish the class otherwise it will get published multiple
      * times (for each extending class).
      */
-    protected void publishTestClass(boolean isTest, TestClassVisitor classVisitor, boolean superClass) {
-        if (isTest && !classVisitor.isAbstract() && !superClass) {
-            String className = Type.getObjectType(classVisitor.getClassName()).getClassName();
+    protected void publishTestClass(boolean isTest, TestClassDetails classDetails, boolean superClass) {
+        if (isTest && !classDetails.isAbstract() && !superClass) {
+            String className = Type.getObjectType(classDetails.getClassName()).getClassName();
             testClassProcessor.processTestClass(new DefaultTestClassRunInfo(className));
         }
     }
@@ -174,6 +217,12 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     @Override
     public void startDetection(TestClassProcessor testClassProcessor) {
         this.testClassProcessor = testClassProcessor;
+        readClasses.clear();
+    }
+
+    @Override
+    public void endDetection() {
+        readClasses.clear();
     }
 
     public void addKnownTestCaseClassNames(String... knownTestCaseClassNames) {
@@ -16,29 +16,54 @@
 
 package org.gradle.api.internal.tasks.testing.detection;
 
+import org.gradle.api.Action;
 import org.gradle.api.file.EmptyFileVisitor;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationQueue;
+import org.gradle.internal.operations.RunnableBuildOperation;
+import org.gradle.internal.progress.BuildOperationDescriptor;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * The default test class scanner. Depending on the availability of a test framework detector,
  * a detection or filename scan is performed to find test classes.
+ *
+ * <p>When a build operation executor is given, a detection scan reads the class files in parallel batches. The test classes of each batch
+ * are detected as soon as the batch has been read, in the order in which the class files were found.</p>
  */
 public class DefaultTestClassScanner implements Runnable {
+    private static final int CLASS_FILES_PER_OPERATION = 200;
+
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final BuildOperationExecutor buildOperationExecutor;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null);
+    }
+
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, @Nullable BuildOperationExecutor buildOperationExecutor) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.buildOperationExecutor = buildOperationExecutor;
     }
 
     @Override
@@ -52,11 +77,61 @@ public class DefaultTestClassScanner implements Runnable {
 
     private void detectionScan() {
         testFrameworkDetector.startDetection(testClassProcessor);
+        try {
+            detectTestClasses();
+        } finally {
+            testFrameworkDetector.endDetection();
+        }
+    }
+
+    private void detectTestClasses() {
+        if (buildOperationExecutor == null) {
+            candidateClassFiles.visit(new ClassFileVisitor() {
+                public void visitClassFile(FileVisitDetails fileDetails) {
+                    testFrameworkDetector.processTestClass(fileDetails.getFile());
+                }
+            });
+            return;
+        }
+
+        final List<File> classFiles = new ArrayList<File>();
         candidateClassFiles.visit(new ClassFileVisitor() {
             public void visitClassFile(FileVisitDetails fileDetails) {
-                testFrameworkDetector.processTestClass(fileDetails.getFile());
+                classFiles.add(fileDetails.getFile());
+            }
+        });
+        readAndProcessClassFiles(classFiles);
+    }
+
+    private void readAndProcessClassFiles(List<File> classFiles) {
+        final List<ReadClassFiles> batches = new ArrayList<ReadClassFiles>();
+        for (int start = 0; start < classFiles.size(); start += CLASS_FILES_PER_OPERATION) {
+            batches.add(new ReadClassFiles(classFiles.subList(start, Math.min(start + CLASS_FILES_PER_OPERATION, classFiles.size()))));
+        }
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        buildOperationExecutor.runAll(new Action<BuildOperationQueue<ReadClassFiles>>() {
+            @Override
+            public void execute(BuildOperationQueue<ReadClassFiles> queue) {
+                for (ReadClassFiles batch : batches) {
+                    queue.add(batch);
+                }
+                try {
+                    for (ReadClassFiles batch : batches) {
+                        batch.awaitRead();
+                        for (File classFile : batch.classFiles) {
+                            testFrameworkDetector.processTestClass(classFile);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    // Rethrown as is once the queue has finished, rather than reported as a failure to populate the queue
+                    failure.set(e);
+                    queue.cancel();
+                }
             }
         });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
     }
 
     private void filenameScan() {
@@ -81,4 +156,53 @@ public class DefaultTestClassScanner implements Runnable {
 
         public abstract void visitClassFile(FileVisitDetails fileDetails);
     }
+
+    /**
+     * A batch of class files, which is read either by a build operation or by the scanning thread when it needs the batch before any build operation
+     * has started to read it.
+     */
+    private class ReadClassFiles implements RunnableBuildOperation {
+        private final List<File> classFiles;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch read = new CountDownLatch(1);
+
+        ReadClassFiles(List<File> classFiles) {
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        public void run(BuildOperationContext context) {
+            readIfNotStarted();
+        }
+
+        void awaitRead() {
+            if (readIfNotStarted()) {
+                return;
+            }
+            try {
+                read.await();
+            } catch (InterruptedException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        private boolean readIfNotStarted() {
+            if (!started.compareAndSet(false, true)) {
+                return false;
+            }
+            try {
+                for (File classFile : classFiles) {
+                    testFrameworkDetector.readTestClass(classFile);
+                }
+            } finally {
+                read.countDown();
+            }
+            return true;
+        }
+
+        @Override
+        public BuildOperationDescriptor.Builder description() {
+            return BuildOperationDescriptor.displayName("Read " + classFiles.size() + " test class files");
+        }
+    }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.cache.internal.FileContentCache;
+import org.gradle.cache.internal.FileContentCacheFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cross-build cache of the details that test framework detectors read from class files, keyed by the content of the class file. Each detector
+ * has its own cache, as the details depend on the annotations that the detector looks for.
+ */
+public class TestClassDetailsCache {
+    private final FileContentCacheFactory cacheFactory;
+    private final Map<String, FileContentCache<TestClassDetails>> caches = new HashMap<String, FileContentCache<TestClassDetails>>();
+
+    public TestClassDetailsCache(FileContentCacheFactory cacheFactory) {
+        this.cacheFactory = cacheFactory;
+    }
+
+    /**
+     * Returns the cache with the given name, using the given reader to read class files that are not in the cache.
+     */
+    public synchronized FileContentCache<TestClassDetails> getCache(String name, FileContentCacheFactory.Calculator<TestClassDetails> reader) {
+        FileContentCache<TestClassDetails> cache = caches.get(name);
+        if (cache == null) {
+            cache = cacheFactory.newCache(name, 40000, reader, new TestClassDetails.Serializer());
+            caches.put(name, cache);
+        }
+        return cache;
+    }
+}
@@ -25,7 +25,19 @@ public interface TestFrameworkDetector {
 
     boolean processTestClass(File testClassFile);
 
+    /**
+     * Reads the given class file ahead of {@link #processTestClass(File)}. May be called concurrently for different class files.
+     */
+    void readTestClass(File testClassFile);
+
+    /**
+     * Called once all class files have been processed, so that state kept for the detection can be released.
+     */
+    void endDetection();
+
     void setTestClasses(Set<File> testClasses);
 
     void setTestClasspath(Set<File> classpath);
+
+    void setClassDetailsCache(TestClassDetailsCache classDetailsCache);
 }
@@ -21,6 +21,9 @@ import org.gradle.api.file.FileTree
 import org.gradle.api.file.FileVisitDetails
 import org.gradle.api.file.FileVisitor
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
+import org.gradle.internal.operations.BuildOperationExecutor
+import org.gradle.internal.operations.BuildOperationQueue
+import org.gradle.internal.operations.RunnableBuildOperation
 import org.junit.Test
 import spock.lang.Specification
 
@@ -49,7 +52,68 @@ public class DefaultTestClassScannerTest extends Specification {
             visitor.visitFile({new File('class1.class')} as FileVisitDetails)
             visitor.visitFile({new File('class2.class')} as FileVisitDetails)
         }
+        then:
+        1 * detector.endDetection()
+
+        0 * _._
+    }
+
+    def "reads class files ahead of detecting test classes in the order they were found"() {
+        def buildOperationExecutor = Mock(BuildOperationExecutor)
+        def queue = Mock(BuildOperationQueue)
+        def scanner = new DefaultTestClassScanner(files, detector, processor, buildOperationExecutor)
 
+        when:
+        scanner.run()
+
+        then:
+        1 * detector.startDetection(processor)
+        then:
+        1 * files.visit(_) >> { FileVisitor visitor ->
+            visitor.visitFile({ new File('class1.class') } as FileVisitDetails)
+            visitor.visitFile({ new File('resource.txt') } as FileVisitDetails)
+            visitor.visitFile({ new File('class2.class') } as FileVisitDetails)
+        }
+        then:
+        1 * buildOperationExecutor.runAll(_) >> { args -> args[0].execute(queue) }
+        1 * queue.add(_) >> { RunnableBuildOperation operation -> operation.run(null) }
+        1 * detector.readTestClass(new File("class1.class"))
+        1 * detector.readTestClass(new File("class2.class"))
+        then:
+        1 * detector.processTestClass(new File("class1.class"))
+        then:
+        1 * detector.processTestClass(new File("class2.class"))
+        then:
+        1 * detector.endDetection()
+        0 * _._
+    }
+
+    def "detects test classes of a batch of class files once the batch has been read"() {
+        def buildOperationExecutor = Mock(BuildOperationExecutor)
+        def queue = Mock(BuildOperationQueue)
+        def classFiles = (1..201).collect { new File("class${it}.class") }
+        def scanner = new DefaultTestClassScanner(files, detector, processor, buildOperationExecutor)
+
+        when:
+        scanner.run()
+
+        then:
+        1 * detector.startDetection(processor)
+        1 * files.visit(_) >> { FileVisitor visitor ->
+            classFiles.each { file -> visitor.visitFile({ file } as FileVisitDetails) }
+        }
+        1 * buildOperationExecutor.runAll(_) >> { args -> args[0].execute(queue) }
+        2 * queue.add(_)
+        then:
+        200 * detector.readTestClass(_)
+        then:
+        200 * detector.processTestClass(_)
+        then:
+        1 * detector.readTestClass(classFiles[200])
+        then:
+        1 * detector.processTestClass(classFiles[200])
+        then:
+        1 * detector.endDetection()
         0 * _._
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection
+
+import org.gradle.api.file.RelativePath
+import org.gradle.api.internal.changedetection.state.FileHashSnapshot
+import org.gradle.api.internal.changedetection.state.FileSystemSnapshotter
+import org.gradle.api.internal.changedetection.state.InMemoryCacheDecoratorFactory
+import org.gradle.api.internal.changedetection.state.RegularFileSnapshot
+import org.gradle.api.internal.tasks.execution.TaskOutputsGenerationListener
+import org.gradle.api.invocation.Gradle
+import org.gradle.cache.AsyncCacheAccess
+import org.gradle.cache.CacheDecorator
+import org.gradle.cache.CrossProcessCacheAccess
+import org.gradle.cache.MultiProcessSafePersistentIndexedCache
+import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory
+import org.gradle.cache.internal.DefaultCacheRepository
+import org.gradle.cache.internal.DefaultCacheScopeMapping
+import org.gradle.cache.internal.DefaultFileContentCacheFactory
+import org.gradle.cache.internal.FileContentCacheFactory
+import org.gradle.internal.event.DefaultListenerManager
+import org.gradle.internal.file.FileType
+import org.gradle.internal.hash.HashCode
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testfixtures.internal.InMemoryCacheFactory
+import org.gradle.util.GradleVersion
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+@UsesNativeServices
+class TestClassDetailsCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider()
+    def listenerManager = new DefaultListenerManager()
+    def classFile = new File("SomeTest.class")
+    def classFileContent = HashCode.fromInt(1)
+    def fileSystemSnapshotter = Stub(FileSystemSnapshotter) {
+        snapshotSelf(classFile) >> { new RegularFileSnapshot(classFile.path, RelativePath.parse(true, classFile.name), true, new FileHashSnapshot(classFileContent, 123)) }
+    }
+    def cacheRepository = new DefaultCacheRepository(new DefaultCacheScopeMapping(tmpDir.file("user-home"), tmpDir.file("build-dir"), GradleVersion.current()), new InMemoryCacheFactory())
+    def inMemoryCacheDecoratorFactory = new InMemoryCacheDecoratorFactory(false, new CrossBuildInMemoryCacheFactory(listenerManager)) {
+        @Override
+        CacheDecorator decorator(int maxEntriesToKeepInMemory, boolean cacheInMemoryForShortLivedProcesses) {
+            return new CacheDecorator() {
+                @Override
+                def <K, V> MultiProcessSafePersistentIndexedCache<K, V> decorate(String cacheId, String cacheName, MultiProcessSafePersistentIndexedCache<K, V> persistentCache, CrossProcessCacheAccess crossProcessCacheAccess, AsyncCacheAccess asyncCacheAccess) {
+                    return persistentCache
+                }
+            }
+        }
+    }
+    def cacheFactory = new DefaultFileContentCacheFactory(listenerManager, fileSystemSnapshotter, cacheRepository, inMemoryCacheDecoratorFactory, Stub(Gradle))
+    def reader = Mock(FileContentCacheFactory.Calculator)
+    def details = new TestClassDetails("SomeTest", "java.lang.Object", false, true)
+
+    def "does not parse a class file again when its content has not changed"() {
+        def cache = new TestClassDetailsCache(cacheFactory).getCache("detector", reader)
+
+        when:
+        def first = cache.get(classFile)
+
+        then:
+        1 * reader.calculate(classFile, FileType.RegularFile) >> details
+        first.className == "SomeTest"
+
+        when:
+        taskOutputsGenerated()
+        def second = cache.get(classFile)
+
+        then:
+        0 * reader._
+        second.className == "SomeTest"
+        second.test
+    }
+
+    def "parses a class file again when its content has changed"() {
+        def cache = new TestClassDetailsCache(cacheFactory).getCache("detector", reader)
+
+        when:
+        cache.get(classFile)
+
+        then:
+        1 * reader.calculate(classFile, FileType.RegularFile) >> details
+
+        when:
+        taskOutputsGenerated()
+        classFileContent = HashCode.fromInt(2)
+        def changed = cache.get(classFile)
+
+        then:
+        1 * reader.calculate(classFile, FileType.RegularFile) >> new TestClassDetails("SomeTest", "java.lang.Object", false, false)
+        !changed.test
+    }
+
+    def "returns the same cache for a detector"() {
+        def classDetailsCache = new TestClassDetailsCache(cacheFactory)
+
+        expect:
+        classDetailsCache.getCache("detector", reader).is(classDetailsCache.getCache("detector", reader))
+        !classDetailsCache.getCache("detector", reader).is(classDetailsCache.getCache("other", reader))
+    }
+
+    /**
+     * Discards the cached details of files by path, as happens when a task runs, so that the class file is looked up again by its content.
+     */
+    private void taskOutputsGenerated() {
+        listenerManager.getBroadcaster(TaskOutputsGenerationListener).beforeTaskOutputsGenerated()
+    }
+}
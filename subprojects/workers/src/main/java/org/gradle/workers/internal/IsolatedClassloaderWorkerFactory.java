@@ -23,14 +23,17 @@ import org.gradle.api.internal.classloading.GroovySystemLoaderFactory;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.logging.Logger;
 import org.gradle.cache.internal.CrossBuildInMemoryCacheFactory;
+import org.gradle.internal.Factory;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.classloader.CachingClassLoader;
 import org.gradle.internal.classloader.ClassLoaderFactory;
+import org.gradle.internal.classloader.ClasspathHasher;
 import org.gradle.internal.classloader.ClasspathUtil;
 import org.gradle.internal.classloader.FilteringClassLoader;
 import org.gradle.internal.classloader.MultiParentClassLoader;
 import org.gradle.internal.classloader.VisitableURLClassLoader;
 import org.gradle.internal.classpath.DefaultClassPath;
+import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.event.DefaultListenerManager;
 import org.gradle.internal.io.ClassLoaderObjectInputStream;
 import org.gradle.internal.operations.BuildOperationContext;
@@ -53,17 +56,28 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.concurrent.Callable;
 
-public class IsolatedClassloaderWorkerFactory implements WorkerFactory {
+public class IsolatedClassloaderWorkerFactory implements WorkerFactory, Stoppable {
+    /**
+     * The maximum number of idle worker class loaders to keep for reuse by later work items. Worker class loaders are not reused when not set.
+     *
+     * <p>Setting this changes the semantics of {@link IsolationMode#CLASSLOADER}: work items with the same classpath no longer each get their own class loader.
+     * A later work item reuses the class loader of an earlier one, and work items that run at the same time share one class loader.
+     * These work items therefore share the static state of the classes loaded from the classpath.</p>
+     */
+    public static final String MAX_IDLE_CLASSLOADERS_PROPERTY = "org.gradle.internal.workers.cachedclassloaders";
 
     private final ClassLoaderFactory classLoaderFactory;
     private final WorkerLeaseRegistry workerLeaseRegistry;
     private final BuildOperationExecutor buildOperationExecutor;
+    private final WorkerClassLoaderCache classLoaderCache;
     private final GroovySystemLoaderFactory groovySystemLoaderFactory = new GroovySystemLoaderFactory();
 
-    public IsolatedClassloaderWorkerFactory(ClassLoaderFactory classLoaderFactory, WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor) {
+    public IsolatedClassloaderWorkerFactory(ClassLoaderFactory classLoaderFactory, WorkerLeaseRegistry workerLeaseRegistry, BuildOperationExecutor buildOperationExecutor,
+                                            ClasspathHasher classpathHasher, int maxIdleClassLoaders) {
         this.classLoaderFactory = classLoaderFactory;
         this.workerLeaseRegistry = workerLeaseRegistry;
         this.buildOperationExecutor = buildOperationExecutor;
+        this.classLoaderCache = new WorkerClassLoaderCache(classpathHasher, maxIdleClassLoaders);
     }
 
     @Override
@@ -101,12 +115,42 @@ public class IsolatedClassloaderWorkerFactory implements WorkerFactory {
         return IsolationMode.CLASSLOADER;
     }
 
-    private DefaultWorkResult executeInWorkerClassLoader(ActionExecutionSpec spec, DaemonForkOptions forkOptions) {
+    @Override
+    public void stop() {
+        classLoaderCache.stop();
+    }
+
+    private DefaultWorkResult executeInWorkerClassLoader(final ActionExecutionSpec spec, final DaemonForkOptions forkOptions) {
+        if (classLoaderCache.isEnabled()) {
+            Factory<WorkerClassLoaderCache.CachedClassLoader> cachedClassLoaderFactory = new Factory<WorkerClassLoaderCache.CachedClassLoader>() {
+                @Override
+                public WorkerClassLoaderCache.CachedClassLoader create() {
+                    ClassLoader actionClasspathLoader = createActionClasspathLoader(forkOptions);
+                    GroovySystemLoader actionClasspathGroovy = groovySystemLoaderFactory.forClassLoader(actionClasspathLoader);
+                    ClassLoader workerClassLoader = createWorkerClassLoader(actionClasspathLoader, forkOptions.getSharedPackages(), spec.getClass());
+                    return new WorkerClassLoaderCache.CachedClassLoader(actionClasspathLoader, actionClasspathGroovy, workerClassLoader);
+                }
+            };
+            WorkerClassLoaderCache.CachedClassLoader classLoader = classLoaderCache.acquire(new DefaultClassPath(forkOptions.getClasspath()), forkOptions.getSharedPackages(), spec.getClass(), cachedClassLoaderFactory);
+            try {
+                return executeInWorkerClassLoader(spec, classLoader.getWorkerClassLoader());
+            } finally {
+                classLoaderCache.release(classLoader);
+            }
+        }
+
         ClassLoader actionClasspathLoader = createActionClasspathLoader(forkOptions);
         GroovySystemLoader actionClasspathGroovy = groovySystemLoaderFactory.forClassLoader(actionClasspathLoader);
+        try {
+            ClassLoader workerClassLoader = createWorkerClassLoader(actionClasspathLoader, forkOptions.getSharedPackages(), spec.getClass());
+            return executeInWorkerClassLoader(spec, workerClassLoader);
+        } finally {
+            // Eventually shutdown any leaky groovy runtime loaded from action classpath loader
+            actionClasspathGroovy.shutdown();
+        }
+    }
 
-        ClassLoader workerClassLoader = createWorkerClassLoader(actionClasspathLoader, forkOptions.getSharedPackages(), spec.getClass());
-
+    private DefaultWorkResult executeInWorkerClassLoader(ActionExecutionSpec spec, ClassLoader workerClassLoader) {
         ClassLoader previousContextLoader = Thread.currentThread().getContextClassLoader();
         try {
             Thread.currentThread().setContextClassLoader(workerClassLoader);
@@ -116,8 +160,6 @@ public class IsolatedClassloaderWorkerFactory implements WorkerFactory {
         } catch (Exception e) {
             throw UncheckedException.throwAsUncheckedException(e);
         } finally {
-            // Eventually shutdown any leaky groovy runtime loaded from action classpath loader
-            actionClasspathGroovy.shutdown();
             Thread.currentThread().setContextClassLoader(previousContextLoader);
         }
     }
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import org.gradle.api.internal.classloading.GroovySystemLoader;
+import org.gradle.internal.Factory;
+import org.gradle.internal.classloader.ClassLoaderUtils;
+import org.gradle.internal.classloader.ClasspathHasher;
+import org.gradle.internal.classpath.ClassPath;
+import org.gradle.internal.concurrent.Stoppable;
+import org.gradle.internal.hash.HashCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the class loaders of work items that run in {@link org.gradle.workers.IsolationMode#CLASSLOADER}, so that later work items with the same classpath
+ * and shared packages reuse the classes that have already been loaded, rather than loading them again.
+ *
+ * <p>Work items that run at the same time share a class loader, and with it the static state of the classes loaded from its classpath.
+ * Once no work item uses a class loader, it is kept as idle, and the least recently used
+ * idle class loaders beyond the maximum are discarded. A discarded class loader has the Groovy runtime loaded from its classpath shut down, and is closed.
+ * The classpath is identified by the hash of its content, so a class loader is not reused once a file on its classpath has changed.</p>
+ */
+class WorkerClassLoaderCache implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerClassLoaderCache.class);
+
+    private final ClasspathHasher classpathHasher;
+    private final int maxIdle;
+    // In access order, so that the least recently used class loaders come first
+    private final Map<Key, CachedClassLoader> classLoaders = new LinkedHashMap<Key, CachedClassLoader>(16, 0.75f, true);
+    private boolean stopped;
+
+    WorkerClassLoaderCache(ClasspathHasher classpathHasher, int maxIdle) {
+        this.classpathHasher = classpathHasher;
+        this.maxIdle = maxIdle;
+    }
+
+    boolean isEnabled() {
+        return maxIdle > 0;
+    }
+
+    /**
+     * Returns a class loader for the given classpath, shared packages and action class, using the given factory to create one if none is cached.
+     * The class loader must be given back using {@link #release(CachedClassLoader)}.
+     */
+    CachedClassLoader acquire(ClassPath classpath, Iterable<String> sharedPackages, Class<?> actionClass, Factory<CachedClassLoader> factory) {
+        Key key = new Key(classpathHasher.hash(classpath), classpath.getAsFiles(), ImmutableList.copyOf(sharedPackages), actionClass.getClassLoader());
+        synchronized (classLoaders) {
+            CachedClassLoader classLoader = classLoaders.get(key);
+            if (classLoader != null) {
+                LOGGER.debug("Reusing worker class loader from a previous work item.");
+                classLoader.users++;
+                return classLoader;
+            }
+        }
+
+        // Creating the class loader loads the Groovy runtime, so do this without holding the lock
+        CachedClassLoader created = factory.create();
+        created.key = key;
+        created.users = 1;
+        CachedClassLoader existing;
+        synchronized (classLoaders) {
+            existing = classLoaders.get(key);
+            if (existing != null) {
+                existing.users++;
+            } else if (stopped) {
+                created.discarded = true;
+            } else {
+                classLoaders.put(key, created);
+            }
+        }
+        if (existing != null) {
+            created.close();
+            return existing;
+        }
+        return created;
+    }
+
+    /**
+     * Gives back a class loader once the work item is done with it.
+     */
+    void release(CachedClassLoader classLoader) {
+        List<CachedClassLoader> evicted = new ArrayList<CachedClassLoader>();
+        synchronized (classLoaders) {
+            classLoader.users--;
+            if (classLoader.users == 0) {
+                if (classLoader.discarded) {
+                    evicted.add(classLoader);
+                } else {
+                    // Mark as the most recently used
+                    classLoaders.get(classLoader.key);
+                    evictIdle(evicted);
+                }
+            }
+        }
+        for (CachedClassLoader evictedClassLoader : evicted) {
+            evictedClassLoader.close();
+        }
+    }
+
+    private void evictIdle(List<CachedClassLoader> evicted) {
+        int idle = 0;
+        for (CachedClassLoader classLoader : classLoaders.values()) {
+            if (classLoader.users == 0) {
+                idle++;
+            }
+        }
+        Iterator<CachedClassLoader> iterator = classLoaders.values().iterator();
+        while (idle > maxIdle && iterator.hasNext()) {
+            CachedClassLoader classLoader = iterator.next();
+            if (classLoader.users == 0) {
+                iterator.remove();
+                evicted.add(classLoader);
+                idle--;
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        List<CachedClassLoader> evicted = new ArrayList<CachedClassLoader>();
+        synchronized (classLoaders) {
+            stopped = true;
+            for (CachedClassLoader classLoader : classLoaders.values()) {
+                if (classLoader.users == 0) {
+                    evicted.add(classLoader);
+                } else {
+                    // Closed when the last work item that uses it is done
+                    classLoader.discarded = true;
+                }
+            }
+            classLoaders.clear();
+        }
+        for (CachedClassLoader classLoader : evicted) {
+            classLoader.close();
+        }
+    }
+
+    static class CachedClassLoader {
+        private final ClassLoader actionClasspathLoader;
+        private final GroovySystemLoader actionClasspathGroovy;
+        private final ClassLoader workerClassLoader;
+        private Key key;
+        private int users;
+        private boolean discarded;
+
+        CachedClassLoader(ClassLoader actionClasspathLoader, GroovySystemLoader actionClasspathGroovy, ClassLoader workerClassLoader) {
+            this.actionClasspathLoader = actionClasspathLoader;
+            this.actionClasspathGroovy = actionClasspathGroovy;
+            this.workerClassLoader = workerClassLoader;
+        }
+
+        ClassLoader getWorkerClassLoader() {
+            return workerClassLoader;
+        }
+
+        private void close() {
+            LOGGER.debug("Discarding worker class loader for {}.", key.classpath);
+            // Eventually shutdown any leaky groovy runtime loaded from action classpath loader
+            actionClasspathGroovy.shutdown();
+            ClassLoaderUtils.tryClose(workerClassLoader);
+            ClassLoaderUtils.tryClose(actionClasspathLoader);
+        }
+    }
+
+    private static class Key {
+        private final HashCode classpathHash;
+        private final List<File> classpath;
+        private final List<String> sharedPackages;
+        private final ClassLoader actionClassLoader;
+
+        Key(HashCode classpathHash, List<File> classpath, List<String> sharedPackages, ClassLoader actionClassLoader) {
+            this.classpathHash = classpathHash;
+            this.classpath = classpath;
+            this.sharedPackages = sharedPackages;
+            this.actionClassLoader = actionClassLoader;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return classpathHash.equals(other.classpathHash) && classpath.equals(other.classpath) && sharedPackages.equals(other.sharedPackages)
+                && actionClassLoader == other.actionClassLoader;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(classpathHash, classpath, sharedPackages, System.identityHashCode(actionClassLoader));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.workers.internal
+
+import org.gradle.api.internal.classloading.GroovySystemLoader
+import org.gradle.internal.Factory
+import org.gradle.internal.classloader.ClasspathHasher
+import org.gradle.internal.classpath.ClassPath
+import org.gradle.internal.classpath.DefaultClassPath
+import org.gradle.internal.hash.HashCode
+import spock.lang.Specification
+
+class WorkerClassLoaderCacheTest extends Specification {
+    def hashes = [:]
+    def classpathHasher = Stub(ClasspathHasher) {
+        hash(_) >> { ClassPath classpath -> HashCode.fromInt(hashes.get(classpath.asFiles, 0)) }
+    }
+    def created = []
+    def factory = { ->
+        def classLoader = new WorkerClassLoaderCache.CachedClassLoader(new URLClassLoader(new URL[0], null), Mock(GroovySystemLoader), new URLClassLoader(new URL[0], null))
+        created << classLoader
+        return classLoader
+    } as Factory
+    def cache = new WorkerClassLoaderCache(classpathHasher, 2)
+
+    def "reuses class loader for the same classpath and shared packages"() {
+        when:
+        def first = cache.acquire(classpath("a.jar"), ["org.a"], String, factory)
+        cache.release(first)
+        def second = cache.acquire(classpath("a.jar"), ["org.a"], String, factory)
+
+        then:
+        second.is(first)
+        created.size() == 1
+    }
+
+    def "shares class loader between work items that run at the same time"() {
+        when:
+        def first = cache.acquire(classpath("a.jar"), ["org.a"], String, factory)
+        def second = cache.acquire(classpath("a.jar"), ["org.a"], String, factory)
+
+        then:
+        second.is(first)
+    }
+
+    def "does not reuse class loader for a different classpath, shared packages or classpath content"() {
+        when:
+        def first = cache.acquire(classpath("a.jar"), ["org.a"], String, factory)
+        cache.release(first)
+        def otherClasspath = cache.acquire(classpath("b.jar"), ["org.a"], String, factory)
+        def otherPackages = cache.acquire(classpath("a.jar"), ["org.b"], String, factory)
+        hashes[[new File("a.jar")]] = 1
+        def otherContent = cache.acquire(classpath("a.jar"), ["org.a"], String, factory)
+
+        then:
+        created.size() == 4
+        [otherClasspath, otherPackages, otherContent].every { !it.is(first) }
+    }
+
+    def "discards least recently used idle class loaders beyond the maximum"() {
+        given:
+        def a = cache.acquire(classpath("a.jar"), [], String, factory)
+        def b = cache.acquire(classpath("b.jar"), [], String, factory)
+        def c = cache.acquire(classpath("c.jar"), [], String, factory)
+
+        when:
+        cache.release(b)
+        cache.release(a)
+        cache.release(c)
+
+        then:
+        1 * groovy(b).shutdown()
+        0 * groovy(a).shutdown()
+        0 * groovy(c).shutdown()
+
+        when:
+        def reused = cache.acquire(classpath("a.jar"), [], String, factory)
+
+        then:
+        reused.is(a)
+        created.size() == 3
+    }
+
+    def "discards class loader that is in use when stopped once the work item is done"() {
+        given:
+        def idle = cache.acquire(classpath("a.jar"), [], String, factory)
+        cache.release(idle)
+        def inUse = cache.acquire(classpath("b.jar"), [], String, factory)
+
+        when:
+        cache.stop()
+
+        then:
+        1 * groovy(idle).shutdown()
+        0 * groovy(inUse).shutdown()
+
+        when:
+        cache.release(inUse)
+
+        then:
+        1 * groovy(inUse).shutdown()
+    }
+
+    private static GroovySystemLoader groovy(WorkerClassLoaderCache.CachedClassLoader classLoader) {
+        return classLoader.actionClasspathGroovy
+    }
+
+    private static ClassPath classpath(String fileName) {
+        return new DefaultClassPath(new File(fileName))
+    }
+}